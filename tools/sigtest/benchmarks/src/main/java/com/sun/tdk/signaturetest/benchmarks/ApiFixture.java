@@ -0,0 +1,304 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.benchmarks;
+
+import com.sun.tdk.signaturetest.Converter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Generated API used by the benchmarks. The API consists of
+ * <code>packages</code> packages with <code>classes</code> generic classes
+ * each, the classes form chains of <code>depth</code> subclasses, every
+ * class implements one of the generic interfaces extending each other and
+ * declares generic members and nested types. The API is compiled to
+ * a jar file and its signature file is created by
+ * {@link com.sun.tdk.signaturetest.Setup}.
+ * <p/>
+ * The fixture is created once per trial, it requires the compiler of the
+ * running JDK.
+ */
+@State(Scope.Benchmark)
+public class ApiFixture {
+
+    static final String PACKAGE = "bench.api";
+
+    private static final int INTERFACES = 5;
+
+    @Param({"10"})
+    public int packages;
+
+    @Param({"200"})
+    public int classes;
+
+    @Param({"25"})
+    public int depth;
+
+    private File dir;
+    private File jar;
+    private File sigfile;
+    private File binarySigfile;
+    private List classNames;
+
+    @Setup(Level.Trial)
+    public void create() throws IOException {
+        dir = createTempDir();
+        File src = new File(dir, "src");
+        File bin = new File(dir, "classes");
+        bin.mkdirs();
+
+        List sources = new ArrayList();
+        for (int p = 0; p < packages; p++) {
+            String pkg = PACKAGE + ".p" + p;
+            File pkgDir = new File(src, pkg.replace('.', File.separatorChar));
+            pkgDir.mkdirs();
+            for (int k = 0; k < INTERFACES; k++)
+                sources.add(write(new File(pkgDir, "I" + k + ".java"), generateInterface(pkg, k)));
+            for (int i = 0; i < classes; i++)
+                sources.add(write(new File(pkgDir, "C" + i + ".java"), generateClass(pkg, i)));
+        }
+        compile(sources, bin);
+
+        jar = new File(dir, "api.jar");
+        classNames = new ArrayList();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            addEntries(out, bin, "");
+        } finally {
+            out.close();
+        }
+
+        sigfile = new File(dir, "api.sig");
+        runSetup(sigfile);
+
+        binarySigfile = new File(dir, "api-bin.sig");
+        Converter.main(new String[]{"-OldFile", sigfile.getPath(), "-NewFile", binarySigfile.getPath(), "-Binary"});
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        delete(dir);
+    }
+
+    /**
+     * Returns the jar file with the compiled API.
+     */
+    public File getJar() {
+        return jar;
+    }
+
+    /**
+     * Returns the signature file of the API.
+     */
+    public File getSigfile() {
+        return sigfile;
+    }
+
+    /**
+     * Returns the signature file of the API in the binary format.
+     */
+    public File getBinarySigfile() {
+        return binarySigfile;
+    }
+
+    /**
+     * Returns qualified names of all classes of the API, including
+     * the nested ones.
+     */
+    public List getClassNames() {
+        return classNames;
+    }
+
+    /**
+     * Returns a new file in the directory of the fixture.
+     */
+    public File newFile(String name) {
+        return new File(dir, name);
+    }
+
+    /**
+     * Arguments selecting the API, common for {@link com.sun.tdk.signaturetest.Setup}
+     * and {@link com.sun.tdk.signaturetest.SignatureTest}.
+     */
+    public List getArguments(File sigfile) {
+        return new ArrayList(Arrays.asList(new String[]{
+            "-static", "-BootCp", "-Classpath", jar.getPath(),
+            "-Package", PACKAGE, "-FileName", sigfile.getPath()}));
+    }
+
+    /**
+     * Creates the signature file of the API, fails if <b>Setup</b> fails.
+     */
+    public void runSetup(File sigfile) {
+        List args = getArguments(sigfile);
+        args.add("-KeepFile");
+        StringWriter log = new StringWriter();
+        com.sun.tdk.signaturetest.Setup t = new com.sun.tdk.signaturetest.Setup();
+        t.run((String[]) args.toArray(new String[args.size()]), new PrintWriter(log, true), null);
+        if (!t.isPassed())
+            throw new IllegalStateException("Setup failed:\n" + log);
+    }
+
+    private static String generateInterface(String pkg, int k) {
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ").append(pkg).append(";\n\n");
+        sb.append("public interface I").append(k).append("<E>");
+        if (k > 0)
+            sb.append(" extends I").append(k - 1).append("<E>");
+        sb.append(" {\n");
+        sb.append("    E get").append(k).append("();\n");
+        sb.append("    <R extends Comparable<? super R>> java.util.List<R> map").append(k)
+                .append("(java.util.Collection<? extends E> source, R seed);\n");
+        sb.append("    int SIZE").append(k).append(" = ").append(k).append(";\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private String generateClass(String pkg, int i) {
+        String name = "C" + i;
+        boolean isRoot = i % depth == 0;
+        StringBuffer sb = new StringBuffer();
+        sb.append("package ").append(pkg).append(";\n\n");
+        sb.append("public abstract class ").append(name).append("<T extends Comparable<T>>");
+        if (!isRoot)
+            sb.append(" extends C").append(i - 1).append("<T>");
+        sb.append(" implements I").append(i % INTERFACES).append("<T>");
+        if (isRoot)
+            sb.append(", java.io.Serializable");
+        sb.append(" {\n");
+        sb.append("    public static final int CONST").append(i).append(" = ").append(i).append(";\n");
+        sb.append("    public static final String NAME").append(i).append(" = \"").append(name).append("\";\n");
+        sb.append("    protected T field").append(i).append(";\n");
+        sb.append("    public java.util.List<? extends T> list").append(i).append(";\n");
+        sb.append("    protected ").append(name).append("() {\n    }\n");
+        sb.append("    public ").append(name).append("(T value) throws java.io.IOException {\n")
+                .append("        this.field").append(i).append(" = value;\n    }\n");
+        // overridden by every subclass of the chain
+        sb.append("    public T value(T t) {\n        return t;\n    }\n");
+        sb.append("    public abstract T value").append(i).append("(T t);\n");
+        sb.append("    public <U extends T> java.util.Map<String, java.util.List<U>> group").append(i)
+                .append("(java.util.Collection<? extends U> c) throws IllegalStateException {\n")
+                .append("        return null;\n    }\n");
+        sb.append("    public static <K extends Comparable<? super K>, V> java.util.SortedMap<K, V> index").append(i)
+                .append("(java.util.Map<K, ? extends V> m) {\n        return null;\n    }\n");
+        sb.append("    @Deprecated\n    public void old").append(i).append("() {\n    }\n");
+        sb.append("    public interface Listener").append(i).append("<S extends ").append(name)
+                .append("<?>> extends java.util.EventListener {\n        void changed(S source);\n    }\n");
+        sb.append("    public static abstract class Entry").append(i)
+                .append("<K, V extends Comparable<V>> implements java.util.Map.Entry<K, V> {\n")
+                .append("        public int rank() {\n            return 0;\n        }\n    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static File write(File f, String content) throws IOException {
+        Writer w = new FileWriter(f);
+        try {
+            w.write(content);
+        } finally {
+            w.close();
+        }
+        return f;
+    }
+
+    private static void compile(List sources, File bin) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("The benchmarks must be run by JDK");
+
+        List args = new ArrayList(Arrays.asList(new String[]{
+            "-d", bin.getPath(), "-source", "1.8", "-target", "1.8", "-nowarn", "-Xlint:-options"}));
+        for (int i = 0; i < sources.size(); i++)
+            args.add(((File) sources.get(i)).getPath());
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        int rc = compiler.run(null, log, log, (String[]) args.toArray(new String[args.size()]));
+        if (rc != 0)
+            throw new IllegalStateException("Generated API can't be compiled:\n" + log);
+    }
+
+    private void addEntries(JarOutputStream out, File f, String name) throws IOException {
+        if (f.isDirectory()) {
+            File[] files = f.listFiles();
+            Arrays.sort(files);
+            for (int i = 0; i < files.length; i++)
+                addEntries(out, files[i], name + files[i].getName() + (files[i].isDirectory() ? "/" : ""));
+            return;
+        }
+
+        out.putNextEntry(new ZipEntry(name));
+        InputStream in = new FileInputStream(f);
+        try {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1)
+                out.write(buf, 0, n);
+        } finally {
+            in.close();
+        }
+        out.closeEntry();
+        classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+    }
+
+    private static File createTempDir() throws IOException {
+        File f = File.createTempFile("sigtest-bench", "");
+        if (!f.delete() || !f.mkdir())
+            throw new IOException("Can't create directory " + f);
+        return f;
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++)
+                delete(files[i]);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.benchmarks;
+
+import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
+import com.sun.tdk.signaturetest.classpath.Release;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parses all class files of the generated API by a new
+ * <b>BinaryClassDescrLoader</b>, so no class is taken from its cache.
+ * The classes of the running JDK are found as with <code>-BootCp</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassFileBenchmark {
+
+    @Benchmark
+    public void load(ApiFixture api, Blackhole bh) throws ClassNotFoundException {
+        ClasspathImpl classpath = new ClasspathImpl(Release.BOOT_CLASS_PATH, api.getJar().getPath());
+        try {
+            BinaryClassDescrLoader loader = new BinaryClassDescrLoader(classpath, new Integer(1));
+            List names = api.getClassNames();
+            for (int i = 0; i < names.size(); i++)
+                bh.consume(loader.load((String) names.get(i)));
+        } finally {
+            classpath.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.benchmarks;
+
+import com.sun.tdk.signaturetest.SignatureTest;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs <b>Setup</b> and <b>SignatureTest</b> on the generated API in the
+ * static mode, as the command line tools do. Every run is measured
+ * separately.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Benchmark
+    public File setup(ApiFixture api) {
+        File sigfile = api.newFile("setup.sig");
+        api.runSetup(sigfile);
+        return sigfile;
+    }
+
+    @Benchmark
+    public boolean signatureTest(ApiFixture api) {
+        List args = api.getArguments(api.getSigfile());
+        StringWriter log = new StringWriter();
+        SignatureTest t = new SignatureTest();
+        t.run((String[]) args.toArray(new String[args.size()]), new PrintWriter(log, true), null);
+        if (!t.isPassed())
+            throw new IllegalStateException("SignatureTest failed:\n" + log);
+        return t.isPassed();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.benchmarks;
+
+import com.sun.tdk.signaturetest.core.Erasurator;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.sigfile.FileManager;
+import com.sun.tdk.signaturetest.sigfile.MultipleFileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Erases all classes of the signature file of the generated API, the
+ * erasure creates new class descriptions, so the classes are read once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ErasuratorBenchmark {
+
+    private List classes;
+
+    @Setup(Level.Trial)
+    public void read(ApiFixture api) throws IOException {
+        StringWriter log = new StringWriter();
+        MultipleFileReader in = new MultipleFileReader(new PrintWriter(log, true),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        try {
+            if (!in.readSignatureFile("", api.getSigfile().getPath()))
+                throw new IllegalStateException("Can't read " + api.getSigfile() + ":\n" + log);
+
+            classes = new ArrayList();
+            ClassDescription c;
+            while ((c = in.nextClass()) != null)
+                classes.add(c);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Benchmark
+    public void erasure(Blackhole bh) {
+        Erasurator erasurator = new Erasurator();
+        for (int i = 0; i < classes.size(); i++)
+            bh.consume(erasurator.erasure((ClassDescription) classes.get(i)));
+    }
+}
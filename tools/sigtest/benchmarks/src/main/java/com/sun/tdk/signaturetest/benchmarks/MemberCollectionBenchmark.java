@@ -0,0 +1,103 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.benchmarks;
+
+import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
+import com.sun.tdk.signaturetest.classpath.Release;
+import com.sun.tdk.signaturetest.core.ClassHierarchy;
+import com.sun.tdk.signaturetest.core.ClassHierarchyImpl;
+import com.sun.tdk.signaturetest.core.Log;
+import com.sun.tdk.signaturetest.core.MemberCollectionBuilder;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the members of all classes of the generated API, including
+ * the inherited ones, as <b>Setup</b> does. The classes are parsed before
+ * each invocation, so only building the members is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MemberCollectionBenchmark {
+
+    private static final Log LOG = new Log() {
+        public void storeError(String s, Logger utilLogger) {
+        }
+
+        public void storeWarning(String s, Logger utilLogger) {
+        }
+    };
+
+    private ClasspathImpl classpath;
+    private ClassDescription[] classes;
+    private MemberCollectionBuilder builder;
+
+    @Setup(Level.Invocation)
+    public void load(ApiFixture api) throws ClassNotFoundException {
+        List names = api.getClassNames();
+        classpath = new ClasspathImpl(Release.BOOT_CLASS_PATH, api.getJar().getPath());
+        BinaryClassDescrLoader loader = new BinaryClassDescrLoader(classpath, new Integer(names.size() * 2));
+        ClassHierarchy hierarchy = new ClassHierarchyImpl(loader, ClassHierarchy.ALL_PUBLIC);
+
+        classes = new ClassDescription[names.size()];
+        for (int i = 0; i < classes.length; i++)
+            classes[i] = hierarchy.load((String) names.get(i));
+        builder = new MemberCollectionBuilder(LOG);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        classpath.close();
+    }
+
+    @Benchmark
+    public ClassDescription[] createMembers() throws ClassNotFoundException {
+        for (int i = 0; i < classes.length; i++)
+            builder.createMembers(classes[i], true, true, false);
+        return classes;
+    }
+}
@@ -48,6 +48,10 @@ import com.sun.tdk.signaturetest.sigfile.FileManager;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 
@@ -85,6 +89,7 @@ public class Main implements Log {
     public static final String EXCLUDEFIELD_OPTION = "-excludeFields";
     public static final String INCLUDECONSTANTFIELDS_OPTION = "-includeConstantFields";
     public static final String DEBUG_OPTION = "-debug";
+    public static final String THREADS_OPTION = "-threads";
 
     // special Strings
     public static final String VERSION_OPTION = "-version";
@@ -101,6 +106,11 @@ public class Main implements Log {
     public final static int DefaultCacheSize = 4096;
     private boolean isWorstCaseMode = true; // worst case is default
 
+    /**
+     * Number of threads extracting the calls from TS classes.
+     */
+    private int threads = 1;
+
     protected ClasspathImpl classpath;
     //protected String classpathStr = null;
 
@@ -211,6 +221,7 @@ public class Main implements Log {
         parser.addOption(EXCLUDELIST_OPTION,  OptionInfo.optionVariableParams(1, OptionInfo.UNLIMITED), optionsDecoder);
 
         parser.addOption(DEBUG_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
+        parser.addOption(THREADS_OPTION, OptionInfo.option(1), optionsDecoder);
 
         parser.addOption(VERSION_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(HELP_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
@@ -312,6 +323,15 @@ public class Main implements Log {
             reporter.addXList(args);
         }  else if (optionName.equalsIgnoreCase(DEBUG_OPTION)) {
             debug = true;
+        }  else if (optionName.equalsIgnoreCase(THREADS_OPTION)) {
+            threads = 0;
+            try {
+                threads = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                debug(e);
+            }
+            if (threads <= 0)
+                throw new CommandLineParserException(i18n.getString("Main.error.arg.invalid", THREADS_OPTION));
         }
         else if (optionName.equalsIgnoreCase(HELP_OPTION) || optionName.equalsIgnoreCase(QUESTIONMARK)) {
             version();
@@ -364,6 +384,7 @@ public class Main implements Log {
         sb.append(nl).append(i18n.getString("Main.usage.detail", DETAIL_OPTION));
         sb.append(nl).append(i18n.getString("Main.usage.format", FORMAT_OPTION));
         sb.append(nl).append(i18n.getString("Main.usage.report", REPORT_OPTION));
+        sb.append(nl).append(i18n.getString("Main.usage.threads", THREADS_OPTION));
         sb.append(nl).append(i18n.getString("Main.usage.debug", DEBUG_OPTION));
         sb.append(nl).append(i18n.getString("Main.usage.help", HELP_OPTION));
         sb.append(nl).append(i18n.getString("Main.usage.version", VERSION_OPTION));
@@ -408,7 +429,7 @@ public class Main implements Log {
             }
 
             /*
-             * Read TS and send each call to reporter.
+             * Read TS classes first, the calls are resolved against all of them.
              */
             BinaryClassDescrLoader tsLoader = new BinaryClassDescrLoader(classpath,
                     DefaultCacheSize);
@@ -417,8 +438,7 @@ public class Main implements Log {
             tsLoader.setIgnoreAnnotations(true);
             ClassHierarchy tsHierarchy = new ClassHierarchyImpl(tsLoader,
                     ClassHierarchy.ALL_PUBLIC);
-            int size = 0;
-            List<MemberDescription> calls = new ArrayList<MemberDescription>();
+            List<String> tsClasses = new ArrayList<String>();
             while (classpath.hasNext()) {
                 String name = classpath.nextClassName();
                 if (!isTSMember(name)) {
@@ -428,7 +448,7 @@ public class Main implements Log {
                 try {
                     ClassDescription tsClass = tsHierarchy.load(name);
                     refCounter.addTSClass(tsClass, false);
-                    calls.addAll(tsLoader.loadCalls(name));
+                    tsClasses.add(name);
                 } catch (ClassNotFoundException e) {
                     if (debug)
                         log.println(i18n.getString("Main.warning.class.invalid", name));
@@ -444,11 +464,11 @@ public class Main implements Log {
 
             }
             //classpath.close();
-            for (MemberDescription md : calls) {
-                size++;
-                refCounter.addRef(md);
-            }
 
+            /*
+             * Send each call to reporter.
+             */
+            int size = countCalls(tsClasses);
 
             if (size == 0) {
                 System.err.println(i18n.getString("Main.warning.ts.empty", ts));
@@ -462,6 +482,93 @@ public class Main implements Log {
         }
     }
 
+    /**
+     * Extracts the calls from the TS classes by <code>threads</code> workers
+     * and passes them to the <code>refCounter</code> as soon as each class
+     * is read, so the calls of all classes are never kept together.
+     * Returns the number of the calls.
+     */
+    private int countCalls(List<String> tsClasses) throws InterruptedException {
+        CallCounter[] counters = new CallCounter[Math.min(threads, Math.max(tsClasses.size(), 1))];
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new CallCounter(tsClasses, next);
+        }
+
+        if (counters.length == 1) {
+            counters[0].run();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(counters.length);
+            try {
+                for (CallCounter c : counters) {
+                    executor.execute(c);
+                }
+            } finally {
+                executor.shutdown();
+            }
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        }
+
+        int size = 0;
+        for (CallCounter c : counters) {
+            if (c.failure != null) {
+                debug(c.failure);
+                error(i18n.getString("Main.error.check", c.failure.getMessage()));
+            }
+            size += c.size;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the calls of the TS classes by its own loader, the classes are
+     * taken from the shared list until all of them are read.
+     */
+    private class CallCounter implements Runnable {
+
+        private final List<String> tsClasses;
+        private final AtomicInteger next;
+        private int size = 0;
+        private Throwable failure = null;
+
+        CallCounter(List<String> tsClasses, AtomicInteger next) {
+            this.tsClasses = tsClasses;
+            this.next = next;
+        }
+
+        public void run() {
+            BinaryClassDescrLoader loader = new BinaryClassDescrLoader(classpath,
+                    DefaultCacheSize);
+            loader.setLog(log);
+            loader.setIgnoreAnnotations(true);
+
+            int index;
+            while ((index = next.getAndIncrement()) < tsClasses.size()) {
+                String name = tsClasses.get(index);
+                try {
+                    List calls = loader.loadCalls(name);
+                    for (Object call : calls) {
+                        size++;
+                        refCounter.addRef((MemberDescription) call);
+                    }
+                } catch (ClassNotFoundException e) {
+                    if (debug)
+                        log.println(i18n.getString("Main.warning.class.invalid", name));
+                    debug(e);
+                } catch (ClassFormatError e) {
+                    if (debug)
+                        log.println(i18n.getString("Main.warning.class.invalid", name));
+                    debug(e);
+                } catch (Throwable t) {
+                    failure = t;
+                    // stops the other workers
+                    next.set(tsClasses.size());
+                    return;
+                }
+            }
+        }
+    }
+
     private void error(String s) {
         log.println(s);
         System.exit(1);
@@ -43,7 +43,30 @@ class RefCounter {
     private Erasurator erasurator = new Erasurator();
     private Map<String, ClassDescription> ts = new HashMap<String, ClassDescription>();
 
-    Map<String, Integer> results = new HashMap<String, Integer>();
+    /**
+     * Erasurator of the API members. The type parameters of all API classes
+     * are kept, so the parameters of the outer classes are known when
+     * the members of the inner classes are erased.
+     */
+    private Erasurator apiErasurator = new Erasurator();
+
+    /**
+     * Erased members of the API classes mapped to the ids of the original
+     * members, by the class name. Each reference is looked up here.
+     */
+    private Map<String, Map<MemberDescription, int[]>> index =
+            new HashMap<String, Map<MemberDescription, int[]>>();
+
+    /**
+     * Ids of the API members by the member string, the members printed
+     * in the same way are covered together.
+     */
+    private Map<String, Integer> memberIds = new HashMap<String, Integer>();
+
+    /**
+     * Ids of the covered members, guarded by itself.
+     */
+    private BitSet covered = new BitSet();
 
     public RefCounter() {
         super();
@@ -74,9 +97,49 @@ class RefCounter {
         }
         if (hasTracked || !hasMembers) {
             api.put(cd.getQualifiedName(), cd);
+            index.put(cd.getQualifiedName(), createIndex(cd));
         }
     }
 
+    /**
+     * Maps the erased members of the API class to the ids of the original
+     * members, several members can be erased to the same signature.
+     */
+    private Map<MemberDescription, int[]> createIndex(ClassDescription cd) {
+        Map<MemberDescription, int[]> members = new HashMap<MemberDescription, int[]>();
+        apiErasurator.parseTypeParameters(cd);
+        for (Iterator i = cd.getMembersIterator(); i.hasNext();) {
+            MemberDescription orig = (MemberDescription)i.next();
+            // only the calls of these members are counted
+            if (!(orig.isConstructor() || orig.isField() || orig.isMethod()))
+                continue;
+
+            MemberDescription erased = apiErasurator.processMember(orig);
+            int id = getMemberId(orig);
+            int[] ids = members.get(erased);
+            if (ids == null) {
+                ids = new int[]{id};
+            } else {
+                int[] more = new int[ids.length + 1];
+                System.arraycopy(ids, 0, more, 0, ids.length);
+                more[ids.length] = id;
+                ids = more;
+            }
+            members.put(erased, ids);
+        }
+        return members;
+    }
+
+    private int getMemberId(MemberDescription md) {
+        String key = md.toString();
+        Integer id = memberIds.get(key);
+        if (id == null) {
+            id = memberIds.size();
+            memberIds.put(key, id);
+        }
+        return id;
+    }
+
     public void addTSClass(ClassDescription cd, boolean fromAPI) {
         if (fromAPI) {
             ts.put(cd.getQualifiedName(), erasurator.erasure(cd));
@@ -92,6 +155,10 @@ class RefCounter {
         ts.put(cd.getQualifiedName(), erasurator.erasure(cd));
     }
 
+    /**
+     * Counts the call of TS class. The calls may be counted concurrently
+     * once all API and TS classes are added.
+     */
     public void addRef(MemberDescription call) {
         String calledClass = call.getDeclaringClassName();
         if (ts.get(call.getDeclaringClassName()) == null) {
@@ -103,14 +170,13 @@ class RefCounter {
             e.printStackTrace();
         }
 
-        ClassDescription apiClass = api.get(calledClass);
-        if (apiClass != null) {
-            erasurator.parseTypeParameters(apiClass);
-            for (Iterator j = apiClass.getMembersIterator(); j.hasNext();) {
-                MemberDescription orig = (MemberDescription)j.next();
-                MemberDescription erased = erasurator.processMember(orig);
-                if (erased.equals(call)) {
-                    results.put(orig.toString(), 1);
+        Map<MemberDescription, int[]> members = index.get(calledClass);
+        if (members != null) {
+            int[] ids = members.get(call);
+            if (ids != null) {
+                synchronized (covered) {
+                    for (int id : ids)
+                        covered.set(id);
                 }
             }
         }
@@ -152,7 +218,12 @@ class RefCounter {
     }
 
     boolean isCovered(MemberDescription md) {
-        return results.get(md.toString()) != null;
+        Integer id = memberIds.get(md.toString());
+        if (id == null)
+            return false;
+        synchronized (covered) {
+            return covered.get(id);
+        }
     }
 
 
@@ -42,13 +42,8 @@ public class Adapter {
 
     public Adapter(FileManager fm) {
 
-        // add pseudo-modifier
-        coverIgnore = new Modifier("!cover-ignore", true);
+        addCoverIgnore();
 
-        // allow this for any type of elements
-        for (MemberType mt : MemberType.knownTypes) {
-            mt.setModifiersMask(mt.getModifiersMask() | coverIgnore.getValue());
-        }
         // add format
         FormatAdapter f = new FormatAdapter("#APICover file v4.1");
         f.setReader(new ReaderAdapter(f) {
@@ -76,5 +71,22 @@ public class Adapter {
         fm.addFormat(f, false);
     }
 
+    /**
+     * Adds the pseudo-modifier once, the modifiers are registered for
+     * the whole JVM and the check can be run several times.
+     */
+    private static synchronized void addCoverIgnore() {
+        if (coverIgnore != null)
+            return;
+
+        // add pseudo-modifier
+        coverIgnore = new Modifier("!cover-ignore", true);
+
+        // allow this for any type of elements
+        for (MemberType mt : MemberType.knownTypes) {
+            mt.setModifiersMask(mt.getModifiersMask() | coverIgnore.getValue());
+        }
+    }
+
     public static Modifier coverIgnore;
 }
@@ -46,8 +46,21 @@ import java.util.regex.PatternSyntaxException;
 public class ExcludeList implements Exclude {
     private List excludeList;
 
+    /**
+     * Positions of the signatures which are matched by the patterns,
+     * the other ones are matched literally.
+     */
+    private List patternPositions;
+
+    /**
+     * Positions of the literal signatures by the signature.
+     */
+    private Map literals;
+
     public ExcludeList() {
         excludeList = new ArrayList();
+        patternPositions = new ArrayList();
+        literals = new HashMap();
     }
 
 
@@ -58,29 +71,63 @@ public class ExcludeList implements Exclude {
         String regpack1 = name.replaceAll("(\\.|\\(|\\)|\\{|\\}|\\[|\\]|\\%|\\$)","\\\\$1");
         String regpack = regpack1.replaceAll("\\\\\\\\", "");
         try {
-            excludeList.add(Pattern.compile(regpack));
+            Pattern p = Pattern.compile(regpack);
+            Integer pos = Integer.valueOf(excludeList.size());
+            if (isLiteral(name)) {
+                if (!literals.containsKey(name))
+                    literals.put(name, pos);
+            } else {
+                patternPositions.add(pos);
+            }
+            excludeList.add(p);
         } catch (PatternSyntaxException e) {
             System.err.println("Error in -ExcludeSig: " + e.getMessage());
         }
     }
 
+    /**
+     * Checks if the pattern created from the signature matches
+     * the signature only.
+     */
+    private static boolean isLiteral(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if ("\\*+?|^".indexOf(name.charAt(i)) != -1)
+                return false;
+        }
+        return true;
+    }
+
     /* (non-Javadoc)
     * @see com.sun.tdk.exclude.Exclude#excluded(java.lang.String)
     */
     public void check(ClassDescription testedClass, MemberDescription name) throws ExcludeException {
-        String signature = name.getQualifiedName().replaceAll("<[^<>]+>", "");
+        String signature = removeTypeArguments(name.getQualifiedName());
         if (name.isMethod() || name.isConstructor()) {
             signature += '(';
-            signature += name.getArgs().replaceAll("<[^<>]+>", "");
+            signature += removeTypeArguments(name.getArgs());
             signature += ')';
         }
-        for (Iterator i = excludeList.iterator(); i.hasNext();) {
-            Pattern p = (Pattern) i.next();
-            Matcher m = p.matcher(signature);            
-            if (m.matches()) {                
+
+        // the first signature in the list is reported
+        Integer literal = (Integer) literals.get(signature);
+        int limit = literal == null ? excludeList.size() : literal.intValue();
+        for (Iterator i = patternPositions.iterator(); i.hasNext();) {
+            int pos = ((Integer) i.next()).intValue();
+            if (pos > limit)
+                break;
+            Pattern p = (Pattern) excludeList.get(pos);
+            Matcher m = p.matcher(signature);
+            if (m.matches()) {
                 throw new ExcludeException(p.pattern());
             }
         }
+        if (literal != null) {
+            throw new ExcludeException(((Pattern) excludeList.get(limit)).pattern());
+        }
+    }
+
+    private static String removeTypeArguments(String s) {
+        return s.indexOf('<') == -1 ? s : s.replaceAll("<[^<>]+>", "");
     }
 
 
@@ -0,0 +1,363 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest;
+
+import com.sun.tdk.signaturetest.loaders.PersistentClassCache;
+import com.sun.tdk.signaturetest.util.CommandLineParser;
+import com.sun.tdk.signaturetest.util.CommandLineParserException;
+import com.sun.tdk.signaturetest.util.OptionInfo;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The purpose of this program is to check several APIs in one JVM,
+ * e.g. all the API specifications of a platform. Each API is checked
+ * by SignatureTest with its own signature file, class path and packages,
+ * the checks run concurrently and share the descriptions of the classes
+ * provided by the same class path entries, first of all the JDK classes,
+ * so these classes are parsed once. Only the APIs checked in static mode
+ * (option <code>-Static</code>) share the descriptions, the APIs checked
+ * in reflection mode load their classes as usual. A JUnit XML report is
+ * written for each API.
+ * <p/>
+ * The APIs are listed in the manifest, a properties file where the key
+ * <code>&lt;api&gt;.&lt;option&gt;</code> specifies the SignatureTest
+ * option of the API <code>&lt;api&gt;</code>, e.g.
+ * <pre>
+ * servlet.FileName=servlet.sig
+ * servlet.Classpath=servlet-api.jar
+ * servlet.Package=jakarta.servlet
+ * servlet.Static=
+ * </pre>
+ * The value is split into the option arguments by white spaces, the empty
+ * value specifies a flag.
+ *
+ * @see SignatureTest
+ */
+public class BatchTest extends Result {
+
+    // specific BatchTest options
+    public static final String MANIFEST_OPTION = "-Manifest";
+    public static final String REPORTDIR_OPTION = "-ReportDir";
+
+    private static final String REPORT_PREFIX = "TEST-";
+    private static final String REPORT_SUFFIX = ".xml";
+
+    private String manifest = null;
+    private String reportDir = ".";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private String classCacheDir = null;
+
+    public static void main(String[] args) {
+        BatchTest t = new BatchTest();
+        t.run(args, new PrintWriter(System.err, true), null);
+        t.exit();
+    }
+
+    public boolean run(String[] args, PrintWriter log, PrintWriter ref) {
+
+        CommandLineParser parser = new CommandLineParser(this, "-");
+
+        // Print help text only and exit.
+        if (args.length == 0 || (args.length == 1 && (parser.isOptionSpecified(args[0], SigTest.HELP_OPTION) || parser.isOptionSpecified(args[0], (SigTest.QUESTIONMARK))))) {
+            usage();
+            return true;
+        }
+
+        final String optionsDecoder = "decodeOptions";
+
+        parser.addOption(MANIFEST_OPTION, OptionInfo.requiredOption(1), optionsDecoder);
+        parser.addOption(REPORTDIR_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(SignatureTest.THREADS_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(SigTest.CLASSCACHEDIR_OPTION, OptionInfo.option(1), optionsDecoder);
+
+        parser.addOption(SigTest.HELP_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
+        parser.addOption(SigTest.QUESTIONMARK, OptionInfo.optionalFlag(), optionsDecoder);
+        parser.addOption(SigTest.VERSION_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
+
+        try {
+            parser.processArgs(args);
+        } catch (CommandLineParserException e) {
+            if (args.length > 0 && args[0].equalsIgnoreCase(SigTest.VERSION_OPTION))  {
+                System.err.println(Version.getVersionInfo());
+                return passed();
+            } else {
+                usage();
+                log.println(e.getMessage());
+                return failed(e.getMessage());
+            }
+        }
+
+        Map apis;
+        try {
+            apis = readManifest(new File(manifest));
+        } catch (IOException e) {
+            String msg = i18n.getString("BatchTest.error.manifest", new Object[]{manifest, e.getMessage()});
+            log.println(msg);
+            return error(msg);
+        }
+        if (apis.isEmpty()) {
+            String msg = i18n.getString("BatchTest.error.manifest.empty", manifest);
+            log.println(msg);
+            return error(msg);
+        }
+
+        File dir = new File(reportDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            String msg = i18n.getString("BatchTest.error.reportdir", reportDir);
+            log.println(msg);
+            return error(msg);
+        }
+
+        PersistentClassCache sharedCache = new PersistentClassCache(classCacheDir == null ? null : new File(classCacheDir), null);
+        List checks = new ArrayList();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, apis.size()));
+        try {
+            for (Iterator it = apis.entrySet().iterator(); it.hasNext();) {
+                Map.Entry e = (Map.Entry) it.next();
+                Check c = new Check((String) e.getKey(), (String[]) e.getValue(), sharedCache);
+                c.future = pool.submit(c);
+                checks.add(c);
+            }
+
+            // the results are reported in the order of the manifest
+            int failed = 0;
+            for (Iterator it = checks.iterator(); it.hasNext();) {
+                Check c = (Check) it.next();
+                try {
+                    c.future.get();
+                } catch (ExecutionException e) {
+                    if (SigTest.isDebug())
+                        e.getCause().printStackTrace();
+                    c.test.error(e.getCause().toString());
+                    c.output.println(e.getCause());
+                } catch (InterruptedException e) {
+                    return error(e.toString());
+                }
+
+                if (!c.test.isPassed())
+                    failed++;
+                log.println(i18n.getString("BatchTest.message.result", new Object[]{c.name, c.test.toString()}));
+                try {
+                    c.writeReport(new File(dir, REPORT_PREFIX + c.name + REPORT_SUFFIX));
+                } catch (IOException e) {
+                    String msg = i18n.getString("BatchTest.error.report", new Object[]{c.name, e.getMessage()});
+                    log.println(msg);
+                    return error(msg);
+                }
+            }
+
+            if (failed != 0)
+                return failed(i18n.getString("BatchTest.message.failed", new Object[]{Integer.toString(failed), Integer.toString(checks.size())}));
+            return passed(i18n.getString("BatchTest.message.passed", Integer.toString(checks.size())));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public void decodeOptions(String optionName, String[] args) throws CommandLineParserException {
+
+        if (optionName.equalsIgnoreCase(SigTest.HELP_OPTION) || optionName.equals(SigTest.QUESTIONMARK)) {
+            usage();
+        } else if (optionName.equalsIgnoreCase(MANIFEST_OPTION)) {
+            manifest = args[0];
+        } else if (optionName.equalsIgnoreCase(REPORTDIR_OPTION)) {
+            reportDir = args[0];
+        } else if (optionName.equalsIgnoreCase(SigTest.CLASSCACHEDIR_OPTION)) {
+            classCacheDir = args[0];
+        } else if (optionName.equalsIgnoreCase(SignatureTest.THREADS_OPTION)) {
+            threads = 0;
+            try {
+                threads = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                if (SigTest.isDebug())
+                    ex.printStackTrace();
+            }
+            if (threads <= 0)
+                throw new CommandLineParserException(i18n.getString("SignatureTest.error.arg.invalid", SignatureTest.THREADS_OPTION));
+        }
+    }
+
+    /**
+     * Reads the manifest, returns the SignatureTest arguments by the API
+     * name in the order of the names.
+     */
+    static Map readManifest(File f) throws IOException {
+        Properties props = new Properties();
+        InputStream in = new FileInputStream(f);
+        try {
+            props.load(in);
+        } finally {
+            in.close();
+        }
+
+        Map options = new TreeMap();
+        for (Iterator it = new TreeSet(props.keySet()).iterator(); it.hasNext();) {
+            String key = (String) it.next();
+            int pos = key.lastIndexOf('.');
+            if (pos <= 0 || pos == key.length() - 1)
+                throw new IOException(i18n.getString("BatchTest.error.manifest.key", key));
+
+            String api = key.substring(0, pos);
+            List args = (List) options.get(api);
+            if (args == null) {
+                args = new ArrayList();
+                options.put(api, args);
+            }
+            args.add("-" + key.substring(pos + 1));
+            StringTokenizer st = new StringTokenizer(props.getProperty(key));
+            while (st.hasMoreTokens())
+                args.add(st.nextToken());
+        }
+
+        Map result = new LinkedHashMap();
+        for (Iterator it = options.entrySet().iterator(); it.hasNext();) {
+            Map.Entry e = (Map.Entry) it.next();
+            List args = (List) e.getValue();
+            result.put(e.getKey(), args.toArray(new String[args.size()]));
+        }
+        return result;
+    }
+
+    /**
+     * Check of one API, collects the SignatureTest output for the report.
+     */
+    private static class Check implements Runnable {
+        private final String name;
+        private final String[] args;
+        private final SignatureTest test = new SignatureTest();
+        private final StringWriter buffer = new StringWriter();
+        private final PrintWriter output = new PrintWriter(buffer, true);
+        private Future future;
+        private long time;
+
+        Check(String name, String[] args, PersistentClassCache sharedCache) {
+            this.name = name;
+            this.args = args;
+            test.setSharedClassCache(sharedCache);
+        }
+
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                test.run(args, output, null);
+            } finally {
+                time = System.currentTimeMillis() - start;
+                output.flush();
+            }
+        }
+
+        /**
+         * Writes the result of the check in the format of the JUnit XML
+         * report of the Ant junit task.
+         */
+        void writeReport(File f) throws IOException {
+            String seconds = Double.toString(time / 1000.0);
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
+            try {
+                out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                out.write("<testsuite name=\"" + escape(name) + "\" tests=\"1\"");
+                out.write(" failures=\"" + (test.isPassed() || test.isError() ? 0 : 1) + "\"");
+                out.write(" errors=\"" + (test.isError() ? 1 : 0) + "\"");
+                out.write(" time=\"" + seconds + "\">\n");
+                out.write("  <testcase classname=\"" + escape(name) + "\" name=\"SignatureTest\" time=\"" + seconds + "\"");
+                if (test.isPassed()) {
+                    out.write("/>\n");
+                } else {
+                    String element = test.isError() ? "error" : "failure";
+                    String reason = test.getReason() == null ? "" : test.getReason();
+                    out.write(">\n    <" + element + " message=\"" + escape(reason) + "\"/>\n");
+                    out.write("  </testcase>\n");
+                }
+                out.write("  <system-out>" + escape(buffer.toString()) + "</system-out>\n");
+                out.write("</testsuite>\n");
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Escapes the text for XML content and attribute values, the characters
+     * which are not allowed in XML are replaced by '?'.
+     */
+    static String escape(String s) {
+        StringBuffer sb = new StringBuffer(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                default:
+                    if (ch < ' ' && ch != '\t' && ch != '\n' && ch != '\r' || ch == '\uFFFE' || ch == '\uFFFF')
+                        sb.append('?');
+                    else
+                        sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+    *  Prints the help text.
+    *
+    */
+    public static void usage() {
+        String nl = System.getProperty("line.separator");
+        StringBuffer sb = new StringBuffer();
+
+        sb.append(i18n.getString("BatchTest.usage.version", Version.Number));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.start"));
+        sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.manifest", MANIFEST_OPTION));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.reportdir", REPORTDIR_OPTION));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.threads", SignatureTest.THREADS_OPTION));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.classcachedir", SigTest.CLASSCACHEDIR_OPTION));
+        sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
+        sb.append(nl).append(i18n.getString("BatchTest.helpusage.version", SigTest.VERSION_OPTION));
+        sb.append(nl).append(i18n.getString("BatchTest.usage.help", SigTest.HELP_OPTION));
+        sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
+
+        System.err.println(sb.toString());
+    }
+}
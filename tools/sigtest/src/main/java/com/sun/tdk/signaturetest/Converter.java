@@ -28,6 +28,7 @@
 package com.sun.tdk.signaturetest;
 
 import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberDescription;
 import com.sun.tdk.signaturetest.sigfile.*;
 import com.sun.tdk.signaturetest.sigfile.Reader;
 import com.sun.tdk.signaturetest.sigfile.Writer;
@@ -37,6 +38,8 @@ import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 import com.sun.tdk.signaturetest.util.OptionInfo;
 
 import java.io.*;
+import java.net.URL;
+import java.util.Iterator;
 
 /**
  * @author Roman Makarchuk
@@ -47,11 +50,15 @@ public class Converter extends Result {
 
     private String oldFileName;
     private String newFileName;
+    private boolean binary = false;
+    private boolean text = false;
 
     public static final I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(Converter.class);
 
     private static final String OLDFILE_OPTION = "-OldFile";
     private static final String NEWFILE_OPTION = "-NewFile";
+    private static final String BINARY_OPTION = "-Binary";
+    private static final String TEXT_OPTION = "-Text";
     private static final String HELP_OPTION = "-Help";
     private static final String QUESTIONMARK = "-?";
 
@@ -69,11 +76,16 @@ public class Converter extends Result {
 
     private void run() throws IOException {
 
+        if (binary || text) {
+            convert();
+            return;
+        }
+
         Format oldFormat = new F21Format();
         Format newFormat = new F40Format();
 
         Reader reader = oldFormat.getReader();
-        reader.readSignatureFile(new File(oldFileName).toURL());
+        reader.readSignatureFile(new File(oldFileName).toURI().toURL());
 
         //write header to the signature file
         Writer writer = newFormat.getWriter();
@@ -97,6 +109,105 @@ public class Converter extends Result {
         System.err.println(i18n.getString("Converter.message.success_conversion"));
     }
 
+    /**
+     * Converts the signature file of any format to the binary
+     * or to the latest text format.
+     */
+    private void convert() throws IOException {
+
+        URL oldFileURL = new File(oldFileName).toURI().toURL();
+        Reader reader = new FileManager().getReader(oldFileURL);
+        if (reader == null || !reader.readSignatureFile(oldFileURL)) {
+            System.err.println(i18n.getString("Converter.error.invalid_file", oldFileName));
+            return;
+        }
+
+        if (binary) {
+            if (!convertToBinary(reader))
+                return;
+        } else {
+            Format newFormat = new F41Format();
+            Writer writer = newFormat.getWriter();
+            writer.init(new PrintWriter(new OutputStreamWriter(new FileOutputStream(newFileName), "UTF8")));
+
+            writer.setApiVersion(reader.getApiVersion());
+
+            Iterator it = reader.getAllSupportedFeatures().iterator();
+            while (it.hasNext()) {
+                Format.Feature f = (Format.Feature) it.next();
+                if (newFormat.isFeatureSupported(f))
+                    writer.addFeature(f);
+            }
+
+            writer.writeHeader();
+
+            ClassDescription currentClass;
+            while ((currentClass = reader.readNextClass()) != null) {
+                addDeclaredMembers(currentClass);
+                writer.write(currentClass);
+            }
+
+            reader.close();
+            writer.close();
+        }
+
+        System.err.println(i18n.getString("Converter.message.success_conversion"));
+    }
+
+    private boolean convertToBinary(Reader reader) throws IOException {
+
+        Format newFormat = new F50Format();
+        F50Writer writer = new F50Writer();
+        writer.init(new FileOutputStream(newFileName));
+
+        writer.setApiVersion(reader.getApiVersion());
+
+        Iterator it = reader.getAllSupportedFeatures().iterator();
+        while (it.hasNext()) {
+            Format.Feature f = (Format.Feature) it.next();
+            if (newFormat.isFeatureSupported(f))
+                writer.addFeature(f);
+        }
+
+        writer.writeHeader();
+
+        ClassDescription currentClass;
+        while ((currentClass = reader.readNextClass()) != null) {
+            addDeclaredMembers(currentClass);
+            writer.write(currentClass);
+        }
+
+        reader.close();
+        writer.close();
+
+        if (writer.checkError()) {
+            System.err.println(i18n.getString("Converter.error.write_file", newFileName));
+            if (SigTest.isDebug())
+                writer.getError().printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The writers write the members collection, which isn't created
+     * for the classes read from the signature file.
+     */
+    private static void addDeclaredMembers(ClassDescription c) {
+        if (c.getSuperClass() != null)
+            c.add(c.getSuperClass());
+        addMembers(c, c.getInterfaces());
+        addMembers(c, c.getDeclaredConstructors());
+        addMembers(c, c.getDeclaredMethods());
+        addMembers(c, c.getDeclaredFields());
+        addMembers(c, c.getDeclaredClasses());
+    }
+
+    private static void addMembers(ClassDescription c, MemberDescription[] members) {
+        for (int i = 0; i < members.length; i++)
+            c.add(members[i]);
+    }
+
     private boolean parseParameters(String[] args) {
 
         CommandLineParser parser = new CommandLineParser(this, "-");
@@ -112,6 +223,8 @@ public class Converter extends Result {
 
         parser.addOption(OLDFILE_OPTION, OptionInfo.requiredOption(1), optionsDecoder);
         parser.addOption(NEWFILE_OPTION, OptionInfo.requiredOption(1), optionsDecoder);
+        parser.addOption(BINARY_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
+        parser.addOption(TEXT_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
 
 
         try {
@@ -123,6 +236,13 @@ public class Converter extends Result {
             return false;
         }
 
+        if (binary && text) {
+            String invargs[] = {BINARY_OPTION, TEXT_OPTION};
+            usage();
+            log.println(i18n.getString("Setup.error.options.cant_be_used_together", invargs));
+            return false;
+        }
+
         return passed();
     }
 
@@ -131,6 +251,10 @@ public class Converter extends Result {
             oldFileName = args[0];
         else if (optionName.equalsIgnoreCase(NEWFILE_OPTION))
             newFileName = args[0];
+        else if (optionName.equalsIgnoreCase(BINARY_OPTION))
+            binary = true;
+        else if (optionName.equalsIgnoreCase(TEXT_OPTION))
+            text = true;
     }
 
     private static void usage() {
@@ -140,6 +264,8 @@ public class Converter extends Result {
         sb.append(i18n.getString("Converter.usage.start"));
         sb.append(nl).append(i18n.getString("Converter.usage.oldfilename", OLDFILE_OPTION));
         sb.append(nl).append(i18n.getString("Converter.usage.newfilename", NEWFILE_OPTION));
+        sb.append(nl).append(i18n.getString("Converter.usage.binary", BINARY_OPTION));
+        sb.append(nl).append(i18n.getString("Converter.usage.text", TEXT_OPTION));
         System.err.println(sb.toString());
     }
 
@@ -38,6 +38,7 @@ public class Main {
     private static final String COMMAND_TEST_ALT = "SignatureTest";
     private static final String COMMAND_SETUP_AND_TEST = "SetupAndTest";
     private static final String COMMAND_MERGE = "Merge";
+    private static final String COMMAND_BATCH_TEST = "BatchTest";
     private static final String COMMAND_HELP = "-help";
     
     private static I18NResourceBundle i18n =
@@ -61,10 +62,10 @@ public class Main {
         if (isSigtestdevJar) {
             System.out.println(i18n.getString("Main.usage.variant.canbedev",
                     new Object[]{COMMAND_SETUP, COMMAND_TEST,
-                    COMMAND_SETUP_AND_TEST, COMMAND_MERGE}));
+                    COMMAND_SETUP_AND_TEST, COMMAND_MERGE, COMMAND_BATCH_TEST}));
         } else {
             System.out.println(i18n.getString("Main.usage.variant.canbe",
-                    new Object[]{COMMAND_TEST, COMMAND_MERGE}));
+                    new Object[]{COMMAND_TEST, COMMAND_MERGE, COMMAND_BATCH_TEST}));
         }
     }
     
@@ -113,6 +114,8 @@ public class Main {
                 }
             } else if (args[0].equalsIgnoreCase(COMMAND_MERGE)) {
                 Merge.main(otherArgs);
+            } else if (args[0].equalsIgnoreCase(COMMAND_BATCH_TEST)) {
+                BatchTest.main(otherArgs);
             } else if (args[0].equalsIgnoreCase(SigTest.VERSION_OPTION)) {
                 printVersionInfo();
                 System.exit(1);
@@ -32,6 +32,7 @@ import com.sun.tdk.signaturetest.core.ClassHierarchy;
 import com.sun.tdk.signaturetest.core.ClassHierarchyImpl;
 import com.sun.tdk.signaturetest.core.Log;
 import com.sun.tdk.signaturetest.core.MemberCollectionBuilder;
+import com.sun.tdk.signaturetest.core.RunContext;
 import com.sun.tdk.signaturetest.loaders.VirtualClassDescriptionLoader;
 import com.sun.tdk.signaturetest.merge.JSR68Merger;
 import com.sun.tdk.signaturetest.merge.MergedSigFile;
@@ -46,6 +47,7 @@ import com.sun.tdk.signaturetest.util.OptionInfo;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.logging.Logger;
 
@@ -61,6 +63,7 @@ public class Merge extends SigTest implements Log {
     private boolean binary = false;
     private String resultedFile;
     private String[] signatureFiles;
+    private Set features;
 
 
     /**
@@ -86,6 +89,15 @@ public class Merge extends SigTest implements Log {
      * @see #main(String[])
      */
     public void run(String[] args, PrintWriter pw, PrintWriter ref) {
+        RunContext previous = enterContext();
+        try {
+            doRun(args, pw);
+        } finally {
+            RunContext.restore(previous);
+        }
+    }
+
+    private void doRun(String[] args, PrintWriter pw) {
 
         setLog(pw);
 
@@ -183,8 +195,89 @@ public class Merge extends SigTest implements Log {
     }
 
 
+    /**
+     * Merges the signature files as {@link #run(String[],PrintWriter,PrintWriter)}
+     * does, but the merged classes are returned instead of being written,
+     * so they can be checked without writing and reading a signature file.
+     *
+     * @return the merged classes or <code>null</code> if the files were not merged
+     * @see #getSupportedFeatures()
+     */
+    VirtualClassDescriptionLoader merge(String[] args, PrintWriter pw) {
+        RunContext previous = enterContext();
+        try {
+            setLog(pw);
+            if (!parseParameters(args))
+                return null;
+
+            VirtualClassDescriptionLoader result = merge();
+            printErrors();
+            getLog().flush();
+            return result;
+        } finally {
+            RunContext.restore(previous);
+        }
+    }
+
+    /**
+     * Returns the features of the merged classes.
+     */
+    Set getSupportedFeatures() {
+        return features;
+    }
+
     void perform() {
 
+        VirtualClassDescriptionLoader result = merge();
+        if (result == null) {
+            printErrors();
+            return;
+        }
+
+        try {
+            //write header to the signature file
+            Writer writer = getFileManager().getWriter(features);
+            if (writer == null) {
+                failed("Could not find a writer for given sigtest file formats.");
+                return;
+            }
+            
+            writer.setApiVersion("");
+            if (resultedFile != null) {
+                writer.init(new PrintWriter(new OutputStreamWriter(new FileOutputStream(resultedFile), "UTF8")));
+            } else {
+                writer.init(new PrintWriter(System.out));
+            }
+            Iterator it = features.iterator();
+            while (it.hasNext()) {
+                writer.addFeature((Format.Feature) it.next());
+            }
+            writer.writeHeader();
+
+            // scan class and writes definition to the signature file
+
+            // 1st analyze all the classes
+            for (Iterator i = result.getClassIterator(); i.hasNext();) {
+                ClassDescription c = (ClassDescription) i.next();
+                writer.write(c);
+            }
+
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            error(e.getMessage());
+        }
+        printErrors();
+    }
+
+    /**
+     * Reads and merges the signature files, the members of the merged
+     * classes are built as they are written to a signature file.
+     *
+     * @return the merged classes or <code>null</code> if the merge failed
+     */
+    private VirtualClassDescriptionLoader merge() {
+
         String msg;
         MergedSigFile[] files = new MergedSigFile[signatureFiles.length];
         PrintWriter log = new PrintWriter(System.out);
@@ -226,9 +319,9 @@ public class Merge extends SigTest implements Log {
                 binary ? JSR68Merger.BINARY_MODE : JSR68Merger.SOURCE_MODE);
 
         if (!isPassed()) {
-            printErrors();
-            return;
+            return null;
         }
+        features = merger.getSupportedFeatures();
 
         ClassHierarchy ch = new ClassHierarchyImpl(result, ClassHierarchy.ALL_PUBLIC);
         for (Iterator i = result.getClassIterator(); i.hasNext();) {
@@ -246,40 +339,7 @@ public class Merge extends SigTest implements Log {
             }
         }
 
-        try {
-            //write header to the signature file
-            Writer writer = getFileManager().getWriter(merger.getSupportedFeatures());
-            if (writer == null) {
-                failed("Could not find a writer for given sigtest file formats.");
-                return;
-            }
-            
-            writer.setApiVersion("");
-            if (resultedFile != null) {
-                writer.init(new PrintWriter(new OutputStreamWriter(new FileOutputStream(resultedFile), "UTF8")));
-            } else {
-                writer.init(new PrintWriter(System.out));
-            }
-            Iterator it = merger.getSupportedFeatures().iterator();
-            while (it.hasNext()) {
-                writer.addFeature((Format.Feature) it.next());
-            }
-            writer.writeHeader();
-
-            // scan class and writes definition to the signature file
-
-            // 1st analyze all the classes
-            for (Iterator i = result.getClassIterator(); i.hasNext();) {
-                ClassDescription c = (ClassDescription) i.next();
-                writer.write(c);
-            }
-
-            writer.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            error(e.getMessage());
-        }
-        printErrors();
+        return result;
     }
 
 
@@ -99,6 +99,10 @@ public class Result {
         return type == PASSED;
     }
 
+    public boolean isError() {
+        return type == ERROR;
+    }
+
     protected String getReason() {
         return reason;
     }
@@ -29,9 +29,11 @@ package com.sun.tdk.signaturetest;
 
 import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
 import com.sun.tdk.signaturetest.core.*;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
 import com.sun.tdk.signaturetest.model.ClassDescription;
 import com.sun.tdk.signaturetest.model.MemberDescription;
 import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.sigfile.F50Writer;
 import com.sun.tdk.signaturetest.sigfile.FeaturesHolder;
 import com.sun.tdk.signaturetest.sigfile.FileManager;
 import com.sun.tdk.signaturetest.sigfile.Writer;
@@ -44,6 +46,8 @@ import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This class creates signature file. The classes in the
@@ -94,6 +98,10 @@ import java.util.*;
  * <dd> Specify API version. If this parameter is not specified, API version is assumed to
  * be that reported by <code>getProperty("java.version")</code>.
  * <p/>
+ * <dt><code><b>-Threads</b></code> &lt;number&gt;
+ * <dd> Number of threads building the class descriptions. The signature
+ * file doesn't depend on it.
+ * <p/>
  * <dt><code><b>-Verbose</b></code>
  * <dd> Print names of ignored classes.
  * </dl>
@@ -109,6 +117,8 @@ public class Setup extends SigTest {
     public static final String NONCLOSEDFILE_OPTION = "-NonClosedFile";
     public static final String CHECKVALUE_OPTION = "-CheckValue";
     public static final String XGENCONSTS_OPTION = "-XgenConsts";
+    public static final String THREADS_OPTION = "-Threads";
+    public static final String BINARYFILENAME_OPTION = "-BinaryFileName";
 
 
     // -KeepFile option keeps signature file even if some error occured during setup
@@ -130,6 +140,21 @@ public class Setup extends SigTest {
     private Boolean explicitlyGenConsts = null;
     private boolean keepSigFile = false;
 
+    /**
+     * Binary signature file written along with the text one, value of
+     * the -BinaryFileName option.
+     */
+    private String binarySigFileName = null;
+    private F50Writer binaryWriter;
+
+    /**
+     * Number of threads building the class descriptions.
+     */
+    private int threads = 1;
+    // log and loader warnings of a worker of the parallel run
+    private StringWriter logBuffer;
+    private List warnings;
+
     /**
      * specifies that ignored class names will be reported.
      */
@@ -148,6 +173,15 @@ public class Setup extends SigTest {
      * runs test with the given arguments.
      */
     public void run(String[] args, PrintWriter pw, PrintWriter ref) {
+        RunContext previous = enterContext();
+        try {
+            doRun(args, pw);
+        } finally {
+            RunContext.restore(previous);
+        }
+    }
+
+    private void doRun(String[] args, PrintWriter pw) {
 
 //        assert( pw != null );
         setLog(pw);
@@ -203,6 +237,9 @@ public class Setup extends SigTest {
 
         parser.addOption(STATIC_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(CLASSCACHESIZE_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(CLASSCACHEDIR_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(THREADS_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(BINARYFILENAME_OPTION, OptionInfo.option(1), optionsDecoder);
         parser.addOption(DEBUG_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(XNOTIGER_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
 
@@ -266,7 +303,7 @@ public class Setup extends SigTest {
             signatureFile = FileManager.getURL(testURL, sigFileName);
         }
         catch (MalformedURLException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             System.err.println(e);
             return error(i18n.getString("Setup.error.url.invalid"));
@@ -300,6 +337,18 @@ public class Setup extends SigTest {
             isIgnorableReported = true;
         } else if (optionName.equalsIgnoreCase(XREFLECTION_OPTION)) {
             isStatic = false;
+        } else if (optionName.equalsIgnoreCase(BINARYFILENAME_OPTION)) {
+            binarySigFileName = args[0];
+        } else if (optionName.equalsIgnoreCase(THREADS_OPTION)) {
+            threads = 0;
+            try {
+                threads = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                if (SigTest.isDebug())
+                    ex.printStackTrace();
+            }
+            if (threads <= 0)
+                throw new CommandLineParserException(i18n.getString("Setup.error.arg.invalidval", THREADS_OPTION));
         } else {
             super.decodeCommonOptions(optionName, args);
         }
@@ -307,9 +356,10 @@ public class Setup extends SigTest {
 
 
     private void afterParseParameters() {
-        SigTest.isConstantValuesTracked = isStatic;
+        boolean isConstantValuesTracked = isStatic;
         if (explicitlyGenConsts != null)
-            SigTest.isConstantValuesTracked = explicitlyGenConsts.booleanValue();
+            isConstantValuesTracked = explicitlyGenConsts.booleanValue();
+        RunContext.getCurrent().setConstantValuesTracked(isConstantValuesTracked);
     }
 
 
@@ -328,6 +378,8 @@ public class Setup extends SigTest {
         sb.append(nl).append(i18n.getString("Setup.usage.filename", FILENAME_OPTION));
         sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
 
+        sb.append(nl).append(i18n.getString("Setup.usage.binaryfilename", BINARYFILENAME_OPTION));
+
         sb.append(nl).append(i18n.getString("Setup.usage.testurl", TESTURL_OPTION));
         sb.append(nl).append(i18n.getString("Setup.usage.packagewithoutsubpackages", WITHOUTSUBPACKAGES_OPTION));
         sb.append(nl).append(i18n.getString("Setup.usage.exclude", EXCLUDE_OPTION));
@@ -335,6 +387,8 @@ public class Setup extends SigTest {
         // sb.append(nl).append(i18n.getString("Setup.usage.closedfile", Setup.CLOSEDFILE_OPTION));
         sb.append(nl).append(i18n.getString("Setup.usage.nonclosedfile", NONCLOSEDFILE_OPTION));
         sb.append(nl).append(i18n.getString("Setup.usage.apiversion", APIVERSION_OPTION));
+        sb.append(nl).append(i18n.getString("Setup.usage.classcachedir", CLASSCACHEDIR_OPTION));
+        sb.append(nl).append(i18n.getString("Setup.usage.threads", THREADS_OPTION));
         sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
         sb.append(nl).append(i18n.getString("Setup.usage.verbose", VERBOSE_OPTION));
         sb.append(nl).append(i18n.getString("Setup.usage.debug", DEBUG_OPTION));
@@ -366,16 +420,12 @@ public class Setup extends SigTest {
             pluginClass.init(this);
         }
 
-        // create list of all classes available
-
-        HashSet allClasses = new HashSet();
-
         getLog().println(i18n.getString("Setup.log.classpath", classpathStr));
 
         try {
             classpath = new ClasspathImpl(release, classpathStr);
         } catch (SecurityException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             getLog().println(i18n.getString("Setup.log.invalid.security.classpath"));
             getLog().println(e);
@@ -384,14 +434,13 @@ public class Setup extends SigTest {
 
         classpath.printErrors(getLog());
 
-        String name;
-        while (classpath.hasNext()) {
-            name = classpath.nextClassName();
-            if (!allClasses.add(name))
-                getLog().println(i18n.getString("Setup.log.duplicate.class", name));
-        }
+        // list of all classes available
+        Set allClasses = classpath.getClassNames();
 
-        classpath.setListToBegin();
+        for (Iterator it = classpath.getDuplicates().iterator(); it.hasNext();)
+            getLog().println(i18n.getString("Setup.log.duplicate.class", it.next()));
+
+        String name;
 
         ClassDescriptionLoader testableLoader = getClassDescrLoader();
         testableHierarchy = new ClassHierarchyImpl(testableLoader, trackMode);
@@ -400,7 +449,7 @@ public class Setup extends SigTest {
         // adds classes which are member of classes from tracked package
         // and sorts class names
         getLog().println(i18n.getString("Setup.log.constantchecking",
-                (SigTest.isConstantValuesTracked ? i18n.getString("Setup.msg.ConstantValuesTracked.on")
+                (isConstantValuesTracked() ? i18n.getString("Setup.msg.ConstantValuesTracked.on")
                         : i18n.getString("Setup.msg.ConstantValuesTracked.off"))));
         getLog().println(i18n.getString("Setup.log.message.numclasses", Integer.toString(allClasses.size())));
 
@@ -448,18 +497,30 @@ public class Setup extends SigTest {
             writer.init(new PrintWriter(new OutputStreamWriter(new FileOutputStream(sigFile.getFile()), "UTF8")));
 
             writer.setApiVersion(apiVersion);
-            if (SigTest.isConstantValuesTracked)
+            if (isConstantValuesTracked())
                 writer.addFeature(FeaturesHolder.ConstInfo);
 
-            if (isTigerFeaturesTracked)
+            if (isTigerFeaturesTracked())
                 writer.addFeature(FeaturesHolder.TigerInfo);
 
             writer.writeHeader();
 
-            Erasurator erasurator = new Erasurator();
-            // scan class and writes definition to the signature file
+            if (binarySigFileName != null) {
+                binaryWriter = new F50Writer();
+                binaryWriter.init(new FileOutputStream(binarySigFileName));
+
+                binaryWriter.setApiVersion(apiVersion);
+                if (isConstantValuesTracked())
+                    binaryWriter.addFeature(FeaturesHolder.ConstInfo);
+
+                if (isTigerFeaturesTracked())
+                    binaryWriter.addFeature(FeaturesHolder.TigerInfo);
+
+                binaryWriter.writeHeader();
+            }
 
             // 1st analyze all the classes
+            List writtenClasses = new ArrayList();
             for (Iterator i = sortedClasses.iterator(); i.hasNext();) {
                 name = (String) i.next();
                 ClassDescription c = load(name);
@@ -479,27 +540,29 @@ public class Setup extends SigTest {
                 else
                     innerClassesNumber++;
 
-                try {
-                    testableMCBuilder.createMembers(c, addInherited(), true, false);
-                    normalizer.normThrows(c, true);
-                    removeUndocumentedAnnotations(c, testableHierarchy);
-                } catch (ClassNotFoundException e) {
-                    if (SigTest.debug) {
-                        e.printStackTrace();
-                    }
-                    setupProblem(i18n.getString("Setup.error.message.classnotfound", e.getMessage()));
-                }
-
-                if (useErasurator())
-                    c = erasurator.erasure(c);
+                writtenClasses.add(name);
+            }
 
-                writer.write(c);
+            // scan class and writes definition to the signature file
+            // plugins and loaders set from outside may be not thread-safe
+            if (threads > 1 && pluginClass == null && !isClassDescrLoaderSet()) {
+                writeParallel(writtenClasses, writer);
+            } else {
+                Erasurator erasurator = new Erasurator();
+                for (Iterator i = writtenClasses.iterator(); i.hasNext();)
+                    write(prepareClass((String) i.next(), erasurator), writer);
             }
 
             writer.close();
+
+            if (binaryWriter != null) {
+                binaryWriter.close();
+                if (binaryWriter.checkError())
+                    throw binaryWriter.getError();
+            }
         }
         catch (IOException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             getLog().println(i18n.getString("Setup.error.message.cantcreatesigfile"));
             getLog().println(e);
@@ -507,6 +570,10 @@ public class Setup extends SigTest {
         }
 
         printErrors();
+        storePersistentCache();
+
+        if (isIgnorableReported)
+            printCacheStatistics();
 
         // prints report
 
@@ -565,10 +632,164 @@ public class Setup extends SigTest {
 
         if (!keepSigFile) {
             new File(sigFile.getFile()).delete();
+            if (binarySigFileName != null)
+                new File(binarySigFileName).delete();
         }
         return failed(i18n.getString("Setup.report.message.numerrors", Integer.toString(errors)));
     }
 
+    /**
+     * Builds the members of the class, normalizes them and applies erasure
+     * if needed. The problem found is returned with the class and reported
+     * when the class is written.
+     */
+    private PreparedClass prepareClass(String name, Erasurator erasurator) {
+        ClassDescription c = load(name);
+        String problem = null;
+
+        try {
+            testableMCBuilder.createMembers(c, addInherited(), true, false);
+            normalizer.normThrows(c, true);
+            removeUndocumentedAnnotations(c, testableHierarchy);
+        } catch (ClassNotFoundException e) {
+            if (SigTest.isDebug()) {
+                e.printStackTrace();
+            }
+            problem = i18n.getString("Setup.error.message.classnotfound", e.getMessage());
+        }
+
+        if (useErasurator())
+            c = erasurator.erasure(c);
+
+        return new PreparedClass(c, problem);
+    }
+
+    private void write(PreparedClass p, Writer writer) throws IOException {
+        if (p.log != null)
+            getLog().print(p.log);
+        if (p.warnings != null) {
+            BinaryClassDescrLoader loader = (BinaryClassDescrLoader) getClassDescrLoader();
+            for (Iterator it = p.warnings.iterator(); it.hasNext();)
+                loader.printWarning((String) it.next());
+        }
+        if (p.problem != null)
+            setupProblem(p.problem);
+        writer.write(p.c);
+        if (binaryWriter != null)
+            binaryWriter.write(p.c);
+    }
+
+    /**
+     * Prepares the classes by <code>threads</code> workers and writes them
+     * in the given order, so the signature file is the same as the file
+     * written by the serial run. Class descriptions are modified while
+     * the members are built, so each worker loads the classes by its own
+     * loader. The log and the warnings of the loader are collected for
+     * each class and printed when the class is written, as the serial run
+     * prints them.
+     */
+    private void writeParallel(List classes, Writer writer) throws IOException {
+
+        OrderedResults results = new OrderedResults(classes.size());
+        List workers = new ArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                Worker w = new Worker(createWorker(), classes, results);
+                workers.add(w);
+                executor.execute(w);
+            }
+
+            for (int i = 0; i < classes.size(); i++)
+                write((PreparedClass) results.take(i), writer);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Iterator it = workers.iterator(); it.hasNext();)
+            errorMessages.addAll(((Worker) it.next()).setup.errorMessages);
+    }
+
+    private Setup createWorker() {
+        Setup w = new Setup();
+        w.logBuffer = new StringWriter();
+        w.setLog(new PrintWriter(w.logBuffer));
+
+        w.isStatic = isStatic;
+        w.classpath = classpath;
+        w.release = release;
+        w.cacheSize = cacheSize;
+        w.persistentCache = persistentCache;
+        w.trackMode = trackMode;
+        w.packages = packages;
+        w.purePackages = purePackages;
+        w.excludedPackages = excludedPackages;
+        w.reportWarningAsError = reportWarningAsError;
+
+        ClassDescriptionLoader loader = w.getClassDescrLoader();
+        if (loader instanceof BinaryClassDescrLoader && getClassDescrLoader() instanceof BinaryClassDescrLoader) {
+            w.warnings = new ArrayList();
+            ((BinaryClassDescrLoader) loader).setWarnings(w.warnings);
+        }
+
+        w.testableHierarchy = new ClassHierarchyImpl(loader, trackMode);
+        w.testableMCBuilder = new MemberCollectionBuilder(w);
+        return w;
+    }
+
+    private static class Worker implements Runnable {
+
+        private final Setup setup;
+        private final List classes;
+        private final OrderedResults results;
+
+        private Worker(Setup setup, List classes, OrderedResults results) {
+            this.setup = setup;
+            this.classes = classes;
+            this.results = results;
+        }
+
+        public void run() {
+            try {
+                Erasurator erasurator = new Erasurator();
+                int index;
+                while ((index = results.next()) >= 0) {
+                    PreparedClass p = setup.prepareClass((String) classes.get(index), erasurator);
+                    setup.getLog().flush();
+                    StringBuffer log = setup.logBuffer.getBuffer();
+                    if (log.length() > 0) {
+                        p.log = log.toString();
+                        log.setLength(0);
+                    }
+                    if (setup.warnings != null && !setup.warnings.isEmpty()) {
+                        p.warnings = new ArrayList(setup.warnings);
+                        setup.warnings.clear();
+                    }
+                    results.put(index, p);
+                }
+            } catch (Throwable t) {
+                results.fail(t);
+            }
+        }
+    }
+
+    /**
+     * Class description ready to be written and the problem, the log and
+     * the warnings found while it was prepared, if any.
+     */
+    private static class PreparedClass {
+        private final ClassDescription c;
+        private final String problem;
+        private String log;
+        private List warnings;
+
+        private PreparedClass(ClassDescription c, String problem) {
+            this.c = c;
+            this.problem = problem;
+        }
+    }
+
     private void removeUndocumentedAnnotations(ClassDescription c, ClassHierarchy classHierarchy) {
         c.setAnnoList(removeUndocumentedAnnotations(c.getAnnoList(), classHierarchy));
         for (Iterator e = c.getMembersIterator(); e.hasNext();) {
@@ -597,19 +818,19 @@ public class Setup extends SigTest {
                         packageClasses.add(name);
                         if (!c.isTiger()) {
                             nonTigerCount++;
-                            if (Xverbose && isTigerFeaturesTracked)
+                            if (isVerbose() && isTigerFeaturesTracked())
                                 getLog().println(i18n.getString("Setup.report.message.nontigerclass", name));
                         }
                     } else
                         ignore(i18n.getString("Setup.report.ignore.protect", name));
                 }
                 catch (ClassNotFoundException ex) {
-                    if (SigTest.debug)
+                    if (SigTest.isDebug())
                         ex.printStackTrace();
                     setupProblem(i18n.getString("Setup.error.message.classnotfound", name));
                 }
                 catch (LinkageError ex1) {
-                    if (SigTest.debug)
+                    if (SigTest.isDebug())
                         ex1.printStackTrace();
                     setupProblem(i18n.getString("Setup.error.message.classnotlinked", ex1.getMessage()));
                 }
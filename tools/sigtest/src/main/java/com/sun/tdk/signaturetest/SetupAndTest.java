@@ -91,6 +91,7 @@ public class SetupAndTest extends Result {
         parser.addOption(SigTest.OUT_OPTION, OptionInfo.option(1), optionsDecoder);
 
         parser.addOption(SigTest.CLASSCACHESIZE_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(SigTest.CLASSCACHEDIR_OPTION, OptionInfo.option(1), optionsDecoder);
         parser.addOption(SigTest.FORMATPLAIN_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
 
         parser.addOption(SigTest.FORMATHUMAN_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
@@ -179,7 +180,8 @@ public class SetupAndTest extends Result {
                 optionName.equalsIgnoreCase(SigTest.WITHOUTSUBPACKAGES_OPTION) ||
                 optionName.equalsIgnoreCase(SigTest.EXCLUDE_OPTION) ||
                 optionName.equalsIgnoreCase(SigTest.APIVERSION_OPTION) ||
-                optionName.equalsIgnoreCase(SigTest.CLASSCACHESIZE_OPTION)) {
+                optionName.equalsIgnoreCase(SigTest.CLASSCACHESIZE_OPTION) ||
+                optionName.equalsIgnoreCase(SigTest.CLASSCACHEDIR_OPTION)) {
 
             addOption(setupOptions, optionName, args[0]);
             addOption(testOptions, optionName, args[0]);
@@ -240,6 +242,7 @@ public class SetupAndTest extends Result {
 
         sb.append(nl).append(i18n.getString("SetupAndTest.usage.formatplain", SigTest.FORMATPLAIN_OPTION));
         sb.append(nl).append(i18n.getString("SetupAndTest.usage.classcachesize", new Object[]{SigTest.CLASSCACHESIZE_OPTION, new Integer(SigTest.DefaultCacheSize)}));
+        sb.append(nl).append(i18n.getString("SetupAndTest.usage.classcachedir", SigTest.CLASSCACHEDIR_OPTION));
         sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
         sb.append(nl).append(i18n.getString("SetupAndTest.helpusage.version", SigTest.VERSION_OPTION));
         sb.append(nl).append(i18n.getString("SetupAndTest.usage.help", SigTest.HELP_OPTION));
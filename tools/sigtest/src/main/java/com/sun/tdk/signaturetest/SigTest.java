@@ -32,6 +32,9 @@ import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
 import com.sun.tdk.signaturetest.classpath.Release;
 import com.sun.tdk.signaturetest.core.*;
 import com.sun.tdk.signaturetest.errors.ErrorFormatter;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
+import com.sun.tdk.signaturetest.loaders.ClassDescriptionCache;
+import com.sun.tdk.signaturetest.loaders.PersistentClassCache;
 import com.sun.tdk.signaturetest.model.AnnotationItem;
 import com.sun.tdk.signaturetest.model.ClassDescription;
 import com.sun.tdk.signaturetest.plugin.*;
@@ -41,6 +44,8 @@ import com.sun.tdk.signaturetest.util.CommandLineParser;
 import com.sun.tdk.signaturetest.util.CommandLineParserException;
 import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -89,6 +94,7 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
     public static final String HELP_OPTION = "-Help";
     public static final String QUESTIONMARK = "-?";
     public static final String CLASSCACHESIZE_OPTION = "-ClassCacheSize";
+    public static final String CLASSCACHEDIR_OPTION = "-ClassCacheDir";
     public static final String VERBOSE_OPTION = "-Verbose";
     public static final String XVERBOSE_OPTION = "-Xverbose";
     public static final String XNOTIGER_OPTION = "-XnoTiger";
@@ -148,7 +154,7 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
     /**
      * Collector for error messages, or <code>null</code> if log is not required.
      */
-    protected static ErrorFormatter errorManager;
+    protected ErrorFormatter errorManager;
 
     /**
      * Version of the product being tested.
@@ -166,55 +172,82 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
 
     protected boolean isStatic = false;
 
+    /**
+     * @deprecated the setting belongs to the run, use
+     *             {@link #isConstantValuesTracked()} or {@link RunContext}.
+     *             The field is neither read nor updated by the tools.
+     */
     public static boolean isConstantValuesTracked = true;
 
+    /**
+     * Debug mode (printing stack trace) of all the runs started after the
+     * field is set to true.
+     *
+     * @deprecated the setting belongs to the run, use {@link #isDebug()}
+     *             or {@link RunContext}. The -Debug option doesn't update
+     *             the field.
+     */
+    public static boolean debug = false;
+
+    /**
+     * The Tiger features are not tracked by the runs started after the field
+     * is set to false.
+     *
+     * @deprecated the setting belongs to the run, use
+     *             {@link #isTigerFeaturesTracked()} or {@link RunContext}.
+     *             The -XNoTiger option doesn't update the field.
+     */
+    public static boolean isTigerFeaturesTracked = new RunContext().isTigerFeaturesTracked();
+
 
     public final static int DefaultCacheSize = 1024;
     /**
-     * <b>BinaryClassDescrLoader</b> may cache up to <code>cacheSize</code>
-     * classes being loaded.
+     * <b>BinaryClassDescrLoader</b> may cache about <code>cacheSize</code>
+     * classes of average size.
      */
     protected int cacheSize = DefaultCacheSize;
 
+    /**
+     * Cache of the <b>BinaryClassDescrLoader</b>, created in static mode only.
+     */
+    protected ClassDescriptionCache classCache;
+
+    /**
+     * Directory of the persistent class cache, value of the -ClassCacheDir option.
+     */
+    protected String classCacheDir = null;
+
+    /**
+     * Persistent cache of the <b>BinaryClassDescrLoader</b>, created in
+     * static mode if the -ClassCacheDir option is specified.
+     */
+    protected PersistentClassCache persistentCache;
+
+    /**
+     * Cache sharing the snapshots of the persistent class cache with
+     * other runs in this JVM, see {@link #setSharedClassCache(PersistentClassCache)}.
+     */
+    private PersistentClassCache sharedClassCache;
+
     /**
      * prints error messages.
      */
     private PrintWriter log;
 
-    //  Debug mode (printing stack trace)
-    public static boolean debug = false;
-
     /**
      * Descriptions for all classes found at the specified classpath.
      */
     protected ClasspathImpl classpath;
 
 
-    public static boolean isTigerFeaturesTracked = false;
-
     protected Plugin pluginClass = null;
 
-
-    static {
-        // Turn isTigerFeaturesTracked on if SigTest is running on Java version >= 5.0
-        String specVersion;
-        try {
-            specVersion = System.getProperty("java.specification.version");
-            if ("1.5".compareTo(specVersion) <= 0)
-                isTigerFeaturesTracked = true;
-        }
-        catch (SecurityException e) {
-            // suppress the exception
-        }
-    }
-
-    static boolean Xverbose = false;
-
     protected ClassHierarchy testableHierarchy;
 
     protected Set errorMessages = new HashSet();
 
     private ClassDescriptionLoader loader;
+    private boolean isLoaderSetDirectly = false;
     protected boolean reportWarningAsError = false;
 
     public void initErrors() {
@@ -303,23 +336,25 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
             try {
                 cacheSize = Integer.parseInt(args[0]);
             } catch (NumberFormatException ex) {
-                if (debug)
+                if (isDebug())
                     ex.printStackTrace();
                 cacheSize = 0;
             }
             if (cacheSize <= 0)
                 throw new CommandLineParserException(i18n.getString("SigTest.error.arg.invalid", optionName));
 
+        } else if (optionName.equalsIgnoreCase(CLASSCACHEDIR_OPTION)) {
+            classCacheDir = args[0];
         } else if (optionName.equalsIgnoreCase(ALLPUBLIC_OPTION)) {
             trackMode = ClassHierarchy.ALL_PUBLIC;
         } else if (optionName.equalsIgnoreCase(DEBUG_OPTION)) {
-            debug = true;
+            RunContext.getCurrent().setDebug(true);
         } else if (optionName.equalsIgnoreCase(ERRORALL_OPTION)) {
             reportWarningAsError = true;
         } else if (optionName.equalsIgnoreCase(XNOTIGER_OPTION)) {
-            isTigerFeaturesTracked = false;
+            RunContext.getCurrent().setTigerFeaturesTracked(false);
         } else if (optionName.equalsIgnoreCase(XVERBOSE_OPTION)) {
-            Xverbose = true;
+            RunContext.getCurrent().setVerbose(true);
         } else if (optionName.equalsIgnoreCase(PLUGIN_OPTION)) {
             pluginClass = loadPlugin(args[0]);
             if (pluginClass==null) {
@@ -363,6 +398,16 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
 
     public void setClassDescrLoader(ClassDescriptionLoader loader) {
         this.loader = loader;
+        isLoaderSetDirectly = true;
+    }
+
+    /**
+     * Returns true if the class description loader was set directly
+     * by {@link #setClassDescrLoader(ClassDescriptionLoader)}
+     * and must not be replaced by a loader created from the options.
+     */
+    protected boolean isClassDescrLoaderSet() {
+        return isLoaderSetDirectly;
     }
 
     //  Load either static BinaryClassDescrLoader or reflection-based
@@ -377,21 +422,33 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
         if (isStatic) {
             //  static mode
 
-            loader = getLoader("com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader", new Class[]{Classpath.class, Integer.class},
-                    new Object[]{classpath, new Integer(cacheSize)}, getLog());
+            if (classCache == null)
+                classCache = new ClassDescriptionCache(cacheSize);
+
+            loader = getLoader("com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader", new Class[]{Classpath.class, ClassDescriptionCache.class},
+                    new Object[]{classpath, classCache}, getLog());
 
             if (loader == null)
                 throw new LinkageError(i18n.getString("SigTest.error.mgr.linkerr.loadstatic"));
+
+            if (persistentCache == null && sharedClassCache != null && classpath != null)
+                persistentCache = new PersistentClassCache(sharedClassCache, classpath);
+
+            if (persistentCache == null && classCacheDir != null && classpath != null)
+                persistentCache = new PersistentClassCache(new File(classCacheDir), classpath);
+
+            if (persistentCache != null && loader instanceof BinaryClassDescrLoader)
+                ((BinaryClassDescrLoader) loader).setPersistentCache(persistentCache);
         } else {
             //  reflection mode
 
-            if (isTigerFeaturesTracked) {
+            if (isTigerFeaturesTracked()) {
 
                 loader = getLoader("com.sun.tdk.signaturetest.loaders.TigerRefgClassDescrLoader", new Class[]{}, new Object[]{}, getLog());
                 if (loader != null)
                     return loader;
 
-                isTigerFeaturesTracked = false; // sorry ...
+                RunContext.getCurrent().setTigerFeaturesTracked(false); // sorry ...
             }
 
             loader = getLoader("com.sun.tdk.signaturetest.loaders.ReflClassDescrLoader", new Class[]{}, new Object[]{}, getLog());
@@ -403,17 +460,53 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
         return loader;
     }
 
+    /**
+     * Sets the cache which snapshots are shared with this run in static
+     * mode, so the classes provided by the same entries, e.g. by the JDK,
+     * are parsed once for several runs. Overrides the -ClassCacheDir option.
+     *
+     * @see PersistentClassCache#PersistentClassCache(PersistentClassCache, ClasspathImpl)
+     */
+    public void setSharedClassCache(PersistentClassCache sharedClassCache) {
+        this.sharedClassCache = sharedClassCache;
+    }
+
+    /**
+     * Prints hit, miss and eviction counts of the class cache, if any.
+     */
+    protected void printCacheStatistics() {
+        if (classCache != null)
+            getLog().println(classCache.getStatistics());
+        if (persistentCache != null)
+            getLog().println(persistentCache.getStatistics());
+    }
+
+    /**
+     * Writes the classes parsed in this run to the persistent class cache, if any.
+     */
+    protected void storePersistentCache() {
+        if (persistentCache != null) {
+            try {
+                persistentCache.store();
+            } catch (IOException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+                getLog().println(i18n.getString("SigTest.error.classcache", e.getMessage()));
+            }
+        }
+    }
+
     protected ClassDescription load(String name) {
         try {
             return testableHierarchy.load(name);
         }
         catch (ClassNotFoundException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             storeError(i18n.getString("SigTest.error.class.missing", name), null);
         }
         catch (LinkageError e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             storeError(i18n.getString("SigTest.error.class.notlinked", e.getMessage()), null);
         }
@@ -437,7 +530,7 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
             return cl;
         }
         catch (Throwable t) {
-            if (debug)
+            if (isDebug())
                 t.printStackTrace();
         }
 
@@ -445,7 +538,46 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
     }
 
     public boolean useErasurator() {
-        return !isTigerFeaturesTracked;
+        return !isTigerFeaturesTracked();
+    }
+
+    /**
+     * Binds the copy of the current context to the current thread for the
+     * run, like {@link RunContext#enter()} does, the deprecated static fields
+     * set by the caller are taken into account.
+     *
+     * @return the context to be restored by {@link RunContext#restore(RunContext)}
+     *         at the end of the run.
+     */
+    protected static RunContext enterContext() {
+        RunContext previous = RunContext.enter();
+        RunContext context = RunContext.getCurrent();
+        if (debug)
+            context.setDebug(true);
+        if (!isTigerFeaturesTracked)
+            context.setTigerFeaturesTracked(false);
+        return previous;
+    }
+
+    /**
+     * Debug mode (printing stack trace) of the current run.
+     *
+     * @see RunContext
+     */
+    public static boolean isDebug() {
+        return RunContext.getCurrent().isDebug();
+    }
+
+    public static boolean isTigerFeaturesTracked() {
+        return RunContext.getCurrent().isTigerFeaturesTracked();
+    }
+
+    public static boolean isConstantValuesTracked() {
+        return RunContext.getCurrent().isConstantValuesTracked();
+    }
+
+    static boolean isVerbose() {
+        return RunContext.getCurrent().isVerbose();
     }
 
     protected abstract void usage();
@@ -458,7 +590,7 @@ public abstract class SigTest extends Result implements PluginAPI, Log {
             return (Plugin) ctor.newInstance(new Object[0]);
         }
         catch (Throwable t) {
-            if (debug)
+            if (isDebug())
                 t.printStackTrace();
         }
         return null;
@@ -30,7 +30,9 @@ package com.sun.tdk.signaturetest;
 import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
 import com.sun.tdk.signaturetest.core.*;
 import com.sun.tdk.signaturetest.errors.*;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
 import com.sun.tdk.signaturetest.loaders.LoadingHints;
+import com.sun.tdk.signaturetest.loaders.VirtualClassDescriptionLoader;
 import com.sun.tdk.signaturetest.model.*;
 import com.sun.tdk.signaturetest.plugin.PluginAPI;
 import com.sun.tdk.signaturetest.plugin.Transformer;
@@ -45,9 +47,13 @@ import com.sun.tdk.signaturetest.updater.Updater;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.*;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -169,6 +175,10 @@ public class SignatureTest extends SigTest {
     public static final String WRITE_OPTION = "-Write";
     public static final String UPDATE_FILE_OPTION = "-Update";
     public static final String EXCLUDE_JDK_CLASS_OPTION = "-IgnoreJDKClass";
+    public static final String THREADS_OPTION = "-Threads";
+    public static final String STREAMING_OPTION = "-Streaming";
+    public static final String INCREMENTAL_OPTION = "-Incremental";
+    public static final String ERRORS_IN_MEMORY_OPTION = "-ErrorsInMemory";
 
     private String logName = null;
     private String outFormat = null;
@@ -243,10 +253,43 @@ public class SignatureTest extends SigTest {
     protected Exclude exclude;
     private int readMode = MultipleFileReader.MERGE_MODE;
     private JDKExclude jdkExclude = new DefaultJDKExclude();
+    /**
+     * Number of threads verifying the classes of the signature file and
+     * processing the messages of the human readable and backward
+     * compatibility formats.
+     */
+    private int threads = 1;
+    /**
+     * If true, the signature file isn't kept in memory, the classes are
+     * read from it when they are needed.
+     */
+    private boolean streaming = false;
+    /**
+     * Number of error messages kept in memory, the rest is sorted on disk.
+     */
+    private int maxMessages = SortedErrorFormatter.DEFAULT_MAX_MESSAGES;
+    /**
+     * File keeping the results of the previous incremental run, or
+     * <code>null</code> if all classes are checked.
+     */
+    private String stateFileName = null;
+    /**
+     * Options which the results of the incremental run depend on.
+     */
+    private String incrementalSettings = null;
+    /**
+     * The test which created this one as a worker of the parallel check,
+     * or <code>null</code>.
+     */
+    private SignatureTest master = null;
+    /**
+     * The warnings of the loader of the worker, printed by the main thread.
+     */
+    private List warnings = null;
     /**
      * List of names of JDK classes and/or packages to be ignored along with subpackages. 
      */
-    private static PackageGroup excludedJdkClasses = new PackageGroup(true);
+    private PackageGroup excludedJdkClasses = new PackageGroup(true);
     
     public SignatureTest() {
         normalizer = new ThrowsNormalizer(jdkExclude); 
@@ -275,11 +318,21 @@ public class SignatureTest extends SigTest {
      * @see #main(String[])
      */
     public void run(String[] args, PrintWriter log, PrintWriter ref) {
+        RunContext previous = enterContext();
+        try {
+            doRun(args, log);
+        } finally {
+            RunContext.restore(previous);
+        }
+    }
+
+    private void doRun(String[] args, PrintWriter log) {
 
 //        long startTime = System.currentTimeMillis();
 
         setLog(log);
         mode = null;
+        incrementalSettings = getIncrementalSettings(args);
         try {
             ClassLoader cl = SignatureTest.class.getClassLoader();
             exclude = (Exclude) cl.loadClass(System.getProperty("exclude.plugin")).newInstance();
@@ -300,6 +353,7 @@ public class SignatureTest extends SigTest {
                 usage();
             }
         }
+        storePersistentCache();
         if (classpath != null)
             classpath.close();
 
@@ -368,6 +422,7 @@ public class SignatureTest extends SigTest {
         parser.addOption(STATIC_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
 
         parser.addOption(CLASSCACHESIZE_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(CLASSCACHEDIR_OPTION, OptionInfo.option(1), optionsDecoder);
         parser.addOption(FORMATPLAIN_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(FORMATHUMAN_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(FORMATHUMAN_ALT_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
@@ -384,6 +439,10 @@ public class SignatureTest extends SigTest {
         parser.addOption(MODE_OPTION, OptionInfo.option(1), optionsDecoder);
         parser.addOption(ALLPUBLIC_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
         parser.addOption(EXCLUDE_JDK_CLASS_OPTION, OptionInfo.optionVariableParams(1, OptionInfo.UNLIMITED), optionsDecoder);
+        parser.addOption(THREADS_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(STREAMING_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
+        parser.addOption(INCREMENTAL_OPTION, OptionInfo.option(1), optionsDecoder);
+        parser.addOption(ERRORS_IN_MEMORY_OPTION, OptionInfo.option(1), optionsDecoder);
         
         parser.addOption(VERBOSE_OPTION, OptionInfo.optionalFlag(), optionsDecoder);
 
@@ -436,7 +495,7 @@ public class SignatureTest extends SigTest {
                 setLog(new PrintWriter(new FileWriter(logName), true));
                 logFile = true;
             } catch (IOException x) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     x.printStackTrace();
                 return error(i18n.getString("SignatureTest.error.out.invfile", OUT_OPTION));
             }
@@ -446,7 +505,7 @@ public class SignatureTest extends SigTest {
         try {
             classpath = new ClasspathImpl(release, classpathStr);
         } catch (SecurityException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             getLog().println(i18n.getString("SignatureTest.error.sec.newclasses"));
         }
@@ -506,6 +565,30 @@ public class SignatureTest extends SigTest {
             readMode = MultipleFileReader.CLASSPATH_MODE;
         } else if (optionName.equalsIgnoreCase(EXCLUDE_JDK_CLASS_OPTION)) {
             excludedJdkClasses.addPackages(CommandLineParser.parseListOption(args));
+        } else if (optionName.equalsIgnoreCase(THREADS_OPTION)) {
+            threads = 0;
+            try {
+                threads = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                if (SigTest.isDebug())
+                    ex.printStackTrace();
+            }
+            if (threads <= 0)
+                throw new CommandLineParserException(i18n.getString("SignatureTest.error.arg.invalid", THREADS_OPTION));
+        } else if (optionName.equalsIgnoreCase(STREAMING_OPTION)) {
+            streaming = true;
+        } else if (optionName.equalsIgnoreCase(INCREMENTAL_OPTION)) {
+            stateFileName = args[0];
+        } else if (optionName.equalsIgnoreCase(ERRORS_IN_MEMORY_OPTION)) {
+            maxMessages = 0;
+            try {
+                maxMessages = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                if (SigTest.isDebug())
+                    ex.printStackTrace();
+            }
+            if (maxMessages <= 0)
+                throw new CommandLineParserException(i18n.getString("SignatureTest.error.arg.invalid", ERRORS_IN_MEMORY_OPTION));
         } else {
             super.decodeCommonOptions(optionName, args);
         }
@@ -545,6 +628,11 @@ public class SignatureTest extends SigTest {
         sb.append(nl).append(i18n.getString("SignatureTest.usage.extinterfaces", EXTENSIBLE_INTERFACES_OPTION));
         sb.append(nl).append(i18n.getString("Sigtest.usage.delimiter"));
         sb.append(nl).append(i18n.getString("SignatureTest.usage.classcachesize", new Object[]{CLASSCACHESIZE_OPTION, new Integer(DefaultCacheSize)}));
+        sb.append(nl).append(i18n.getString("SignatureTest.usage.classcachedir", CLASSCACHEDIR_OPTION));
+        sb.append(nl).append(i18n.getString("SignatureTest.usage.threads", THREADS_OPTION));
+        sb.append(nl).append(i18n.getString("SignatureTest.usage.streaming", STREAMING_OPTION));
+        sb.append(nl).append(i18n.getString("SignatureTest.usage.incremental", INCREMENTAL_OPTION));
+        sb.append(nl).append(i18n.getString("SignatureTest.usage.errorsinmemory", new Object[]{ERRORS_IN_MEMORY_OPTION, Integer.toString(SortedErrorFormatter.DEFAULT_MAX_MESSAGES)}));
         sb.append(nl).append(i18n.getString("SignatureTest.usage.verbose", VERBOSE_OPTION));
         sb.append(nl).append(i18n.getString("SignatureTest.usage.debug", DEBUG_OPTION));
         sb.append(nl).append(i18n.getString("SignatureTest.usage.error_all", ERRORALL_OPTION));
@@ -563,7 +651,7 @@ public class SignatureTest extends SigTest {
     }
 
     public boolean useErasurator() {
-        return !isTigerFeaturesTracked || BINARY_MODE.equals(mode);
+        return !isTigerFeaturesTracked() || BINARY_MODE.equals(mode);
     }
 
 
@@ -581,9 +669,32 @@ public class SignatureTest extends SigTest {
         String msg;
         //  Open the specified sigfile and read standard headers.
 
-        // ME - TODO: rewrite this in the future
-        if (readMode == MultipleFileReader.MERGE_MODE && sigFileNameList != null && sigFileNameList.indexOf(File.pathSeparator) >= 0)
+        VirtualClassDescriptionLoader merged = null;
+        Set mergedFeatures = null;
+
+        boolean mergeFiles = readMode == MultipleFileReader.MERGE_MODE && sigFileNameList != null
+                && sigFileNameList.indexOf(File.pathSeparator) >= 0;
+
+        // the merged classes are checked without writing them to a signature file,
+        // unless the file is required by -Write, -Update or by the parallel check
+        if (mergeFiles && writeFileName == null && updateFileName == null && threads == 1)
         {
+            Merge m = Merge.getInstance();
+            String[] args = new String[]{"-Files", sigFileNameList};
+            if (BINARY_MODE.equals(mode)) {
+                args = new String[]{"-Files", sigFileNameList, "-Binary"};
+            }
+            m.testURL = this.testURL;
+            merged = m.merge(args, getLog());
+            if (merged == null) {
+                error(m.getReason());
+                return false;
+            }
+            mergedFeatures = m.getSupportedFeatures();
+            readMode = MultipleFileReader.CLASSPATH_MODE;
+        } else if (mergeFiles)
+        {
+            // ME - TODO: rewrite this in the future
             try {
                 if (writeFileName == null) {
                     File tmpF = File.createTempFile("sigtest", "sig");
@@ -629,10 +740,15 @@ public class SignatureTest extends SigTest {
         }
 
         MultipleFileReader in = new MultipleFileReader(getLog(),readMode, getFileManager());
+        if (streaming)
+            in.setStreaming(cacheSize);
         String linesep = System.getProperty("line.separator");
         boolean result;
 
-        if (sigFileNameList != null)
+        if (merged != null) {
+            in.readMergedClasses(merged, mergedFeatures);
+            result = true;
+        } else if (sigFileNameList != null)
             result = in.readSignatureFiles(testURL, sigFileNameList);
         else
             result = in.readSignatureFile(testURL, sigFileName);
@@ -681,8 +797,7 @@ public class SignatureTest extends SigTest {
             isValueTracked = Boolean.FALSE;
         }
 
-        SigTest.isConstantValuesTracked = isValueTracked.booleanValue();
-        FieldDescr.isConstantValuesTracked = SigTest.isConstantValuesTracked;
+        RunContext.getCurrent().setConstantValuesTracked(isValueTracked.booleanValue());
 
         if (msg.length() != 0) {
             in.close();
@@ -704,7 +819,7 @@ public class SignatureTest extends SigTest {
         else
             getLog().println(i18n.getString("SignatureTest.mesg.sigtest.constcheck", i18n.getString("SignatureTest.mesg.sigtest.constcheck.off")));
 
-        if (!isTigerFeaturesTracked)
+        if (!isTigerFeaturesTracked())
             getLog().println(i18n.getString("SignatureTest.mesg.sigtest.tigercheck"));
 
         getLog().println();
@@ -739,6 +854,11 @@ public class SignatureTest extends SigTest {
         else
             errorManager = new SortedErrorFormatter(getLog(),isVerbose);
 
+        if (errorManager instanceof SortedErrorFormatter)
+            ((SortedErrorFormatter) errorManager).setMaxMessages(maxMessages);
+        if (errorManager instanceof HumanErrorFormatter)
+            ((HumanErrorFormatter) errorManager).setThreads(threads);
+
 
         boolean buildMembers = in.isFeatureSupported(FeaturesHolder.BuildMembers);
         MemberCollectionBuilder sigfileMCBuilder = null;
@@ -759,9 +879,11 @@ public class SignatureTest extends SigTest {
             // check that set of classes is transitively closed
             ClassSet closedSet = new ClassSet(signatureClassesHierarchy, true);
 
+            int classCount = 0;
             in.rewind();
             while ((currentClass = in.nextClass()) != null) {
                 closedSet.addClass(currentClass.getQualifiedName());
+                classCount++;
             }
 
             Set missingClasses = closedSet.getMissingClasses();
@@ -785,43 +907,18 @@ public class SignatureTest extends SigTest {
 
             boolean supportNSC = in.isFeatureSupported(FeaturesHolder.NonStaticConstants);
 
-            while ((currentClass = in.nextClass()) != null) {
-                if (Xverbose) {
-                    getLog().println(i18n.getString("SignatureTest.mesg.verbose.check", currentClass.getQualifiedName()));
-                }
-
-                if (buildMembers) {
-                    try {
-                        if (isAPICheckMode()) {
-                            sigfileMCBuilder.setBuildMode(MemberCollectionBuilder.BuildMode.SIGFILE);
-                        }
-                        sigfileMCBuilder.createMembers(currentClass, addInherited(), false, true);
-                    } catch (ClassNotFoundException e) {
-                        if (SigTest.debug)
-                            e.printStackTrace();
-                    }
-                }
-
-                if (useErasurator())
-                    currentClass = localErasurator.erasure(currentClass);
-
-                Transformer t = PluginAPI.BEFORE_TEST.getTransformer();
-                if (t != null) {
-                    try {
-                        t.transform(currentClass);
-                    } catch (ClassNotFoundException e) {
-                        if (SigTest.debug)
-                            e.printStackTrace();
-                    }
-                }
+            if (stateFileName != null && classpath == null)
+                getLog().println(i18n.getString("SignatureTest.warning.incremental.static", INCREMENTAL_OPTION));
 
-                if (currentClass.isPackageInfo() && isTigerFeaturesTracked) {
-                    verifyPackageInfo(currentClass);
-                } else {
-                    verifyClass(currentClass, supportNSC);
+            if (stateFileName != null && classpath != null) {
+                checkIncremental(in, sigfileMCBuilder, localErasurator, supportNSC);
+            } else if (threads > 1 && pluginClass == null && !isClassDescrLoaderSet()) {
+                // plugins and loaders set from outside may be not thread-safe
+                checkParallel(classCount);
+            } else {
+                while ((currentClass = in.nextClass()) != null) {
+                    checkClass(currentClass, sigfileMCBuilder, localErasurator, supportNSC);
                 }
-                // save memory
-                currentClass.setMembers(null);
             }
 
         }
@@ -835,17 +932,17 @@ public class SignatureTest extends SigTest {
             msg = i18n.getString("SignatureTest.error.sigfile.vme", e.getMessage());
         }
         catch (IOException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             msg = i18n.getString("SignatureTest.error.sigfile.prob") + linesep + e;
         }
         catch (SecurityException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             msg = i18n.getString("SignatureTest.error.sigfile.sec") + linesep + e;
         }
         catch (Error e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             msg = i18n.getString("SignatureTest.error.unknownerror") + e;
         }
@@ -861,7 +958,7 @@ public class SignatureTest extends SigTest {
         if (!isSupersettingEnabled)
             checkAddedClasses();
 
-        if (isTigerFeaturesTracked)
+        if (isTigerFeaturesTracked())
             checkAddedPackages();
 
 
@@ -875,6 +972,7 @@ public class SignatureTest extends SigTest {
 
         String repmsg = exclude.report();
         if (isVerbose) System.out.println(repmsg);
+        if (isVerbose) printCacheStatistics();
 
         int numErrors = errorManager.getNumErrors() + auxErrorCount;
         in.close();
@@ -887,7 +985,325 @@ public class SignatureTest extends SigTest {
     }
 
     protected boolean isAPICheckMode() {
-        return false;
+        return master != null && master.isAPICheckMode();
+    }
+
+    /**
+     * Checks one class read from the signature file.
+     *
+     * @param sigfileMCBuilder builds members of the signature file classes,
+     *                         or <code>null</code> if the signature file
+     *                         doesn't require it
+     */
+    private void checkClass(ClassDescription currentClass, MemberCollectionBuilder sigfileMCBuilder,
+            Erasurator localErasurator, boolean supportNSC) {
+
+        if (isVerbose()) {
+            getLog().println(i18n.getString("SignatureTest.mesg.verbose.check", currentClass.getQualifiedName()));
+        }
+
+        if (streaming) {
+            // the class could be read again after the closure check,
+            // so it must be bound to the hierarchy
+            try {
+                currentClass = signatureClassesHierarchy.load(currentClass.getQualifiedName());
+            } catch (ClassNotFoundException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+            }
+        }
+
+        if (sigfileMCBuilder != null) {
+            try {
+                if (isAPICheckMode()) {
+                    sigfileMCBuilder.setBuildMode(MemberCollectionBuilder.BuildMode.SIGFILE);
+                }
+                sigfileMCBuilder.createMembers(currentClass, addInherited(), false, true);
+            } catch (ClassNotFoundException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+            }
+        }
+
+        if (useErasurator())
+            currentClass = localErasurator.erasure(currentClass);
+
+        Transformer t = PluginAPI.BEFORE_TEST.getTransformer();
+        if (t != null) {
+            try {
+                t.transform(currentClass);
+            } catch (ClassNotFoundException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+            }
+        }
+
+        if (currentClass.isPackageInfo() && isTigerFeaturesTracked()) {
+            verifyPackageInfo(currentClass);
+        } else {
+            verifyClass(currentClass, supportNSC);
+        }
+        // save memory
+        currentClass.setMembers(null);
+    }
+
+    /**
+     * Verifies <code>classCount</code> classes of the signature file
+     * by <code>threads</code> workers. Class descriptions are modified
+     * during verification, so each worker reads its own copy of the signature
+     * file and loads the tested classes by its own loader. The workers read
+     * the signature file in the streaming mode, so only the positions of the
+     * classes and the recently read classes are kept by each worker, but the
+     * tested classes are loaded and cached by each worker. The errors, the
+     * messages and the warnings of the loader of each class are replayed in
+     * the signature file order, therefore the report doesn't differ from the
+     * report of the serial check.
+     */
+    private void checkParallel(int classCount) throws IOException {
+
+        OrderedResults pc = new OrderedResults(classCount);
+        Exclude sharedExclude = new SynchronizedExclude(exclude);
+        List workers = new ArrayList();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                Worker w = new Worker(createWorker(sharedExclude), pc);
+                workers.add(w);
+                executor.execute(w);
+            }
+
+            for (int i = 0; i < classCount; i++) {
+                CheckedClass c = (CheckedClass) pc.take(i);
+                DeferredErrorFormatter.replay(c.events, errorManager, getLog());
+                if (c.warnings != null) {
+                    BinaryClassDescrLoader loader = (BinaryClassDescrLoader) getClassDescrLoader();
+                    for (Iterator it = c.warnings.iterator(); it.hasNext();)
+                        loader.printWarning((String) it.next());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (Iterator it = workers.iterator(); it.hasNext();) {
+            SignatureTest w = ((Worker) it.next()).test;
+            trackedClassNames.addAll(w.trackedClassNames);
+            errorMessages.addAll(w.errorMessages);
+        }
+    }
+
+    /**
+     * Checks the classes of the signature file reusing the results of
+     * the previous run stored in the state file. The result of a class is
+     * reused if neither its description in the signature file nor the bytes
+     * of the tested class changed, the same is required for their
+     * superclasses and superinterfaces, and for the declaring class of
+     * a nested class. The other classes the check may depend on, e.g. the
+     * exception types of the throws clauses, aren't tracked.
+     * <p/>
+     * The results are recorded by {@link DeferredErrorFormatter} and
+     * replayed in the signature file order, so the report doesn't differ
+     * from the report of the full check. The classes are checked serially.
+     */
+    private void checkIncremental(MultipleFileReader in, MemberCollectionBuilder sigfileMCBuilder,
+            Erasurator localErasurator, boolean supportNSC) throws IOException {
+
+        File stateFile = new File(stateFileName);
+        IncrementalState state = IncrementalState.read(stateFile, incrementalSettings);
+
+        // the descriptions are modified by the check, so they are digested first
+        Map sigDigests = new HashMap();
+        ClassDescription currentClass;
+        while ((currentClass = in.nextClass()) != null)
+            sigDigests.put(currentClass.getQualifiedName(), IncrementalState.digest(currentClass));
+        in.rewind();
+
+        Map testDigests = new HashMap();
+        ErrorFormatter target = errorManager;
+        PrintWriter log = getLog();
+        Set tracked = trackedClassNames;
+        Set messages = errorMessages;
+        StringWriter buffer = new StringWriter();
+        DeferredErrorFormatter recorder = new DeferredErrorFormatter(buffer);
+        errorManager = recorder;
+        setLog(new PrintWriter(buffer, true));
+
+        try {
+            while ((currentClass = in.nextClass()) != null) {
+                String name = currentClass.getQualifiedName();
+                String key = getIncrementalKey(currentClass, sigDigests, testDigests);
+                IncrementalState.Result result = state.get(name, key);
+                if (result == null) {
+                    trackedClassNames = new HashSet();
+                    errorMessages = new HashSet();
+                    checkClass(currentClass, sigfileMCBuilder, localErasurator, supportNSC);
+                    result = new IncrementalState.Result(recorder.takeEvents(), trackedClassNames, errorMessages);
+                    state.put(name, key, result);
+                } else {
+                    // drop the messages printed while the key was computed
+                    recorder.takeEvents();
+                }
+                DeferredErrorFormatter.replay(result.getEvents(), target, log);
+                tracked.addAll(result.getTrackedClassNames());
+                messages.addAll(result.getErrorMessages());
+            }
+        } finally {
+            errorManager = target;
+            setLog(log);
+            trackedClassNames = tracked;
+            errorMessages = messages;
+        }
+
+        try {
+            state.write(stateFile);
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            getLog().println(i18n.getString("SignatureTest.error.incremental", e.getMessage()));
+        }
+        if (isVerbose)
+            getLog().println(i18n.getString("SignatureTest.mesg.incremental",
+                    new Object[]{Integer.toString(state.getReusedCount()), Integer.toString(sigDigests.size())}));
+    }
+
+    /**
+     * Returns the key of the result of the class check, or <code>null</code>
+     * if the result must not be reused.
+     *
+     * @param sigDigests  digests of the signature file classes by the name
+     * @param testDigests digests of the tested classes already computed
+     */
+    private String getIncrementalKey(ClassDescription c, Map sigDigests, Map testDigests) {
+        String name = c.getQualifiedName();
+        Set related = new TreeSet();
+        try {
+            related.addAll(signatureClassesHierarchy.getSuperClasses(name));
+            related.addAll(signatureClassesHierarchy.getAllImplementedInterfaces(name));
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        String outer = c.getDeclaringClassName();
+        if (outer != null && !MemberDescription.NO_DECLARING_CLASS.equals(outer))
+            related.add(outer);
+
+        Set tested = new TreeSet();
+        tested.add(name);
+        try {
+            tested.addAll(testableHierarchy.getSuperClasses(name));
+            tested.addAll(testableHierarchy.getAllImplementedInterfaces(name));
+        } catch (ClassNotFoundException e) {
+            // the missing class is reported by the check
+        }
+
+        List parts = new ArrayList();
+        parts.add(name);
+        parts.add(sigDigests.get(name));
+        for (Iterator it = related.iterator(); it.hasNext();) {
+            String s = (String) it.next();
+            parts.add(s);
+            // supertypes not described in the signature file
+            parts.add(sigDigests.containsKey(s) ? (String) sigDigests.get(s) : "-");
+        }
+        parts.add("");
+        for (Iterator it = tested.iterator(); it.hasNext();) {
+            String s = (String) it.next();
+            parts.add(s);
+            parts.add(getTestedDigest(s, testDigests));
+        }
+        return IncrementalState.digest(parts);
+    }
+
+    private String getTestedDigest(String name, Map testDigests) {
+        if (testDigests.containsKey(name))
+            return (String) testDigests.get(name);
+
+        String digest = null;
+        InputStream is = null;
+        try {
+            is = classpath.findClass(name);
+            digest = IncrementalState.digest(is);
+        } catch (ClassNotFoundException e) {
+            digest = "-";
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    if (SigTest.isDebug())
+                        e.printStackTrace();
+                }
+            }
+        }
+        testDigests.put(name, digest);
+        return digest;
+    }
+
+    /**
+     * Returns the options affecting the results of the incremental check.
+     * The signature files and the class path aren't included, the digests
+     * of the classes are compared instead.
+     */
+    private static String getIncrementalSettings(String[] args) {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equalsIgnoreCase(INCREMENTAL_OPTION) || arg.equalsIgnoreCase(CLASSPATH_OPTION)
+                    || arg.equalsIgnoreCase(FILENAME_OPTION) || arg.equalsIgnoreCase(FILES_OPTION)
+                    || arg.equalsIgnoreCase(OUT_OPTION)) {
+                i++;
+                continue;
+            }
+            if (sb.length() > 0)
+                sb.append(' ');
+            sb.append(arg);
+        }
+        return sb.toString();
+    }
+
+    private SignatureTest createWorker(Exclude sharedExclude) {
+        SignatureTest w = new SignatureTest();
+        StringWriter buffer = new StringWriter();
+        w.master = this;
+        w.setLog(new PrintWriter(buffer, true));
+        w.errorManager = new DeferredErrorFormatter(buffer);
+        w.exclude = sharedExclude;
+
+        w.isStatic = isStatic;
+        w.classpath = classpath;
+        w.release = release;
+        w.cacheSize = cacheSize;
+        w.persistentCache = persistentCache;
+        w.trackMode = trackMode;
+        w.packages = packages;
+        w.purePackages = purePackages;
+        w.excludedPackages = excludedPackages;
+        w.reportWarningAsError = reportWarningAsError;
+        w.mode = mode;
+        w.outFormat = outFormat;
+        w.isVerbose = isVerbose;
+        w.isValueTracked = isValueTracked;
+        w.isOneWayConstantChecking = isOneWayConstantChecking;
+        w.isThrowsRemoved = isThrowsRemoved;
+        w.isSupersettingEnabled = isSupersettingEnabled;
+        w.streaming = streaming;
+        w.excludedJdkClasses = excludedJdkClasses;
+        w.trackedClassNames = new HashSet();
+
+        ClassDescriptionLoader loader = w.getClassDescrLoader();
+        if (!isValueTracked.booleanValue() && loader instanceof LoadingHints) {
+            ((LoadingHints) loader).addLoadingHint(LoadingHints.DONT_READ_VALUES);
+        }
+        if (loader instanceof BinaryClassDescrLoader && getClassDescrLoader() instanceof BinaryClassDescrLoader) {
+            w.warnings = new ArrayList();
+            ((BinaryClassDescrLoader) loader).setWarnings(w.warnings);
+        }
+        w.testableHierarchy = new ClassHierarchyImpl(loader, trackMode);
+        w.testableMCBuilder = new MemberCollectionBuilder(w, w.jdkExclude);
+        return w;
     }
 
     /**
@@ -913,7 +1329,7 @@ public class SignatureTest extends SigTest {
                 checkAddedClass(name);
             }
         } catch (SecurityException ex) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 ex.printStackTrace();
             getLog().println(i18n.getString("SignatureTest.mesg.classpath.sec"));
             getLog().println(ex);
@@ -925,7 +1341,7 @@ public class SignatureTest extends SigTest {
             try {
                 ClassDescription c = testableHierarchy.load(name);
                 if (c.isPackageInfo()) {
-                    if (isTigerFeaturesTracked)
+                    if (isTigerFeaturesTracked())
                         checkAnnotations(null, c);
                 } else {
                     if (testableHierarchy.isAccessible(c)) {
@@ -935,10 +1351,10 @@ public class SignatureTest extends SigTest {
                     }
                 }
             } catch (ClassNotFoundException ex) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     ex.printStackTrace();
             } catch (LinkageError ex1) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     ex1.printStackTrace();
             } catch (ExcludeException e) {
                 if (isVerbose)
@@ -1061,19 +1477,19 @@ public class SignatureTest extends SigTest {
                 errorManager.addError(MessageType.MISS_CLASSES, name, MemberType.CLASS, null, required);
         }
         catch (SuperClassesNotFoundException ex) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 ex.printStackTrace();
             String [] names = ex.getMissedClasses();
             for (int i = 0; i < names.length; i++) {
                 errorManager.addError(MessageType.MISS_SUPERCLASSES, names[i], MemberType.CLASS, ex.getClassName() , required);
             }
         } catch (ClassNotFoundException ex) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 ex.printStackTrace();
             errorManager.addError(MessageType.MISS_CLASSES, name, MemberType.CLASS, null, required);
         } catch (LinkageError er) {
 
-            if (SigTest.debug) {
+            if (SigTest.isDebug()) {
                 er.printStackTrace();
             }
 
@@ -1141,7 +1557,7 @@ public class SignatureTest extends SigTest {
 
     private void verifyPackageInfo(ClassDescription required) {
 
-        assert (isTigerFeaturesTracked);
+        assert (isTigerFeaturesTracked());
 
         // checks that package from tested API
         String name = required.getQualifiedName();
@@ -1412,7 +1828,7 @@ public class SignatureTest extends SigTest {
 
     private void checkAnnotations(MemberDescription base, MemberDescription test) {
 
-        if (!isTigerFeaturesTracked)
+        if (!isTigerFeaturesTracked())
             return;
 
         AnnotationItem[] baseAnnotList = base == null ? AnnotationItem.EMPTY_ANNOTATIONITEM_ARRAY :
@@ -1497,6 +1913,118 @@ public class SignatureTest extends SigTest {
             errorManager.addError(added ? MessageType.ADD_ANNO : MessageType.MISS_ANNO, fid.getQualifiedName(), fid.getMemberType(), anno, fid);
     }
 
+    /**
+     * Runs a worker of the parallel check. The worker takes the next
+     * unchecked class, skips the preceding classes in its copy of the
+     * signature file and records the results of the class.
+     */
+    private class Worker implements Runnable {
+
+        private final SignatureTest test;
+        private final OrderedResults pc;
+
+        private Worker(SignatureTest test, OrderedResults pc) {
+            this.test = test;
+            this.pc = pc;
+        }
+
+        public void run() {
+            MultipleFileReader in = new MultipleFileReader(test.getLog(), readMode, getFileManager());
+            // each worker has its own copy of the signature file, keep only
+            // the positions of the classes so the memory doesn't grow with
+            // the number of the workers
+            in.setStreaming(cacheSize);
+            try {
+                boolean result;
+                if (sigFileNameList != null)
+                    result = in.readSignatureFiles(testURL, sigFileNameList);
+                else
+                    result = in.readSignatureFile(testURL, sigFileName);
+
+                if (!result)
+                    throw new IOException(i18n.getString("SignatureTest.error.sigfile.invalid",
+                            sigFileNameList == null ? sigFileName : sigFileNameList));
+
+                DeferredErrorFormatter recorder = (DeferredErrorFormatter) test.errorManager;
+                recorder.takeEvents();
+
+                test.signatureClassesHierarchy = new ClassHierarchyImpl(in, trackMode);
+                ClassDescription currentClass;
+                // the classes must be bound to the hierarchy as in the closure check
+                while ((currentClass = in.nextClass()) != null) {
+                    test.signatureClassesHierarchy.load(currentClass.getQualifiedName());
+                }
+                in.rewind();
+
+                MemberCollectionBuilder sigfileMCBuilder = null;
+                if (in.isFeatureSupported(FeaturesHolder.BuildMembers)) {
+                    sigfileMCBuilder = new MemberCollectionBuilder(test, test.jdkExclude);
+                }
+                Erasurator localErasurator = new Erasurator();
+                boolean supportNSC = in.isFeatureSupported(FeaturesHolder.NonStaticConstants);
+
+                currentClass = in.nextClass();
+                int pos = 0;
+                int index;
+                while ((index = pc.next()) >= 0) {
+                    for (; pos < index; pos++)
+                        currentClass = in.nextClass();
+
+                    test.checkClass(currentClass, sigfileMCBuilder, localErasurator, supportNSC);
+                    CheckedClass c = new CheckedClass(recorder.takeEvents());
+                    if (test.warnings != null && !test.warnings.isEmpty()) {
+                        c.warnings = new ArrayList(test.warnings);
+                        test.warnings.clear();
+                    }
+                    pc.put(index, c);
+                }
+            } catch (Throwable t) {
+                pc.fail(t);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Results of the class checked by the worker: the events recorded by
+     * {@link DeferredErrorFormatter} and the warnings of the loader.
+     */
+    private static class CheckedClass {
+
+        private final List events;
+        private List warnings;
+
+        private CheckedClass(List events) {
+            this.events = events;
+        }
+    }
+
+    /**
+     * Makes the exclusion plugin available to the workers of the parallel
+     * check.
+     */
+    private static class SynchronizedExclude implements Exclude {
+
+        private final Exclude exclude;
+
+        private SynchronizedExclude(Exclude exclude) {
+            this.exclude = exclude;
+        }
+
+        public synchronized String[] parseParameters(String[] args) {
+            return exclude.parseParameters(args);
+        }
+
+        public synchronized void check(ClassDescription testedClass, MemberDescription signature) throws ExcludeException {
+            exclude.check(testedClass, signature);
+        }
+
+        public synchronized String report() {
+            return exclude.report();
+        }
+    }
+
     static class SuperClassesNotFoundException extends ClassNotFoundException {
         private String[] scNames;
         private String clName;
@@ -1567,7 +2095,7 @@ public class SignatureTest extends SigTest {
 
     }
 
-    static class DefaultJDKExclude implements JDKExclude {
+    class DefaultJDKExclude implements JDKExclude {
 
         @Override
         public boolean isJdkClass(String name) {
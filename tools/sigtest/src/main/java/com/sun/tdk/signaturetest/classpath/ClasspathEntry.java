@@ -83,4 +83,16 @@ public abstract class ClasspathEntry implements Classpath {
         return classes.isEmpty();
     }
 
+    /**
+     * Returns a string identifying the content of <code>this</code> entry,
+     * so that two entries having the same key provide the same classes.
+     * The key is used by the persistent class cache.
+     *
+     * @return content key or <code>null</code> if the content can't be
+     *         identified cheaply, e.g. for a directory.
+     */
+    public String getContentKey() {
+        return null;
+    }
+
 }
@@ -40,6 +40,11 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <b>ClasspathImpl</b> provides access to all classes placed inside
@@ -56,6 +61,8 @@ import java.util.*;
  * <p>Also, the method <code>findClass(name)</code> provides access to class
  * directly by its qualified name. Note however, that the names class must belong
  * to some directory or zip-file pointed to the <b>ClasspathImpl</b> instance.
+ * The constructor indexes the classes by their names, so the entry providing
+ * the class is found without trying all the entries one by one.
  *
  * @author Maxim Sokolnikov
  * @author Roman Makarchuk
@@ -92,6 +99,20 @@ public class ClasspathImpl implements Classpath {
      * @see ClasspathEntry
      */
     private static final String JAR_ENTRY_IMPL = "com.sun.tdk.signaturetest.classpath.JarFileEntry";
+    /**
+     * Reference to the class implementing <b>JmodEntry</b>.
+     *
+     * @see JmodEntry
+     * @see ClasspathEntry
+     */
+    private static final String JMOD_ENTRY_IMPL = "com.sun.tdk.signaturetest.classpath.JmodEntry";
+    /**
+     * Reference to the class implementing <b>JrtEntry</b>.
+     *
+     * @see JrtEntry
+     * @see ClasspathEntry
+     */
+    private static final String JRT_ENTRY_IMPL = "com.sun.tdk.signaturetest.classpath.JrtEntry";
 
     /**
      * Collector for errors and warnings occurring while <b>ClasspathImpl</b>
@@ -115,6 +136,17 @@ public class ClasspathImpl implements Classpath {
      */
     private List entries;
 
+    /**
+     * The entry providing the class, by the qualified class name. If several
+     * entries contain the same class, the first one in the path provides it.
+     */
+    private Map index;
+
+    /**
+     * Names of the classes found in several entries, in the path order.
+     */
+    private List duplicates;
+
 
     private Iterator iterator;
 
@@ -157,7 +189,7 @@ public class ClasspathImpl implements Classpath {
             try {
                 pathSeparator = System.getProperty("path.separator");
             } catch (SecurityException e) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     e.printStackTrace();
             }
         }
@@ -177,7 +209,7 @@ public class ClasspathImpl implements Classpath {
      * @see #findClass(String)
      * @see #nextClassName()
      * @see #setListToBegin()
-     * @see #createPathEntry(ClasspathEntry, String)
+     * @see #createPathEntry(String)
      */
     public ClasspathImpl(Release release, String classPath) {
         this.release = release;
@@ -188,18 +220,20 @@ public class ClasspathImpl implements Classpath {
     public void init(String classPath) {
         entries = new ArrayList();
         errors = new ArrayList();
+        index = new HashMap();
+        duplicates = new ArrayList();
+        List names = new ArrayList();
         Set unique = new HashSet();
         String path = (classPath == null) ? "" : classPath;
         if (!path.equals("") && (pathSeparator == null))
             throw new SecurityException(i18n.getString("ClasspathImpl.error.notdefinepathsep"));
 
-
-        ClasspathEntry previosEntry = null;
-
-        //creates Hashtable with ZipFiles and directories from path.
+        //creates list of ZipFiles and directories from path.
         while (path != null && path.length() > 0) {
             String s;
-            int index = path.indexOf(pathSeparator);
+            // the separator may occur in the jrt:/ prefix
+            int from = path.startsWith(JrtEntry.JRT_PREFIX) ? JrtEntry.JRT_PREFIX.length() : 0;
+            int index = path.indexOf(pathSeparator, from);
             if (index < 0) {
                 s = path;
                 path = null;
@@ -214,17 +248,109 @@ public class ClasspathImpl implements Classpath {
             }
 
             unique.add(s);
+            names.add(s);
+        }
 
-            ClasspathEntry entry = createPathEntry(previosEntry, s);
-            if (entry != null && !entry.isEmpty()) {
-                entries.add(entry);
-                previosEntry = entry;
+        if (release != null && release != Release.BOOT_CLASS_PATH) {
+            try {
+                release.open();
+            } catch (IOException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+                errors.add(i18n.getString("ClasspathImpl.error.release",
+                        new Object[]{Integer.toString(release.getVersion()), e.getMessage()}));
             }
         }
 
+        Object[] created = createPathEntries(names);
+
+        // the entries are indexed in the path order, so that the class
+        // is provided by the first entry containing it
+        for (int i = 0; i < created.length; i++) {
+            if (created[i] instanceof Throwable) {
+                Throwable t = (Throwable) created[i];
+                String invargs[] = {(String) names.get(i), t.getMessage()};
+                errors.add(i18n.getString("ClasspathImpl.error.ignoring", invargs));
+                sizeIgnorables++;
+                continue;
+            }
+
+            ClasspathEntry entry = (ClasspathEntry) created[i];
+            for (Iterator it = entry.classes.iterator(); it.hasNext();) {
+                String name = (String) it.next();
+                if (index.containsKey(name)) {
+                    // hidden by the previous entry
+                    duplicates.add(name);
+                    it.remove();
+                } else
+                    index.put(name, entry);
+            }
+            entry.setListToBegin();
+
+            if (entry.isEmpty())
+                entry.close();
+            else
+                entries.add(entry);
+        }
+
         setListToBegin();
     }
 
+    /**
+     * Creates the entries for the given directory and jar file names.
+     * The entries are scanned in parallel, since the scanning is dominated
+     * by reading the jar file directories.
+     *
+     * @return array containing the created <b>ClasspathEntry</b> or the
+     *         <b>Throwable</b> explaining why the entry can't be created, for
+     *         each name.
+     */
+    private Object[] createPathEntries(List names) {
+        Object[] result = new Object[names.size()];
+        int threads = Math.min(names.size(), Runtime.getRuntime().availableProcessors());
+
+        if (threads <= 1) {
+            for (int i = 0; i < result.length; i++)
+                result[i] = tryCreatePathEntry((String) names.get(i));
+            return result;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future[] futures = new Future[result.length];
+            for (int i = 0; i < result.length; i++) {
+                final String name = (String) names.get(i);
+                futures[i] = executor.submit(new Callable() {
+                    public Object call() {
+                        return tryCreatePathEntry(name);
+                    }
+                });
+            }
+
+            for (int i = 0; i < result.length; i++) {
+                try {
+                    result[i] = futures[i].get();
+                } catch (ExecutionException e) {
+                    result[i] = e.getCause();
+                } catch (InterruptedException e) {
+                    result[i] = e;
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private Object tryCreatePathEntry(String name) {
+        try {
+            return createPathEntry(name);
+        } catch (Throwable t) {
+            return t;
+        }
+    }
+
 
     public void close() {
         if (entries != null) {
@@ -232,6 +358,7 @@ public class ClasspathImpl implements Classpath {
                 ((ClasspathEntry) e.next()).close();
 
             entries = null;
+            index = null;
             iterator = null;
             currentEntry = null;
         }
@@ -242,6 +369,24 @@ public class ClasspathImpl implements Classpath {
         return entries.isEmpty();
     }
 
+    /**
+     * Returns qualified names of all classes found inside the directories
+     * and jar-files of the classpath. The classes provided by the release
+     * only are not included.
+     */
+    public Set getClassNames() {
+        return Collections.unmodifiableSet(index.keySet());
+    }
+
+    /**
+     * Returns qualified names of the classes found in more than one
+     * directory or jar-file of the classpath. Only the first of these
+     * classes is available.
+     */
+    public List getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
 
     /**
      * Report about all errors occurred while construction of ClasspathImpl.
@@ -259,7 +404,7 @@ public class ClasspathImpl implements Classpath {
      * constructor was being working. Ignorable path entries are not
      * taken into account here.
      *
-     * @see #createPathEntry(ClasspathEntry, String)
+     * @see #createPathEntry(String)
      */
     public int getNumErrors() {
         return errors.size() - sizeIgnorables;
@@ -330,13 +475,10 @@ public class ClasspathImpl implements Classpath {
         // generic names are no allowed here
         assert(name.indexOf('<') == -1 && name.indexOf('>') == -1);
 
-        for (Iterator e = entries.iterator(); e.hasNext();) {
-            try {
-                return ((ClasspathEntry) e.next()).findClass(name);
-            } catch (ClassNotFoundException exc) {
-                // just skip this entry
-            }
-        }
+        ClasspathEntry entry = (ClasspathEntry) index.get(name);
+        if (entry != null)
+            return entry.findClass(name);
+
         if (release != null) {
             InputStream is = release.findClass(name);
             if (is != null) {
@@ -346,49 +488,74 @@ public class ClasspathImpl implements Classpath {
         throw new ClassNotFoundException(name);
     }
 
+    /**
+     * Returns the content key of the entry which provides the class
+     * <code>name</code>, see {@link ClasspathEntry#getContentKey()}.
+     * The classes not found in the entries are looked for in the release,
+     * if any.
+     *
+     * @return content key or <code>null</code> if the class is provided
+     *         by an entry which content can't be identified.
+     */
+    public String getContentKey(String name) {
+        name = ExoticCharTools.decodeExotic(name);
+
+        ClasspathEntry entry = (ClasspathEntry) index.get(name);
+        if (entry != null)
+            return entry.getContentKey();
+
+        if (release != null)
+            return release.getContentKey();
+
+        return null;
+    }
+
     /**
      * Check if the given name is directory or zip-file name,
      * and create either new <b>DirectoryEntry</b> or new
-     * <b>JarFileEntry</b> instance correspondingly.
+     * <b>JarFileEntry</b> instance correspondingly. The <code>jrt:/</code>
+     * names and the directories of Java runtime images are provided by
+     * <b>JrtEntry</b>, the <code>.jmod</code> files by <b>JmodEntry</b>.
      *
      * @param name Qualified name of some directory or zip file.
      * @return New <b>ClasspathEntry</b> instance corresponding to
      *         the given <code>name</code>.
+     * @throws Throwable the reason why the entry can't be created.
      */
-    protected ClasspathEntry createPathEntry(ClasspathEntry previosEntry, String name) {
-        // try to create directory
-        Throwable t = null;
-
-        if (new File(name).isDirectory()) {
-            try {
-                Class c = Class.forName(DIRECTORY_ENTRY_IMPL);
-                Constructor ctor = c.getConstructor(new Class[]{ClasspathEntry.class, String.class});
-                return (ClasspathEntry) ctor.newInstance(new Object[]{previosEntry, name});
-            } catch (InvocationTargetException e) {
-                t = e.getTargetException();
-            } catch (Throwable th) {
-                t = th;
-            }
-
-        } else {
-            // try to create JarFile entry
+    protected ClasspathEntry createPathEntry(String name) throws Throwable {
+        String impl;
+        File file = new File(name);
+        if (name.startsWith(JrtEntry.JRT_PREFIX))
+            impl = JRT_ENTRY_IMPL;
+        else if (file.isDirectory())
+            impl = isRuntimeImage(file) ? JRT_ENTRY_IMPL : DIRECTORY_ENTRY_IMPL;
+        else if (name.endsWith(JmodEntry.JMOD_EXTENSION))
+            impl = JMOD_ENTRY_IMPL;
+        else
+            impl = JAR_ENTRY_IMPL;
+
+        Class c = Class.forName(impl);
+        try {
+            // the entry may depend on the release, e.g. multi-release jar file
+            Constructor ctor;
+            Object[] args;
             try {
-                Class c = Class.forName(JAR_ENTRY_IMPL);
-                Constructor ctor = c.getConstructor(new Class[]{ClasspathEntry.class, String.class});
-                return (ClasspathEntry) ctor.newInstance(new Object[]{previosEntry, name});
-            } catch (InvocationTargetException e) {
-                t = e.getTargetException();
-            } catch (Throwable th) {
-                t = th;
+                ctor = c.getConstructor(new Class[]{ClasspathEntry.class, String.class, Release.class});
+                args = new Object[]{null, name, release};
+            } catch (NoSuchMethodException e) {
+                ctor = c.getConstructor(new Class[]{ClasspathEntry.class, String.class});
+                args = new Object[]{null, name};
             }
+            return (ClasspathEntry) ctor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
         }
-        if (t != null) {
-            String invargs[] = {name, t.getMessage()};
-            errors.add(i18n.getString("ClasspathImpl.error.ignoring", invargs));
-            sizeIgnorables++;
-        }
+    }
 
-        return null;
+    /**
+     * Checks if the directory is the home of a modular Java runtime image.
+     */
+    private static boolean isRuntimeImage(File dir) {
+        return new File(dir, "lib" + File.separator + "modules").isFile();
     }
 }
-
@@ -123,7 +123,7 @@ class DirectoryEntry extends ClasspathEntry {
                 }
             }
         } catch (SecurityException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
         }
     }
@@ -30,12 +30,18 @@ package com.sun.tdk.signaturetest.classpath;
 import com.sun.tdk.signaturetest.SigTest;
 
 import com.sun.tdk.signaturetest.model.ExoticCharTools;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 
 /**
  * @author Maxim Sokolnikov
@@ -48,29 +54,124 @@ class JarFileEntry extends ClasspathEntry {
      */
     private JarFile jarfile;
 
+    /**
+     * Name of the jar file, used to compute the content key.
+     */
+    private String fileName;
+
+    /**
+     * Digest of the jar file, computed on demand.
+     */
+    private String contentKey;
+
+    /**
+     * Directory of the class files inside the jar file.
+     */
+    private final String prefix;
+
+    /**
+     * Release for which the classes of the multi-release jar file are selected.
+     */
+    private final int version;
+
+    /**
+     * Versioned entries by the class name, for the classes provided by
+     * the versioned directories of the multi-release jar file.
+     */
+    private Map versioned;
+
+    private boolean isMultiRelease;
+
+    private static final String VERSIONS_DIR = "META-INF/versions/";
+
+    /**
+     * Versioned directories are used starting from this release.
+     */
+    private static final int FIRST_VERSION = 9;
+
 
     public JarFileEntry(ClasspathEntry previous, String jarfile) throws IOException {
+        this(previous, jarfile, null, "");
+    }
+
+    /**
+     * Creates the entry providing the classes of the multi-release jar
+     * file for the given <code>release</code>, or for the running JDK if the
+     * <code>release</code> is <code>null</code>.
+     */
+    public JarFileEntry(ClasspathEntry previous, String jarfile, Release release) throws IOException {
+        this(previous, jarfile, release, "");
+    }
+
+    protected JarFileEntry(ClasspathEntry previous, String jarfile, Release release, String prefix) throws IOException {
         super(previous);
+        this.prefix = prefix;
+        this.version = (release == null ? Release.BOOT_CLASS_PATH : release).getVersion();
         init(jarfile);
     }
 
 
     public void init(String jarfile) throws IOException {
         this.jarfile = new JarFile(jarfile);
+        this.fileName = jarfile;
+
+        Manifest manifest = this.jarfile.getManifest();
+        isMultiRelease = manifest != null
+                && "true".equalsIgnoreCase(manifest.getMainAttributes().getValue("Multi-Release"));
 
         Enumeration entries = this.jarfile.entries();
         classes = new LinkedHashSet();
+        versioned = new HashMap();
+        Map versions = new HashMap();
         while (entries.hasMoreElements()) {
             String name = ((JarEntry) entries.nextElement()).getName();
-            if (name.endsWith(JAVA_CLASSFILE_EXTENSION)) {
-                name = name.substring(0, name.length() - JAVA_CLASSFILE_EXTENSION_LEN).replace('/', '.');
-                if (previousEntry==null || !previousEntry.contains(name))
-                    classes.add(name.intern());
+            if (!name.endsWith(JAVA_CLASSFILE_EXTENSION))
+                continue;
+
+            if (name.startsWith(VERSIONS_DIR)) {
+                // the versioned classes are never provided by their own names
+                int v = getEntryVersion(name);
+                if (!isMultiRelease || v < FIRST_VERSION || v > version)
+                    continue;
+
+                String className = getClassName(name.substring(name.indexOf('/', VERSIONS_DIR.length()) + 1));
+                Integer selected = (Integer) versions.get(className);
+                if (selected == null || selected.intValue() < v) {
+                    versions.put(className, Integer.valueOf(v));
+                    versioned.put(className, name);
+                }
+                addClass(className);
+            } else if (name.startsWith(prefix)) {
+                addClass(getClassName(name.substring(prefix.length())));
             }
         }
         currentPosition = classes.iterator();
     }
 
+    private void addClass(String name) {
+        if (previousEntry==null || !previousEntry.contains(name))
+            classes.add(name.intern());
+    }
+
+    private static String getClassName(String entryName) {
+        return entryName.substring(0, entryName.length() - JAVA_CLASSFILE_EXTENSION_LEN).replace('/', '.');
+    }
+
+    /**
+     * Returns the release of the versioned entry or -1 if the directory
+     * name isn't a number.
+     */
+    private static int getEntryVersion(String name) {
+        int end = name.indexOf('/', VERSIONS_DIR.length());
+        if (end == -1)
+            return -1;
+        try {
+            return Integer.parseInt(name.substring(VERSIONS_DIR.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
 
     /**
      * Closes zip/jar file.
@@ -81,12 +182,60 @@ class JarFileEntry extends ClasspathEntry {
                 jarfile.close();
             }
             catch (IOException e) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     e.printStackTrace();
             }
             jarfile = null;
             classes = null;
+            versioned = null;
+        }
+    }
+
+    /**
+     * Returns SHA-256 digest of the jar file content in hex.
+     * The jar file is read only once, when the key is requested first time.
+     */
+    public synchronized String getContentKey() {
+        if (contentKey == null && fileName != null) {
+            InputStream in = null;
+            try {
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                in = new FileInputStream(fileName);
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) > 0)
+                    md.update(buf, 0, n);
+
+                byte[] digest = md.digest();
+                StringBuffer sb = new StringBuffer(digest.length * 2);
+                for (int i = 0; i < digest.length; i++) {
+                    sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                    sb.append(Character.forDigit(digest[i] & 0xF, 16));
+                }
+                contentKey = sb.toString();
+                // the classes of multi-release jar depend on the release
+                if (isMultiRelease)
+                    contentKey += "-" + version;
+            } catch (IOException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+            } catch (NoSuchAlgorithmException e) {
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        if (SigTest.isDebug())
+                            e.printStackTrace();
+                    }
+                }
+            }
+            // don't try again
+            fileName = null;
         }
+        return contentKey;
     }
 
     /**
@@ -100,7 +249,11 @@ class JarFileEntry extends ClasspathEntry {
 
         name = ExoticCharTools.decodeExotic(name);
 
-        JarEntry jarEntry = jarfile.getJarEntry(name.replace('.', '/') + JAVA_CLASSFILE_EXTENSION);
+        String entryName = (String) versioned.get(name);
+        if (entryName == null)
+            entryName = prefix + name.replace('.', '/') + JAVA_CLASSFILE_EXTENSION;
+
+        JarEntry jarEntry = jarfile.getJarEntry(entryName);
         if (jarEntry == null)
             throw new ClassNotFoundException(name);
 
@@ -0,0 +1,46 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.classpath;
+
+import java.io.IOException;
+
+/**
+ * <b>JmodEntry</b> provides the classes of a <code>.jmod</code> file.
+ * The file is a zip file with the classes placed in the <code>classes</code>
+ * directory, so it's read in the same way as a jar file.
+ */
+class JmodEntry extends JarFileEntry {
+
+    static final String JMOD_EXTENSION = ".jmod";
+
+    private static final String CLASSES_DIR = "classes/";
+
+    public JmodEntry(ClasspathEntry previous, String jmodfile) throws IOException {
+        super(previous, jmodfile, null, CLASSES_DIR);
+    }
+}
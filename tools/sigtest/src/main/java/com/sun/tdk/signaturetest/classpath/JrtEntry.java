@@ -0,0 +1,191 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.classpath;
+
+import com.sun.tdk.signaturetest.SigTest;
+import com.sun.tdk.signaturetest.model.ExoticCharTools;
+import com.sun.tdk.signaturetest.util.I18NResourceBundle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>JrtEntry</b> provides the classes of the modules of a Java runtime
+ * image through the <code>jrt:/</code> file system. The entry is given either
+ * as <code>jrt:/</code> for all modules of the running Java runtime,
+ * as <code>jrt:/</code><i>module</i> for one of its modules, or as the home
+ * directory of another runtime image, e.g. created by jlink.
+ * <p/>
+ * The classes are enumerated module by module, the modules are sorted by name.
+ */
+class JrtEntry extends ClasspathEntry {
+
+    static final String JRT_PREFIX = "jrt:/";
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(JrtEntry.class);
+
+    private FileSystem fileSystem;
+
+    /**
+     * File system of another runtime image is closed with the entry,
+     * the file system of the running one can't be closed.
+     */
+    private boolean isOwnFileSystem;
+
+    /**
+     * Class files by the qualified class name.
+     */
+    private Map paths;
+
+    private String contentKey;
+
+
+    public JrtEntry(ClasspathEntry previous, String name) throws IOException {
+        super(previous);
+        init(name);
+    }
+
+    public void init(String name) throws IOException {
+        String module = "";
+        if (name.startsWith(JRT_PREFIX)) {
+            fileSystem = FileSystems.getFileSystem(URI.create(JRT_PREFIX));
+            module = name.substring(JRT_PREFIX.length());
+            // the running runtime is changed only together with its version
+            contentKey = "jrt-" + System.getProperty("java.vendor") + "-"
+                    + System.getProperty("java.runtime.version") + "-" + module;
+        } else {
+            fileSystem = FileSystems.newFileSystem(URI.create(JRT_PREFIX),
+                    Collections.singletonMap("java.home", new File(name).getAbsolutePath()));
+            isOwnFileSystem = true;
+        }
+
+        classes = new LinkedHashSet();
+        paths = new HashMap();
+        Path modules = fileSystem.getPath("/modules");
+        if (module.length() != 0) {
+            Path dir = modules.resolve(module);
+            if (!Files.isDirectory(dir))
+                throw new IOException(i18n.getString("JrtEntry.error.module", module));
+            scanModule(dir);
+        } else {
+            for (Iterator it = getModules(modules).iterator(); it.hasNext();)
+                scanModule((Path) it.next());
+        }
+        currentPosition = classes.iterator();
+    }
+
+    private static List getModules(Path modules) throws IOException {
+        List result = new ArrayList();
+        DirectoryStream stream = Files.newDirectoryStream(modules);
+        try {
+            for (Iterator it = stream.iterator(); it.hasNext();)
+                result.add(it.next());
+        } finally {
+            stream.close();
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private void scanModule(final Path module) throws IOException {
+        Files.walkFileTree(module, new SimpleFileVisitor() {
+            public FileVisitResult visitFile(Object file, BasicFileAttributes attrs) {
+                Path path = (Path) file;
+                String name = module.relativize(path).toString();
+                if (name.endsWith(JAVA_CLASSFILE_EXTENSION)) {
+                    name = name.substring(0, name.length() - JAVA_CLASSFILE_EXTENSION_LEN).replace('/', '.');
+                    if (!contains(name)) {
+                        name = name.intern();
+                        classes.add(name);
+                        paths.put(name, path);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public void close() {
+        if (fileSystem != null) {
+            if (isOwnFileSystem) {
+                try {
+                    fileSystem.close();
+                } catch (IOException e) {
+                    if (SigTest.isDebug())
+                        e.printStackTrace();
+                }
+            }
+            fileSystem = null;
+            classes = null;
+            paths = null;
+        }
+    }
+
+    /**
+     * Returns the key of the running runtime, the content of another
+     * runtime image can't be identified cheaply.
+     */
+    public String getContentKey() {
+        return contentKey;
+    }
+
+    /**
+     * Returns <b>InputStream</b> providing bytecode for the required class,
+     * if that class could be found by the given qualified name in <code>JrtEntry</code>.
+     *
+     * @param name Qualified name of the class requested.
+     * @throws ClassNotFoundException if the class was not found inside this <code>JrtEntry</code>.
+     */
+    public InputStream findClass(String name) throws IOException, ClassNotFoundException {
+
+        name = ExoticCharTools.decodeExotic(name);
+
+        Path path = (Path) paths.get(name);
+        if (path == null)
+            throw new ClassNotFoundException(name);
+
+        return Files.newInputStream(path);
+    }
+}
@@ -1,21 +1,33 @@
 package com.sun.tdk.signaturetest.classpath;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 
 public final class Release {
     public static final Release BOOT_CLASS_PATH = new Release('0', null);
 
     private final char version;
     private final String[] prefixes;
+    private Index index;
+    private IOException failure;
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(Release.class);
 
-    private Release(char version, String... prefixes) {
+    Release(char version, String... prefixes) {
         this.version = version;
         this.prefixes = prefixes;
     }
@@ -33,21 +45,93 @@ public final class Release {
         return RELEASES.get(ch);
     }
 
-    InputStream findClass(String name) {
+    /**
+     * Returns a string identifying the classes of this release.
+     * The classes of the running JDK are identified by its version,
+     * the bundled signatures are identified by the release number,
+     * they are changed only together with the sigtest version.
+     */
+    String getContentKey() {
+        if (prefixes == null) {
+            return "jdk-" + System.getProperty("java.vendor") + "-" + System.getProperty("java.runtime.version");
+        }
+        return "release-" + version;
+    }
+
+    /**
+     * Returns the number of this release, or the number of the running JDK
+     * for the boot class path.
+     */
+    public int getVersion() {
+        if (prefixes == null) {
+            String spec = System.getProperty("java.specification.version");
+            // 1.8 and older, then 9, 10, ...
+            return Integer.parseInt(spec.startsWith("1.") ? spec.substring(2) : spec);
+        }
+        return version < 'A' ? version - '0' : version - 'A' + 10;
+    }
+
+    InputStream findClass(String name) throws IOException {
         if (prefixes == null) {
             final String resourceName = name.replace('.', '/') + ".class";
             return ClassLoader.getSystemClassLoader().getResourceAsStream(resourceName);
-        } else {
-            for (String p : prefixes) {
-                final String resourceName = "/META-INF/sigtest/" + p + "/" + name.replace('.', '/') + ".sig";
-                InputStream is = Release.class.getResourceAsStream(resourceName);
-                if (is != null) {
-                    return is;
+        }
+        return open().find(name);
+    }
+
+    /**
+     * Reads the signatures of this release packed by the build into
+     * {@code /META-INF/sigtest-<release>.bin}, see {@code ListCtSym}.
+     * The file is inflated once, then the classes are found by
+     * the binary search of the sorted names.
+     *
+     * @throws IOException if the file is missing or can't be read,
+     *                     the same exception is thrown by the next calls
+     */
+    synchronized Index open() throws IOException {
+        if (index == null) {
+            if (failure != null)
+                throw failure;
+            String resourceName = "/META-INF/sigtest-" + version + ".bin";
+            InputStream is = Release.class.getResourceAsStream(resourceName);
+            try {
+                if (is == null)
+                    throw new FileNotFoundException(i18n.getString("Release.error.notfound", resourceName));
+                try (DataInputStream in = new DataInputStream(new InflaterInputStream(new BufferedInputStream(is, 65536)))) {
+                    index = new Index(in);
                 }
+            } catch (IOException ex) {
+                failure = ex;
+                throw ex;
             }
-            return null;
         }
+        return index;
+    }
 
+    static final class Index {
+        private final String[] names;
+        private final int[] offsets;
+        private final byte[] data;
+
+        Index(DataInputStream in) throws IOException {
+            int count = in.readInt();
+            data = new byte[in.readInt()];
+            names = new String[count];
+            offsets = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                names[i] = in.readUTF();
+                offsets[i + 1] = offsets[i] + in.readInt();
+            }
+            in.readFully(data);
+        }
+
+        InputStream find(String name) {
+            int i = Arrays.binarySearch(names, name);
+            if (i < 0) {
+                return null;
+            }
+            return new ByteArrayInputStream(data, offsets[i], offsets[i + 1] - offsets[i]);
+        }
     }
 
     private static final Map<Character, Release> RELEASES;
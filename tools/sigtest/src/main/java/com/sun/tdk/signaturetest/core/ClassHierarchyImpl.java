@@ -68,9 +68,7 @@ public class ClassHierarchyImpl implements ClassHierarchy {
     }
 
     public List /* String */ getSuperClasses(String fqClassName) throws ClassNotFoundException {
-        List superclasses = new ArrayList();
-        findSuperclasses(fqClassName, superclasses);
-        return superclasses;
+        return new ArrayList(Arrays.asList(findSuperclasses(fqClassName)));
     }
 
     public String[] getSuperInterfaces(String fqClassName) throws ClassNotFoundException {
@@ -79,48 +77,67 @@ public class ClassHierarchyImpl implements ClassHierarchy {
     }
 
     public Set /* String */ getAllImplementedInterfaces(String fqClassName) throws ClassNotFoundException {
-        Set intfs = new HashSet();
-        findAllImplementedInterfaces(fqClassName, intfs);
-        return intfs;
+        return new HashSet(Arrays.asList(findAllImplementedInterfaces(fqClassName)));
     }
 
-    private void findSuperclasses(String fqname, List supers) throws ClassNotFoundException {
+    /**
+     * Returns all superclasses of the class starting with the direct one.
+     * The result is computed once per class and must not be modified.
+     */
+    private String[] findSuperclasses(String fqname) throws ClassNotFoundException {
         ClassInfo info = getClassInfo(fqname);
-        String supr = info.superClass;
-        if (supr != null) {
-            supers.add(supr);
-            findSuperclasses(supr, supers);
+        if (info.allSuperClasses == null) {
+            String supr = info.superClass;
+            if (supr == null) {
+                info.allSuperClasses = EMPTY_STRING_ARRAY;
+            } else {
+                String[] supers = findSuperclasses(supr);
+                String[] result = new String[supers.length + 1];
+                result[0] = supr;
+                System.arraycopy(supers, 0, result, 1, supers.length);
+                info.allSuperClasses = result;
+            }
         }
+        return info.allSuperClasses;
     }
 
-    private void findAllImplementedInterfaces(String fqname, Set implementedInterfaces) throws ClassNotFoundException {
-
-        List superClasses = new ArrayList();
-
+    /**
+     * Returns all interfaces implemented by the class or by its superclasses.
+     * The result is computed once per class and must not be modified.
+     */
+    private String[] findAllImplementedInterfaces(String fqname) throws ClassNotFoundException {
         ClassInfo info = getClassInfo(fqname);
-
-        String[] intfs = info.superInterfaces;
-        for (int j = 0; j < intfs.length; ++j) {
-            implementedInterfaces.add(intfs[j]);
-            superClasses.add(intfs[j]);
-        }
-
-        findSuperclasses(fqname, superClasses);
-
-        for (int i = 0; i < superClasses.size(); ++i) {
-            findSuperInterfaces((String) superClasses.get(i), implementedInterfaces);
+        if (info.allImplementedInterfaces == null) {
+            Set implementedInterfaces = new LinkedHashSet();
+            implementedInterfaces.addAll(Arrays.asList(findSuperInterfaces(fqname)));
+            if (info.superClass != null)
+                implementedInterfaces.addAll(Arrays.asList(findAllImplementedInterfaces(info.superClass)));
+            info.allImplementedInterfaces = (String[]) implementedInterfaces.toArray(EMPTY_STRING_ARRAY);
         }
+        return info.allImplementedInterfaces;
     }
 
-    private void findSuperInterfaces(String fqname, Set supers) throws ClassNotFoundException {
-
+    /**
+     * Returns the direct superinterfaces of the class and all their
+     * superinterfaces. The result is computed once per class and must not
+     * be modified.
+     */
+    private String[] findSuperInterfaces(String fqname) throws ClassNotFoundException {
         ClassInfo info = getClassInfo(fqname);
-
-        String[] intf = info.superInterfaces;
-        for (int i = 0; i < intf.length; i++) {
-            supers.add(intf[i]);
-            findSuperInterfaces(intf[i], supers);
+        if (info.allSuperInterfaces == null) {
+            String[] intf = info.superInterfaces;
+            if (intf.length == 0) {
+                info.allSuperInterfaces = EMPTY_STRING_ARRAY;
+            } else {
+                Set supers = new LinkedHashSet();
+                for (int i = 0; i < intf.length; i++) {
+                    supers.add(intf[i]);
+                    supers.addAll(Arrays.asList(findSuperInterfaces(intf[i])));
+                }
+                info.allSuperInterfaces = (String[]) supers.toArray(EMPTY_STRING_ARRAY);
+            }
         }
+        return info.allSuperInterfaces;
     }
 
 
@@ -135,8 +152,28 @@ public class ClassHierarchyImpl implements ClassHierarchy {
         return result;
     }
 
+    /**
+     * Returns the direct and indirect subclasses and subinterfaces of the
+     * class. Only the classes already processed by this hierarchy are known.
+     */
     public String[] getAllSubclasses(String fqClassName) {
-        throw new UnsupportedOperationException("This method is not implemented");
+
+        Set subClasses = new LinkedHashSet();
+        LinkedList queue = new LinkedList();
+        queue.add(fqClassName);
+
+        while (!queue.isEmpty()) {
+            List direct = (List) directSubClasses.get(queue.removeFirst());
+            if (direct != null) {
+                for (Iterator it = direct.iterator(); it.hasNext();) {
+                    String name = (String) it.next();
+                    if (subClasses.add(name))
+                        queue.add(name);
+                }
+            }
+        }
+
+        return (String[]) subClasses.toArray(EMPTY_STRING_ARRAY);
     }
 
     public String[] getNestedClasses(String fqClassName) {
@@ -147,15 +184,21 @@ public class ClassHierarchyImpl implements ClassHierarchy {
 
         assert subClassName != null && superClassName != null;
 
+        // the superclasses are loaded only up to the matched one,
+        // the closure is used if it's already computed
         String name = subClassName;
         do {
             ClassInfo info = getClassInfo(name);
+            if (info.allSuperClasses != null)
+                return Arrays.asList(info.allSuperClasses).contains(superClassName);
             if (superClassName.equals(info.superClass))
                 return true;
             name = info.superClass;
 
         } while (name != null);
 
+        // all superclasses are loaded now
+        findSuperclasses(subClassName);
         return false;
     }
 
@@ -333,6 +376,11 @@ public class ClassHierarchyImpl implements ClassHierarchy {
         int modifiers = 0;
         boolean isVisibleOutside;
 
+        // closures computed on demand
+        String[] allSuperClasses = null;
+        String[] allSuperInterfaces = null;
+        String[] allImplementedInterfaces = null;
+
         public ClassInfo(ClassDescription c, boolean accessable, boolean visible) {
 
             modifiers = c.getModifiers();
@@ -379,7 +427,7 @@ public class ClassHierarchyImpl implements ClassHierarchy {
                 result = c.getClassHierarchy().isClassVisibleOutside(c);
             }
             catch (ClassNotFoundException e) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     e.printStackTrace();
             }
             return result;
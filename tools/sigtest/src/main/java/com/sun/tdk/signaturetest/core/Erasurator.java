@@ -60,13 +60,23 @@ public class Erasurator {
     private Map globalParameters = new HashMap();
     private Map localParameters = new HashMap();
 
+    /**
+     * Converted signatures by the original ones, valid while the global
+     * parameters aren't changed.
+     */
+    private Map converted = new HashMap();
+    private static final int MAX_CONVERTED = 8192;
+
     private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(Erasurator.class);
 
     public ClassDescription erasure(ClassDescription clz) {
 
         ClassDescription result = (ClassDescription) clz.clone();
 
-        globalParameters.clear();
+        if (globalParameters.size() != 0) {
+            globalParameters.clear();
+            converted.clear();
+        }
 
         if (result.getTypeParameters() != null) {
             parseTypeParameters(result);
@@ -80,7 +90,10 @@ public class Erasurator {
 
         ClassDescription result = (ClassDescription) clz.clone();
 
-        globalParameters.clear();
+        if (globalParameters.size() != 0) {
+            globalParameters.clear();
+            converted.clear();
+        }
 
         if (result.getTypeParameters() != null) {
             parseTypeParameters(result);
@@ -90,43 +103,100 @@ public class Erasurator {
         return result;
     }
 
-    private static String convert(String s, Map globalParameters, Map localParameters) {
-
-        Matcher m;
-        String newS = s;
+    private String convert(String s) {
 
-        while (newS.indexOf('<') != -1) {
-            assert newS.indexOf('>') != -1;
-            m = simpleParamUsage.matcher(newS);
-            newS = m.replaceAll("");
+        // the result depends on the parameters, so only the signatures
+        // converted without the local parameters are reused
+        boolean reuse = localParameters.size() == 0;
+        if (reuse) {
+            String result = (String) converted.get(s);
+            if (result != null)
+                return result;
         }
 
-        if (globalParameters.size() == 0 && localParameters.size() == 0)
-            return newS;  // nothing to do
+        String newS = removeTypeArguments(s);
+        boolean resolved = true;
 
-        m = replaceParamUsage.matcher(newS);
-        while (m.find()) {
-            String param = m.group();
-            if (globalParameters.containsKey(param)) {
-                newS = m.replaceFirst((String) globalParameters.get(param));
-                m = replaceParamUsage.matcher(newS);
-                continue;
-            }
-            if (localParameters.containsKey(param)) {
-                newS = m.replaceFirst((String) localParameters.get(param));
-                m = replaceParamUsage.matcher(newS);
-                continue;
-            }
+        if (globalParameters.size() != 0 || localParameters.size() != 0) {
 
-            System.out.println(i18n.getString("Erasurator.error.unresolved", param));
+            // parameter is enclosed in the braces, its bound may contain
+            // other parameters, so the search starts again after each
+            // replacement. The first parameter found by the search is
+            // replaced, it isn't the current one if that one is unresolved.
+            int pos = 0;
+            int first = -1;
+            while (true) {
+                int start = newS.indexOf('{', pos);
+                if (start == -1)
+                    break;
+                int end = newS.indexOf('}', start + 2);
+                if (end == -1)
+                    break;
+                if (first == -1)
+                    first = start;
+
+                String param = newS.substring(start, end + 1);
+                String value = (String) globalParameters.get(param);
+                if (value == null)
+                    value = (String) localParameters.get(param);
+
+                if (value != null) {
+                    int firstEnd = newS.indexOf('}', first + 2);
+                    newS = newS.substring(0, first) + unmaskDollar(value) + newS.substring(firstEnd + 1);
+                    pos = 0;
+                    first = -1;
+                } else {
+                    resolved = false;
+                    System.out.println(i18n.getString("Erasurator.error.unresolved", param));
+                    pos = end + 1;
+                }
+            }
         }
 
+        if (reuse && resolved) {
+            if (converted.size() >= MAX_CONVERTED)
+                converted.clear();
+            converted.put(s, newS);
+        }
         return newS;
     }
 
+    /**
+     * Removes all type arguments, including the nested ones, from
+     * the signature.
+     */
+    private static String removeTypeArguments(String s) {
+
+        int pos = s.indexOf('<');
+        if (pos == -1)
+            return s;
+
+        StringBuffer sb = new StringBuffer(s.length());
+        int level = 0;
+        int start = 0;
+        for (int i = pos; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '<') {
+                if (level++ == 0)
+                    sb.append(s.substring(start, i));
+            } else if (c == '>' && level > 0) {
+                if (--level == 0)
+                    start = i + 1;
+            }
+        }
+        assert level == 0 : s;
+        if (level != 0)
+            return s;
+
+        sb.append(s.substring(start));
+        return sb.toString();
+    }
+
     public void parseTypeParameters(ClassDescription classDescr) {
-        if (classDescr.getTypeParameters() != null)
+        if (classDescr.getTypeParameters() != null) {
             parseTypeParameters(classDescr, globalParameters);
+            converted.clear();
+        }
     }
 
 
@@ -214,6 +284,8 @@ public class Erasurator {
 
         if (mr.getTypeParameters() != null)
             parseTypeParameters(mr, localParameters);
+        else if (!isGeneric(mr.getArgs()) && !isGeneric(mr.getType()) && !isGeneric(mr.getThrowables()))
+            return mr;  // nothing to erase, the member is shared
 
         MemberDescription cloned_m = mr;
         if (!dontClone)
@@ -224,19 +296,19 @@ public class Erasurator {
         String args = cloned_m.getArgs();
 
         if (!MemberDescription.NO_ARGS.equals(args))
-            cloned_m.setArgs(convert(args, globalParameters, localParameters));
+            cloned_m.setArgs(convert(args));
 
         String type = cloned_m.getType();
         if (!MemberDescription.NO_TYPE.equals(type))
-            cloned_m.setType(convert(type, globalParameters, localParameters));
+            cloned_m.setType(convert(type));
         
         String ths = cloned_m.getThrowables();
         if (!MemberDescription.EMPTY_THROW_LIST.equals(ths))
-            cloned_m.setThrowables(convert(ths, globalParameters, localParameters));
+            cloned_m.setThrowables(convert(ths));
 
 
         // just for debugging
-        if (SigTest.debug) {
+        if (SigTest.isDebug()) {
             String s = cloned_m.toString();
             /*
              *annotation value can be parametrized class
@@ -254,6 +326,10 @@ public class Erasurator {
     }
 
 
+    private static boolean isGeneric(String s) {
+        return s != null && (s.indexOf('<') != -1 || s.indexOf('{') != -1);
+    }
+
     // TODO weak performance; use indexOf instead of charAt()
     public static ArrayList splitParameters(String actualTypeParams) {
         ArrayList paramList = new ArrayList();
@@ -318,7 +394,7 @@ public class Erasurator {
             if (skipRawTypes && actual.indexOf('%') == -1)
                 continue;
 
-            String key = "\\{" + fqn + "%" + i + "\\}";
+            String key = "{" + fqn + "%" + i + "}";
             replaceFormalParameters(newFid, key, actual);
         }
 
@@ -328,32 +404,45 @@ public class Erasurator {
 
     private static void replaceFormalParameters(MemberDescription mr, String formalParam, String actualParam) {
 
-        String actual = maskDollar(actualParam);
-        Pattern p = Pattern.compile(maskDollar(formalParam));
-        Matcher m;
-
         String args = mr.getArgs();
 
         if (!MemberDescription.NO_ARGS.equals(args)) {
-            m = p.matcher(args);
-            mr.setArgs(m.replaceAll(actual));
+            mr.setArgs(replace(args, formalParam, actualParam));
         }
 
         String type = mr.getType();
         if (!MemberDescription.NO_TYPE.equals(type)) {
-            m = p.matcher(type);
-            mr.setType(m.replaceAll(actual));
+            mr.setType(replace(type, formalParam, actualParam));
         }            
 
         if (mr.isSuperInterface() || mr.isSuperClass()) {
             String typeParams = mr.getTypeParameters();
             if (typeParams != null) {
-                m = p.matcher(typeParams);
-                mr.setTypeParameters(m.replaceAll(actual));
+                mr.setTypeParameters(replace(typeParams, formalParam, actualParam));
             }
         }
     }
 
+    /**
+     * Replaces all occurrences of <code>from</code> in <code>s</code>
+     * by <code>to</code>.
+     */
+    private static String replace(String s, String from, String to) {
+        int pos = s.indexOf(from);
+        if (pos == -1)
+            return s;
+
+        StringBuffer sb = new StringBuffer(s.length() + to.length());
+        int start = 0;
+        do {
+            sb.append(s.substring(start, pos)).append(to);
+            start = pos + from.length();
+            pos = s.indexOf(from, start);
+        } while (pos != -1);
+        sb.append(s.substring(start));
+        return sb.toString();
+    }
+
     private static String maskDollar(String str) {
         int pos;
         String tmp = str, result = "";
@@ -372,12 +461,12 @@ public class Erasurator {
         return result;
     }
 
+    private static String unmaskDollar(String str) {
+        return str.indexOf('$') == -1 ? str : replace(str, "\\$", "$");
+    }
+
 
     // begin of line + % + any numbers
     private static Pattern simpleParamName = Pattern.compile("^%\\d+?");
-    //    private static Pattern simpleParamUsage = Pattern.compile("<.+?>");
-    private static Pattern simpleParamUsage = Pattern.compile("<[^<>]+?>");
-
-    private static Pattern replaceParamUsage = Pattern.compile("\\{.+?\\}");
 
 }
@@ -0,0 +1,362 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.SigTest;
+import com.sun.tdk.signaturetest.Version;
+import com.sun.tdk.signaturetest.errors.DeferredErrorFormatter;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.ClassDescriptionCodec;
+import com.sun.tdk.signaturetest.util.I18NResourceBundle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * State of the incremental signature test: the results of the class checks
+ * of the previous run keyed by the digest of everything the check depends on.
+ * The key of a class is computed by the caller from the signature file
+ * description and the bytes of the tested class and of their supertypes,
+ * see {@link #digest(ClassDescription)} and {@link #digest(InputStream)}.
+ * The result of a class whose key isn't changed is replayed instead of
+ * checking the class again.
+ * <p/>
+ * The result of a check is the list of the events recorded by
+ * {@link DeferredErrorFormatter}, the names of the tracked classes and
+ * the stored error messages. The state is reused only by the runs of the
+ * same sigtest version with the same settings.
+ *
+ * @see com.sun.tdk.signaturetest.SignatureTest
+ */
+public class IncrementalState {
+
+    private static final int MAGIC = 0x53494749;
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(IncrementalState.class);
+
+    private final String settings;
+
+    /**
+     * Records of the previous run by the class name.
+     */
+    private final Map records = new HashMap();
+
+    /**
+     * Records reused or created in this run, only they are written.
+     */
+    private final Map current = new HashMap();
+
+    private int reused = 0;
+
+    public IncrementalState(String settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Reads the state from the file <code>f</code>. The state is empty
+     * if the file doesn't exist, is damaged or was written by another
+     * version or with other <code>settings</code>.
+     */
+    public static IncrementalState read(File f, String settings) {
+        IncrementalState state = new IncrementalState(settings);
+        if (!f.isFile())
+            return state;
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))));
+            if (in.readInt() != MAGIC || !Version.Number.equals(in.readUTF()) || !settings.equals(in.readUTF()))
+                return state;
+
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String name = in.readUTF();
+                String key = in.readUTF();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                state.records.put(name, new Record(key, data));
+            }
+        } catch (IOException e) {
+            // damaged state is ignored, all classes are checked again
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            state.records.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    if (SigTest.isDebug())
+                        e.printStackTrace();
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Writes the results of this run to the temporary file and renames it
+     * to <code>f</code>. The results of the classes which were neither
+     * checked nor reused in this run are dropped.
+     */
+    public void write(File f) throws IOException {
+        File dir = f.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("sigtest", ".tmp", dir);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeUTF(Version.Number);
+            out.writeUTF(settings);
+            out.writeInt(current.size());
+            for (Iterator it = current.entrySet().iterator(); it.hasNext();) {
+                Map.Entry e = (Map.Entry) it.next();
+                Record r = (Record) e.getValue();
+                out.writeUTF((String) e.getKey());
+                out.writeUTF(r.key);
+                out.writeInt(r.data.length);
+                out.write(r.data);
+            }
+        } finally {
+            out.close();
+        }
+
+        f.delete();
+        if (!tmp.renameTo(f)) {
+            tmp.delete();
+            throw new IOException(i18n.getString("IncrementalState.error.write", f.getPath()));
+        }
+    }
+
+    /**
+     * Returns the result of the class stored by the previous run with
+     * the same <code>key</code>, or <code>null</code>.
+     */
+    public Result get(String name, String key) {
+        Record r = (Record) records.get(name);
+        if (r == null || key == null || !key.equals(r.key))
+            return null;
+
+        try {
+            Result result = Result.read(r.data);
+            current.put(name, r);
+            reused++;
+            return result;
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of the class checked in this run. The result
+     * which can't be written isn't stored, the class will be checked
+     * by the next run again.
+     */
+    public void put(String name, String key, Result result) {
+        if (key == null)
+            return;
+
+        try {
+            current.put(name, new Record(key, result.write()));
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the number of the results reused in this run.
+     */
+    public int getReusedCount() {
+        return reused;
+    }
+
+    /**
+     * Returns SHA-256 digest of the class description in hex,
+     * or <code>null</code> if the description can't be written.
+     */
+    public static String digest(ClassDescription c) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            ClassDescriptionCodec.write(c, new DataOutputStream(buffer));
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            return null;
+        }
+        MessageDigest md = createDigest();
+        md.update(buffer.toByteArray());
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns SHA-256 digest of the stream content in hex.
+     * The stream is read to the end but not closed.
+     */
+    public static String digest(InputStream in) throws IOException {
+        MessageDigest md = createDigest();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0)
+            md.update(buf, 0, n);
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns SHA-256 digest of the list of strings in hex,
+     * or <code>null</code> if some of the strings is <code>null</code>.
+     */
+    public static String digest(List strings) {
+        MessageDigest md = createDigest();
+        for (Iterator it = strings.iterator(); it.hasNext();) {
+            String s = (String) it.next();
+            if (s == null)
+                return null;
+            try {
+                md.update(s.getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+            md.update((byte) 0);
+        }
+        return toHex(md.digest());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuffer sb = new StringBuffer(digest.length * 2);
+        for (int i = 0; i < digest.length; i++) {
+            sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(digest[i] & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Result of the check of one class.
+     */
+    public static class Result {
+        private final List events;
+        private final Set trackedClassNames;
+        private final Set errorMessages;
+
+        /**
+         * @param events            events recorded by {@link DeferredErrorFormatter}
+         * @param trackedClassNames names of the classes tracked by the check
+         * @param errorMessages     error messages stored by the check
+         */
+        public Result(List events, Set trackedClassNames, Set errorMessages) {
+            this.events = events;
+            this.trackedClassNames = trackedClassNames;
+            this.errorMessages = errorMessages;
+        }
+
+        public List getEvents() {
+            return events;
+        }
+
+        public Set getTrackedClassNames() {
+            return Collections.unmodifiableSet(trackedClassNames);
+        }
+
+        public Set getErrorMessages() {
+            return Collections.unmodifiableSet(errorMessages);
+        }
+
+        byte[] write() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            DeferredErrorFormatter.writeEvents(events, out);
+            writeSet(trackedClassNames, out);
+            writeSet(errorMessages, out);
+            out.close();
+            return buffer.toByteArray();
+        }
+
+        static Result read(byte[] data) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            List events = DeferredErrorFormatter.readEvents(in);
+            Set trackedClassNames = readSet(in);
+            Set errorMessages = readSet(in);
+            return new Result(events, trackedClassNames, errorMessages);
+        }
+
+        private static void writeSet(Set set, DataOutputStream out) throws IOException {
+            out.writeInt(set.size());
+            for (Iterator it = set.iterator(); it.hasNext();)
+                out.writeUTF((String) it.next());
+        }
+
+        private static Set readSet(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            Set set = new HashSet();
+            for (int i = 0; i < n; i++)
+                set.add(in.readUTF());
+            return set;
+        }
+    }
+
+    private static class Record {
+        private final String key;
+        private final byte[] data;
+
+        Record(String key, byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Distributes the indexes of the items among the workers and collects
+ * their results, so that the results can be consumed in the order of
+ * the items while the workers process them in parallel.
+ * <p/>
+ * Each worker takes the indexes by {@link #next()} and passes the result
+ * to {@link #put(int, Object)}, or the failure to {@link #fail(Throwable)}
+ * which stops all workers. The consumer waits for the results by
+ * {@link #take(int)}.
+ */
+public class OrderedResults {
+
+    private final int count;
+    private final Object[] results;
+    private int nextIndex = 0;
+    private Throwable failure = null;
+
+    public OrderedResults(int count) {
+        this.count = count;
+        results = new Object[count];
+    }
+
+    /**
+     * Returns index of the next item to process, or -1 if there are
+     * no more items or some worker failed.
+     */
+    public synchronized int next() {
+        if (nextIndex >= count || failure != null)
+            return -1;
+        return nextIndex++;
+    }
+
+    /**
+     * Stores the result of the item, it must not be <code>null</code>.
+     */
+    public synchronized void put(int index, Object result) {
+        results[index] = result;
+        notifyAll();
+    }
+
+    public synchronized void fail(Throwable t) {
+        if (failure == null)
+            failure = t;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the result of the item with the given index. The failure
+     * of a worker is rethrown.
+     */
+    public synchronized Object take(int index) throws IOException {
+        while (results[index] == null && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        Object result = results[index];
+        if (result == null) {
+            if (failure instanceof IOException)
+                throw (IOException) failure;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure instanceof Error)
+                throw (Error) failure;
+            throw new Error(failure);
+        }
+        results[index] = null;
+        return result;
+    }
+}
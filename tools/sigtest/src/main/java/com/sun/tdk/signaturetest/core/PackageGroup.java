@@ -28,7 +28,6 @@
 package com.sun.tdk.signaturetest.core;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -59,6 +58,12 @@ public class PackageGroup {
      */
     private List group;
 
+    /**
+     * The same packages in the tree by the name components, the class name
+     * is checked by one walk down the tree.
+     */
+    private Node root = new Node();
+
     /**
      * Create empty list of packages, and decide if subpackages
      * should be implied.
@@ -81,11 +86,28 @@ public class PackageGroup {
      */
     public void addPackage(String packageName) {
         group.add(packageName);
+
+        Node node = root;
+        int len = packageName.endsWith(".") ? packageName.length() - 1 : packageName.length();
+        if (len > 0) {
+            int start = 0;
+            int end;
+            do {
+                end = packageName.indexOf('.', start);
+                if (end == -1 || end > len)
+                    end = len;
+                node = node.add(packageName.substring(start, end));
+                start = end + 1;
+            } while (end < len);
+        }
+        node.isPackage = true;
+        if (len == packageName.length())
+            node.isClass = true;
     }
 
     public void addPackages(String[] packageNames) {
         for (int i = 0; i < packageNames.length; ++i)
-            group.add(packageNames[i]);
+            addPackage(packageNames[i]);
     }
 
 
@@ -97,21 +119,100 @@ public class PackageGroup {
      * listed here.
      */
     public boolean checkName(String className) {
-        for (Iterator i = group.iterator(); i.hasNext();) {
-            String pack = (String) i.next();
-            if ((className.startsWith(getPackageName(pack)) &&
-                    ((className.lastIndexOf('.') <= pack.length()) || isSubpackagesUses)) || className.equals(pack))
+
+        if (root.isPackage && (isSubpackagesUses || className.lastIndexOf('.') <= 0))
+            return true;
+
+        Node node = root;
+        int start = 0;
+        while (true) {
+            int end = className.indexOf('.', start);
+            node = node.find(className, start, end == -1 ? className.length() : end);
+            if (node == null)
+                return false;
+
+            // the class name equals to the package name
+            if (end == -1)
+                return node.isClass;
+
+            if (node.isPackage && (isSubpackagesUses || className.indexOf('.', end + 1) == -1))
                 return true;
+
+            start = end + 1;
         }
-        return false;
     }
 
     /**
-     * Terminate the given package <code>name</code> with the dot symbol,
-     * if the <code>name</code> is nonempty.
+     * Component of the package name and the following components
+     * sorted by name.
      */
-    private static String getPackageName(String name) {
-        return name + ((name.endsWith(".") || name.equals("")) ? "" : ".");
+    private static class Node {
+
+        private static final String[] EMPTY_NAMES = new String[0];
+        private static final Node[] EMPTY_NODES = new Node[0];
+
+        // the classes of the package are included
+        private boolean isPackage = false;
+        // the class with the package name is included
+        private boolean isClass = false;
+        private String[] names = EMPTY_NAMES;
+        private Node[] nodes = EMPTY_NODES;
+
+        Node add(String name) {
+            int pos = search(name, 0, name.length());
+            if (pos >= 0)
+                return nodes[pos];
+
+            pos = -pos - 1;
+            String[] newNames = new String[names.length + 1];
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(names, 0, newNames, 0, pos);
+            System.arraycopy(nodes, 0, newNodes, 0, pos);
+            System.arraycopy(names, pos, newNames, pos + 1, names.length - pos);
+            System.arraycopy(nodes, pos, newNodes, pos + 1, nodes.length - pos);
+            newNames[pos] = name;
+            newNodes[pos] = new Node();
+            names = newNames;
+            nodes = newNodes;
+            return newNodes[pos];
+        }
+
+        /**
+         * Finds the node by the part of <code>s</code> between
+         * <code>start</code> and <code>end</code>.
+         */
+        Node find(String s, int start, int end) {
+            int pos = search(s, start, end);
+            return pos >= 0 ? nodes[pos] : null;
+        }
+
+        private int search(String s, int start, int end) {
+            int low = 0;
+            int high = names.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(names[mid], s, start, end);
+                if (cmp < 0)
+                    low = mid + 1;
+                else if (cmp > 0)
+                    high = mid - 1;
+                else
+                    return mid;
+            }
+            return -(low + 1);
+        }
+
+        private static int compare(String name, String s, int start, int end) {
+            int len = end - start;
+            int n = Math.min(name.length(), len);
+            for (int i = 0; i < n; i++) {
+                char c1 = name.charAt(i);
+                char c2 = s.charAt(start + i);
+                if (c1 != c2)
+                    return c1 - c2;
+            }
+            return name.length() - len;
+        }
     }
 
 }
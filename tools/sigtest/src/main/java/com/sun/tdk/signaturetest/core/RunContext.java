@@ -0,0 +1,191 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.plugin.Filter;
+import com.sun.tdk.signaturetest.plugin.PluginAPI.InjectionPoint;
+import com.sun.tdk.signaturetest.plugin.Transformer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of one run of Setup, SignatureTest or Merge which were kept in
+ * the static fields: the debug and verbose modes, tracking of the constant
+ * values and of the Tiger features, the binary mode and the plugins' filters
+ * and transformers.
+ * <p/>
+ * The context is bound to the thread running the tool and is inherited by
+ * the threads started by it, so the runs in the different threads don't
+ * affect each other. Each run gets a copy of the context of the calling
+ * thread, see {@link #enter()}.
+ *
+ * @see com.sun.tdk.signaturetest.SigTest
+ */
+public class RunContext {
+
+    private static final InheritableThreadLocal current = new InheritableThreadLocal() {
+        protected Object initialValue() {
+            return new RunContext();
+        }
+    };
+
+    private boolean debug = false;
+    private boolean verbose = false;
+    private boolean constantValuesTracked = true;
+    private boolean tigerFeaturesTracked = isTigerRuntime();
+    private boolean binaryMode = false;
+
+    /**
+     * Filters and transformers of the plugins, keyed by the injection point.
+     * The maps are never modified, the setters replace them with the
+     * modified copies, so they are read on each loaded class without locking.
+     */
+    private volatile Map filters = Collections.EMPTY_MAP;
+    private volatile Map transformers = Collections.EMPTY_MAP;
+
+    public RunContext() {
+    }
+
+    /**
+     * Creates the copy of the <code>context</code>.
+     */
+    public RunContext(RunContext context) {
+        debug = context.debug;
+        verbose = context.verbose;
+        constantValuesTracked = context.constantValuesTracked;
+        tigerFeaturesTracked = context.tigerFeaturesTracked;
+        binaryMode = context.binaryMode;
+        filters = context.filters;
+        transformers = context.transformers;
+    }
+
+    /**
+     * Returns the context of the current thread.
+     */
+    public static RunContext getCurrent() {
+        return (RunContext) current.get();
+    }
+
+    /**
+     * Binds the copy of the current context to the current thread.
+     *
+     * @return the context to be restored by {@link #restore(RunContext)}
+     *         at the end of the run.
+     */
+    public static RunContext enter() {
+        RunContext previous = getCurrent();
+        current.set(new RunContext(previous));
+        return previous;
+    }
+
+    public static void restore(RunContext context) {
+        current.set(context);
+    }
+
+    private static boolean isTigerRuntime() {
+        // Turn isTigerFeaturesTracked on if SigTest is running on Java version >= 5.0
+        try {
+            String specVersion = System.getProperty("java.specification.version");
+            return "1.5".compareTo(specVersion) <= 0;
+        }
+        catch (SecurityException e) {
+            // suppress the exception
+            return false;
+        }
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
+
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    public boolean isConstantValuesTracked() {
+        return constantValuesTracked;
+    }
+
+    public void setConstantValuesTracked(boolean constantValuesTracked) {
+        this.constantValuesTracked = constantValuesTracked;
+    }
+
+    public boolean isTigerFeaturesTracked() {
+        return tigerFeaturesTracked;
+    }
+
+    public void setTigerFeaturesTracked(boolean tigerFeaturesTracked) {
+        this.tigerFeaturesTracked = tigerFeaturesTracked;
+    }
+
+    /**
+     * Returns true if the binary compatibility is checked, the modifiers
+     * which don't affect it are not tracked then.
+     *
+     * @see com.sun.tdk.signaturetest.model.Modifier#isTracked()
+     */
+    public boolean isBinaryMode() {
+        return binaryMode;
+    }
+
+    public void setBinaryMode(boolean binaryMode) {
+        this.binaryMode = binaryMode;
+    }
+
+    public Filter getFilter(InjectionPoint injectionPoint) {
+        return (Filter) filters.get(injectionPoint);
+    }
+
+    public synchronized void setFilter(InjectionPoint injectionPoint, Filter filter) {
+        filters = put(filters, injectionPoint, filter);
+    }
+
+    public Transformer getTransformer(InjectionPoint injectionPoint) {
+        return (Transformer) transformers.get(injectionPoint);
+    }
+
+    public synchronized void setTransformer(InjectionPoint injectionPoint, Transformer transformer) {
+        transformers = put(transformers, injectionPoint, transformer);
+    }
+
+    private static Map put(Map map, Object key, Object value) {
+        Map copy = new HashMap(map);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+}
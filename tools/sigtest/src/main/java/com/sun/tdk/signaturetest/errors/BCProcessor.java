@@ -35,6 +35,7 @@ import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 import java.io.PrintWriter;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 
 /**
@@ -60,6 +61,18 @@ public class BCProcessor extends HumanErrorFormatter {
         this.extensibleInterfaces = extensibleInterfaces;
     }
 
+    /**
+     * The rules load the classes when the messages are processed, so
+     * the class hierarchies are shared by the threads synchronously.
+     */
+    public void setThreads(int threads) {
+        super.setThreads(threads);
+        if (threads > 1 && !(clHier instanceof SynchronizedHierarchy)) {
+            clHier = new SynchronizedHierarchy(clHier);
+            sfHier = new SynchronizedHierarchy(sfHier);
+        }
+    }
+
     protected Handler constructHandlerChain() {
 
         Handler[] handlers = {
@@ -112,6 +125,10 @@ public class BCProcessor extends HumanErrorFormatter {
     */
     class Rule1_1 extends Handler {
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_CLASSES, MessageType.ADD_METHS};
+        }
+
         Rule1_1() {
             super();
             setLevel(Level.WARNING);
@@ -171,6 +188,10 @@ public class BCProcessor extends HumanErrorFormatter {
     */
     class Rule1_2 extends Handler {
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.MISS_CLASSES, MessageType.MISS_FIELDS, MessageType.MISS_METHS};
+        }
+
         private ErrorFormatter.Message m;
 
         boolean acceptMessageList(List l) {
@@ -235,6 +256,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule2_1 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_METHS};
+        }
+
         boolean acceptMessageList(List l) {
 
             if (l.size() != 1) {
@@ -277,6 +302,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule2_2 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_FLD};
+        }
+
         boolean acceptMessageList(List l) {
 
             if (l.size() != 1) {
@@ -312,6 +341,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule2_3 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_FLD};
+        }
+
         boolean acceptMessageList(List l) {
             if (l.size() != 1) {
                 return false;
@@ -348,6 +381,10 @@ public class BCProcessor extends HumanErrorFormatter {
     static class Rule2_4 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.MISS_SUPERCLASSES};
+        }
+
         boolean acceptMessageList(List l) {
             if (l.size() != 1) {
                 return false;
@@ -367,6 +404,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule2_5 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_METHS};
+        }
+
         boolean acceptMessageList(List l) {
 
             if (l.size() != 1 || bin) {
@@ -399,6 +440,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule2_7 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.MISS_METHS};
+        }
+
         boolean acceptMessageList(List l) {
 
             if (l.size() != 1) {
@@ -663,6 +708,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule5_1_2 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_METHS};
+        }
+
         Rule5_1_2() {
             super();
             setLevel(Level.WARNING);
@@ -704,6 +753,10 @@ public class BCProcessor extends HumanErrorFormatter {
     class Rule5_2_3 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_METHS};
+        }
+
 
         boolean acceptMessageList(List l) {
             if (l.size() != 1) {
@@ -756,6 +809,10 @@ public class BCProcessor extends HumanErrorFormatter {
     static class Rule5_4 extends Handler {
         private ErrorFormatter.Message m;
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.MISS_CONSTRUCTORS};
+        }
+
         boolean acceptMessageList(List l) {
             if (l.size() != 1) {
                 return false;
@@ -777,6 +834,10 @@ public class BCProcessor extends HumanErrorFormatter {
     */
     class Rule5_6 extends Handler {
 
+        MessageType[] getMessageTypes() {
+            return new MessageType[]{MessageType.ADD_FLD};
+        }
+
         Rule5_6() {
             super();
             setLevel(Level.WARNING);
@@ -844,5 +905,94 @@ public class BCProcessor extends HumanErrorFormatter {
         }
     }
 
+    /**
+     * Makes the class hierarchy available to the threads processing
+     * the messages.
+     */
+    private static class SynchronizedHierarchy implements ClassHierarchy {
+
+        private final ClassHierarchy hierarchy;
+
+        private SynchronizedHierarchy(ClassHierarchy hierarchy) {
+            this.hierarchy = hierarchy;
+        }
+
+        public synchronized String getSuperClass(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.getSuperClass(fqClassName);
+        }
+
+        public synchronized List getSuperClasses(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.getSuperClasses(fqClassName);
+        }
+
+        public synchronized String[] getSuperInterfaces(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.getSuperInterfaces(fqClassName);
+        }
+
+        public synchronized Set getAllImplementedInterfaces(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.getAllImplementedInterfaces(fqClassName);
+        }
+
+        public synchronized String[] getDirectSubclasses(String fqClassName) {
+            return hierarchy.getDirectSubclasses(fqClassName);
+        }
+
+        public synchronized String[] getAllSubclasses(String fqClassName) {
+            return hierarchy.getAllSubclasses(fqClassName);
+        }
+
+        public synchronized String[] getNestedClasses(String fqClassName) {
+            return hierarchy.getNestedClasses(fqClassName);
+        }
+
+        public synchronized boolean isInterface(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.isInterface(fqClassName);
+        }
+
+        public synchronized boolean isAnnotation(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.isAnnotation(fqClassName);
+        }
+
+        public synchronized int getClassModifiers(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.getClassModifiers(fqClassName);
+        }
+
+        public synchronized boolean isSubclass(String subClassName, String superClassName) throws ClassNotFoundException {
+            return hierarchy.isSubclass(subClassName, superClassName);
+        }
+
+        public synchronized ClassDescription load(String name) throws ClassNotFoundException {
+            return hierarchy.load(name);
+        }
+
+        public synchronized boolean isAccessible(ClassDescription c) {
+            return hierarchy.isAccessible(c);
+        }
+
+        public synchronized boolean isDocumentedAnnotation(String fqname) throws ClassNotFoundException {
+            return hierarchy.isDocumentedAnnotation(fqname);
+        }
+
+        public synchronized boolean isAccessible(String fqname) throws ClassNotFoundException {
+            return hierarchy.isAccessible(fqname);
+        }
+
+        public synchronized boolean isClassVisibleOutside(String fqClassName) throws ClassNotFoundException {
+            return hierarchy.isClassVisibleOutside(fqClassName);
+        }
+
+        public synchronized boolean isClassVisibleOutside(ClassDescription cls) throws ClassNotFoundException {
+            return hierarchy.isClassVisibleOutside(cls);
+        }
+
+        public synchronized int getTrackMode() {
+            return hierarchy.getTrackMode();
+        }
+
+        public synchronized boolean isMethodOverriden(MethodDescr md) throws ClassNotFoundException {
+            return hierarchy.isMethodOverriden(md);
+        }
+    }
+
 }
 
@@ -41,8 +41,13 @@ public class Chain {
     private List mainList;
     private TreeSet processedMessages;
     private TreeSet newMessages;
+    private ChangeRecorder recorder;
 
     void setMessageProcessed(ErrorFormatter.Message m) {
+        if (recorder != null) {
+            recorder.setMessageProcessed(m);
+            return;
+        }
         processedMessages.add(m);
     }
 
@@ -54,6 +59,10 @@ public class Chain {
     }
 
     void addMessage(ErrorFormatter.Message newM) {
+        if (recorder != null) {
+            recorder.addMessage(newM);
+            return;
+        }
         newMessages.add(newM);
     }
 
@@ -63,7 +72,20 @@ public class Chain {
         newMessages = new TreeSet();
     }
 
+    /**
+     * Creates the chain passing the changes to the recorder.
+     */
+    Chain(ChangeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
     public void setMessagesProcessed(List l) {
+        if (recorder != null) {
+            for (int i = 0; i < l.size(); i++) {
+                recorder.setMessageProcessed((ErrorFormatter.Message) l.get(i));
+            }
+            return;
+        }
         processedMessages.addAll(l);
     }
 }
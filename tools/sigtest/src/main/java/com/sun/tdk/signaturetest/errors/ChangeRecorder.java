@@ -0,0 +1,143 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the changes of the messages made by the handlers, so that the
+ * lists of messages can be processed in parallel and the changes passed
+ * to the real chain in the order of the lists. The chain sorts the messages
+ * by their definitions which the handlers change, so the definition of the
+ * changed message is recorded with each change and the definitions of the
+ * list are recorded when the list is finished. They are restored when the
+ * changes are replayed.
+ *
+ * @see HandlerTable#record(List, ChangeRecorder)
+ */
+class ChangeRecorder {
+
+    // kinds of the recorded changes
+    private static final int PROCESSED = 0;
+    private static final int ADDED = 1;
+
+    private final Chain chain = new Chain(this);
+    private final List lists = new ArrayList();
+    private List list;
+    private List changes;
+
+    /**
+     * Returns the chain passing the changes of the handlers to this recorder.
+     */
+    Chain getChain() {
+        return chain;
+    }
+
+    /**
+     * Starts the list of messages passed to the handlers.
+     */
+    void startList(List l) {
+        list = l;
+        changes = new ArrayList();
+    }
+
+    /**
+     * Finishes the list, the resulting definitions of the list and of the
+     * added messages are restored after the changes are replayed.
+     */
+    void endList() {
+        List messages = new ArrayList(list);
+        for (int i = 0; i < changes.size(); i++) {
+            Change c = (Change) changes.get(i);
+            if (c.kind == ADDED)
+                messages.add(c.message);
+        }
+        lists.add(new RecordedList(changes, messages));
+        list = null;
+        changes = null;
+    }
+
+    void setMessageProcessed(ErrorFormatter.Message m) {
+        changes.add(new Change(PROCESSED, m));
+    }
+
+    void addMessage(ErrorFormatter.Message m) {
+        changes.add(new Change(ADDED, m));
+    }
+
+    /**
+     * Passes the recorded changes to the chain.
+     */
+    void replay(Chain ch) {
+        for (int i = 0; i < lists.size(); i++) {
+            ((RecordedList) lists.get(i)).replay(ch);
+        }
+    }
+
+    private static class Change {
+        private final int kind;
+        private final ErrorFormatter.Message message;
+        private final String definition;
+
+        Change(int kind, ErrorFormatter.Message message) {
+            this.kind = kind;
+            this.message = message;
+            definition = message.definition;
+        }
+    }
+
+    private static class RecordedList {
+        private final Change[] changes;
+        private final ErrorFormatter.Message[] messages;
+        private final String[] definitions;
+
+        RecordedList(List changes, List messages) {
+            this.changes = (Change[]) changes.toArray(new Change[changes.size()]);
+            this.messages = (ErrorFormatter.Message[]) messages.toArray(new ErrorFormatter.Message[messages.size()]);
+            definitions = new String[this.messages.length];
+            for (int i = 0; i < definitions.length; i++) {
+                definitions[i] = this.messages[i].definition;
+            }
+        }
+
+        void replay(Chain ch) {
+            for (int i = 0; i < changes.length; i++) {
+                Change c = changes[i];
+                c.message.definition = c.definition;
+                if (c.kind == PROCESSED)
+                    ch.setMessageProcessed(c.message);
+                else
+                    ch.addMessage(c.message);
+            }
+            for (int i = 0; i < messages.length; i++) {
+                messages[i].definition = definitions[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.ClassDescriptionCodec;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import com.sun.tdk.signaturetest.model.MemberType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * <b>DeferredErrorFormatter</b> doesn't format anything. It records
+ * the errors, the tested classes and the text printed to the log in the
+ * order they were reported, so that they can be passed later to the real
+ * formatter by {@link #replay(List, ErrorFormatter, PrintWriter)}.
+ * It is used by the workers of the parallel <b>SignatureTest</b>: each
+ * worker records the results of one class and the main thread replays
+ * them in the signature file order, so the report is the same as
+ * the report of the serial run.
+ * <p/>
+ * The events can also be stored by {@link #writeEvents(List, DataOutput)}
+ * and replayed by the next run of the incremental check.
+ */
+public class DeferredErrorFormatter extends SortedErrorFormatter {
+
+    // kinds of the stored events
+    private static final int EVENT_TEXT = 0;
+    private static final int EVENT_ERROR = 1;
+    private static final int EVENT_TESTED = 2;
+
+    private final StringWriter buffer;
+    private List events = new ArrayList();
+
+    /**
+     * Creates formatter which collects the text written to the given
+     * <code>buffer</code> together with the errors.
+     */
+    public DeferredErrorFormatter(StringWriter buffer) {
+        super(new PrintWriter(buffer, true), false);
+        this.buffer = buffer;
+    }
+
+    public void addError(MessageType kind, String className, MemberType type, String def, String tail, MemberDescription errorObject) {
+        flushText();
+        events.add(new ErrorEvent(kind, className, type, def, tail, errorObject));
+        if (!kind.isWarning()) numErrors++;
+    }
+
+    public void tested(ClassDescription tested) {
+        flushText();
+        events.add(tested);
+    }
+
+    public void printErrors() {
+    }
+
+    /**
+     * Returns all events recorded since the previous call and starts
+     * a new list.
+     */
+    public List takeEvents() {
+        flushText();
+        List result = events;
+        events = new ArrayList();
+        return result;
+    }
+
+    /**
+     * Passes the recorded <code>events</code> to the <code>target</code>
+     * formatter and prints the recorded text to the <code>log</code>.
+     */
+    public static void replay(List events, ErrorFormatter target, PrintWriter log) {
+        for (Iterator it = events.iterator(); it.hasNext();) {
+            Object o = it.next();
+            if (o instanceof ErrorEvent) {
+                ErrorEvent e = (ErrorEvent) o;
+                target.addError(e.kind, e.className, e.type, e.def, e.tail, e.errorObject);
+            } else if (o instanceof ClassDescription) {
+                if (target instanceof SortedErrorFormatter)
+                    ((SortedErrorFormatter) target).tested((ClassDescription) o);
+            } else {
+                log.print((String) o);
+            }
+        }
+        log.flush();
+    }
+
+    /**
+     * Writes the recorded <code>events</code>, the classes and the members
+     * are written by {@link ClassDescriptionCodec}.
+     *
+     * @throws IOException if some event contains data which can't be written.
+     */
+    public static void writeEvents(List events, DataOutput out) throws IOException {
+        out.writeInt(events.size());
+        for (Iterator it = events.iterator(); it.hasNext();) {
+            Object o = it.next();
+            if (o instanceof ErrorEvent) {
+                ErrorEvent e = (ErrorEvent) o;
+                out.writeByte(EVENT_ERROR);
+                out.writeInt(e.kind.getId());
+                writeString(e.className, out);
+                writeString(e.type == null ? null : e.type.toString(), out);
+                writeString(e.def, out);
+                writeString(e.tail, out);
+                out.writeBoolean(e.errorObject != null);
+                if (e.errorObject != null)
+                    ClassDescriptionCodec.writeMember(e.errorObject, out);
+            } else if (o instanceof ClassDescription) {
+                out.writeByte(EVENT_TESTED);
+                ClassDescriptionCodec.write((ClassDescription) o, out);
+            } else {
+                out.writeByte(EVENT_TEXT);
+                out.writeUTF((String) o);
+            }
+        }
+    }
+
+    /**
+     * Reads the events written by {@link #writeEvents(List, DataOutput)}.
+     */
+    public static List readEvents(DataInput in) throws IOException {
+        int n = in.readInt();
+        List events = new ArrayList(n);
+        for (int i = 0; i < n; i++) {
+            int event = in.readByte();
+            if (event == EVENT_ERROR) {
+                int id = in.readInt();
+                MessageType kind = MessageType.getMessageType(id);
+                if (kind == null)
+                    throw new IOException("Unknown message type " + id);
+                String className = readString(in);
+                String typeName = readString(in);
+                MemberType type = null;
+                if (typeName != null) {
+                    type = MemberType.getItemType(typeName);
+                    if (type == null || !typeName.equals(type.toString()))
+                        throw new IOException("Unknown member type " + typeName);
+                }
+                String def = readString(in);
+                String tail = readString(in);
+                MemberDescription errorObject = null;
+                if (in.readBoolean())
+                    errorObject = ClassDescriptionCodec.readMember(in);
+                events.add(new ErrorEvent(kind, className, type, def, tail, errorObject));
+            } else if (event == EVENT_TESTED) {
+                ClassDescription c = new ClassDescription();
+                ClassDescriptionCodec.read(c, in);
+                events.add(c);
+            } else if (event == EVENT_TEXT) {
+                events.add(in.readUTF());
+            } else {
+                throw new IOException("Unknown event " + event);
+            }
+        }
+        return events;
+    }
+
+    private static void writeString(String s, DataOutput out) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private void flushText() {
+        StringBuffer sb = buffer.getBuffer();
+        if (sb.length() > 0) {
+            events.add(sb.toString());
+            sb.setLength(0);
+        }
+    }
+
+    private static class ErrorEvent {
+        private final MessageType kind;
+        private final String className;
+        private final MemberType type;
+        private final String def;
+        private final String tail;
+        private final MemberDescription errorObject;
+
+        ErrorEvent(MessageType kind, String className, MemberType type, String def, String tail, MemberDescription errorObject) {
+            this.kind = kind;
+            this.className = className;
+            this.type = type;
+            this.def = def;
+            this.tail = tail;
+            this.errorObject = errorObject;
+        }
+    }
+}
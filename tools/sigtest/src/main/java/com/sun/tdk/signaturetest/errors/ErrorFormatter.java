@@ -150,6 +150,11 @@ public class ErrorFormatter {
 
         private Level level = Level.SEVERE;
 
+        // short name of the definition it was computed for,
+        // the definition can be changed by the handlers
+        private String shortName;
+        private String shortNameDefinition;
+
 
         /**
          * Create new error message.
@@ -179,7 +184,7 @@ public class ErrorFormatter {
             if (ob.messageType == this.messageType) {
                 comp = this.className.compareTo(ob.className);
                 if (comp == 0)
-                    comp = (getShortName(this.definition)).compareTo(getShortName(ob.definition));
+                    comp = getShortDefinition().compareTo(ob.getShortDefinition());
 
 
                 if (comp == 0) {
@@ -194,6 +199,14 @@ public class ErrorFormatter {
                 return ob.messageType.compareTo(this.messageType);
         }
 
+        private String getShortDefinition() {
+            if (shortNameDefinition != definition) {
+                shortName = getShortName(definition);
+                shortNameDefinition = definition;
+            }
+            return shortName;
+        }
+
         /**
          * Cut ``<code>throws</code>'' clause out off the given member
          * description <code>def</code>.
@@ -35,7 +35,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
-import java.util.regex.PatternSyntaxException;
 
 
 
@@ -56,6 +55,20 @@ public abstract class Handler {
         return this;
     }
 
+    Handler getNext() {
+        return next;
+    }
+
+    /**
+     * Returns the types of the single messages this handler can accept,
+     * see {@link HandlerTable}. The empty array means that only the lists
+     * of several messages are accepted, <code>null</code> means that any
+     * list can be accepted.
+     */
+    MessageType[] getMessageTypes() {
+        return null;
+    }
+
     void process(List l, Chain ch) {
         if (acceptMessageList(l)) {
             writeMessage(l, ch);
@@ -91,21 +104,26 @@ public abstract class Handler {
 
     protected static final ArrayList EMPTY_ARRAY_LIST = new ArrayList();
 
+    static final MessageType[] SEVERAL_MESSAGES = new MessageType[0];
+
     protected static ArrayList stringToArrayList(String source, String delimiter) {
         if ((source == null) || source.length() == 0) {
             return EMPTY_ARRAY_LIST;
         }
 
-        String[] strA;
+        // the delimiter is not a regular expression,
+        // the trailing empty strings are dropped as by String.split()
         ArrayList result = new ArrayList();
-        try {
-            strA = source.split(delimiter);
-        } catch (PatternSyntaxException e) {
-            result.add(source);
-            return result;
+        int pos = 0;
+        int next;
+        while ((next = source.indexOf(delimiter, pos)) >= 0) {
+            result.add(source.substring(pos, next));
+            pos = next + delimiter.length();
         }
-        for (int i = 0; i < strA.length; i++) {
-            result.add(strA[i]);
+        result.add(source.substring(pos));
+        int size = result.size();
+        while (size > 0 && ((String) result.get(size - 1)).length() == 0) {
+            result.remove(--size);
         }
         return result;
     }
@@ -168,6 +186,10 @@ abstract class PairedHandler extends Handler {
 
     protected Message newM;
 
+    MessageType[] getMessageTypes() {
+        return SEVERAL_MESSAGES;
+    }
+
     final protected void writeMessage(List l, Chain ch) {
 
         init(l);
@@ -0,0 +1,130 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import com.sun.tdk.signaturetest.errors.ErrorFormatter.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches the lists of messages to the handlers of the chain by the
+ * message type. A list of one message is passed only to the handlers
+ * registered for its type by {@link Handler#getMessageTypes()}, a list of
+ * several messages only to the handlers accepting such lists. The handlers
+ * are called in the order of the chain, as {@link Handler#process(List, Chain)}
+ * does, so the result is the same.
+ *
+ * @see HumanErrorFormatter#constructHandlerChain()
+ */
+class HandlerTable {
+
+    private final Map byType = new HashMap();
+    private final Handler[] anyType;
+    private final Handler[] severalMessages;
+
+    HandlerTable(Handler first) {
+        List handlers = new ArrayList();
+        for (Handler h = first; h != null; h = h.getNext()) {
+            handlers.add(h);
+        }
+
+        List any = new ArrayList();
+        List several = new ArrayList();
+        for (int i = 0; i < handlers.size(); i++) {
+            Handler h = (Handler) handlers.get(i);
+            MessageType[] types = h.getMessageTypes();
+            if (types == null) {
+                any.add(h);
+                several.add(h);
+            } else if (types.length == 0) {
+                several.add(h);
+            } else {
+                for (int j = 0; j < types.length; j++) {
+                    byType.put(types[j], null);
+                }
+            }
+        }
+        anyType = toArray(any);
+        severalMessages = toArray(several);
+
+        // keeps the order of the chain
+        MessageType[] types = (MessageType[]) byType.keySet().toArray(new MessageType[byType.size()]);
+        for (int i = 0; i < types.length; i++) {
+            List l = new ArrayList();
+            for (int j = 0; j < handlers.size(); j++) {
+                Handler h = (Handler) handlers.get(j);
+                if (h.getMessageTypes() == null || contains(h.getMessageTypes(), types[i])) {
+                    l.add(h);
+                }
+            }
+            byType.put(types[i], toArray(l));
+        }
+    }
+
+    /**
+     * Processes the list recording the changes of the messages, see
+     * {@link ChangeRecorder}.
+     */
+    void record(List l, ChangeRecorder recorder) {
+        recorder.startList(l);
+        process(l, recorder.getChain());
+        recorder.endList();
+    }
+
+    void process(List l, Chain ch) {
+        Handler[] handlers;
+        if (l.size() == 1) {
+            handlers = (Handler[]) byType.get(((Message) l.get(0)).messageType);
+            if (handlers == null)
+                handlers = anyType;
+        } else {
+            handlers = severalMessages;
+        }
+
+        for (int i = 0; i < handlers.length; i++) {
+            if (handlers[i].acceptMessageList(l)) {
+                handlers[i].writeMessage(l, ch);
+            }
+        }
+    }
+
+    private static boolean contains(MessageType[] types, MessageType type) {
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type)
+                return true;
+        }
+        return false;
+    }
+
+    private static Handler[] toArray(List l) {
+        return (Handler[]) l.toArray(new Handler[l.size()]);
+    }
+}
@@ -28,18 +28,24 @@
 package com.sun.tdk.signaturetest.errors;
 
 
+import com.sun.tdk.signaturetest.core.OrderedResults;
 import com.sun.tdk.signaturetest.model.ConstructorDescr;
 import com.sun.tdk.signaturetest.model.MemberDescription;
 import com.sun.tdk.signaturetest.model.MemberType;
 import com.sun.tdk.signaturetest.model.MethodDescr;
 import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 
 public class HumanErrorFormatter extends SortedErrorFormatter {
@@ -47,6 +53,11 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
     private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(SortedErrorFormatter.class);
     private Level level;
 
+    /**
+     * Number of threads processing the messages.
+     */
+    private int threads = 1;
+
     /**
      * Assign the given <b>PrintWriter</b> to print error messages.
      */
@@ -55,6 +66,22 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
         level = l;
     }
 
+    /**
+     * Sets the number of threads the handlers are run by. The messages of
+     * each class are processed by one thread, the result is the same as
+     * the result of the serial run.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * The handlers process all messages together, so they are kept in memory.
+     */
+    protected boolean isSpillable() {
+        return false;
+    }
+
     public void printErrors() {
 
         sortErrors();
@@ -64,6 +91,10 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
         int length = failedMessages.size();
         Chain ch = new Chain(failedMessages);
 
+        // the groups of the messages of each class
+        List classes = new ArrayList();
+        List groups = null;
+        String cl = null;
         for (int i = 0; i < length ; i++) {
             Message e1 = (Message) failedMessages.get(i);
             if (e1 == null)
@@ -79,16 +110,26 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
                     break;
             }
 
-            List currentGroup = failedMessages.subList(i, j+1);
-
-            Handler h = constructHandlerChain();
-
-            h.process(currentGroup, ch);
+            if (groups == null || !e1.className.equals(cl)) {
+                groups = new ArrayList();
+                classes.add(groups);
+                cl = e1.className;
+            }
+            groups.add(failedMessages.subList(i, j+1));
 
             i = j;
 
         }
 
+        if (threads > 1 && classes.size() > 1) {
+            processParallel(classes, ch);
+        } else {
+            HandlerTable handlers = new HandlerTable(constructHandlerChain());
+            for (int i = 0; i < classes.size(); i++) {
+                process((List) classes.get(i), handlers, ch);
+            }
+        }
+
         ch.finishProcessing();
 
         supressExtraErrors();
@@ -112,6 +153,55 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
 
     }
 
+    private static void process(List groups, HandlerTable handlers, Chain ch) {
+        for (int i = 0; i < groups.size(); i++) {
+            handlers.process((List) groups.get(i), ch);
+        }
+    }
+
+    /**
+     * Processes the messages of the classes by <code>threads</code> workers.
+     * The handlers keep the state, so each worker constructs its own chain.
+     * The changes of the messages are passed to the chain in the order
+     * of the classes.
+     */
+    private void processParallel(final List classes, Chain ch) {
+        final OrderedResults results = new OrderedResults(classes.size());
+        int workers = Math.min(threads, classes.size());
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                final HandlerTable handlers = new HandlerTable(constructHandlerChain());
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            int index;
+                            while ((index = results.next()) >= 0) {
+                                List groups = (List) classes.get(index);
+                                ChangeRecorder recorder = new ChangeRecorder();
+                                for (int j = 0; j < groups.size(); j++) {
+                                    handlers.record((List) groups.get(j), recorder);
+                                }
+                                results.put(index, recorder);
+                            }
+                        } catch (Throwable t) {
+                            results.fail(t);
+                        }
+                    }
+                });
+            }
+
+            for (int i = 0; i < classes.size(); i++) {
+                ((ChangeRecorder) results.take(i)).replay(ch);
+            }
+        } catch (IOException e) {
+            // interrupted
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     protected void outProcessedErrors() {
         boolean hasHeader = false;
         MessageType lastType = null;
@@ -256,7 +346,8 @@ public class HumanErrorFormatter extends SortedErrorFormatter {
         }
         );
 
-        ArrayList toRemove = new ArrayList();
+        // the messages are compared by identity
+        Set toRemove = new HashSet();
 
         loop:
         for (int i=0; i < failedMessages.size(); i++) {
@@ -0,0 +1,306 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import com.sun.tdk.signaturetest.SigTest;
+import com.sun.tdk.signaturetest.errors.ErrorFormatter.Message;
+import com.sun.tdk.signaturetest.model.ClassDescriptionCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+
+/**
+ * <b>MessageSorter</b> sorts error messages which don't have to fit into
+ * the memory. At most <code>maxInMemory</code> messages are kept in memory,
+ * when the limit is reached they are sorted and written to a temporary file.
+ * The sorted messages are read by merging these files with the messages left
+ * in memory. The messages equal by the comparator are read in the order
+ * they were added. If a temporary file can't be written, the messages
+ * are kept in memory from then on.
+ * <p/>
+ * The messages are added first, then {@link #sort()} is called and
+ * the messages are read by {@link #next()}. The temporary files are
+ * deleted by {@link #close()}.
+ */
+class MessageSorter {
+
+    private final Comparator comparator;
+    private int maxInMemory;
+
+    private List buffer = new ArrayList();
+
+    /**
+     * Temporary files with the sorted runs of the messages.
+     */
+    private final List files = new ArrayList();
+
+    /**
+     * Runs being merged, ordered by their current messages.
+     */
+    private PriorityQueue queue;
+
+    private int size;
+
+    MessageSorter(Comparator comparator, int maxInMemory) {
+        this.comparator = comparator;
+        this.maxInMemory = maxInMemory;
+    }
+
+    void add(Message m) {
+        buffer.add(m);
+        size++;
+        if (buffer.size() >= maxInMemory)
+            spill();
+    }
+
+    void addAll(List messages) {
+        buffer.addAll(messages);
+        size += messages.size();
+        if (buffer.size() >= maxInMemory)
+            spill();
+    }
+
+    /**
+     * Returns number of the added messages.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finishes adding and prepares the messages for reading.
+     */
+    void sort() throws IOException {
+        Collections.sort(buffer, comparator);
+        queue = new PriorityQueue(files.size() + 1, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                Run r1 = (Run) o1;
+                Run r2 = (Run) o2;
+                int comp = comparator.compare(r1.current, r2.current);
+                // the earlier run contains the earlier added messages
+                return comp != 0 ? comp : r1.index - r2.index;
+            }
+        });
+        for (int i = 0; i < files.size(); i++)
+            addRun(new FileRun(i, (File) files.get(i)));
+        addRun(new MemoryRun(files.size(), buffer));
+        buffer = null;
+    }
+
+    /**
+     * Returns the next message in the sorted order or <code>null</code>
+     * if all messages were read.
+     */
+    Message next() throws IOException {
+        Run run = (Run) queue.poll();
+        if (run == null)
+            return null;
+        Message m = run.current;
+        addRun(run);
+        return m;
+    }
+
+    void close() {
+        if (queue != null) {
+            while (!queue.isEmpty())
+                ((Run) queue.poll()).close();
+        }
+        for (int i = 0; i < files.size(); i++)
+            ((File) files.get(i)).delete();
+        files.clear();
+        buffer = null;
+    }
+
+    private void addRun(Run run) throws IOException {
+        if (run.advance())
+            queue.add(run);
+        else
+            run.close();
+    }
+
+    private void spill() {
+        Collections.sort(buffer, comparator);
+        try {
+            writeRun();
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            // the messages stay in memory
+            maxInMemory = Integer.MAX_VALUE;
+        }
+    }
+
+    private void writeRun() throws IOException {
+        File f = File.createTempFile("sigtest", ".msg", new File(System.getProperty("java.io.tmpdir")));
+        boolean isWritten = false;
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+            try {
+                out.writeInt(buffer.size());
+                for (int i = 0; i < buffer.size(); i++)
+                    write((Message) buffer.get(i), out);
+            } finally {
+                out.close();
+            }
+            isWritten = true;
+        } finally {
+            if (!isWritten)
+                f.delete();
+        }
+        files.add(f);
+        buffer.clear();
+    }
+
+    private static void write(Message m, DataOutputStream out) throws IOException {
+        out.writeInt(m.messageType.getId());
+        writeString(m.className, out);
+        writeString(m.definition, out);
+        writeString(m.tail, out);
+        out.writeUTF(m.getLevel().getName());
+        out.writeBoolean(m.errorObject != null);
+        if (m.errorObject != null)
+            ClassDescriptionCodec.writeMember(m.errorObject, out);
+    }
+
+    private static Message read(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        MessageType kind = MessageType.getMessageType(id);
+        if (kind == null)
+            throw new IOException("Unknown message type " + id);
+        String className = readString(in);
+        String definition = readString(in);
+        String tail = readString(in);
+        Level level = Level.parse(in.readUTF());
+        Message m = new Message(kind, className, definition, tail,
+                in.readBoolean() ? ClassDescriptionCodec.readMember(in) : null);
+        m.setLevel(level);
+        return m;
+    }
+
+    /**
+     * Writes the string as UTF-8 bytes, the tails of the messages may
+     * exceed the limit of <code>writeUTF</code>.
+     */
+    private static void writeString(String s, DataOutputStream out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == -1)
+            return null;
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static abstract class Run {
+        final int index;
+        Message current;
+
+        Run(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Reads the next message to <code>current</code>.
+         *
+         * @return <code>false</code> if the run is exhausted.
+         */
+        abstract boolean advance() throws IOException;
+
+        void close() {
+        }
+    }
+
+    private static class MemoryRun extends Run {
+        private final List messages;
+        private int position;
+
+        MemoryRun(int index, List messages) {
+            super(index);
+            this.messages = messages;
+        }
+
+        boolean advance() {
+            if (position == messages.size()) {
+                current = null;
+                return false;
+            }
+            current = (Message) messages.set(position++, null);
+            return true;
+        }
+    }
+
+    private static class FileRun extends Run {
+        private final DataInputStream in;
+        private int remaining;
+
+        FileRun(int index, File f) throws IOException {
+            super(index);
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+            remaining = in.readInt();
+        }
+
+        boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            remaining--;
+            current = read(in);
+            return true;
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+        }
+    }
+}
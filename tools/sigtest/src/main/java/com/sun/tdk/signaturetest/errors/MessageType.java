@@ -50,6 +50,10 @@ public class MessageType implements Comparable {
         return thisIsWarning;
     }
 
+    public int getId() {
+        return id;
+    }
+
     private MessageType(String key, int id) {
         this(key, id, false);
     }
@@ -87,6 +91,24 @@ public class MessageType implements Comparable {
     final public static MessageType CHNG_SUPCLASSES_TOPOL   = new MessageType(i18n.getString("ErrorFormatter.error.changedsuperclasses.topol"), 23); // 23 "Topology of Interface Inheritance"
     final public static MessageType CHNG_CLASSES_MEMBERS    = new MessageType(i18n.getString("HumanErrorFormatter.error.change.clss.or.memb"), 24); // 24
 
+    private static final MessageType[] knownTypes = {ERROR_UNKNOWN, MISS_CLASSES, MISS_NESTED_CLASSES,
+            MISS_SUPERCLASSES, MISS_FIELDS, MISS_CONSTRUCTORS, MISS_METHS, ADD_CLASSES, ADD_NESTED_CLASSES,
+            ADD_SUPCLASSES, ADD_FLD, ADD_CONSTRUCTORS, ADD_METHS, ERROR_LINKERR, MISS_ANNO, ADD_ANNO,
+            CHNG_SUPCLASSES_TOPOL, CHNG_CLASSES_MEMBERS};
+
+    /**
+     * Returns the message type with the given id or null if there is no such type.
+     *
+     * @see #getId()
+     */
+    public static MessageType getMessageType(int id) {
+        for (int i = 0; i < knownTypes.length; i++) {
+            if (knownTypes[i].id == id)
+                return knownTypes[i];
+        }
+        return null;
+    }
+
     public static MessageType getMissingMessageType(MemberType type) {
         if (type == MemberType.CLASS)
             return MISS_CLASSES;
@@ -27,11 +27,13 @@
 
 package com.sun.tdk.signaturetest.errors;
 
+import com.sun.tdk.signaturetest.SigTest;
 import com.sun.tdk.signaturetest.model.ClassDescription;
 import com.sun.tdk.signaturetest.model.MemberDescription;
 import com.sun.tdk.signaturetest.model.MemberType;
 import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
 
@@ -65,6 +67,19 @@ public class SortedErrorFormatter extends ErrorFormatter {
      */
     protected List failedMessages;
 
+    /**
+     * Default number of the messages kept in memory.
+     */
+    public static final int DEFAULT_MAX_MESSAGES = 100000;
+
+    private int maxMessages = DEFAULT_MAX_MESSAGES;
+
+    /**
+     * Messages which didn't fit into <code>failedMessages</code>, sorted
+     * in the groups of duplicates.
+     */
+    private MessageSorter spilled;
+
     /**
      * Tabulator position.
      */
@@ -104,90 +119,160 @@ public class SortedErrorFormatter extends ErrorFormatter {
         Message c =createError(kind, className, type, def, tail, errorObject);
         failedMessages.add(c);
         if (!kind.isWarning()) numErrors++;
+        if (failedMessages.size() >= maxMessages && isSpillable())
+            spill();
+    }
+
+    /**
+     * Returns <code>true</code> if the messages may be written to disk
+     * before they are printed.
+     */
+    protected boolean isSpillable() {
+        return true;
+    }
+
+    /**
+     * Sets number of the messages kept in memory, the rest is sorted on disk.
+     */
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+
+    /**
+     * Moves the messages to <code>spilled</code>, they are kept there
+     * in memory if they can't be written to disk.
+     */
+    private void spill() {
+        if (spilled == null)
+            spilled = new MessageSorter(new DuplicatesComparator(), maxMessages);
+        spilled.addAll(failedMessages);
+        failedMessages.clear();
     }
 
     
     /**
      * Print all error messages collected by <code>failedMessages</code>.
-     *
+     * The duplicates are suppressed group by group and the messages are
+     * printed as they are read in the sorted order, so the messages spilled
+     * to disk are never loaded together.
      */
     public void printErrors() {
 
-        int exmsgs = msgExclude(getTestedsuper());
         String nl = System.getProperty("line.separator");
-        
-        sortErrors();
-
-        boolean hasHeader = false;
-        int length = failedMessages.size();
-        MessageType lastType = null;
-        for (int i = 0; i < length; i++) {
-            Message current = (Message) failedMessages.get(i);
-            if (current.messageType != lastType) {
-                hasHeader = true;
-                out.println(nl + current.messageType.getLocMessage() + nl +
-                        space('-', current.messageType.getLocMessage().length()) + nl);
-                lastType = current.messageType;
-            }
-            if (hasHeader) {
-                if (current.definition.equals(""))
-                    out.println(current.className);
-                else {
-                    int currentTab = (current.className.length() + 1) / tabSize;
-                    if ((current.className.length() + 1) % tabSize != 0)
-                        currentTab++;
-                    currentTab = currentTab * tabSize;
-                    out.println(current.className + ":" +
-                            space(' ', currentTab - current.className.length() - 1) +
-                            current.definition);
-                    if (isVerbose() && current.tail.length() != 0)
-                        out.println(i18n.getString("SortedErrorFormatter.error.affected", current.tail));
-                    }
-            } else {
-                out.println(current);
+
+        MessageSorter sorted = new MessageSorter(new MessageComparator(), maxMessages);
+        try {
+            spill();
+            spilled.sort();
+            int exmsgs = msgExclude(getTestedsuper(), spilled, sorted);
+            spilled.close();
+            sorted.sort();
+
+            boolean hasHeader = false;
+            MessageType lastType = null;
+            Message current;
+            while ((current = sorted.next()) != null) {
+                if (current.messageType != lastType) {
+                    hasHeader = true;
+                    out.println(nl + current.messageType.getLocMessage() + nl +
+                            space('-', current.messageType.getLocMessage().length()) + nl);
+                    lastType = current.messageType;
+                }
+                if (hasHeader) {
+                    if (current.definition.equals(""))
+                        out.println(current.className);
+                    else {
+                        int currentTab = (current.className.length() + 1) / tabSize;
+                        if ((current.className.length() + 1) % tabSize != 0)
+                            currentTab++;
+                        currentTab = currentTab * tabSize;
+                        out.println(current.className + ":" +
+                                space(' ', currentTab - current.className.length() - 1) +
+                                current.definition);
+                        if (isVerbose() && current.tail.length() != 0)
+                            out.println(i18n.getString("SortedErrorFormatter.error.affected", current.tail));
+                        }
+                } else {
+                    out.println(current);
+                }
             }
+            if (sorted.size() > 0)
+                out.println("");
+
+            if (exmsgs > 0)
+                out.println(i18n.getString("SortedErrorFormatter.error.dupmesg", Integer.toString(exmsgs)));
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            out.println(i18n.getString("SortedErrorFormatter.error.spill", e.getMessage()));
+        } finally {
+            spilled.close();
+            sorted.close();
+            spilled = null;
         }
-        if (failedMessages.size() > 0)
-            out.println("");
-
-        if (exmsgs > 0)
-            out.println(i18n.getString("SortedErrorFormatter.error.dupmesg", Integer.toString(exmsgs)));            
     }
 
+    /**
+     * Sorts <code>failedMessages</code> in the order they are printed.
+     *
+     * @deprecated {@link #printErrors()} sorts the messages itself,
+     *             including the messages spilled to disk.
+     */
     protected void sortErrors() {
-        Collections.sort(failedMessages, new Comparator() {
+        Collections.sort(failedMessages, new MessageComparator());
+    }
 
-            public int compare(Object o1, Object o2) {
-                // Full Messages compare. Note that Message.compareTo does not do it!
-                // Full compare required to guarantee identical output from one execution to another
-                // in different modes 
-                Message m1 = (Message) o1;
-                Message m2 = (Message) o2;
+    /**
+     * Full Messages compare. Note that Message.compareTo does not do it!
+     * Full compare required to guarantee identical output from one execution to another
+     * in different modes
+     */
+    private static class MessageComparator implements Comparator {
+
+        public int compare(Object o1, Object o2) {
+            Message m1 = (Message) o1;
+            Message m2 = (Message) o2;
 
-                int comp = m1.messageType.compareTo(m2.messageType);
+            int comp = m1.messageType.compareTo(m2.messageType);
 
+            if (comp == 0) {
+                comp = m1.className.compareTo(m2.className);
                 if (comp == 0) {
-                    comp = m1.className.compareTo(m2.className);
+                    comp = m1.definition.compareTo(m2.definition);
                     if (comp == 0) {
-                        comp = m1.definition.compareTo(m2.definition);
-                        if (comp == 0) {
-                            if (m1.tail != null && m2.tail != null)
-                                comp = m1.tail.compareTo(m2.tail);
-                            else {
-                                if (m1.tail == null)
-                                    comp = -1;
-                                else
-                                    comp = 1;
-                            }
+                        if (m1.tail != null && m2.tail != null)
+                            comp = m1.tail.compareTo(m2.tail);
+                        else {
+                            if (m1.tail == null)
+                                comp = -1;
+                            else
+                                comp = 1;
                         }
                     }
-                    return comp;
                 }
                 return comp;
             }
+            return comp;
         }
-        );
     }
+
+    /**
+     * Puts together the messages which may be duplicates, see
+     * {@link #msgCompare(Message, Message)}.
+     */
+    private static class DuplicatesComparator implements Comparator {
+
+        public int compare(Object o1, Object o2) {
+            Message m1 = (Message) o1;
+            Message m2 = (Message) o2;
+
+            int comp = m1.messageType.compareTo(m2.messageType);
+            if (comp == 0)
+                comp = m1.definition.compareTo(m2.definition);
+            return comp;
+        }
+    }
+
     /**
      * Return string consisting of <code>len</code> copies of the symbol <code>c</code>.
      */
@@ -199,101 +284,123 @@ public class SortedErrorFormatter extends ErrorFormatter {
     }
 
 
+    /**
+     * Removes the messages of <code>failedMessages</code> reported for
+     * a subclass if the same message is reported for its superclass.
+     *
+     * @return number of the removed messages.
+     * @deprecated {@link #printErrors()} suppresses the duplicates itself,
+     *             including the messages spilled to disk.
+     */
     public int msgExclude(Map supernames) {
 
         int excludedMessages = 0;
 
-        int i, k, n;
-        List /*Vector(Vector(Message))*/ vv = new ArrayList();
+        // the sort is stable, the messages of a group stay in the order they were reported
+        List grouped = new ArrayList(failedMessages);
+        Collections.sort(grouped, new DuplicatesComparator());
+
+        Set exclude = new HashSet();
+        for (int i = 0; i < grouped.size();) {
+            int k = i + 1;
+            while (k < grouped.size() && msgCompare((Message) grouped.get(k), (Message) grouped.get(i)))
+                k++;
+            if (k - i > 1)
+                excludedMessages += msgExclude(supernames, new ArrayList(grouped.subList(i, k)), exclude);
+            i = k;
+        }
 
-        for (i = 0; i < failedMessages.size(); i++) {
-            Message msgi = (Message) failedMessages.get(i);
+        failedMessages.removeAll(exclude);
+        return excludedMessages;
+    }
 
-            List /*(Message)*/ v = null;
+    /**
+     * Reads the messages from <code>grouped</code> sorted by
+     * {@link DuplicatesComparator} and writes them to <code>result</code>,
+     * the message reported for a subclass is suppressed if the same message
+     * is reported for its superclass.
+     *
+     * @return number of the suppressed messages.
+     */
+    private int msgExclude(Map supernames, MessageSorter grouped, MessageSorter result) throws IOException {
 
-            for (n = 0; n < vv.size(); n++) {
-                List x = (ArrayList) vv.get(n);
-                if (msgCompare((Message) x.get(0), msgi)) {
-                    v = (ArrayList) vv.get(n);
-                    break;
-                }
-            }
+        int excludedMessages = 0;
 
-            if (v == null) {
-                for (k = i + 1; k < failedMessages.size(); k++) {
-                    Message msgk = (Message) failedMessages.get(k);
+        List group = new ArrayList();
+        Message next = grouped.next();
+        while (next != null) {
+            group.clear();
+            group.add(next);
+            while ((next = grouped.next()) != null && msgCompare(next, (Message) group.get(0)))
+                group.add(next);
+
+            Set exclude = Collections.EMPTY_SET;
+            if (group.size() > 1) {
+                exclude = new HashSet();
+                excludedMessages += msgExclude(supernames, new ArrayList(group), exclude);
+            }
 
-                    if (msgCompare(msgk, msgi)) {
-                        if (v == null) {
-                            v = new ArrayList();
-                            vv.add(v);
-                            v.add(msgi);
-                        }
-                        v.add(msgk);
-                    }
-                }
+            // the messages are passed in the order they were reported
+            for (int i = 0; i < group.size(); i++) {
+                Message m = (Message) group.get(i);
+                if (!exclude.contains(m))
+                    result.add(m);
             }
         }
 
-        List exclude = new ArrayList();
-
-        for (n = 0; n < vv.size(); n++) {
-            List v = (List) vv.get(n);
-            //System.out.println("-Duplicate group-");
-
-            for (k = 0; k < v.size(); k++) {
-                rep:
-                for (boolean flag = true; flag;) {
-                    flag = false;
-                    Message msgk = (Message) v.get(k);
-                    String supk = (String) supernames.get(msgk.className);
-                    if (supk != null) {
-                        for (i = k + 1; i < v.size(); i++) {
-                            Message msgi = (Message) v.get(i);
-                            if (msgi.className.equals(supk)) {
-                                v.set(k, msgi);
-                                v.set(i, msgk);
-                                flag = true;
-                                //System.out.println("swap "+I+" "+k);
-                                continue rep;
-                            }
-                        }
-                    }
-                }
-            }
+        return excludedMessages;
+    }
+
+    /**
+     * Finds the duplicates of the messages reported for the superclasses
+     * among the messages of the group <code>v</code>, these messages are
+     * added to <code>exclude</code> and their classes are appended to the
+     * tail of the superclass message.
+     */
+    private static int msgExclude(Map supernames, List v, Set exclude) {
 
-            for (k = v.size(); --k >= 0;) {
+        int excludedMessages = 0;
+        int i, k;
+
+        for (k = 0; k < v.size(); k++) {
+            rep:
+            for (boolean flag = true; flag;) {
+                flag = false;
                 Message msgk = (Message) v.get(k);
-                //System.out.println(MsgShow(msgk));
                 String supk = (String) supernames.get(msgk.className);
                 if (supk != null) {
-                    for (i = k; --i >= 0;) {
+                    for (i = k + 1; i < v.size(); i++) {
                         Message msgi = (Message) v.get(i);
                         if (msgi.className.equals(supk)) {
-                            if (msgi.tail.length() != 0)
-                                msgi.tail += ",";
-                            msgi.tail += msgk.className;
-                            if (msgk.tail.length() != 0)
-                                msgi.tail += "," + msgk.tail;
-                            exclude.add(v.get(k));
-                            excludedMessages++;
-                            //System.out.println(MsgShow(msgk)+"-excluded");
-                            break;
+                            v.set(k, msgi);
+                            v.set(i, msgk);
+                            flag = true;
+                            //System.out.println("swap "+I+" "+k);
+                            continue rep;
                         }
                     }
                 }
             }
         }
 
-        for (i = failedMessages.size(); --i >= 0;) {
-            Message msgi = (Message) failedMessages.get(i);
-
-            for (k = 0; k < exclude.size(); k++) {
-                Message msgk = (Message) exclude.get(k);
-                if (msgi == msgk) {
-                    //System.out.println(MsgShow(msgi)+"-removed");
-                    failedMessages.remove(i);
-                    break;
+        for (k = v.size(); --k >= 0;) {
+            Message msgk = (Message) v.get(k);
+            //System.out.println(MsgShow(msgk));
+            String supk = (String) supernames.get(msgk.className);
+            if (supk != null) {
+                for (i = k; --i >= 0;) {
+                    Message msgi = (Message) v.get(i);
+                    if (msgi.className.equals(supk)) {
+                        if (msgi.tail.length() != 0)
+                            msgi.tail += ",";
+                        msgi.tail += msgk.className;
+                        if (msgk.tail.length() != 0)
+                            msgi.tail += "," + msgk.tail;
+                        exclude.add(msgk);
+                        excludedMessages++;
+                        //System.out.println(MsgShow(msgk)+"-excluded");
+                        break;
+                    }
                 }
             }
         }
@@ -33,7 +33,6 @@ import com.sun.tdk.signaturetest.core.ClassDescriptionLoader;
 import com.sun.tdk.signaturetest.core.PrimitiveTypes;
 import com.sun.tdk.signaturetest.model.*;
 import com.sun.tdk.signaturetest.util.I18NResourceBundle;
-import com.sun.tdk.signaturetest.util.LRUCache;
 
 import java.io.*;
 import java.util.*;
@@ -42,8 +41,9 @@ import java.util.*;
 /**
  * This is subclass of the MemberCollectionBuilder provides searching class
  * files in the specified class path and loading ClassDescription
- * created via class file parsing. This class contains cache of the
- * parsed classes. This cache is changed using LRU algorithm.
+ * created via class file parsing. The parsed classes are kept in
+ * a {@link ClassDescriptionCache}, which can be shared by several loaders,
+ * and optionally in a {@link PersistentClassCache} reused by the next runs.
  *
  * @author Maxim Sokolnikov
  * @author Roman Makarchuk
@@ -57,39 +57,81 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
         private int major_version;          // class file format versions
         private int minor_version;
 
-        private Constant[] constants;       // in-memory copy of the constant pool
+        private ClassFileInput classData;  // the class file being read
+        private byte[] tags;                // tags of the constant pool entries
+        private int[] offsets;              // offsets of the constant pool entries in the class file
+        private String[] names;             // decoded CONSTANT_Utf8 entries
 
         private String[] sigctors,
                 sigfields,
                 sigmethods;
 
-        private void readCP(DataInput classData) throws IOException {
+        /**
+         * Remembers the offsets of the constant pool entries, the entries are
+         * decoded when required.
+         */
+        private void readCP(ClassFileInput classData) throws IOException {
+            this.classData = classData;
             int n = classData.readUnsignedShort();
-            constants = new Constant[n];
-            constants[0] = null;
+            tags = new byte[n];
+            offsets = new int[n];
+            names = new String[n];
             for (int i = 1; i < n; i++) {
-                constants[i] = new Constant();
-                constants[i].read(classData);
-                if (constants[i].tag == CONSTANT_Long || constants[i].tag == CONSTANT_Double)
+                byte tag = classData.readByte();
+                tags[i] = tag;
+                offsets[i] = classData.position();
+                classData.skipBytes(getConstantLength(tag, offsets[i]));
+                if (tag == CONSTANT_Long || tag == CONSTANT_Double)
                     i++;
             }
         }
 
+        private int getConstantLength(byte tag, int offset) {
+            switch (tag) {
+                case CONSTANT_Class:
+                case CONSTANT_String:
+                case CONSTANT_MethodType:
+                    return 2;
+
+                case CONSTANT_MethodHandle:
+                    return 3;
+
+                case CONSTANT_Fieldref:
+                case CONSTANT_Methodref:
+                case CONSTANT_InterfaceMethodref:
+                case CONSTANT_Integer:
+                case CONSTANT_Float:
+                case CONSTANT_NameAndType:
+                case CONSTANT_InvokeDynamic:
+                    return 4;
+
+                case CONSTANT_Long:
+                case CONSTANT_Double:
+                    return 8;
+
+                case CONSTANT_Utf8:
+                    return 2 + classData.getUnsignedShort(offset);
+
+                default:
+                    throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.unknownconst",
+                            Integer.toString(tag)));
+            }
+        }
+
         List getMethodRefs() {
             ArrayList memberList = new ArrayList();
-            int n = constants.length;
+            int n = tags.length;
             for (int i = 1; i < n; i++) {
-                if (constants[i].tag == CONSTANT_Long || constants[i].tag == CONSTANT_Double) {
+                if (tags[i] == CONSTANT_Long || tags[i] == CONSTANT_Double) {
                     i++;
                     continue;
                 }
-                if (constants[i].tag != CONSTANT_Methodref && constants[i].tag != CONSTANT_InterfaceMethodref
-                        && constants[i].tag != CONSTANT_Fieldref) {
+                if (tags[i] != CONSTANT_Methodref && tags[i] != CONSTANT_InterfaceMethodref
+                        && tags[i] != CONSTANT_Fieldref) {
                     continue;
                 }
-                int refs = ((Integer) getConstant(i).info).intValue();
-                short nameAndType = (short) refs;
-                short decl = (short) (refs >> 16);
+                int decl = classData.getUnsignedShort(offsets[i]);
+                int nameAndType = classData.getUnsignedShort(offsets[i] + 2);
 
 
                 String methodName = getMethodName(nameAndType);
@@ -97,7 +139,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
                 boolean isConstructor = "<init>".equals(methodName);
                 MemberDescription fid;
 
-                if (constants[i].tag == CONSTANT_Fieldref) {
+                if (tags[i] == CONSTANT_Fieldref) {
                     fid = new FieldDescr(methodName, className, 1);
                 } else {
                     if (isConstructor) {
@@ -113,7 +155,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
                     try {
                         fid.setArgs(BinaryClassDescrLoader.getArgs(descr.substring(1, pos)));
                     } catch (IllegalArgumentException e) {
-                        err(i18n.getString("BinaryClassDescrLoader.message.incorrectformat", Short.toString(decl)));
+                        err(i18n.getString("BinaryClassDescrLoader.message.incorrectformat", Integer.toString(decl)));
                     }
                 }
                 memberList.add(fid);
@@ -121,11 +163,22 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
             return memberList;
         }
 
-        private Constant getConstant(int i) {
-            if (i <= 0 || i >= constants.length)
+        /**
+         * Returns offset of the constant pool entry of the expected type.
+         */
+        private int getConstant(int i, int exp) {
+            if (i <= 0 || i >= tags.length)
                 throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.cpoutofbounds"));
 
-            return constants[i];
+            checkConstant(tags[i], exp);
+            return offsets[i];
+        }
+
+        private void checkConstant(byte tag, int exp) {
+            if (tag != exp) {
+                String[] consts = {Integer.toString(exp & 0xFF), Integer.toString(tag & 0xFF)};
+                throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.const", consts));
+            }
         }
 
         //  Read and store constant pool
@@ -135,52 +188,69 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
             if (i == 0)
                 return null;
 
-            Constant c = getConstant(i);
-            c.checkConstant(CONSTANT_Class);
-
-            c = getConstant(((Short) c.info).shortValue());
-            c.checkConstant(CONSTANT_Utf8);
-
-            return ((String) c.info).replace('/', '.');
+            return getName(classData.getUnsignedShort(getConstant(i, CONSTANT_Class))).replace('/', '.');
         }
 
         private String getMethodName(int i) {
             if (i == 0)
                 return null;
 
-            Constant c = getConstant(i);
-            c.checkConstant(CONSTANT_NameAndType);
-            return getName(((Integer) c.info).intValue() >> 16);
+            return getName(classData.getUnsignedShort(getConstant(i, CONSTANT_NameAndType)));
         }
 
         private String getMethodType(int i) {
             if (i == 0)
                 return null;
-            Constant c = getConstant(i);
-            c.checkConstant(CONSTANT_NameAndType);
-            return getName(((Integer) c.info).shortValue());
+
+            return getName(classData.getUnsignedShort(getConstant(i, CONSTANT_NameAndType) + 2));
         }
 
         private Object getConstantValue(int i) {
-            Constant c = getConstant(i);
-            if (c.tag == CONSTANT_String)
-                return getName(((Short) c.info).intValue() & 0xFFFF);
+            if (i <= 0 || i >= tags.length)
+                throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.cpoutofbounds"));
 
-            return c.info;
+            int offset = offsets[i];
+            switch (tags[i]) {
+                case CONSTANT_String:
+                    return getName(classData.getUnsignedShort(offset));
+                case CONSTANT_Utf8:
+                    return getName(i);
+                case CONSTANT_Integer:
+                    return new Integer(classData.getInt(offset));
+                case CONSTANT_Float:
+                    return new Float(Float.intBitsToFloat(classData.getInt(offset)));
+                case CONSTANT_Long:
+                    return new Long(classData.getLong(offset));
+                case CONSTANT_Double:
+                    return new Double(Double.longBitsToDouble(classData.getLong(offset)));
+                default:
+                    throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.unknownconst",
+                            Integer.toString(tags[i])));
+            }
         }
 
         private String getName(int i) {
-            Constant c = getConstant(i);
-            c.checkConstant(CONSTANT_Utf8);
-
-            return (String) c.info;
+            int offset = getConstant(i, CONSTANT_Utf8);
+            String name = names[i];
+            if (name == null) {
+                try {
+                    name = classData.readUTF(offset);
+                } catch (UTFDataFormatException e) {
+                    throw new ClassFormatError(e.getMessage());
+                }
+                names[i] = name;
+            }
+            return name;
         }
 
         private void cleanup() {
             sigctors = null;
             sigfields = null;
             sigmethods = null;
-            constants = null;
+            classData = null;
+            tags = null;
+            offsets = null;
+            names = null;
         }
     }
 
@@ -194,14 +264,19 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
     /**
      * cache of the loaded classes.
      */
-    private LRUCache cache;  //TODO if the cache is moved outside the loader, it became possible to clear ClassDescription.typeparamList
+    private ClassDescriptionCache cache;  //TODO if the cache is moved outside the loader, it became possible to clear ClassDescription.typeparamList
 
     /**
      * This stack is used to prevent infinite recursive calls of load(String name) method.
-     * E.g. the annotation Documented is one example of such recursion
+     * E.g. the annotation Documented is one example of such recursion.
+     * The stack is kept per thread, because the cache may be shared.
      */
 
-    private Map stack = new HashMap();
+    private ThreadLocal stack = new ThreadLocal() {
+        protected Object initialValue() {
+            return new HashMap();
+        }
+    };
 
     /**
      * creates new instance.
@@ -210,8 +285,45 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
      * @param bufferSize size of the class cache.
      */
     public BinaryClassDescrLoader(Classpath classpath, Integer bufferSize) {
+        this(classpath, new ClassDescriptionCache(bufferSize.intValue()));
+    }
+
+    /**
+     * creates new instance using the given cache. Loaders sharing
+     * the cache must use the same class path.
+     *
+     * @param classpath contains class files.
+     * @param cache     cache of the parsed classes.
+     */
+    public BinaryClassDescrLoader(Classpath classpath, ClassDescriptionCache cache) {
         this.classpath = classpath;
-        cache = new LRUCache(bufferSize.intValue());
+        this.cache = cache;
+    }
+
+    public ClassDescriptionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * persistent cache of the parsed classes, may be null.
+     */
+    private PersistentClassCache persistentCache;
+
+    /**
+     * The class being parsed by the current thread, see {@link Parse}.
+     */
+    private ThreadLocal parse = new ThreadLocal();
+
+    /**
+     * Sets persistent cache used together with the cache of the loaded
+     * classes. The persistent cache must use the same class path.
+     */
+    public void setPersistentCache(PersistentClassCache persistentCache) {
+        this.persistentCache = persistentCache;
+    }
+
+    public PersistentClassCache getPersistentCache() {
+        return persistentCache;
     }
 
     /**
@@ -227,33 +339,120 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
         // search in the cache
         BinaryClassDescription c = (BinaryClassDescription) cache.get(className);
 
-        if (c != null)
+        if (c != null) {
+            dependsOn(className);
             return c;
+        }
 
         // check recursive call
+        Map stack = (Map) this.stack.get();
         c = (BinaryClassDescription) stack.get(className);
-        if (c != null)
+        if (c != null) {
+            // the description isn't complete yet, its dependencies are
+            // added when it is parsed
+            addDependency(className);
             return c;
+        }
+
+        if (persistentCache != null) {
+            c = new BinaryClassDescription();
+            if (persistentCache.get(className, getSettings(), c)) {
+                cache.put(className, c);
+                dependsOn(className);
+                return c;
+            }
+        }
 
         // load class if the cache does not contains required class.
+        Parse outer = (Parse) parse.get();
+        Parse p = new Parse();
+        boolean loaded = false;
         try {
             c = new BinaryClassDescription();
 
             stack.put(className, c);
+            parse.set(p);
             readClass(c, classpath.findClass(className));
             cache.put(className, c);
+            loaded = true;
         } catch (IOException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             throw new ClassNotFoundException(className);
         }
         finally {
             stack.remove(className);
+            parse.set(outer);
+            // the class being parsed depends on absence of this class
+            if (!loaded)
+                addDependency(className);
         }
 
+        if (persistentCache != null && p.persistable)
+            persistentCache.put(className, getSettings(), c, p.dependsOn);
+
+        dependsOn(className);
         return c;
     }
 
+    /**
+     * Classes the description of the class being parsed depends on.
+     * The description can't be cached persistently if it depends on
+     * some class which isn't cached, or if there were any warnings
+     * while parsing, because the warnings aren't cached.
+     */
+    private static class Parse {
+        private final Set dependsOn = new HashSet();
+        private boolean persistable = true;
+    }
+
+    private void dependsOn(String className) {
+        Parse p = (Parse) parse.get();
+        if (p == null || !p.persistable)
+            return;
+
+        Set d = persistentCache == null ? null : persistentCache.getDependencies(className, getSettings());
+        if (d == null) {
+            p.persistable = false;
+        } else {
+            p.dependsOn.add(className);
+            p.dependsOn.addAll(d);
+        }
+    }
+
+    private void addDependency(String className) {
+        Parse p = (Parse) parse.get();
+        if (p != null)
+            p.dependsOn.add(className);
+    }
+
+    private void notPersistable() {
+        Parse p = (Parse) parse.get();
+        if (p != null)
+            p.persistable = false;
+    }
+
+    /**
+     * Returns string describing the options which affect the parsed
+     * descriptions.
+     */
+    private String getSettings() {
+        int bits = 0;
+        if (hasHint(LoadingHints.READ_SYNTETHIC))
+            bits |= 1;
+        if (hasHint(LoadingHints.READ_ANY_ANNOTATIONS))
+            bits |= 2;
+        if (hasHint(LoadingHints.DONT_READ_VALUES))
+            bits |= 4;
+        if (hasHint(LoadingHints.READ_BRIDGE))
+            bits |= 8;
+        if (ignoreAnnotations)
+            bits |= 16;
+        if (SigTest.isTigerFeaturesTracked())
+            bits |= 32;
+        return Integer.toHexString(bits);
+    }
+
 
     private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(BinaryClassDescrLoader.class);
 
@@ -281,90 +480,12 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
             CONSTANT_MethodType = 16,
             CONSTANT_InvokeDynamic = 18;
 
-//  Constant pool entry
-
-    private static class Constant {
-        byte tag;
-        Object info;
-
-        void checkConstant(int exp) {
-            if (tag != exp) {
-                String[] consts = {Integer.toString(exp & 0xFF), Integer.toString(tag & 0xFF)};
-                throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.const", consts));
-            }
-        }
-
-        String getName() {
-            checkConstant(CONSTANT_Utf8);
-            return (String) info;
-        }
-
-        void read(DataInput classData) throws IOException {
-            tag = classData.readByte();
-            switch (tag) {
-                case CONSTANT_Class:
-                    info = new Short(classData.readShort());
-                    break;
-
-                case CONSTANT_Fieldref:
-                case CONSTANT_Methodref:
-                case CONSTANT_InterfaceMethodref:
-                    info = new Integer(classData.readInt());
-                    break;
-
-                case CONSTANT_String:
-                    info = new Short(classData.readShort());
-                    break;
-
-                case CONSTANT_Integer:
-                    info = new Integer(classData.readInt());
-                    break;
-
-                case CONSTANT_Float:
-                    info = new Float(classData.readFloat());
-                    break;
-
-                case CONSTANT_Long:
-                    info = new Long(classData.readLong());
-                    break;
-
-                case CONSTANT_Double:
-                    info = new Double(classData.readDouble());
-                    break;
-
-                case CONSTANT_NameAndType:
-                    info = new Integer(classData.readInt());
-                    break;
-
-                case CONSTANT_Utf8:
-                    info = classData.readUTF();
-                    break;
-                case CONSTANT_MethodHandle:
-                    byte kind = classData.readByte();
-                    short index = classData.readShort();
-                    info = new Integer(kind << 16 | index);
-                    break;
-                case CONSTANT_MethodType:
-                    info = new Short(classData.readShort());
-                    break;
-                case CONSTANT_InvokeDynamic:
-                    info = new Integer(classData.readInt());
-                    break;
-
-                default:
-                    throw new ClassFormatError(i18n.getString("BinaryClassDescrLoader.error.unknownconst",
-                            Integer.toString(tag)));
-            }
-        }
-    }
-
     private void readClass(BinaryClassDescription c, InputStream is) throws IOException {
 
-        DataInput classData = new DataInputStream(is);
-
         try {
-            readClass(c, classData);
+            readClass(c, ClassFileInput.read(is));
         } catch (Throwable t) {
+            notPersistable();
             t.printStackTrace();
         }
         finally {
@@ -373,7 +494,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
         }
     }
 
-    private void readClass(BinaryClassDescription c, DataInput classData) throws IOException {
+    private void readClass(BinaryClassDescription c, ClassFileInput classData) throws IOException {
 
         int magic = classData.readInt();
         if (magic != MAGIC) {
@@ -500,17 +621,16 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
         List result = new ArrayList();
         try {
             BinaryClassDescription c = new BinaryClassDescription();
-            DataInputStream classData = new DataInputStream(classpath.findClass(name));
+            ClassFileInput classData = ClassFileInput.read(classpath.findClass(name));
             try {
-                readClass(c, (DataInput) classData);
+                readClass(c, classData);
                 result = c.getMethodRefs();
             }
             finally {
                 c.cleanup();
-                classData.close();
             }
         } catch (IOException e) {
-            if (SigTest.debug)
+            if (SigTest.isDebug())
                 e.printStackTrace();
             throw new ClassNotFoundException(name);
         }
@@ -570,7 +690,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 //  Process fields
 
 
-    private void readFields(BinaryClassDescription c, DataInput classData) throws IOException {
+    private void readFields(BinaryClassDescription c, ClassFileInput classData) throws IOException {
 
         int n = classData.readUnsignedShort();
 
@@ -590,7 +710,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 
             if (!hasHint(LoadingHints.READ_SYNTETHIC)) {
                 if (fid.hasModifier(Modifier.ACC_SYNTHETIC)) {
-                    if (SigTest.debug)
+                    if (SigTest.isDebug())
                         System.out.println(i18n.getString("BinaryClassDescrLoader.message.synthetic_field_skipped",
                                 fid.getType() + " " + fid.getQualifiedName()));
                     continue;
@@ -658,7 +778,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 
     private static String[] EMPTY_STRING_ARRAY = new String[0];
 
-    private void readMethods(BinaryClassDescription c, DataInput classData) throws IOException {
+    private void readMethods(BinaryClassDescription c, ClassFileInput classData) throws IOException {
         List ctors = new ArrayList(),
                 mthds = new ArrayList();
 
@@ -701,7 +821,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 
             // skip synthetic methods and constructors
             if (!hasHint(LoadingHints.READ_SYNTETHIC) && isSynthetic) {
-                if (SigTest.debug) {
+                if (SigTest.isDebug()) {
                     if (isConstructor) {
                         System.out.println(i18n.getString("BinaryClassDescrLoader.message.synthetic_constr_skipped",
                                 fid.getQualifiedName() + "(" + fid.getArgs() + ")"));
@@ -882,7 +1002,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 
     private abstract class AttrsIter {
 
-        DataInputStream is;
+        DataInput is;
 
         boolean synthetic = false,
                 deprecated = false;
@@ -891,7 +1011,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
         List/*AnnotationItem*/ annolist = null;
         Object annodef = null;
 
-        void read(BinaryClassDescription c, DataInput classData) throws IOException {
+        void read(BinaryClassDescription c, ClassFileInput classData) throws IOException {
             int n = classData.readUnsignedShort();
 
             for (int i = 0; i < n; i++) {
@@ -899,11 +1019,14 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
                 int count = classData.readInt();
                 //System.out.println("  attribute: "+name+" count: "+count);
 
-                if (count != 0) {
-                    byte[] info = new byte[count];
-                    classData.readFully(info);
-                    is = new DataInputStream(new ByteArrayInputStream(info));
-                }
+                // the attribute is read in place, the reading is limited
+                // to the attribute and then continues after it
+                int end = classData.position() + count;
+                int limit = classData.limit();
+                if (end > limit)
+                    throw new EOFException();
+                classData.limit(end);
+                is = classData;
 
                 if (name.equals("Synthetic"))
                     synthetic = true;
@@ -914,39 +1037,34 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
                 else if (name.equals("Signature")) {
                     checkVersion(c, name, TIGER_CLASS_VERSION);
                     signature = c.getName(is.readUnsignedShort());
-                } else if (SigTest.isTigerFeaturesTracked && name.equals("RuntimeVisibleAnnotations")) {
+                } else if (SigTest.isTigerFeaturesTracked() && name.equals("RuntimeVisibleAnnotations")) {
                     checkVersion(c, name, TIGER_CLASS_VERSION);
                     readAnnotations(c, 0);
 
-                } else if (SigTest.isTigerFeaturesTracked && name.equals("RuntimeInvisibleAnnotations")) {
+                } else if (SigTest.isTigerFeaturesTracked() && name.equals("RuntimeInvisibleAnnotations")) {
                     checkVersion(c, name, TIGER_CLASS_VERSION);
                     readAnnotations(c, 0);
-                } else if (SigTest.isTigerFeaturesTracked && name.equals("RuntimeVisibleTypeAnnotations")) {
+                } else if (SigTest.isTigerFeaturesTracked() && name.equals("RuntimeVisibleTypeAnnotations")) {
                     checkVersion(c, name, J7_CLASS_VERSION);
                     readExtAnnotations(c, 0);
-                } else if (SigTest.isTigerFeaturesTracked && name.equals("RuntimeInvisibleTypeAnnotations")) {
+                } else if (SigTest.isTigerFeaturesTracked() && name.equals("RuntimeInvisibleTypeAnnotations")) {
                     checkVersion(c, name, J7_CLASS_VERSION);
                     readExtAnnotations(c, 0);
-                } else if (SigTest.isTigerFeaturesTracked && 
+                } else if (SigTest.isTigerFeaturesTracked() && 
                         (name.equals("RuntimeVisibleParameterAnnotations") || name.equals("RuntimeInvisibleParameterAnnotations")) ) {
                     checkVersion(c, name, TIGER_CLASS_VERSION);
                     int m = is.readUnsignedByte();
                     for (int l = 0; l < m; l++)
                         readAnnotations(c, l + 1);
-                } else if (SigTest.isTigerFeaturesTracked && name.equals("AnnotationDefault")) {
+                } else if (SigTest.isTigerFeaturesTracked() && name.equals("AnnotationDefault")) {
                     checkVersion(c, name, TIGER_CLASS_VERSION);
                     annodef = read_member_value(c);
                 } else {
                     check(c, name);
                 }
 
-                if (count != 0) {
-                    try {
-                        is.close();
-                    }
-                    catch (IOException x) {
-                    }
-                }
+                classData.limit(limit);
+                classData.position(end);
             }
         }
 
@@ -966,7 +1084,8 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
                 } catch (AnnotationNotFoundException ex) {
                     final String annoName = ex.getMessage();
                     if (!AnnotationItem.isInternal(annoName)) {
-                        System.out.println("Warning: " + i18n.getString("BinaryClassDescrLoader.error.annotnotfound", annoName));
+                        notPersistable();
+                        printWarning(i18n.getString("BinaryClassDescrLoader.error.annotnotfound", annoName));
                     }
                 }
             }
@@ -1560,6 +1679,7 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
 
 
     public void warning(String msg) {
+        notPersistable();
         getLog().println(msg);
     }
 
@@ -1587,6 +1707,32 @@ public class BinaryClassDescrLoader implements ClassDescriptionLoader, LoadingHi
     
     private PrintWriter log;
 
+    /**
+     * Collects the warnings found while the class files are read to the
+     * given list instead of printing them to <code>System.out</code>.
+     */
+    public void setWarnings(List warnings) {
+        this.warnings = warnings;
+    }
+
+    /**
+     * Prints the warning found while a class file was read. The same
+     * warning is printed once, the classes can be read several times.
+     */
+    public void printWarning(String msg) {
+        synchronized (printedWarnings) {
+            if (!printedWarnings.add(msg))
+                return;
+        }
+        if (warnings != null)
+            warnings.add(msg);
+        else
+            System.out.println("Warning: " + msg);
+    }
+
+    private List warnings;
+    private final Set printedWarnings = new HashSet();
+
     private static final class AnnotationNotFoundException extends IOException {
         public AnnotationNotFoundException(String message, ClassNotFoundException cause) {
             super(message, cause);
@@ -0,0 +1,212 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.loaders;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.util.I18NResourceBundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the parsed class descriptions. The size of the cache is limited
+ * by the estimated weight of the descriptions rather than by their number,
+ * so one class with hundreds of members costs as much as many small
+ * interfaces. If the limit is exceeded, the least recently used
+ * descriptions are evicted.
+ * <p/>
+ * The cache is thread-safe and can be shared by several loaders.
+ * It counts hits, misses and evictions, see {@link #getStatistics()}.
+ *
+ * @see BinaryClassDescrLoader
+ */
+public class ClassDescriptionCache {
+
+    /**
+     * Weight of an average class. The size of the cache specified
+     * as a number of classes is multiplied by this value.
+     */
+    public static final int AVERAGE_CLASS_WEIGHT = 16;
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(ClassDescriptionCache.class);
+
+    private final Map entries = new ConcurrentHashMap();
+    private final long maxWeight;
+
+    private final AtomicLong weight = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates cache for about <code>classes</code> classes of average size.
+     */
+    public ClassDescriptionCache(int classes) {
+        if (classes <= 0)
+            throw new IllegalArgumentException("Cache size must be positive: " + classes);
+        maxWeight = (long) classes * AVERAGE_CLASS_WEIGHT;
+    }
+
+    /**
+     * Returns cached description of the class <code>name</code>
+     * or <code>null</code>.
+     */
+    public ClassDescription get(String name) {
+        Entry e = (Entry) entries.get(name);
+        if (e == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        e.lastAccess = clock.incrementAndGet();
+        hits.incrementAndGet();
+        return e.value;
+    }
+
+    public void put(String name, ClassDescription c) {
+        Entry e = new Entry(c, weigh(c), clock.incrementAndGet());
+        Entry old = (Entry) entries.put(name, e);
+        weight.addAndGet(old == null ? e.weight : e.weight - old.weight);
+
+        if (weight.get() > maxWeight)
+            evict();
+    }
+
+    public void remove(String name) {
+        Entry old = (Entry) entries.remove(name);
+        if (old != null)
+            weight.addAndGet(-old.weight);
+    }
+
+    public void clear() {
+        entries.clear();
+        weight.set(0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns a line describing the efficiency of the cache.
+     */
+    public String getStatistics() {
+        Object[] args = {Long.toString(getHits()), Long.toString(getMisses()),
+                Long.toString(getEvictions()), Integer.toString(size())};
+        return i18n.getString("ClassDescriptionCache.mesg.statistics", args);
+    }
+
+    /**
+     * Estimates weight of the class description by the number of its
+     * members, the class itself has the weight 1.
+     */
+    static int weigh(ClassDescription c) {
+        return 1 + length(c.getDeclaredFields()) + length(c.getDeclaredMethods())
+                + length(c.getDeclaredConstructors()) + length(c.getDeclaredClasses())
+                + length(c.getInterfaces()) + length(c.getAnnoList());
+    }
+
+    private static int length(Object[] a) {
+        return a == null ? 0 : a.length;
+    }
+
+    /**
+     * Removes the least recently used entries until the weight drops
+     * below 7/8 of the limit, so that eviction doesn't happen on each put.
+     */
+    private synchronized void evict() {
+        if (weight.get() <= maxWeight)
+            return;
+
+        // the access time is copied, because it can be changed while sorting
+        List all = new ArrayList(entries.size());
+        for (Iterator it = entries.entrySet().iterator(); it.hasNext();) {
+            Map.Entry me = (Map.Entry) it.next();
+            all.add(new Candidate(me.getKey(), (Entry) me.getValue()));
+        }
+        Collections.sort(all, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long a1 = ((Candidate) o1).lastAccess;
+                long a2 = ((Candidate) o2).lastAccess;
+                return a1 < a2 ? -1 : (a1 == a2 ? 0 : 1);
+            }
+        });
+
+        long target = maxWeight - maxWeight / 8;
+        for (Iterator it = all.iterator(); it.hasNext() && weight.get() > target;) {
+            Candidate c = (Candidate) it.next();
+            if (entries.remove(c.key, c.entry)) {
+                weight.addAndGet(-c.entry.weight);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final ClassDescription value;
+        private final int weight;
+        private volatile long lastAccess;
+
+        private Entry(ClassDescription value, int weight, long lastAccess) {
+            this.value = value;
+            this.weight = weight;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class Candidate {
+        private final Object key;
+        private final Entry entry;
+        private final long lastAccess;
+
+        private Candidate(Object key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+}
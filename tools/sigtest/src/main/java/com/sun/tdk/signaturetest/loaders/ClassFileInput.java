@@ -0,0 +1,258 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.loaders;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <b>DataInput</b> reading the class file kept in the <b>ByteBuffer</b>.
+ * The class file is read at once, big files are memory-mapped. The reading
+ * can be limited to a part of the class file, like an attribute, and the
+ * data can be read at any offset without moving the current position,
+ * see {@link #readUTF(int)}.
+ *
+ * @see BinaryClassDescrLoader
+ */
+class ClassFileInput implements DataInput {
+
+    /**
+     * The files of this size and bigger are memory-mapped, the smaller
+     * ones are read faster.
+     */
+    private static final int MAP_THRESHOLD = 0x10000;
+
+    private static final int BUFSIZE = 0x2000;
+
+    private final ByteBuffer buf;
+
+    ClassFileInput(ByteBuffer buf) {
+        this.buf = buf;
+    }
+
+    /**
+     * Reads the class file from the stream and closes the stream.
+     */
+    static ClassFileInput read(InputStream is) throws IOException {
+        try {
+            if (is instanceof FileInputStream) {
+                FileChannel ch = ((FileInputStream) is).getChannel();
+                long size = ch.size();
+                if (size >= MAP_THRESHOLD)
+                    return new ClassFileInput(ch.map(FileChannel.MapMode.READ_ONLY, 0, size));
+
+                ByteBuffer b = ByteBuffer.allocate((int) size);
+                while (b.hasRemaining() && ch.read(b) >= 0)
+                    ;
+                b.flip();
+                return new ClassFileInput(b);
+            }
+
+            byte[] b = new byte[Math.max(is.available(), BUFSIZE)];
+            int len = 0;
+            int n;
+            while ((n = is.read(b, len, b.length - len)) >= 0) {
+                len += n;
+                if (len == b.length) {
+                    byte[] tmp = new byte[b.length * 2];
+                    System.arraycopy(b, 0, tmp, 0, len);
+                    b = tmp;
+                }
+            }
+            return new ClassFileInput(ByteBuffer.wrap(b, 0, len));
+        } finally {
+            is.close();
+        }
+    }
+
+    int position() {
+        return buf.position();
+    }
+
+    void position(int position) {
+        buf.position(position);
+    }
+
+    int limit() {
+        return buf.limit();
+    }
+
+    void limit(int limit) {
+        buf.limit(limit);
+    }
+
+    int getUnsignedShort(int offset) {
+        return buf.getShort(offset) & 0xFFFF;
+    }
+
+    int getInt(int offset) {
+        return buf.getInt(offset);
+    }
+
+    long getLong(int offset) {
+        return buf.getLong(offset);
+    }
+
+    /**
+     * Decodes the string in the modified UTF-8 format at the <code>offset</code>,
+     * like {@link DataInputStream#readUTF(DataInput)} does.
+     */
+    String readUTF(int offset) throws UTFDataFormatException {
+        int len = getUnsignedShort(offset);
+        int pos = offset + 2;
+        int end = pos + len;
+        if (end > buf.limit())
+            throw new UTFDataFormatException("malformed input: partial string at " + offset);
+
+        char[] chars = new char[len];
+        int count = 0;
+        while (pos < end) {
+            int c = buf.get(pos) & 0xFF;
+            if (c < 0x80) {
+                pos++;
+                chars[count++] = (char) c;
+            } else if ((c & 0xE0) == 0xC0) {
+                if (pos + 2 > end)
+                    throw new UTFDataFormatException("malformed input: partial character at " + pos);
+                int c2 = buf.get(pos + 1);
+                if ((c2 & 0xC0) != 0x80)
+                    throw new UTFDataFormatException("malformed input around byte " + pos);
+                chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                pos += 2;
+            } else if ((c & 0xF0) == 0xE0) {
+                if (pos + 3 > end)
+                    throw new UTFDataFormatException("malformed input: partial character at " + pos);
+                int c2 = buf.get(pos + 1);
+                int c3 = buf.get(pos + 2);
+                if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80)
+                    throw new UTFDataFormatException("malformed input around byte " + pos);
+                chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                pos += 3;
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + pos);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private void require(int n) throws EOFException {
+        if (buf.remaining() < n)
+            throw new EOFException();
+    }
+
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        require(len);
+        buf.get(b, off, len);
+    }
+
+    public int skipBytes(int n) {
+        n = Math.min(n, buf.remaining());
+        buf.position(buf.position() + n);
+        return n;
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public byte readByte() throws IOException {
+        require(1);
+        return buf.get();
+    }
+
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    public short readShort() throws IOException {
+        require(2);
+        return buf.getShort();
+    }
+
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    public char readChar() throws IOException {
+        require(2);
+        return buf.getChar();
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buf.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+        return buf.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads the line of bytes like <b>DataInputStream</b> does, each byte
+     * is converted to the character with the same low-order eight bits.
+     */
+    public String readLine() {
+        if (!buf.hasRemaining())
+            return null;
+
+        StringBuffer sb = new StringBuffer();
+        while (buf.hasRemaining()) {
+            int c = buf.get() & 0xFF;
+            if (c == '\n')
+                break;
+            if (c == '\r') {
+                if (buf.hasRemaining() && buf.get(buf.position()) == '\n')
+                    buf.get();
+                break;
+            }
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    public String readUTF() throws IOException {
+        require(2);
+        String s = readUTF(buf.position());
+        buf.position(buf.position() + 2 + getUnsignedShort(buf.position()));
+        return s;
+    }
+}
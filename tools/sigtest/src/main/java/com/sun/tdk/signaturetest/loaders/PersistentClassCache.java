@@ -0,0 +1,437 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.loaders;
+
+import com.sun.tdk.signaturetest.SigTest;
+import com.sun.tdk.signaturetest.Version;
+import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.ClassDescriptionCodec;
+import com.sun.tdk.signaturetest.util.I18NResourceBundle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the parsed class descriptions. The descriptions of
+ * the classes provided by one classpath entry are kept in one snapshot
+ * file named by the content key of the entry
+ * (see {@link ClasspathImpl#getContentKey(String)}), so the snapshot of
+ * an unchanged jar file is reused by the next runs. The snapshots are
+ * placed in the subdirectory named by the sigtest version, because
+ * the loader may parse the classes differently in other versions.
+ * <p/>
+ * The description of a class may depend on other classes, e.g. on the
+ * annotation types and on the declaring class. The names of these classes
+ * and the content keys of the entries providing them are stored together
+ * with the description and checked before the description is reused.
+ * <p/>
+ * The snapshots are read on demand and written by {@link #store()}.
+ * The cache is thread-safe and can be shared by several loaders using
+ * the same class path. The caches of the runs using different class paths
+ * can share the snapshots, see
+ * {@link #PersistentClassCache(PersistentClassCache, ClasspathImpl)}.
+ *
+ * @see BinaryClassDescrLoader#setPersistentCache(PersistentClassCache)
+ */
+public class PersistentClassCache {
+
+    private static final int MAGIC = 0x53494743;
+    private static final String SUFFIX = ".cache";
+
+    private static I18NResourceBundle i18n = I18NResourceBundle.getBundleForClass(PersistentClassCache.class);
+
+    private final File dir;
+    private final ClasspathImpl classpath;
+
+    /**
+     * Snapshots read or created in this run, by the file name. The map
+     * is shared by the caches created for the other class paths and
+     * guards all the state of the cache.
+     */
+    private final Map snapshots;
+
+    /**
+     * Classes which descriptions were read from or put to the cache
+     * in this run with the names of the classes they depend on, by the
+     * loader settings. Descriptions depending on the other classes
+     * are not cached.
+     */
+    private final Map dependencies = new HashMap();
+
+    /**
+     * Content keys of the entries providing the classes, by the class name.
+     */
+    private final Map contentKeys = new HashMap();
+    private static final Object NO_KEY = new Object();
+
+    private int reused = 0;
+    private int stored = 0;
+
+    /**
+     * Creates cache keeping the snapshots in the given directory.
+     * The directory is created when the snapshots are stored.
+     *
+     * @param dir       the directory or <code>null</code> if the snapshots
+     *                  are kept in memory only.
+     * @param classpath the class path or <code>null</code> if the cache
+     *                  is only used to share the snapshots.
+     */
+    public PersistentClassCache(File dir, ClasspathImpl classpath) {
+        this.dir = dir == null ? null : new File(dir, Version.Number);
+        this.classpath = classpath;
+        this.snapshots = new HashMap();
+    }
+
+    /**
+     * Creates cache for the <code>classpath</code> sharing the snapshots
+     * with the <code>shared</code> cache, so the classes provided by the same
+     * entries, e.g. by the JDK, are parsed once for several runs. The
+     * descriptions are validated against the <code>classpath</code>.
+     */
+    public PersistentClassCache(PersistentClassCache shared, ClasspathImpl classpath) {
+        this.dir = shared.dir;
+        this.classpath = classpath;
+        this.snapshots = shared.snapshots;
+    }
+
+    /**
+     * Reads the description of the class <code>name</code> from the
+     * snapshot to the empty description <code>c</code>.
+     *
+     * @param settings the loader settings, see
+     *                 {@link #put(String, String, ClassDescription, Set)}.
+     * @return false if there is no valid description.
+     */
+    public boolean get(String name, String settings, ClassDescription c) {
+        Record r;
+        synchronized (snapshots) {
+            String key = getContentKey(name);
+            if (key == null)
+                return false;
+
+            Snapshot s = getSnapshot(key, settings);
+            r = (Record) s.records.get(name);
+            if (r == null)
+                return false;
+
+            for (int i = 0; i < r.names.length; i++) {
+                if (!r.keys[i].equals(getContentKey(r.names[i]))) {
+                    s.remove(name);
+                    return false;
+                }
+            }
+        }
+
+        try {
+            ClassDescriptionCodec.read(c, new DataInputStream(new ByteArrayInputStream(r.data)));
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            synchronized (snapshots) {
+                ((Snapshot) snapshots.get(r.file)).remove(name);
+            }
+            return false;
+        }
+
+        synchronized (snapshots) {
+            getDependencies(settings).put(name, new HashSet(Arrays.asList(r.names)));
+            reused++;
+        }
+        return true;
+    }
+
+    /**
+     * Puts the description of the class <code>name</code> just parsed
+     * by the loader. The description is not cached if the class itself or
+     * some of the classes it depends on is provided by an entry which
+     * content can't be identified.
+     *
+     * @param settings   the loader settings affecting the descriptions,
+     *                   the descriptions parsed with other settings are
+     *                   kept in other snapshots.
+     * @param dependsOn  names of all the classes the description
+     *                   depends on, directly or indirectly.
+     */
+    public void put(String name, String settings, ClassDescription c, Set dependsOn) {
+        String[] names;
+        String[] keys;
+        String key;
+
+        synchronized (snapshots) {
+            key = getContentKey(name);
+            if (key == null)
+                return;
+
+            names = (String[]) dependsOn.toArray(new String[dependsOn.size()]);
+            keys = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                keys[i] = getContentKey(names[i]);
+                if (keys[i] == null)
+                    return;
+            }
+        }
+
+        byte[] data;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            ClassDescriptionCodec.write(c, new DataOutputStream(buffer));
+            data = buffer.toByteArray();
+        } catch (IOException e) {
+            if (SigTest.isDebug())
+                e.printStackTrace();
+            return;
+        }
+
+        synchronized (snapshots) {
+            Snapshot s = getSnapshot(key, settings);
+            s.records.put(name, new Record(s.file, names, keys, data));
+            s.modified = true;
+            getDependencies(settings).put(name, dependsOn);
+            stored++;
+        }
+    }
+
+    /**
+     * Returns names of the classes the class <code>name</code> depends on,
+     * if its description was read from or put to the cache in this run,
+     * or <code>null</code>.
+     */
+    public Set getDependencies(String name, String settings) {
+        synchronized (snapshots) {
+            return (Set) getDependencies(settings).get(name);
+        }
+    }
+
+    /**
+     * Writes the snapshots changed in this run, does nothing if the
+     * snapshots are kept in memory only.
+     *
+     * @throws IOException if the directory or some snapshot can't be written.
+     */
+    public void store() throws IOException {
+        if (dir == null)
+            return;
+
+        synchronized (snapshots) {
+            if (!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException(i18n.getString("PersistentClassCache.error.mkdir", dir.getPath()));
+
+            for (Iterator it = snapshots.values().iterator(); it.hasNext();) {
+                Snapshot s = (Snapshot) it.next();
+                if (s.modified) {
+                    s.write();
+                    s.modified = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a line describing the efficiency of the cache.
+     */
+    public String getStatistics() {
+        synchronized (snapshots) {
+            Object[] args = {Integer.toString(reused), Integer.toString(stored)};
+            return i18n.getString("PersistentClassCache.mesg.statistics", args);
+        }
+    }
+
+    /**
+     * Returns the content key of the entry providing the class. The keys
+     * are remembered, because the class path isn't changed during the run.
+     */
+    private String getContentKey(String name) {
+        Object key = contentKeys.get(name);
+        if (key == null) {
+            key = classpath.getContentKey(name);
+            contentKeys.put(name, key == null ? NO_KEY : key);
+        }
+        return key == NO_KEY ? null : (String) key;
+    }
+
+    private Map getDependencies(String settings) {
+        Map result = (Map) dependencies.get(settings);
+        if (result == null) {
+            result = new HashMap();
+            dependencies.put(settings, result);
+        }
+        return result;
+    }
+
+    private Snapshot getSnapshot(String key, String settings) {
+        StringBuffer sb = new StringBuffer();
+        for (int i = 0; i < key.length(); i++) {
+            char ch = key.charAt(i);
+            sb.append(Character.isLetterOrDigit(ch) || ch == '.' || ch == '-' ? ch : '_');
+        }
+        sb.append('-').append(settings).append(SUFFIX);
+        String file = sb.toString();
+
+        Snapshot s = (Snapshot) snapshots.get(file);
+        if (s == null) {
+            s = new Snapshot(file);
+            s.read();
+            snapshots.put(file, s);
+        }
+        return s;
+    }
+
+    /**
+     * Descriptions of the classes provided by one classpath entry.
+     */
+    private class Snapshot {
+        private final String file;
+        private final Map records = new HashMap();
+        private boolean modified = false;
+
+        Snapshot(String file) {
+            this.file = file;
+        }
+
+        void remove(String name) {
+            if (records.remove(name) != null)
+                modified = true;
+        }
+
+        void read() {
+            if (dir == null)
+                return;
+
+            File f = new File(dir, file);
+            if (!f.isFile())
+                return;
+
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))));
+                if (in.readInt() != MAGIC || !Version.Number.equals(in.readUTF()))
+                    return;
+
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    String name = in.readUTF();
+                    int k = in.readInt();
+                    String[] names = new String[k];
+                    String[] keys = new String[k];
+                    for (int j = 0; j < k; j++) {
+                        names[j] = in.readUTF();
+                        keys[j] = in.readUTF();
+                    }
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    records.put(name, new Record(file, names, keys, data));
+                }
+            } catch (IOException e) {
+                // damaged snapshot is ignored and will be rewritten
+                if (SigTest.isDebug())
+                    e.printStackTrace();
+                records.clear();
+                modified = true;
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        if (SigTest.isDebug())
+                            e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the snapshot to the temporary file and renames it,
+         * so that concurrent runs never read a half-written snapshot.
+         */
+        void write() throws IOException {
+            File tmp = File.createTempFile("snapshot", ".tmp", dir);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            try {
+                out.writeInt(MAGIC);
+                out.writeUTF(Version.Number);
+                out.writeInt(records.size());
+                for (Iterator it = records.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry e = (Map.Entry) it.next();
+                    Record r = (Record) e.getValue();
+                    out.writeUTF((String) e.getKey());
+                    out.writeInt(r.names.length);
+                    for (int j = 0; j < r.names.length; j++) {
+                        out.writeUTF(r.names[j]);
+                        out.writeUTF(r.keys[j]);
+                    }
+                    out.writeInt(r.data.length);
+                    out.write(r.data);
+                }
+            } finally {
+                out.close();
+            }
+
+            File f = new File(dir, file);
+            f.delete();
+            if (!tmp.renameTo(f)) {
+                tmp.delete();
+                throw new IOException(i18n.getString("PersistentClassCache.error.write", f.getPath()));
+            }
+        }
+    }
+
+    /**
+     * Serialized description of one class and the classes it depends on
+     * with the content keys of their entries.
+     */
+    private static class Record {
+        private final String file;
+        private final String[] names;
+        private final String[] keys;
+        private final byte[] data;
+
+        Record(String file, String[] names, String[] keys, byte[] data) {
+            this.file = file;
+            this.names = names;
+            this.keys = keys;
+            this.data = data;
+        }
+    }
+}
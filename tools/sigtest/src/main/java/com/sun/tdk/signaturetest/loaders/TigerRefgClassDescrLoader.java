@@ -146,7 +146,7 @@ public class TigerRefgClassDescrLoader implements ClassDescriptionLoader, Loadin
 
             // skip synthetic fields
             if (fld.isSynthetic()) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     System.out.println(i18n.getString("TigerRefgClassDescrLoader.message.synthetic_field_skipped", fld));
                 continue;
             }
@@ -192,7 +192,7 @@ public class TigerRefgClassDescrLoader implements ClassDescriptionLoader, Loadin
 
             // skip synthetic constructors
             if (ctor.isSynthetic()) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     System.out.println(i18n.getString("TigerRefgClassDescrLoader.message.synthetic_constr_skipped", ctor));
                 continue;
             }
@@ -258,7 +258,7 @@ public class TigerRefgClassDescrLoader implements ClassDescriptionLoader, Loadin
 
             // skip synthetic methods
             if (mtd.isSynthetic()) {
-                if (SigTest.debug)
+                if (SigTest.isDebug())
                     System.out.println(i18n.getString("TigerRefgClassDescrLoader.message.synthetic_method_skipped", mtd));
                 continue;
             }
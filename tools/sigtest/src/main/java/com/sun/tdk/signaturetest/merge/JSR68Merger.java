@@ -67,44 +67,56 @@ public class JSR68Merger extends FeaturesHolder {
         VirtualClassDescriptionLoader result = new VirtualClassDescriptionLoader();
         setLogger();
 
+        // joins the classes of all the files by name, for each class
+        // the indexes of the files containing it are kept in the order of the files
+        HashMap filesByClass = new HashMap();
+        for (int i = 0; i < files.length; i++) {
+            Iterator it = files[i].getClassSet().keySet().iterator();
+            while (it.hasNext()) {
+                String name = (String) it.next();
+                ArrayList indexes = (ArrayList) filesByClass.get(name);
+                if (indexes == null) {
+                    indexes = new ArrayList(2);
+                    filesByClass.put(name, indexes);
+                }
+                indexes.add(Integer.valueOf(i));
+            }
+        }
 
         for (int i = 0; i < files.length; i++) {
             MergedSigFile mf = files[i];
             Iterator it = mf.getClassSet().values().iterator();
             while (it.hasNext()) {
                 ClassDescription cd = (ClassDescription) it.next();
+                ArrayList indexes = (ArrayList) filesByClass.get(cd.getQualifiedName());
+
+                // every class is merged once, when the last file containing it is visited
+                if (((Integer) indexes.get(indexes.size() - 1)).intValue() != i)
+                    continue;
+
                 // If one of input APIs contain an element and other doesn't,
                 // this element goes to the result API without modification except for the following case :
 
-                // 1) is it unique?
-                boolean unique = true;
-                ArrayList sameClasses = new ArrayList();
-                ArrayList filesForSameClasses = new ArrayList();
-                sameClasses.add(cd);
-                filesForSameClasses.add(mf);
-                for (int j = 0; j < files.length; j++) {
-                    if (i == j) continue;
-                    MergedSigFile mfOther = files[j];
-                    if (mfOther.getClassSet().containsKey(cd.getQualifiedName())) {
-                        unique = false;
-                        sameClasses.add(mfOther.getClassSet().get(cd.getQualifiedName()));
-                        filesForSameClasses.add(mfOther);
-                    }
-                }
-
                 // TODO !!!
                 // If this element is first declared class member in inheritance
                 // chain and the other API inherits the same element, then this element doesn't
                 // go to the result API.
-                if (unique) {
+                if (indexes.size() == 1) {
                     result.add(cd);
                 } else {
                     //                    logger.fine("Not unique, to merge " + cd.getQualifiedName());
                     ClassDescription resultedClass = new ClassDescription();
                     resultedClass.setupClassName(cd.getQualifiedName());
 
-                    ClassDescription[] classes = (ClassDescription[]) sameClasses.toArray(new ClassDescription[0]);
-                    MergedSigFile[] filesForClasses = (MergedSigFile[]) filesForSameClasses.toArray(new MergedSigFile[0]);
+                    ClassDescription[] classes = new ClassDescription[indexes.size()];
+                    MergedSigFile[] filesForClasses = new MergedSigFile[indexes.size()];
+                    classes[0] = cd;
+                    filesForClasses[0] = mf;
+                    for (int k = 0; k < indexes.size() - 1; k++) {
+                        MergedSigFile mfOther = files[((Integer) indexes.get(k)).intValue()];
+                        classes[k + 1] = (ClassDescription) mfOther.getClassSet().get(cd.getQualifiedName());
+                        filesForClasses[k + 1] = mfOther;
+                    }
                     if (merge(classes, resultedClass, filesForClasses) && merge2(classes, resultedClass)) {
                         result.add(resultedClass);
                     }
@@ -112,6 +124,20 @@ public class JSR68Merger extends FeaturesHolder {
             }
         }
 
+        // groups the inner classes by the simple name
+        HashMap innersByName = new HashMap();
+        for (Iterator it = result.getClassIterator(); it.hasNext();) {
+            ClassDescription cd = (ClassDescription) it.next();
+            if (cd.getQualifiedName().indexOf("$") >= 0) {
+                ArrayList inners = (ArrayList) innersByName.get(cd.getName());
+                if (inners == null) {
+                    inners = new ArrayList();
+                    innersByName.put(cd.getName(), inners);
+                }
+                inners.add(cd);
+            }
+        }
+
         Iterator it = result.getClassIterator();
         ArrayList innersToRemove = new ArrayList();
         nextClass:
@@ -134,36 +160,25 @@ public class JSR68Merger extends FeaturesHolder {
                         }
                     }
 
-                    for (Iterator it2 = result.getClassIterator(); it2.hasNext();) {
+                    for (Iterator it2 = ((ArrayList) innersByName.get(cd.getName())).iterator(); it2.hasNext();) {
                         ClassDescription similarInner = (ClassDescription) it2.next();
-                        if (similarInner.getQualifiedName().indexOf("$") >= 0 &&
-                                similarInner.getName().equals(cd.getName())) {
-                            ClassDescription parent = outer;
-                            while (true) {
-                                try {
-                                    parent = result.load(parent.getSuperClass().getQualifiedName());
-                                    if (similarInner.getDeclaringClassName().equals(parent.getQualifiedName()) ) {
-                                        for (int i = 0; i < files.length; i++) {
-                                            if (files[i].getClassSet().containsKey(cd.getQualifiedName())) {
-                                                for (int j = 0; j < files.length; j++) {
-                                                    if (files[j].getClassSet().containsKey(similarInner.getQualifiedName())) {
-                                                       if (j == i) {
-                                                            continue nextClass;
-                                                        }
-                                                    }
-                                                }
-                                                innersToRemove.add(cd);
-                                                continue nextClass;
-                                            }
-                                        }
-
+                        ClassDescription parent = outer;
+                        while (true) {
+                            try {
+                                parent = result.load(parent.getSuperClass().getQualifiedName());
+                                if (similarInner.getDeclaringClassName().equals(parent.getQualifiedName())) {
+                                    // the first file containing the class
+                                    ArrayList indexes = (ArrayList) filesByClass.get(cd.getQualifiedName());
+                                    MergedSigFile first = files[((Integer) indexes.get(0)).intValue()];
+                                    if (!first.getClassSet().containsKey(similarInner.getQualifiedName())) {
+                                        innersToRemove.add(cd);
                                     }
-                                } catch (Exception e) {
-                                    // no parents
-                                    break;
+                                    continue nextClass;
                                 }
+                            } catch (Exception e) {
+                                // no parents
+                                break;
                             }
-
                         }
                     }
 
@@ -180,10 +195,8 @@ public class JSR68Merger extends FeaturesHolder {
                 }
             }
         }
-        it = result.getClassIterator();
-        while (it.hasNext()) {
-            if (innersToRemove.contains(it.next()))
-                it.remove();
+        for (int i = 0; i < innersToRemove.size(); i++) {
+            result.remove((ClassDescription) innersToRemove.get(i));
         }
 
         return result;
@@ -32,7 +32,7 @@ import java.util.*;
 /**
  * @author Serguei Ivashin (isl@nbsp.nsk.su)
  */
-public class AnnotationItem implements Comparable {
+public class AnnotationItem implements Comparable, Cloneable {
 
     public static final String ANNOTATION_PREFIX = "anno";
 
@@ -277,6 +277,17 @@ public class AnnotationItem implements Comparable {
         inheritable = inh;
     }
 
+    public Object clone() {
+        try {
+            AnnotationItem a = (AnnotationItem) super.clone();
+            if (members != null)
+                a.members = new TreeSet(members);
+            return a;
+        } catch (CloneNotSupportedException e) {
+            throw new InternalError(e.getMessage());
+        }
+    }
+
     public static AnnotationItem[] toArray(List/*AnnotationItem*/ alist) {
         if (alist == null || alist.size() == 0)
             return EMPTY_ANNOTATIONITEM_ARRAY;
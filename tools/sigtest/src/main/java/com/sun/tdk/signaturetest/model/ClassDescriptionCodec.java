@@ -0,0 +1,603 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the class description to the compact binary form and reads it back.
+ * All the data set by the class file loader is kept, including the type
+ * parameters of the class needed to load its nested classes, but not the
+ * members collection and the class hierarchy assigned later.
+ * <p/>
+ * Each string is written once per class, the repeated strings are written
+ * as indexes. The strings can also be kept in a table shared by many classes,
+ * see {@link #write(ClassDescription, DataOutput, Map)}.
+ *
+ * @see com.sun.tdk.signaturetest.loaders.PersistentClassCache
+ */
+public final class ClassDescriptionCodec {
+
+    // kinds of the annotation default values
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_STRING = 1;
+    private static final int VALUE_BOOLEAN = 2;
+    private static final int VALUE_BYTE = 3;
+    private static final int VALUE_CHAR = 4;
+    private static final int VALUE_SHORT = 5;
+    private static final int VALUE_INT = 6;
+    private static final int VALUE_LONG = 7;
+    private static final int VALUE_FLOAT = 8;
+    private static final int VALUE_DOUBLE = 9;
+    private static final int VALUE_WRAP = 10;
+    private static final int VALUE_ANNOTATION = 11;
+    private static final int VALUE_ARRAY = 12;
+
+    private ClassDescriptionCodec() {
+    }
+
+    /**
+     * Writes the class description <code>c</code>.
+     *
+     * @throws IOException if the description contains data which can't be written.
+     */
+    public static void write(ClassDescription c, DataOutput out) throws IOException {
+        write(new Writer(out, new HashMap(), false), c);
+    }
+
+    /**
+     * Writes the class description <code>c</code> referring to the strings
+     * by their indexes in the shared table <code>strings</code> (string -> Integer).
+     * The new strings are added to the table, it must be passed to
+     * {@link #read(ClassDescription, DataInput, List)} as the list of strings
+     * ordered by the indexes.
+     *
+     * @throws IOException if the description contains data which can't be written.
+     */
+    public static void write(ClassDescription c, DataOutput out, Map strings) throws IOException {
+        write(new Writer(out, strings, true), c);
+    }
+
+    private static void write(Writer w, ClassDescription c) throws IOException {
+        DataOutput out = w.out;
+
+        w.writeMember(c);
+        out.writeBoolean(c.isTiger());
+        w.writeTypeParameterList(c.getTypeparamList());
+
+        SuperClass superClass = c.getSuperClass();
+        out.writeBoolean(superClass != null);
+        if (superClass != null)
+            w.writeMember(superClass);
+
+        SuperInterface[] interfaces = c.getInterfaces();
+        w.writeInt(interfaces.length);
+        for (int i = 0; i < interfaces.length; i++) {
+            w.writeMember(interfaces[i]);
+            out.writeBoolean(interfaces[i].isDirect());
+        }
+
+        FieldDescr[] fields = c.getDeclaredFields();
+        w.writeInt(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            w.writeMember(fields[i]);
+            w.writeString(fields[i].getConstantValue());
+        }
+
+        MethodDescr[] methods = c.getDeclaredMethods();
+        w.writeInt(methods.length);
+        for (int i = 0; i < methods.length; i++) {
+            w.writeMember(methods[i]);
+            w.writeValue(methods[i].getAnnoDef());
+        }
+
+        ConstructorDescr[] ctors = c.getDeclaredConstructors();
+        w.writeInt(ctors.length);
+        for (int i = 0; i < ctors.length; i++)
+            w.writeMember(ctors[i]);
+
+        InnerDescr[] nested = c.getDeclaredClasses();
+        w.writeInt(nested.length);
+        for (int i = 0; i < nested.length; i++)
+            w.writeMember(nested[i]);
+    }
+
+    /**
+     * Reads the class description written by {@link #write(ClassDescription, DataOutput)}
+     * to the empty description <code>c</code>.
+     */
+    public static void read(ClassDescription c, DataInput in) throws IOException {
+        read(new Reader(in, new ArrayList(), false), c);
+    }
+
+    /**
+     * Reads the class description written by {@link #write(ClassDescription, DataOutput, Map)}
+     * to the empty description <code>c</code>.
+     *
+     * @param strings the shared table of strings, it isn't modified.
+     */
+    public static void read(ClassDescription c, DataInput in, List strings) throws IOException {
+        read(new Reader(in, strings, true), c);
+    }
+
+    private static void read(Reader r, ClassDescription c) throws IOException {
+        DataInput in = r.in;
+
+        r.readMember(c);
+        c.setTiger(in.readBoolean());
+        c.setTypeparamList(r.readTypeParameterList());
+
+        if (in.readBoolean()) {
+            SuperClass superClass = new SuperClass();
+            r.readMember(superClass);
+            c.setSuperClass(superClass);
+        }
+
+        int n = r.readInt();
+        c.createInterfaces(n);
+        for (int i = 0; i < n; i++) {
+            SuperInterface m = new SuperInterface();
+            r.readMember(m);
+            m.setDirect(in.readBoolean());
+            c.setInterface(i, m);
+        }
+
+        n = r.readInt();
+        c.createFields(n);
+        for (int i = 0; i < n; i++) {
+            FieldDescr m = new FieldDescr();
+            r.readMember(m);
+            m.setConstantValue(r.readString());
+            c.setField(i, m);
+        }
+
+        n = r.readInt();
+        c.createMethods(n);
+        for (int i = 0; i < n; i++) {
+            MethodDescr m = new MethodDescr();
+            r.readMember(m);
+            m.setAnnoDef(r.readValue());
+            c.setMethod(i, m);
+        }
+
+        n = r.readInt();
+        c.createConstructors(n);
+        for (int i = 0; i < n; i++) {
+            ConstructorDescr m = new ConstructorDescr();
+            r.readMember(m);
+            c.setConstructor(i, m);
+        }
+
+        n = r.readInt();
+        c.createNested(n);
+        for (int i = 0; i < n; i++) {
+            InnerDescr m = new InnerDescr();
+            r.readMember(m);
+            c.setNested(i, m);
+        }
+    }
+
+    /**
+     * Writes the single member <code>m</code> together with its type,
+     * the class descriptions are written as by {@link #write(ClassDescription, DataOutput)}.
+     *
+     * @throws IOException if the member contains data which can't be written.
+     */
+    public static void writeMember(MemberDescription m, DataOutput out) throws IOException {
+        MemberType type = m.getMemberType();
+        out.writeUTF(type.toString());
+        if (type == MemberType.CLASS) {
+            write((ClassDescription) m, out);
+            return;
+        }
+
+        Writer w = new Writer(out, new HashMap(), false);
+        w.writeMember(m);
+        if (type == MemberType.SUPERINTERFACE)
+            out.writeBoolean(((SuperInterface) m).isDirect());
+        else if (type == MemberType.FIELD)
+            w.writeString(((FieldDescr) m).getConstantValue());
+        else if (type == MemberType.METHOD)
+            w.writeValue(((MethodDescr) m).getAnnoDef());
+    }
+
+    /**
+     * Reads the member written by {@link #writeMember(MemberDescription, DataOutput)}.
+     */
+    public static MemberDescription readMember(DataInput in) throws IOException {
+        String name = in.readUTF();
+        MemberType type = MemberType.getItemType(name);
+        if (type == null || !type.toString().equals(name))
+            throw new IOException("Unknown member type " + name);
+
+        if (type == MemberType.CLASS) {
+            ClassDescription c = new ClassDescription();
+            read(c, in);
+            return c;
+        }
+
+        Reader r = new Reader(in, new ArrayList(), false);
+        MemberDescription m;
+        if (type == MemberType.INNER) {
+            m = new InnerDescr();
+            r.readMember(m);
+        } else if (type == MemberType.SUPERCLASS) {
+            m = new SuperClass();
+            r.readMember(m);
+        } else if (type == MemberType.SUPERINTERFACE) {
+            SuperInterface si = new SuperInterface();
+            r.readMember(si);
+            si.setDirect(in.readBoolean());
+            m = si;
+        } else if (type == MemberType.CONSTRUCTOR) {
+            m = new ConstructorDescr();
+            r.readMember(m);
+        } else if (type == MemberType.METHOD) {
+            MethodDescr md = new MethodDescr();
+            r.readMember(md);
+            md.setAnnoDef(r.readValue());
+            m = md;
+        } else {
+            FieldDescr fd = new FieldDescr();
+            r.readMember(fd);
+            fd.setConstantValue(r.readString());
+            m = fd;
+        }
+        return m;
+    }
+
+    private static class Writer {
+        private final DataOutput out;
+        private final Map strings;
+        private final boolean shared;
+
+        Writer(DataOutput out, Map strings, boolean shared) {
+            this.out = out;
+            this.strings = strings;
+            this.shared = shared;
+        }
+
+        /**
+         * Writes non-negative number using as few bytes as possible.
+         */
+        void writeInt(int v) throws IOException {
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte(v);
+        }
+
+        /**
+         * Writes index of the string seen before or the string itself,
+         * 0 stands for null, 1 for the new string. The new strings of
+         * the shared table are only added to it.
+         */
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeInt(0);
+                return;
+            }
+            Integer idx = (Integer) strings.get(s);
+            if (idx != null) {
+                writeInt(idx.intValue() + 2);
+            } else if (shared) {
+                idx = Integer.valueOf(strings.size());
+                strings.put(s, idx);
+                writeInt(idx.intValue() + 2);
+            } else {
+                strings.put(s, Integer.valueOf(strings.size()));
+                writeInt(1);
+                out.writeUTF(s);
+            }
+        }
+
+        void writeMember(MemberDescription m) throws IOException {
+            writeInt(m.getModifiers());
+            writeString(m.name);
+            writeString(m.declaringClass);
+            writeString(m.type);
+            writeString(m.args);
+            writeString(m.throwables);
+            writeString(m.typeParameters);
+
+            AnnotationItem[] annoList = m.getAnnoList();
+            writeInt(annoList.length);
+            for (int i = 0; i < annoList.length; i++)
+                writeAnnotation(annoList[i]);
+        }
+
+        void writeAnnotation(AnnotationItem a) throws IOException {
+            boolean extended = a instanceof AnnotationItemEx;
+            out.writeBoolean(extended);
+            writeInt(a.getTarget());
+            writeString(a.getName());
+            out.writeBoolean(a.isInheritable());
+
+            Set members = a.getMembers();
+            writeInt(members == null ? 0 : members.size());
+            if (members != null) {
+                for (Iterator it = members.iterator(); it.hasNext();) {
+                    AnnotationItem.Member m = (AnnotationItem.Member) it.next();
+                    writeString(m.type);
+                    writeString(m.name);
+                    writeString(m.value);
+                }
+            }
+
+            if (extended) {
+                AnnotationItemEx ex = (AnnotationItemEx) a;
+                writeInt(ex.getTargetType());
+                out.writeInt(ex.getParameterIndex());
+                out.writeInt(ex.getBoundIndex());
+                out.writeInt(ex.getTypeIndex());
+                int[] locations = ex.getLocations();
+                out.writeBoolean(locations != null);
+                if (locations != null) {
+                    writeInt(locations.length);
+                    for (int i = 0; i < locations.length; i++)
+                        writeInt(locations[i]);
+                }
+            }
+        }
+
+        void writeTypeParameterList(ClassDescription.TypeParameterList tpl) throws IOException {
+            out.writeBoolean(tpl != null);
+            if (tpl == null)
+                return;
+
+            writeInt(tpl.seqnb);
+            writeInt(tpl.tab.size());
+            for (Iterator it = tpl.tab.entrySet().iterator(); it.hasNext();) {
+                Map.Entry e = (Map.Entry) it.next();
+                writeString((String) e.getKey());
+
+                // the parameter and the chain of the hidden ones
+                List chain = new ArrayList();
+                for (ClassDescription.TypeParam p = (ClassDescription.TypeParam) e.getValue(); p != null; p = p.hidden)
+                    chain.add(p);
+
+                writeInt(chain.size());
+                for (int i = 0; i < chain.size(); i++) {
+                    ClassDescription.TypeParam p = (ClassDescription.TypeParam) chain.get(i);
+                    writeInt(p.seqnb);
+                    writeString(p.ident);
+                    writeString(p.declared);
+                }
+            }
+        }
+
+        void writeValue(Object v) throws IOException {
+            if (v == null) {
+                writeInt(VALUE_NULL);
+            } else if (v instanceof String) {
+                writeInt(VALUE_STRING);
+                writeString((String) v);
+            } else if (v instanceof Boolean) {
+                writeInt(VALUE_BOOLEAN);
+                out.writeBoolean(((Boolean) v).booleanValue());
+            } else if (v instanceof Byte) {
+                writeInt(VALUE_BYTE);
+                out.writeByte(((Byte) v).byteValue());
+            } else if (v instanceof Character) {
+                writeInt(VALUE_CHAR);
+                out.writeChar(((Character) v).charValue());
+            } else if (v instanceof Short) {
+                writeInt(VALUE_SHORT);
+                out.writeShort(((Short) v).shortValue());
+            } else if (v instanceof Integer) {
+                writeInt(VALUE_INT);
+                out.writeInt(((Integer) v).intValue());
+            } else if (v instanceof Long) {
+                writeInt(VALUE_LONG);
+                out.writeLong(((Long) v).longValue());
+            } else if (v instanceof Float) {
+                writeInt(VALUE_FLOAT);
+                out.writeFloat(((Float) v).floatValue());
+            } else if (v instanceof Double) {
+                writeInt(VALUE_DOUBLE);
+                out.writeDouble(((Double) v).doubleValue());
+            } else if (v instanceof AnnotationItem.ValueWrap) {
+                writeInt(VALUE_WRAP);
+                writeString(v.toString());
+            } else if (v instanceof AnnotationItem) {
+                writeInt(VALUE_ANNOTATION);
+                writeAnnotation((AnnotationItem) v);
+            } else if (v instanceof Object[]) {
+                Object[] a = (Object[]) v;
+                writeInt(VALUE_ARRAY);
+                writeInt(a.length);
+                for (int i = 0; i < a.length; i++)
+                    writeValue(a[i]);
+            } else {
+                throw new IOException("Unsupported value " + v.getClass().getName());
+            }
+        }
+    }
+
+    private static class Reader {
+        private final DataInput in;
+        private final List strings;
+        private final boolean shared;
+
+        Reader(DataInput in, List strings, boolean shared) {
+            this.in = in;
+            this.strings = strings;
+            this.shared = shared;
+        }
+
+        int readInt() throws IOException {
+            int v = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return v;
+            }
+            throw new IOException("Malformed number");
+        }
+
+        String readString() throws IOException {
+            int idx = readInt();
+            if (idx == 0)
+                return null;
+            if (idx == 1) {
+                if (shared)
+                    throw new IOException("Unexpected string in the shared table mode");
+                String s = in.readUTF().intern();
+                strings.add(s);
+                return s;
+            }
+            if (idx - 2 >= strings.size())
+                throw new IOException("Malformed string index " + idx);
+            return (String) strings.get(idx - 2);
+        }
+
+        void readMember(MemberDescription m) throws IOException {
+            m.setModifiers(readInt());
+            m.name = readString();
+            m.declaringClass = readString();
+            m.type = readString();
+            m.args = readString();
+            m.throwables = readString();
+            m.typeParameters = readString();
+
+            int n = readInt();
+            if (n > 0) {
+                AnnotationItem[] annoList = new AnnotationItem[n];
+                for (int i = 0; i < n; i++)
+                    annoList[i] = readAnnotation();
+                m.setAnnoList(annoList);
+            }
+        }
+
+        AnnotationItem readAnnotation() throws IOException {
+            boolean extended = in.readBoolean();
+            int target = readInt();
+            String name = readString();
+            AnnotationItem a = extended ? new AnnotationItemEx(target, name) : new AnnotationItem(target, name);
+            a.setInheritable(in.readBoolean());
+
+            int n = readInt();
+            for (int i = 0; i < n; i++) {
+                AnnotationItem.Member m = new AnnotationItem.Member();
+                m.type = readString();
+                m.name = readString();
+                m.value = readString();
+                a.addMember(m);
+            }
+
+            if (extended) {
+                AnnotationItemEx ex = (AnnotationItemEx) a;
+                ex.setTargetType(readInt());
+                ex.setParameterIndex(in.readInt());
+                ex.setBoundIndex(in.readInt());
+                ex.setTypeIndex(in.readInt());
+                if (in.readBoolean()) {
+                    int[] locations = new int[readInt()];
+                    for (int i = 0; i < locations.length; i++)
+                        locations[i] = readInt();
+                    ex.setLocations(locations);
+                }
+            }
+            return a;
+        }
+
+        ClassDescription.TypeParameterList readTypeParameterList() throws IOException {
+            if (!in.readBoolean())
+                return null;
+
+            ClassDescription.TypeParameterList tpl = new ClassDescription.TypeParameterList(null);
+            tpl.seqnb = readInt();
+            int n = readInt();
+            for (int i = 0; i < n; i++) {
+                String ident = readString();
+                int k = readInt();
+                ClassDescription.TypeParam first = null;
+                ClassDescription.TypeParam last = null;
+                for (int j = 0; j < k; j++) {
+                    int seqnb = readInt();
+                    ClassDescription.TypeParam p = new ClassDescription.TypeParam(seqnb, readString(), readString());
+                    if (last == null)
+                        first = p;
+                    else
+                        last.hidden = p;
+                    last = p;
+                }
+                tpl.tab.put(ident, first);
+            }
+            return tpl;
+        }
+
+        Object readValue() throws IOException {
+            int kind = readInt();
+            switch (kind) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    return readString();
+                case VALUE_BOOLEAN:
+                    return Boolean.valueOf(in.readBoolean());
+                case VALUE_BYTE:
+                    return Byte.valueOf(in.readByte());
+                case VALUE_CHAR:
+                    return Character.valueOf(in.readChar());
+                case VALUE_SHORT:
+                    return Short.valueOf(in.readShort());
+                case VALUE_INT:
+                    return Integer.valueOf(in.readInt());
+                case VALUE_LONG:
+                    return Long.valueOf(in.readLong());
+                case VALUE_FLOAT:
+                    return Float.valueOf(in.readFloat());
+                case VALUE_DOUBLE:
+                    return Double.valueOf(in.readDouble());
+                case VALUE_WRAP:
+                    return new AnnotationItem.ValueWrap(readString());
+                case VALUE_ANNOTATION:
+                    return readAnnotation();
+                case VALUE_ARRAY: {
+                    Object[] a = new Object[readInt()];
+                    for (int i = 0; i < a.length; i++)
+                        a[i] = readValue();
+                    return a;
+                }
+                default:
+                    throw new IOException("Unknown value kind " + kind);
+            }
+        }
+    }
+}
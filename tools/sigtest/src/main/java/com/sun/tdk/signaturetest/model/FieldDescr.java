@@ -27,6 +27,7 @@
 
 package com.sun.tdk.signaturetest.model;
 
+import com.sun.tdk.signaturetest.core.RunContext;
 import com.sun.tdk.signaturetest.util.SwissKnife;
 
 import java.util.Set;
@@ -36,9 +37,6 @@ import java.util.Set;
  */
 public final class FieldDescr extends MemberDescription {
 
-    // this field was introduced to break FieldDescr class dependency on SigTest.isConstantValuesTracked
-    public static boolean  isConstantValuesTracked = true;
-
     public static final FieldDescr[] EMPTY_ARRAY = new FieldDescr[0];
 
     public FieldDescr() {
@@ -143,7 +141,7 @@ public final class FieldDescr extends MemberDescription {
         if (result) {
             result = type.equals(another.type) &&
                     SwissKnife.equals(typeParameters, another.typeParameters);
-            if (result && isConstantValuesTracked && !noValue) {
+            if (result && RunContext.getCurrent().isConstantValuesTracked() && !noValue) {
                 result = SwissKnife.equals(constantValue, another.constantValue);
             }
         }
@@ -27,6 +27,8 @@
 
 package com.sun.tdk.signaturetest.model;
 
+import com.sun.tdk.signaturetest.core.RunContext;
+
 import java.io.Serializable;
 
 /**
@@ -105,7 +107,8 @@ public final class MemberType implements Comparable, Serializable {
     }
 
     boolean isCompatible(int m1, int m2) {
-        return (m1 & trackedModifiersMask) == (m2 & trackedModifiersMask);
+        int mask = RunContext.getCurrent().isBinaryMode() ? binaryTrackedModifiersMask : trackedModifiersMask;
+        return (m1 & mask) == (m2 & mask);
     }
 
     private MemberType(String memberType, Modifier[] applicableModifiers) {
@@ -128,17 +131,26 @@ public final class MemberType implements Comparable, Serializable {
 
     private void updateTrackedModifiersMask() {
         trackedModifiersMask = 0;
+        binaryTrackedModifiersMask = 0;
         for (int i = 0; i < applicableModifiers.length; ++i) {
             Modifier m = applicableModifiers[i];
-            if (m.isTracked())
+            if (m.isTracked(false))
                 trackedModifiersMask = Modifier.addModifier(trackedModifiersMask, m);
+            if (m.isTracked(true))
+                binaryTrackedModifiersMask = Modifier.addModifier(binaryTrackedModifiersMask, m);
         }
     }
 
+    /**
+     * Sets the mode of the current run, the modifiers which don't affect
+     * the binary compatibility are not tracked in the binary mode.
+     *
+     * @see RunContext#setBinaryMode(boolean)
+     */
     public static void setMode(boolean binary) {
-        // track vararg modifier only in source mode; its absence does not break binary compatibility 
-        Modifier.VARARGS.setTracked(!binary);
-        
+        RunContext.getCurrent().setBinaryMode(binary);
+
+        // the tracked modifiers may have been changed, see Modifier.setTracked()
         for (int i = 0; i < knownTypes.length; ++i)
             knownTypes[i].updateTrackedModifiersMask();
     }
@@ -150,6 +162,7 @@ public final class MemberType implements Comparable, Serializable {
     private final Modifier[] applicableModifiers;
     private int modifiersMask;
     private int trackedModifiersMask;     // used to clean non-tracked modifiers quickly
+    private int binaryTrackedModifiersMask;
 
     public static final MemberType[] knownTypes = {CLASS, SUPERCLASS, SUPERINTERFACE, CONSTRUCTOR, METHOD, FIELD, INNER};
 }
@@ -27,6 +27,8 @@
 
 package com.sun.tdk.signaturetest.model;
 
+import com.sun.tdk.signaturetest.core.RunContext;
+
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
@@ -59,7 +61,8 @@ public final class Modifier implements Serializable {
 
 
     public static final Modifier ANNOTATION = new Modifier("!annotation", 0x00002000, 0, true);
-    public static final Modifier VARARGS = new Modifier("!varargs", 0x00000080, 0, true);
+    // track vararg modifier only in source mode; its absence does not break binary compatibility
+    public static final Modifier VARARGS = new Modifier("!varargs", 0x00000080, 0, true, false);
     public static final Modifier BRIDGE = new Modifier("!bridge", 0x00000040, 0, false);
     public static final Modifier HASDEFAULT = new Modifier("!hasdefault", 0x02000000, 0, true);
 
@@ -71,8 +74,17 @@ public final class Modifier implements Serializable {
         return name;
     }
 
+    /**
+     * Returns true if the modifier is tracked in the mode of the current run.
+     *
+     * @see RunContext#isBinaryMode()
+     */
     public boolean isTracked() {
-        return isTracked;
+        return isTracked(RunContext.getCurrent().isBinaryMode());
+    }
+
+    boolean isTracked(boolean binary) {
+        return binary ? isTrackedInBinaryMode : isTracked;
     }
 
     public int getValue() {
@@ -81,6 +93,7 @@ public final class Modifier implements Serializable {
 
     public void setTracked(boolean isTracked) {
         this.isTracked = isTracked;
+        this.isTrackedInBinaryMode = isTracked;
     }
 
     public static Modifier getModifier(String name) {
@@ -123,11 +136,12 @@ public final class Modifier implements Serializable {
         StringBuffer buf = new StringBuffer();
 
         Modifier[] applicableModifiers = type.getApplicableModifiers();
+        boolean binary = trackedOnly && RunContext.getCurrent().isBinaryMode();
         boolean addSpace = false;
 
         for (int i = 0; i < applicableModifiers.length; ++i) {
             Modifier m = applicableModifiers[i];
-            if ((m.value & modifiers) != 0 && (!trackedOnly || m.isTracked())) {
+            if ((m.value & modifiers) != 0 && (!trackedOnly || m.isTracked(binary))) {
                 if (addSpace)
                     buf.append(' ');
                 addSpace = true;
@@ -138,7 +152,31 @@ public final class Modifier implements Serializable {
         return buf.toString();
     }
 
+    /**
+     * Returns the modifiers listed by {@link #toString(MemberType, int, boolean)}
+     * with <code>trackedOnly</code> set, i.e. the modifiers kept by the signature file.
+     */
+    public static int getTrackedModifiers(MemberType type, int modifiers) {
+
+        int result = 0;
+
+        Modifier[] applicableModifiers = type.getApplicableModifiers();
+        boolean binary = RunContext.getCurrent().isBinaryMode();
+
+        for (int i = 0; i < applicableModifiers.length; ++i) {
+            Modifier m = applicableModifiers[i];
+            if ((m.value & modifiers) != 0 && m.isTracked(binary))
+                result |= m.value;
+        }
+
+        return result;
+    }
+
     private Modifier(String name, int vmID, int reflID, boolean isTracked) {
+        this(name, vmID, reflID, isTracked, isTracked);
+    }
+
+    private Modifier(String name, int vmID, int reflID, boolean isTracked, boolean isTrackedInBinaryMode) {
 
         if (vmID != reflID && reflID != 0)
             throw new IllegalArgumentException();
@@ -146,6 +184,7 @@ public final class Modifier implements Serializable {
         this.name = name;
         this.value = vmID;
         this.isTracked = isTracked;
+        this.isTrackedInBinaryMode = isTrackedInBinaryMode;
         knownModifiers.put(name, this);
     }
 
@@ -168,6 +207,7 @@ public final class Modifier implements Serializable {
         this.name = name;
         this.value = v;
         this.isTracked = isTracked;
+        this.isTrackedInBinaryMode = isTracked;
         knownModifiers.put(name, this);
     }
 
@@ -191,5 +231,6 @@ public final class Modifier implements Serializable {
 
     // true if the modifier has an influence on compatibility
     private boolean isTracked;
+    private boolean isTrackedInBinaryMode;
 
 }
@@ -28,6 +28,7 @@
 package com.sun.tdk.signaturetest.plugin;
 
 import com.sun.tdk.signaturetest.core.ClassDescriptionLoader;
+import com.sun.tdk.signaturetest.core.RunContext;
 import com.sun.tdk.signaturetest.sigfile.Format;
 
 /**
@@ -65,36 +66,39 @@ public interface PluginAPI {
     // set own classDesription loader
     void setClassDescrLoader(ClassDescriptionLoader loader);
 
+    /**
+     * The filter and the transformer set for the injection point are kept
+     * in the context of the current run.
+     *
+     * @see RunContext
+     */
     class InjectionPoint {
         boolean filterAccepted;  // transform otherwise
         boolean transformAccepted;
 
-        Filter filter = null;
-        Transformer transformer = null;
-
         private InjectionPoint(boolean filterAccepted, boolean transformAccepted) {
             this.filterAccepted = filterAccepted;
             this.transformAccepted = transformAccepted;
         }
 
         public Filter getFilter() {
-            return filter;
+            return RunContext.getCurrent().getFilter(this);
         }
 
         public void setFilter(Filter filter) {
             if (!filterAccepted)
                 throw new UnsupportedOperationException();
-            this.filter = filter;
+            RunContext.getCurrent().setFilter(this, filter);
         }
 
         public Transformer getTransformer() {
-            return transformer;
+            return RunContext.getCurrent().getTransformer(this);
         }
 
         public void setTransformer(Transformer transformer) {
             if (!transformAccepted)
                 throw new UnsupportedOperationException();
-            this.transformer = transformer;
+            RunContext.getCurrent().setTransformer(this, transformer);
         }
     }
 }
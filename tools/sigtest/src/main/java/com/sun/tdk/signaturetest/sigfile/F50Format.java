@@ -0,0 +1,104 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary signature file v5.0. It keeps the same data as the text
+ * signature file v4.1, but the strings are written once in the table
+ * shared by all the classes, and the classes are written in the compact
+ * binary form and can be read in any order using the index of the classes.
+ * <p/>
+ * The file starts with the text line of the format version, so that the
+ * format is recognized by {@link FileManager}, the rest is binary:
+ * <pre>
+ * apiVersion         UTF
+ * missing features   n, UTF...
+ * strings            n, UTF...
+ * classes            n, (n name index, n length)...
+ * class records      class description written by ClassDescriptionCodec
+ *                    followed by the hiders, (n, n string index...)...
+ * </pre>
+ * where <code>n</code> is the non-negative number written in 7-bit groups,
+ * the lowest first, each but the last one with the high bit set. The class
+ * records follow each other in the order of the index.
+ *
+ * @see com.sun.tdk.signaturetest.model.ClassDescriptionCodec
+ * @see F50Writer
+ */
+public class F50Format extends F41Format {
+
+    public String getVersion() {
+        return "#Signature file v5.0";
+    }
+
+    public Reader getReader() {
+        return new F50Reader(this);
+    }
+
+    /**
+     * Returns <code>null</code> as the binary signature file isn't written
+     * to <b>PrintWriter</b>, it is written by {@link F50Writer}.
+     *
+     * @see #isText()
+     */
+    public Writer getWriter() {
+        return null;
+    }
+
+    public boolean isText() {
+        return false;
+    }
+
+    /**
+     * Writes non-negative number <code>v</code> using as few bytes as possible.
+     */
+    static void writeInt(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * Reads the number written by {@link #writeInt(DataOutput, int)}.
+     */
+    static int readInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+    }
+}
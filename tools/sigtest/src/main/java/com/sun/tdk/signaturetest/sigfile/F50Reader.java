@@ -0,0 +1,237 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.ClassDescriptionCodec;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Reads the binary signature file v5.0. The string table and the index
+ * of the classes are read at once, the classes are decoded when requested.
+ * The class records of the local file are read from the file, otherwise
+ * all of them are kept in memory.
+ *
+ * @see F50Format
+ */
+class F50Reader implements RandomAccessReader {
+
+    private Format format;
+    private Set features;
+    private String apiVersion = "";
+
+    private List strings;
+    private String[] names = new String[0];
+    private int[] offsets = new int[0];
+    private int[] lengths = new int[0];
+
+    /**
+     * Index of the next class read by {@link #readNextClass()}.
+     */
+    private int next;
+
+    private RandomAccessFile file;
+    private long recordsStart;
+    private byte[] records;
+
+    F50Reader(Format format) {
+        this.format = format;
+        features = new HashSet(format.getSupportedFeatures());
+    }
+
+    public boolean hasFeature(Format.Feature feature) {
+        return features.contains(feature);
+    }
+
+    public Set getAllSupportedFeatures() {
+        return features;
+    }
+
+    public String getApiVersion() {
+        return apiVersion;
+    }
+
+    public boolean readSignatureFile(URL fileURL) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(fileURL.openStream()));
+        try {
+            if (!readHeaders(in))
+                return false;
+
+            File f = getFile(fileURL);
+            if (f != null && f.isFile()) {
+                file = new RandomAccessFile(f, "r");
+                recordsStart = file.length() - getRecordsLength();
+            } else {
+                records = new byte[getRecordsLength()];
+                in.readFully(records);
+            }
+        } finally {
+            in.close();
+        }
+        return true;
+    }
+
+    private boolean readHeaders(DataInputStream in) throws IOException {
+
+        byte[] version = format.getVersion().getBytes("ASCII");
+        for (int i = 0; i < version.length; i++) {
+            if (in.read() != version[i])
+                return false;
+        }
+        if (in.read() != '\n')
+            return false;
+
+        apiVersion = in.readUTF();
+
+        int n = F50Format.readInt(in);
+        for (int i = 0; i < n; i++) {
+            String pragma = in.readUTF();
+            for (Iterator it = features.iterator(); it.hasNext();) {
+                if (((Format.Feature) it.next()).match(pragma))
+                    it.remove();
+            }
+        }
+
+        String[] table = new String[F50Format.readInt(in)];
+        for (int i = 0; i < table.length; i++)
+            table[i] = in.readUTF().intern();
+        strings = Arrays.asList(table);
+
+        n = F50Format.readInt(in);
+        names = new String[n];
+        offsets = new int[n];
+        lengths = new int[n];
+        int offset = 0;
+        for (int i = 0; i < n; i++) {
+            names[i] = table[F50Format.readInt(in)];
+            offsets[i] = offset;
+            lengths[i] = F50Format.readInt(in);
+            offset += lengths[i];
+        }
+        return true;
+    }
+
+    private int getRecordsLength() {
+        int n = names.length;
+        return n == 0 ? 0 : offsets[n - 1] + lengths[n - 1];
+    }
+
+    /**
+     * Returns the local file or <code>null</code>.
+     */
+    private static File getFile(URL fileURL) {
+        if (!"file".equals(fileURL.getProtocol()))
+            return null;
+        try {
+            return new File(fileURL.toURI());
+        } catch (URISyntaxException e) {
+            // not encoded, see File.toURL()
+        } catch (IllegalArgumentException e) {
+            // relative path
+        }
+        return new File(fileURL.getPath());
+    }
+
+    public ClassDescription readNextClass() throws IOException {
+        if (next == names.length)
+            return null;
+        return readClassAt(next++);
+    }
+
+    public boolean isRandomAccess() {
+        return true;
+    }
+
+    public long getPosition() {
+        return next;
+    }
+
+    public String skipClass() {
+        if (next == names.length)
+            return null;
+        return names[next++];
+    }
+
+    public ClassDescription readClassAt(long position) throws IOException {
+        int i = (int) position;
+
+        byte[] b = records;
+        int off = offsets[i];
+        if (file != null) {
+            b = new byte[lengths[i]];
+            off = 0;
+            file.seek(recordsStart + offsets[i]);
+            file.readFully(b);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(b, off, lengths[i]));
+
+        ClassDescription c = new ClassDescription();
+        ClassDescriptionCodec.read(c, in, strings);
+
+        Set s = readStrings(in);
+        if (s != null)
+            c.setInternalFields(s);
+        s = readStrings(in);
+        if (s != null)
+            c.setInternalClasses(s);
+        s = readStrings(in);
+        if (s != null)
+            c.setXFields(s);
+        s = readStrings(in);
+        if (s != null)
+            c.setXClasses(s);
+
+        return c;
+    }
+
+    /**
+     * Reads the set of strings, the empty set is returned as <code>null</code>
+     * as the text signature file doesn't list it.
+     */
+    private Set readStrings(DataInputStream in) throws IOException {
+        int n = F50Format.readInt(in);
+        if (n == 0)
+            return null;
+        Set result = new HashSet();
+        for (int i = 0; i < n; i++)
+            result.add(strings.get(F50Format.readInt(in)));
+        return result;
+    }
+
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        records = null;
+    }
+}
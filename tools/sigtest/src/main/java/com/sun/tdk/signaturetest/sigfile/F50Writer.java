@@ -0,0 +1,323 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import com.sun.tdk.signaturetest.model.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Writes the binary signature file v5.0. The classes are kept in memory
+ * in the binary form until {@link #close()} writes the string table,
+ * the index and the classes.
+ * <p/>
+ * Each class is written with the members and the modifiers which the text
+ * writer would write, in the form the text parser would read them back,
+ * so both formats have the same content. The members of each kind are
+ * ordered by their string representation.
+ * <p/>
+ * The binary file can't be written to <b>PrintWriter</b>, so this writer
+ * doesn't implement {@link Writer}.
+ *
+ * @see F50Format
+ */
+public class F50Writer {
+
+    private Format format = new F50Format();
+    private DataOutputStream out;
+    private IOException error;
+
+    private String apiVersion;
+    private Set features = new HashSet();
+
+    private Map strings = new HashMap();
+    private List names = new ArrayList();
+    private List lengths = new ArrayList();
+    private ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private DataOutputStream recordsOut = new DataOutputStream(records);
+
+    public void init(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public void addFeature(Format.Feature feature) {
+        assert format.isFeatureSupported(feature);
+        features.add(feature);
+    }
+
+    public void setApiVersion(String apiVersion) {
+        this.apiVersion = apiVersion;
+    }
+
+    public void writeHeader() {
+        try {
+            out.write((format.getVersion() + "\n").getBytes("ASCII"));
+            out.writeUTF(apiVersion == null ? "" : apiVersion);
+
+            // only these features are written to the text signature file
+            List missing = new ArrayList();
+            if (!features.contains(FeaturesHolder.ConstInfo))
+                missing.add(FeaturesHolder.ConstInfo.toString());
+            if (!features.contains(FeaturesHolder.TigerInfo))
+                missing.add(FeaturesHolder.TigerInfo.toString());
+
+            F50Format.writeInt(out, missing.size());
+            for (int i = 0; i < missing.size(); i++)
+                out.writeUTF((String) missing.get(i));
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Adds the class to the signature file. The failure is reported by
+     * {@link #checkError()} after the file is closed.
+     */
+    public void write(ClassDescription classDescription) {
+
+        if (error != null)
+            return;
+
+        ClassDescription c = normalize(classDescription);
+
+        try {
+            int offset = recordsOut.size();
+            ClassDescriptionCodec.write(c, recordsOut, strings);
+            writeStrings(classDescription.getInternalFields());
+            writeStrings(classDescription.getInternalClasses());
+            writeStrings(classDescription.getXFields());
+            writeStrings(classDescription.getXClasses());
+
+            names.add(getIndex(c.getQualifiedName()));
+            lengths.add(Integer.valueOf(recordsOut.size() - offset));
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Writes the rest of the signature file and closes the output stream.
+     *
+     * @see #checkError()
+     */
+    public void close() {
+        try {
+            try {
+                if (error == null) {
+                    String[] table = new String[strings.size()];
+                    for (Iterator it = strings.entrySet().iterator(); it.hasNext();) {
+                        Map.Entry e = (Map.Entry) it.next();
+                        table[((Integer) e.getValue()).intValue()] = (String) e.getKey();
+                    }
+                    F50Format.writeInt(out, table.length);
+                    for (int i = 0; i < table.length; i++)
+                        out.writeUTF(table[i]);
+
+                    F50Format.writeInt(out, names.size());
+                    for (int i = 0; i < names.size(); i++) {
+                        F50Format.writeInt(out, ((Integer) names.get(i)).intValue());
+                        F50Format.writeInt(out, ((Integer) lengths.get(i)).intValue());
+                    }
+
+                    records.writeTo(out);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            if (error == null)
+                error = e;
+        }
+    }
+
+    /**
+     * Returns true if the signature file couldn't be written.
+     */
+    public boolean checkError() {
+        return error != null;
+    }
+
+    /**
+     * Returns the reason why the signature file couldn't be written.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Creates the description of the class as it would be read back from
+     * the text signature file: the inherited members and the indirect
+     * superinterfaces are skipped, only the tracked modifiers are kept and
+     * the names are set up by the same methods the text parser uses.
+     *
+     * @see F40Writer#write(ClassDescription)
+     * @see F41Parser
+     */
+    private ClassDescription normalize(ClassDescription c) {
+
+        ClassDescription result = new ClassDescription();
+        result.setModifiers(Modifier.getTrackedModifiers(MemberType.CLASS, c.getModifiers()));
+        result.setupGenericClassName(getGenericName(c));
+        result.setupClassName(result.getQualifiedName(), MemberDescription.NO_DECLARING_CLASS);
+
+        String outer = c.getOuterClass();
+        if (outer != null && !outer.equals(MemberDescription.NO_DECLARING_CLASS)) {
+            result.setDeclaringClass(outer);
+            result.setupClassName(result.getQualifiedName(), result.getDeclaringClassName());
+        }
+        result.setAnnoList(copy(c.getAnnoList()));
+
+        String clsName = c.getQualifiedName();
+        String name = result.getQualifiedName();
+        boolean isConstantValuesSaved = features.contains(FeaturesHolder.ConstInfo);
+
+        List ctors = new ArrayList();
+        List methods = new ArrayList();
+        List fields = new ArrayList();
+        List nested = new ArrayList();
+        List interfaces = new ArrayList();
+
+        for (Iterator e = c.getMembersIterator(); e.hasNext();) {
+
+            MemberDescription mr = (MemberDescription) e.next();
+
+            if ((mr.isMethod() || mr.isField() || mr.isInner()) && !clsName.equals(mr.getDeclaringClassName()))
+                continue;
+
+            MemberType type = mr.getMemberType();
+            int modifiers = Modifier.getTrackedModifiers(type, mr.getModifiers());
+
+            if (type == MemberType.CONSTRUCTOR) {
+                ConstructorDescr m = new ConstructorDescr();
+                m.setModifiers(modifiers);
+                m.setTypeParameters(mr.getTypeParameters());
+                m.setupConstuctorName(name);
+                m.setArgs(mr.getArgs());
+                m.setThrowables(mr.getThrowables());
+                m.setAnnoList(copy(mr.getAnnoList()));
+                ctors.add(m);
+            } else if (type == MemberType.METHOD) {
+                MethodDescr m = new MethodDescr();
+                m.setModifiers(modifiers);
+                m.setTypeParameters(mr.getTypeParameters());
+                m.setType(mr.getType());
+                m.setupMemberName(mr.getName(), name);
+                m.setArgs(mr.getArgs());
+                m.setThrowables(mr.getThrowables());
+                m.setAnnoList(copy(mr.getAnnoList()));
+                methods.add(m);
+            } else if (type == MemberType.FIELD) {
+                FieldDescr m = new FieldDescr();
+                m.setModifiers(modifiers);
+                m.setType(mr.getType());
+                String typeParameters = mr.getTypeParameters();
+                m.setupMemberName(typeParameters == null ? mr.getName() : mr.getName() + typeParameters, name);
+                String constantValue = ((FieldDescr) mr).getConstantValue();
+                if (isConstantValuesSaved && constantValue != null)
+                    m.setConstantValue(constantValue.trim());
+                m.setAnnoList(copy(mr.getAnnoList()));
+                fields.add(m);
+            } else if (type == MemberType.INNER) {
+                InnerDescr m = new InnerDescr();
+                m.setModifiers(modifiers);
+                m.setupInnerClassName(mr.getName(), name);
+                nested.add(m);
+            } else if (type == MemberType.SUPERCLASS) {
+                SuperClass m = new SuperClass();
+                m.setupGenericClassName(getGenericName(mr));
+                result.setSuperClass(m);
+            } else if (type == MemberType.SUPERINTERFACE) {
+                if (!((SuperInterface) mr).isDirect())
+                    continue;
+                SuperInterface m = new SuperInterface();
+                m.setupGenericClassName(getGenericName(mr));
+                m.setDirect(true);
+                interfaces.add(m);
+            }
+        }
+
+        result.setConstructors((ConstructorDescr[]) sort(ctors).toArray(new ConstructorDescr[ctors.size()]));
+        result.setMethods((MethodDescr[]) sort(methods).toArray(new MethodDescr[methods.size()]));
+        result.setFields((FieldDescr[]) sort(fields).toArray(new FieldDescr[fields.size()]));
+        result.setNestedClasses((InnerDescr[]) sort(nested).toArray(new InnerDescr[nested.size()]));
+        result.setInterfaces((SuperInterface[]) sort(interfaces).toArray(new SuperInterface[interfaces.size()]));
+
+        return result;
+    }
+
+    private static String getGenericName(MemberDescription m) {
+        String typeParameters = m.getTypeParameters();
+        return typeParameters == null ? m.getQualifiedName() : m.getQualifiedName() + typeParameters;
+    }
+
+    /**
+     * Copies the annotations, the text signature file doesn't keep
+     * the <code>Inherited</code> meta-annotation.
+     */
+    private static AnnotationItem[] copy(AnnotationItem[] annoList) {
+        if (annoList.length == 0)
+            return annoList;
+
+        AnnotationItem[] result = new AnnotationItem[annoList.length];
+        for (int i = 0; i < annoList.length; i++) {
+            result[i] = annoList[i];
+            if (result[i].isInheritable()) {
+                result[i] = (AnnotationItem) result[i].clone();
+                result[i].setInheritable(false);
+            }
+        }
+        return result;
+    }
+
+    private static List sort(List members) {
+        Collections.sort(members, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return o1.toString().compareTo(o2.toString());
+            }
+        });
+        return members;
+    }
+
+    private void writeStrings(Set s) throws IOException {
+        List sorted = new ArrayList(s);
+        Collections.sort(sorted);
+        F50Format.writeInt(recordsOut, sorted.size());
+        for (int i = 0; i < sorted.size(); i++)
+            F50Format.writeInt(recordsOut, getIndex((String) sorted.get(i)).intValue());
+    }
+
+    private Integer getIndex(String s) {
+        Integer idx = (Integer) strings.get(s);
+        if (idx == null) {
+            idx = Integer.valueOf(strings.size());
+            strings.put(s, idx);
+        }
+        return idx;
+    }
+}
@@ -87,7 +87,7 @@ public class FileManager {
         for (int i = 0; i < formats.size(); i++) {
             Format format = (Format) formats.get(i);
             Set formatFeatures = format.getSupportedFeatures();
-            if (features.equals(formatFeatures))
+            if (format.isText() && features.equals(formatFeatures))
                 applicableFormats.add(format);
         }
 
@@ -147,5 +147,6 @@ public class FileManager {
         formats.add(new F21Format());
         formats.add(new F31Format());
         formats.add(new F40Format());
+        formats.add(new F50Format());
     }
 }
@@ -45,4 +45,12 @@ public abstract class Format extends FeaturesHolder {
         return getVersion().equals(format);
     }
 
+    /**
+     * Returns true if the signature file of this format is written as text,
+     * i.e. the writer can be initialized with <b>PrintWriter</b>.
+     */
+    public boolean isText() {
+        return true;
+    }
+
 }
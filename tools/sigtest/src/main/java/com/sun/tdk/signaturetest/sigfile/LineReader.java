@@ -0,0 +1,159 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads lines of the UTF-8 encoded signature file like
+ * <b>BufferedReader</b>, but also tells the position of the line in
+ * the file, so that reading can be started again from this line.
+ * One line can be pushed back to be read again.
+ *
+ * @see SignatureClassLoader#readClassAt(long)
+ */
+class LineReader {
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    /**
+     * Position of <code>buf[0]</code> in the file.
+     */
+    private long offset;
+
+    private String pushedLine = null;
+    private long pushedPosition;
+
+    /**
+     * @param in       input stream positioned at <code>position</code>
+     * @param position position of the stream in the file
+     * @param bufSize  initial size of the buffer
+     */
+    LineReader(InputStream in, long position, int bufSize) {
+        this.in = in;
+        this.offset = position;
+        this.buf = new byte[bufSize];
+    }
+
+    /**
+     * Returns position of the line which will be read next.
+     */
+    long getPosition() {
+        return pushedLine != null ? pushedPosition : offset + pos;
+    }
+
+    /**
+     * Reads a line terminated by '\n', '\r' or "\r\n".
+     *
+     * @return the line without the terminator or <code>null</code>
+     *         at the end of file.
+     */
+    String readLine() throws IOException {
+        if (pushedLine != null) {
+            String line = pushedLine;
+            pushedLine = null;
+            return line;
+        }
+
+        int i = pos;
+        for (; ;) {
+            for (; i < limit; i++) {
+                byte b = buf[i];
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' && i + 1 == limit && !eof) {
+                        // need next byte to check for "\r\n"
+                        i -= pos;
+                        fill();
+                        i += pos;
+                    }
+                    String line = new String(buf, pos, i - pos, "UTF8");
+                    pos = i + 1;
+                    if (b == '\r' && pos < limit && buf[pos] == '\n')
+                        pos++;
+                    return line;
+                }
+            }
+
+            if (eof) {
+                if (pos == limit)
+                    return null;
+                String line = new String(buf, pos, limit - pos, "UTF8");
+                pos = limit;
+                return line;
+            }
+
+            i -= pos;
+            fill();
+            i += pos;
+        }
+    }
+
+    /**
+     * Pushes back the line just read from the <code>position</code>,
+     * the next {@link #readLine()} returns it again.
+     */
+    void pushBack(String line, long position) {
+        assert pushedLine == null;
+        pushedLine = line;
+        pushedPosition = position;
+    }
+
+    void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Moves the unread bytes to the beginning of the buffer,
+     * growing it if necessary, and reads more bytes.
+     */
+    private void fill() throws IOException {
+        int len = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, len);
+            offset += pos;
+            pos = 0;
+            limit = len;
+        }
+        if (limit == buf.length) {
+            byte[] b = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, b, 0, limit);
+            buf = b;
+        }
+
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0)
+            eof = true;
+        else
+            limit += n;
+    }
+}
@@ -27,8 +27,18 @@
 package com.sun.tdk.signaturetest.sigfile;
 
 import com.sun.tdk.signaturetest.SigTest;
+import com.sun.tdk.signaturetest.loaders.ClassDescriptionCache;
 import com.sun.tdk.signaturetest.loaders.VirtualClassDescriptionLoader;
 import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.ConstructorDescr;
+import com.sun.tdk.signaturetest.model.FieldDescr;
+import com.sun.tdk.signaturetest.model.InnerDescr;
+import com.sun.tdk.signaturetest.model.MemberCollection;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import com.sun.tdk.signaturetest.model.SuperClass;
+import com.sun.tdk.signaturetest.model.SuperInterface;
 import com.sun.tdk.signaturetest.util.I18NResourceBundle;
 
 import java.io.File;
@@ -36,11 +46,23 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeMap;
 
 /**
+ * Reads classes of one or several signature files. By default all the
+ * classes are kept in memory. In the streaming mode only positions of
+ * the classes in the signature files are kept, the classes are read
+ * again when they are needed and cached in the small cache.
+ *
  * @author Roman Makarchuk
+ * @see #setStreaming(int)
  */
 public class MultipleFileReader extends VirtualClassDescriptionLoader {
 
@@ -48,11 +70,27 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
     public static final int CLASSPATH_MODE = 1;
     public static final int MERGE_MODE = 2;
     private Iterator classIterator = null;
+    private Iterator positionIterator = null;
     private PrintWriter log;
     private int mode;
     private String apiVersion;
     private FileManager fileMan;
 
+    /**
+     * Recently read classes in the streaming mode, <code>null</code> otherwise.
+     */
+    private ClassDescriptionCache cache = null;
+
+    /**
+     * Positions of the classes by the class name in the streaming mode.
+     */
+    private Map positions;
+
+    /**
+     * Readers of the signature files opened in the streaming mode.
+     */
+    private List readers;
+
     public MultipleFileReader(PrintWriter log, int mode, FileManager f) {
         // Note: Merge mode is not supported yet.
         assert mode == CLASSPATH_MODE;
@@ -63,6 +101,19 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
 
     }
 
+    /**
+     * Turns on the streaming mode, must be called before the signature
+     * files are read. The signature files which are not local files
+     * or can't be read again are kept in memory.
+     *
+     * @param cacheSize number of the classes cached, see {@link ClassDescriptionCache}.
+     */
+    public void setStreaming(int cacheSize) {
+        cache = new ClassDescriptionCache(cacheSize);
+        positions = new TreeMap();
+        readers = new ArrayList();
+    }
+
     public boolean readSignatureFiles(String testURL, String sigFileList) {
 
         assert testURL != null;
@@ -91,14 +142,14 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
             URL fileURL = FileManager.getURL(testURL, sigFileName);
             result = readFile(fileURL);
         } catch (MalformedURLException e) {
-            if (SigTest.debug) {
+            if (SigTest.isDebug()) {
                 e.printStackTrace();
             }
             String invargs[] = {testURL, e.getMessage()};
             log.println(i18n.getString("MultipleFileReader.error.url.threwerror", invargs));
             return false;
         } catch (IOException er) {
-            if (SigTest.debug) {
+            if (SigTest.isDebug()) {
                 er.printStackTrace();
             }
             log.println(er);
@@ -109,6 +160,103 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
         return result;
     }
 
+    /**
+     * Takes the classes merged from several signature files instead of
+     * reading a signature file. Only the members which are written to a
+     * signature file are kept, so the classes are the same as if the merged
+     * classes were written to a signature file and read again.
+     *
+     * @param merged   the merged classes, their members are built
+     * @param features features of the merged classes
+     * @see com.sun.tdk.signaturetest.merge.JSR68Merger
+     */
+    public void readMergedClasses(VirtualClassDescriptionLoader merged, Set features) {
+        setFeatures(features);
+        apiVersion = "";
+
+        for (Iterator it = merged.getClassIterator(); it.hasNext();) {
+            ClassDescription cl = (ClassDescription) it.next();
+            keepWrittenMembers(cl);
+            add(cl);
+        }
+
+        rewind();
+    }
+
+    /**
+     * Replaces the declared members of the class by the members
+     * written to a signature file, see {@link F40Writer#write(ClassDescription)}.
+     */
+    private void keepWrittenMembers(ClassDescription cl) {
+        String clsName = cl.getQualifiedName();
+        List ctors = new ArrayList();
+        List methods = new ArrayList();
+        List fields = new ArrayList();
+        List inners = new ArrayList();
+        List interfaces = new ArrayList();
+        SuperClass superClass = null;
+
+        for (Iterator e = cl.getMembersIterator(); e.hasNext();) {
+            MemberDescription mr = (MemberDescription) e.next();
+            MemberType mt = mr.getMemberType();
+
+            if ((mr.isMethod() || mr.isField() || mr.isInner()) && !clsName.equals(mr.getDeclaringClassName()))
+                continue;
+
+            if (mt == MemberType.CONSTRUCTOR)
+                ctors.add(mr);
+            else if (mt == MemberType.METHOD)
+                methods.add(mr);
+            else if (mt == MemberType.FIELD)
+                fields.add(mr);
+            else if (mt == MemberType.INNER) {
+                // only the modifiers and the name are written
+                InnerDescr inner = new InnerDescr();
+                inner.setModifiers(mr.getModifiers());
+                inner.setupInnerClassName(mr.getName(), clsName);
+                inners.add(inner);
+            } else if (mt == MemberType.SUPERCLASS) {
+                superClass = new SuperClass();
+                superClass.setupGenericClassName(getGenericName(mr));
+            } else if (mt == MemberType.SUPERINTERFACE && ((SuperInterface) mr).isDirect()) {
+                interfaces.add(getGenericName(mr));
+            }
+        }
+
+        // the interfaces are read in the order they are written
+        Collections.sort(interfaces);
+        for (int i = 0; i < interfaces.size(); i++) {
+            SuperInterface si = new SuperInterface();
+            si.setupGenericClassName((String) interfaces.get(i));
+            si.setDirect(true);
+            interfaces.set(i, si);
+        }
+
+        cl.setConstructors((ConstructorDescr[]) ctors.toArray(ConstructorDescr.EMPTY_ARRAY));
+        cl.setMethods((MethodDescr[]) methods.toArray(MethodDescr.EMPTY_ARRAY));
+        cl.setFields((FieldDescr[]) fields.toArray(FieldDescr.EMPTY_ARRAY));
+        cl.setNestedClasses((InnerDescr[]) inners.toArray(InnerDescr.EMPTY_ARRAY));
+        cl.setInterfaces((SuperInterface[]) interfaces.toArray(SuperInterface.EMPTY_ARRAY));
+        cl.setSuperClass(superClass);
+
+        // the hiders are written only if the format supports them
+        cl.setInternalFields(isFeatureSupported(FeaturesHolder.ListOfHiders) ? cl.getInternalFields() : null);
+        cl.setInternalClasses(isFeatureSupported(FeaturesHolder.ListOfHiders) ? cl.getInternalClasses() : null);
+        if (!isFeatureSupported(FeaturesHolder.XHiders)) {
+            cl.setXFields(null);
+            cl.setXClasses(null);
+        }
+
+        cl.setMembers(new MemberCollection());
+    }
+
+    private static String getGenericName(MemberDescription superClass) {
+        String typeParameters = superClass.getTypeParameters();
+        if (typeParameters == null)
+            return superClass.getQualifiedName();
+        return superClass.getQualifiedName() + typeParameters;
+    }
+
     private boolean readFile(URL fileURL) {
 
         String msg = null;
@@ -137,14 +285,19 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
 
                 apiVersion = in.getApiVersion();
 
+                if (cache != null && in instanceof RandomAccessReader
+                        && ((RandomAccessReader) in).isRandomAccess()) {
+                    readPositions((RandomAccessReader) in);
+                    // the reader is closed by close()
+                    in = null;
+                }
+
                 ClassDescription cl;
-                while ((cl = in.readNextClass()) != null) {
+                while (in != null && (cl = in.readNextClass()) != null) {
 
                     String name = cl.getQualifiedName();
                     if (mode == CLASSPATH_MODE) {
-                        try {
-                            load(name);
-                        } catch (ClassNotFoundException ex) {
+                        if (!contains(name)) {
                             // use only first class description
                             add(cl);
                         }
@@ -153,12 +306,12 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
                     }
                 }
             } catch (IOException e) {
-                if (SigTest.debug) {
+                if (SigTest.isDebug()) {
                     e.printStackTrace();
                 }
                 msg = i18n.getString("MultipleFileReader.error.sigfile.prob") + "\n" + e;
             } catch (SecurityException e) {
-                if (SigTest.debug) {
+                if (SigTest.isDebug()) {
                     e.printStackTrace();
                 }
                 msg = i18n.getString("MultipleFileReader.error.sigfile.sec") + "\n" + e;
@@ -166,7 +319,8 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
 
             // try to close
             try {
-                in.close();
+                if (in != null)
+                    in.close();
             } catch (IOException e) {
             }
 
@@ -179,19 +333,95 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
         return true;
     }
 
+    /**
+     * Remembers positions of the classes which are not read yet.
+     * The reader is kept open to read the classes again.
+     */
+    private void readPositions(RandomAccessReader in) throws IOException {
+        readers.add(in);
+
+        long position = in.getPosition();
+        String name;
+        while ((name = in.skipClass()) != null) {
+            if (!contains(name)) {
+                // use only first class description
+                positions.put(name, new Position(in, position));
+            }
+            position = in.getPosition();
+        }
+    }
+
+    private boolean contains(String name) {
+        try {
+            super.load(name);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return positions != null && positions.containsKey(name);
+        }
+    }
+
+    public ClassDescription load(String name) throws ClassNotFoundException {
+        if (cache == null)
+            return super.load(name);
+
+        Position p = (Position) positions.get(name);
+        if (p == null)
+            return super.load(name);
+
+        try {
+            return read(name, p);
+        } catch (IOException e) {
+            if (SigTest.isDebug()) {
+                e.printStackTrace();
+            }
+            throw new ClassNotFoundException(name, e);
+        }
+    }
+
+    private ClassDescription read(String name, Position p) throws IOException {
+        ClassDescription cl = cache.get(name);
+        if (cl == null) {
+            cl = p.reader.readClassAt(p.position);
+            cache.put(name, cl);
+        }
+        return cl;
+    }
+
     public void close() {
         classIterator = null;
         cleanUp();
+        if (readers != null) {
+            for (Iterator it = readers.iterator(); it.hasNext();) {
+                try {
+                    ((RandomAccessReader) it.next()).close();
+                } catch (IOException e) {
+                    if (SigTest.isDebug()) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            readers.clear();
+            positions.clear();
+            cache.clear();
+        }
     }
 
+    /**
+     * Starts enumeration of the classes from the beginning. The classes
+     * kept in memory are followed by the classes read in the streaming mode.
+     */
     public void rewind() {
         classIterator = getClassIterator();
+        positionIterator = positions == null ? null : positions.entrySet().iterator();
     }
 
     public ClassDescription nextClass() throws IOException {
         ClassDescription cl = null;
         if (classIterator != null && classIterator.hasNext()) {
             cl = (ClassDescription) classIterator.next();
+        } else if (positionIterator != null && positionIterator.hasNext()) {
+            Map.Entry e = (Map.Entry) positionIterator.next();
+            cl = read((String) e.getKey(), (Position) e.getValue());
         }
         return cl; // cl == null ? null : (ClassDescription) cl.clone();
     }
@@ -200,4 +430,14 @@ public class MultipleFileReader extends VirtualClassDescriptionLoader {
         return apiVersion;
     }
 
+    private static class Position {
+        private final RandomAccessReader reader;
+        private final long position;
+
+        private Position(RandomAccessReader reader, long position) {
+            this.reader = reader;
+            this.position = position;
+        }
+    }
+
 }
@@ -0,0 +1,66 @@
+/*
+ * $Id$
+ *
+ * Copyright 1996-2009 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+
+import java.io.IOException;
+
+/**
+ * <b>Reader</b> of the signature file which can read the class descriptions
+ * again at the positions remembered during the sequential reading, so that
+ * only the positions of the classes are kept in memory.
+ *
+ * @see MultipleFileReader#setStreaming(int)
+ */
+interface RandomAccessReader extends Reader {
+
+    /**
+     * Returns true if the classes can be read again by {@link #readClassAt(long)}.
+     */
+    boolean isRandomAccess();
+
+    /**
+     * Returns position of the next class description in the signature file.
+     */
+    long getPosition();
+
+    /**
+     * Skips the next class description.
+     *
+     * @return qualified name of the skipped class or <code>null</code>
+     *         at the end of file.
+     */
+    String skipClass() throws IOException;
+
+    /**
+     * Reads the class description at the position returned by {@link #getPosition()}.
+     * The sequential reading isn't affected.
+     */
+    ClassDescription readClassAt(long position) throws IOException;
+}
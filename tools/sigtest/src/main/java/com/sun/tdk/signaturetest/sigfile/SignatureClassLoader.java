@@ -30,31 +30,45 @@ package com.sun.tdk.signaturetest.sigfile;
 import com.sun.tdk.signaturetest.model.ClassDescription;
 import com.sun.tdk.signaturetest.model.MemberType;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
 import java.util.*;
 
 /**
  * <b>SignatureClassLoader</b> implements input stream sequentially
  * reading <b>ClassDescription</b> instances from signature file.
  * This program merges several signature files into a single one.
+ * <p/>
+ * The class descriptions of the local signature file can be read again
+ * at the positions returned by {@link #getPosition()}, this allows to
+ * keep only the positions of the classes in memory.
  *
  * @author Maxim Sokolnikov
  * @version 05/09/09
  * @see ClassDescription
  */
 
-abstract class SignatureClassLoader implements Reader {
+abstract class SignatureClassLoader implements RandomAccessReader {
 
     protected Format format;
     protected Set features = new HashSet();
 
-    private BufferedReader in;
+    private LineReader in;
+
+    /**
+     * The signature file opened for reading the classes at the given
+     * positions, see {@link #readClassAt(long)}.
+     */
+    private RandomAccessFile file;
+    private URL fileURL;
 
     private Parser parser;
     private final int BUFSIZE = 0x8000;
+    private final int CLASS_BUFSIZE = 0x1000;
 
     /**
      * API version found in <code>this</code> signature file.
@@ -85,6 +99,10 @@ abstract class SignatureClassLoader implements Reader {
 
     public void close() throws IOException {
         in.close();
+        if (file != null) {
+            file.close();
+            file = null;
+        }
     }
 
     /**
@@ -94,14 +112,56 @@ abstract class SignatureClassLoader implements Reader {
      * @see ClassDescription
      */
     public ClassDescription readNextClass() throws IOException {
+        return readClass(in);
+    }
+
+    public long getPosition() {
+        return in.getPosition();
+    }
+
+    public String skipClass() throws IOException {
+        ClassDescription c = readClass(in);
+        return c == null ? null : c.getQualifiedName();
+    }
+
+    public boolean isRandomAccess() {
+        File f = getFile();
+        return f != null && f.isFile();
+    }
+
+    public ClassDescription readClassAt(long position) throws IOException {
+        if (file == null)
+            file = new RandomAccessFile(getFile(), "r");
+        file.seek(position);
+        return readClass(new LineReader(Channels.newInputStream(file.getChannel()), position, CLASS_BUFSIZE));
+    }
+
+    /**
+     * Returns the local file read by <code>this</code> reader or <code>null</code>.
+     */
+    private File getFile() {
+        if (fileURL == null || !"file".equals(fileURL.getProtocol()))
+            return null;
+        try {
+            return new File(fileURL.toURI());
+        } catch (URISyntaxException e) {
+            // not encoded, see File.toURL()
+        } catch (IllegalArgumentException e) {
+            // relative path
+        }
+        return new File(fileURL.getPath());
+    }
+
+    private ClassDescription readClass(LineReader in) throws IOException {
 
         String currentLine;
         String classDescr = null;
         List definitions = new ArrayList();
 
         for (; ;) {
-            in.mark(BUFSIZE);
-            if ((currentLine = in.readLine()) == null)
+            long position = in.getPosition();
+            String line = in.readLine();
+            if ((currentLine = line) == null)
                 break;
 
             currentLine = currentLine.trim();
@@ -113,8 +173,11 @@ abstract class SignatureClassLoader implements Reader {
             if (type == MemberType.CLASS) {
                 if (classDescr == null) {
                     classDescr = currentLine;
-                } else
+                } else {
+                    // the next class
+                    in.pushBack(line, position);
                     break;
+                }
             } else {
                 if (classDescr == null)
                     throw new Error();
@@ -122,7 +185,6 @@ abstract class SignatureClassLoader implements Reader {
                 definitions.add(currentLine);
             }
         }
-        in.reset();
 
         if (classDescr == null && definitions.size() == 0)
             return null;
@@ -145,12 +207,12 @@ abstract class SignatureClassLoader implements Reader {
      * Open <code>fileURL</code> for input, and parse comments to initialize fields
      */
     public boolean readSignatureFile(URL fileURL) throws IOException {
-        in = new BufferedReader(new InputStreamReader(fileURL.openStream(), "UTF8"), BUFSIZE);
-        assert in.markSupported();
+        this.fileURL = fileURL;
+        in = new LineReader(fileURL.openStream(), 0, BUFSIZE);
         return readHeaders(in);
     }
 
-    protected boolean readHeaders(BufferedReader in) throws IOException {
+    protected boolean readHeaders(LineReader in) throws IOException {
 
         String currentLine;
 
@@ -173,11 +235,13 @@ abstract class SignatureClassLoader implements Reader {
 
         apiVersion = currentLine.substring(Format.VERSION.length()).trim();
 
-        in.mark(BUFSIZE);
+        long position = in.getPosition();
         while ((currentLine = in.readLine()) != null && currentLine.startsWith("#")) {
             removeMissingFeature(currentLine);
+            position = in.getPosition();
         }
-        in.reset();
+        if (currentLine != null)
+            in.pushBack(currentLine, position);
 
         return true;
     }
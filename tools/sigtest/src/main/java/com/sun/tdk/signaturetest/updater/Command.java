@@ -114,7 +114,8 @@ class AddMember extends Command {
             log.println("Can't find " + className);
             return false;
         } else {
-            return sl.addMember(memberName);
+            sl.addMember(memberName);
+            return true;
         }
     }
 
@@ -194,9 +195,7 @@ class RemovePackage extends Command {
 
     boolean perform(Updater.SigList sl) {
         trace();
-        while (sl.findPackageMember(packageName)) {
-            sl.removeCurrentClass();
-        }
+        sl.removePackage(packageName);
         return true;
     }
 
@@ -167,18 +167,25 @@ public class Updater extends DefaultHandler {
 
     private boolean applyUpdate(String from, String to) {
         try {
-            // read src
-            SigList sl = readInput(from);
+            // index the classes of src
+            SigList sl = new SigList(new File(from));
 
             // transform
             processCommands(commands, sl);
             commands.clear();
 
-            // remove some empty lines
-            sl.pack();
-
-            // write result
-            writeOut(to, sl);
+            // write result, some empty lines are removed
+            File out = new File(to);
+            if (out.getCanonicalFile().equals(new File(from).getCanonicalFile())) {
+                // src is read again while the result is written
+                File tmp = File.createTempFile("sigtest", "sig", out.getAbsoluteFile().getParentFile());
+                sl.write(tmp);
+                if (!out.delete() || !tmp.renameTo(out)) {
+                    throw new IOException("Can't rename " + tmp + " to " + out);
+                }
+            } else {
+                sl.write(out);
+            }
 
             return true;
 
@@ -188,141 +195,352 @@ public class Updater extends DefaultHandler {
         }
     }
 
-    private void writeOut(String to, SigList sl) throws FileNotFoundException {
-        PrintWriter pw = new PrintWriter(new FileOutputStream(to));
-        Iterator it = sl.iterator();
-        while (it.hasNext()) {
-            pw.write((String) it.next() + '\n');
+    /**
+     * Signature file being updated. The file is read twice: first the
+     * positions of the classes are indexed, the commands are applied to
+     * the index and the changes of the members are kept with the classes.
+     * Then the file is copied to the result, the removed classes are skipped
+     * and the changes are applied to the lines of the changed classes only.
+     * The classes added by the commands are kept in memory and follow the file.
+     */
+    class SigList {
+
+        private final File file;
+
+        /**
+         * Number of the lines of the file.
+         */
+        private int fileLines;
+
+        /**
+         * Lines added by the commands, they follow the lines of the file.
+         */
+        private final List addedLines = new ArrayList();
+
+        /**
+         * Classes in the order of the lines.
+         */
+        private final List classes = new ArrayList();
+
+        /**
+         * Lists of the classes by the last word of the <code>CLSS</code> line,
+         * see {@link #findClass(String)}.
+         */
+        private final Map classesByName = new HashMap();
+
+        /**
+         * Class whose lines are not terminated yet.
+         */
+        private ClassLines open;
+
+        private ClassLines current;
+
+        SigList(File file) throws IOException {
+            this.file = file;
+            BufferedReader r = new BufferedReader(new FileReader(file));
+            try {
+                String s;
+                while ((s = r.readLine()) != null) {
+                    index(s, fileLines++);
+                }
+            } finally {
+                r.close();
+            }
         }
-        pw.close();
-    }
 
-    private SigList readInput(String from) throws IOException {
-        LineNumberReader r = new LineNumberReader(new BufferedReader(new FileReader(from)));
-        SigList sl = new SigList();
-        String s;
-        while ((s = r.readLine()) != null) {
-            sl.add(s);
+        /**
+         * Indexes the line, a class starts at <code>CLSS</code> line and
+         * ends at the empty line or at the next class.
+         */
+        private void index(String line, int lineNumber) {
+            boolean isClass = line.startsWith("CLSS ");
+            if (open != null && (isClass || "".equals(line.trim()))) {
+                open.end = lineNumber;
+                open.chained = isClass;
+                open = null;
+            }
+            if (isClass) {
+                open = new ClassLines(classes.size(), lineNumber, line);
+                classes.add(open);
+                putName(open);
+            }
+        }
+
+        private void putName(ClassLines cl) {
+            String key = getKey(cl.header);
+            List l = (List) classesByName.get(key);
+            if (l == null) {
+                l = new ArrayList(1);
+                classesByName.put(key, l);
+            }
+            // keeps the order of the lines
+            int i = l.size();
+            while (i > 0 && ((ClassLines) l.get(i - 1)).index > cl.index)
+                i--;
+            l.add(i, cl);
         }
-        r.close();
-        return sl;
-    }
 
-    class SigList extends ArrayList {
-        private int startPos = -1;
+        private void removeName(ClassLines cl) {
+            List l = (List) classesByName.get(getKey(cl.header));
+            if (l != null)
+                l.remove(cl);
+        }
+
+        private String getKey(String s) {
+            return s.substring(s.lastIndexOf(' ') + 1);
+        }
 
         public boolean findClass(String className) {
-            startPos = -1;
-            int i = 0;
-            while (i < size()) {
-                String l = (String) get(i);
-                if (l.startsWith("CLSS ") && l.endsWith(" " + className)) {
-                    startPos = i;
-                    return true;
+            current = null;
+            List l = (List) classesByName.get(getKey(className));
+            if (l != null) {
+                for (int i = 0; i < l.size(); i++) {
+                    ClassLines cl = (ClassLines) l.get(i);
+                    if (cl.header.startsWith("CLSS ") && cl.header.endsWith(" " + className)) {
+                        current = cl;
+                        return true;
+                    }
                 }
-                i++;
             }
             return false;
         }
 
+        /**
+         * Removes the current class up to the next empty line.
+         */
         public void removeCurrentClass() {
-            if (startPos >= 0) {
-                while (!"".equals(((String) get(startPos)).trim())) {
-                    remove(startPos);
+            if (current != null) {
+                remove(current);
+                current = null;
+            }
+        }
+
+        private void remove(ClassLines cl) {
+            for (int i = cl.index; ; i++) {
+                ClassLines c = (ClassLines) classes.get(i);
+                if (!c.removed) {
+                    c.removed = true;
+                    removeName(c);
                 }
+                if (!c.chained)
+                    break;
             }
         }
 
         public void addText(String body) {
             StringTokenizer st = new StringTokenizer(body, "\n");
-            add("");
+            addLine("");
             while (st.hasMoreTokens()) {
-                add(st.nextToken().trim());
+                addLine(st.nextToken().trim());
             }
-            add("");
+            addLine("");
         }
 
-        public boolean findPackageMember(String packageName) {
-            startPos = -1;
-            int i = 0;
+        private void addLine(String line) {
+            index(line, fileLines + addedLines.size());
+            addedLines.add(line);
+        }
+
+        /**
+         * Removes all the classes of the package and its subpackages.
+         */
+        public void removePackage(String packageName) {
             final String pSig = " " + packageName + ".";
-            while (i < size()) {
-                String l = (String) get(i);
-                if (l.startsWith("CLSS ")) {
-                    int x = l.indexOf('<');
-                    int y = l.indexOf(pSig);
+            for (int i = 0; i < classes.size(); i++) {
+                ClassLines cl = (ClassLines) classes.get(i);
+                if (!cl.removed && cl.header.startsWith("CLSS ")) {
+                    int x = cl.header.indexOf('<');
+                    int y = cl.header.indexOf(pSig);
                     if (y > 0 && ((y < x) || (x == -1))) {
-                        startPos = i;
-                        return true;
+                        remove(cl);
                     }
                 }
-                i++;
             }
-            return false;
         }
 
-        public boolean removeMember(String memberName) {
-            if (startPos >= 0) {
-                for (int i = startPos; i < size(); i++) {
-                    String l = ((String) get(i)).trim();
-                    if (memberName.equals(l)) {
-                        remove(i);
-                        return true;
-                    } else {
-                        if ("".equals(l)) {
-                            break;
-                        }
-                    }
+        public void removeMember(String memberName) {
+            if (current != null) {
+                if (memberName.equals(current.header.trim())) {
+                    // the class line itself
+                    removeName(current);
+                    current.header = "";
                 }
+                current.addEdit(new Edit(Edit.REMOVE, memberName, null));
             }
-            return false;
         }
 
-        public boolean changeMember(String oldMember, String newMember) {
-            if (startPos >= 0) {
-                for (int i = startPos; i < size(); i++) {
-                    String l = ((String) get(i)).trim();
-                    if (oldMember.equals(l)) {
-                        set(i, newMember);
-                        return true;
-                    } else {
-                        if ("".equals(l)) {
-                            break;
-                        }
-                    }
+        public void changeMember(String oldMember, String newMember) {
+            if (current != null) {
+                if (oldMember.equals(current.header.trim())) {
+                    // the class line itself
+                    removeName(current);
+                    current.header = newMember;
+                    putName(current);
                 }
+                current.addEdit(new Edit(Edit.CHANGE, oldMember, newMember));
             }
-            return false;
         }
 
-        public void pack() {
-            boolean empty = false;
-            for (int i = 0; i < size(); i++) {
-                String l = (String) get(i);
-                if ("".equals(l.trim())) {
-                    if (empty) {
-                        remove(i--);
-                        continue;
+        public void addMember(String memberName) {
+            if (current != null) {
+                current.addEdit(new Edit(Edit.ADD, memberName, null));
+            }
+        }
+
+        /**
+         * Writes the updated signature file, the repeated empty lines are written once.
+         */
+        public void write(File to) throws IOException {
+            PrintWriter pw = new PrintWriter(new FileOutputStream(to));
+            BufferedReader r = new BufferedReader(new FileReader(file));
+            try {
+                LineWriter out = new LineWriter(pw);
+                Iterator added = addedLines.iterator();
+                int next = 0;
+                ClassLines cl = null;
+                List lines = null;
+                String s;
+                for (int lineNumber = 0; ; lineNumber++) {
+                    if (lineNumber < fileLines) {
+                        s = r.readLine();
+                        if (s == null)
+                            throw new IOException(file + " is changed");
+                    } else if (added.hasNext()) {
+                        s = (String) added.next();
                     } else {
-                        empty = true;
+                        break;
                     }
-                } else {
-                    empty = false;
+
+                    if (cl != null && lineNumber == cl.end) {
+                        cl.write(lines, out);
+                        cl = null;
+                    }
+                    if (cl == null && next < classes.size()
+                            && ((ClassLines) classes.get(next)).start == lineNumber) {
+                        cl = (ClassLines) classes.get(next++);
+                        lines = cl.edits == null ? null : new ArrayList();
+                    }
+
+                    if (cl == null)
+                        out.println(s);
+                    else if (cl.removed)
+                        continue;
+                    else if (lines != null)
+                        lines.add(s);
+                    else
+                        out.println(s);
                 }
+                if (cl != null)
+                    cl.write(lines, out);
+            } finally {
+                r.close();
+                pw.close();
             }
         }
+    }
 
-        public boolean addMember(String memberName) {
-            if (startPos >= 0) {
-                for (int i = startPos + 1; i < size(); i++) {
-                    String l = ((String) get(i)).trim();
-                    if (!l.startsWith(AnnotationItem.ANNOTATION_PREFIX)) {
-                        add(i, memberName);
-                        return true;
-                    }
+    /**
+     * Lines of a class in the signature file.
+     */
+    private static class ClassLines {
+        private final int index;
+        private final int start;
+        private int end = -1;
+        /**
+         * True if the class is terminated by the next class, not by the empty line.
+         */
+        private boolean chained;
+        private String header;
+        private boolean removed;
+        private List edits;
+
+        ClassLines(int index, int start, String header) {
+            this.index = index;
+            this.start = start;
+            this.header = header;
+        }
+
+        void addEdit(Edit e) {
+            if (edits == null)
+                edits = new ArrayList(2);
+            edits.add(e);
+        }
+
+        /**
+         * Applies the edits to the lines of the class and writes them.
+         */
+        void write(List lines, LineWriter out) {
+            if (removed)
+                return;
+            if (lines != null) {
+                for (int i = 0; i < edits.size(); i++) {
+                    ((Edit) edits.get(i)).apply(lines);
+                }
+                for (int i = 0; i < lines.size(); i++) {
+                    out.println((String) lines.get(i));
                 }
             }
-            return false;
+        }
+    }
+
+    /**
+     * Change of the members of a class.
+     */
+    private static class Edit {
+        static final int REMOVE = 0;
+        static final int CHANGE = 1;
+        static final int ADD = 2;
+
+        private final int type;
+        private final String member;
+        private final String newMember;
+
+        Edit(int type, String member, String newMember) {
+            this.type = type;
+            this.member = member;
+            this.newMember = newMember;
+        }
+
+        void apply(List lines) {
+            if (type == ADD) {
+                int i = 1;
+                while (i < lines.size() && ((String) lines.get(i)).trim().startsWith(AnnotationItem.ANNOTATION_PREFIX))
+                    i++;
+                lines.add(i, member);
+                return;
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                if (member.equals(((String) lines.get(i)).trim())) {
+                    if (type == REMOVE)
+                        lines.remove(i);
+                    else
+                        lines.set(i, newMember);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the lines, the repeated empty lines are skipped.
+     */
+    private static class LineWriter {
+        private final PrintWriter pw;
+        private boolean empty = false;
+
+        LineWriter(PrintWriter pw) {
+            this.pw = pw;
+        }
+
+        void println(String line) {
+            if ("".equals(line.trim())) {
+                if (empty)
+                    return;
+                empty = true;
+            } else {
+                empty = false;
+            }
+            pw.write(line + '\n');
         }
     }
 
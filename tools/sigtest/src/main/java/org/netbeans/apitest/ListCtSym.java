@@ -24,10 +24,20 @@
  */
 package org.netbeans.apitest;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 final class ListCtSym {
     public static void main(String... args) throws Exception {
@@ -35,12 +45,86 @@ final class ListCtSym {
         File dir = new File(args[1]);
         int depth = Integer.parseInt(args[2]);
 
+        List<String> lines = new ArrayList<>();
         Writer w = new FileWriter(lsR);
-        dumpDir(w, dir, null, depth);
+        dumpDir(w, lines, dir, null, depth);
         w.close();
+
+        if (args.length > 3) {
+            writeReleases(new File(args[3]), dir, lines);
+        }
+    }
+
+    /**
+     * Packs the signatures of every release into one compressed file
+     * {@code sigtest-<release>.bin}, read by
+     * {@code com.sun.tdk.signaturetest.classpath.Release}. The file is
+     * deflated and contains the number of classes, the total length of
+     * the signatures, the sorted class names with the length of their
+     * signature and then the signatures themselves. A class found in
+     * several prefixes is taken from the first one, as the release
+     * would find it.
+     */
+    private static void writeReleases(File target, File dir, List<String> lines) throws IOException {
+        Map<Character, List<String>> prefixes = new TreeMap<>();
+        for (String l : lines) {
+            String versions = l.substring(0, l.indexOf('/'));
+            for (int i = 0; i < versions.length(); i++) {
+                prefixes.computeIfAbsent(versions.charAt(i), k -> new ArrayList<>()).add(l);
+            }
+        }
+
+        target.mkdirs();
+        for (Map.Entry<Character, List<String>> entry : prefixes.entrySet()) {
+            Map<String, File> classes = new TreeMap<>();
+            for (String p : entry.getValue()) {
+                listSigs(classes, new File(dir, p), null);
+            }
+
+            byte[][] sigs = new byte[classes.size()][];
+            int length = 0;
+            int i = 0;
+            for (File f : classes.values()) {
+                sigs[i] = Files.readAllBytes(f.toPath());
+                length += sigs[i++].length;
+            }
+
+            File blob = new File(target, "sigtest-" + entry.getKey() + ".bin");
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DataOutputStream os = new DataOutputStream(new DeflaterOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(blob)), deflater, 65536))) {
+                os.writeInt(classes.size());
+                os.writeInt(length);
+                i = 0;
+                for (String name : classes.keySet()) {
+                    os.writeUTF(name);
+                    os.writeInt(sigs[i++].length);
+                }
+                for (byte[] sig : sigs) {
+                    os.write(sig);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static void listSigs(Map<String, File> classes, File dir, String pkg) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File ch : children) {
+            String name = pkg == null ? ch.getName() : pkg + "." + ch.getName();
+            if (ch.isDirectory()) {
+                listSigs(classes, ch, name);
+            } else if (name.endsWith(".sig")) {
+                classes.putIfAbsent(name.substring(0, name.length() - 4), ch);
+            }
+        }
     }
 
-    private static void dumpDir(Writer w, File dir, String prefix, int depth) throws IOException {
+    private static void dumpDir(Writer w, List<String> lines, File dir, String prefix, int depth) throws IOException {
         File[] children = dir.listFiles();
         if (depth <= 0 || children == null) {
             return;
@@ -50,9 +134,10 @@ final class ListCtSym {
             String newPrefix = prefix == null ? ch.getName() : prefix + "/" + ch.getName();
             if (minusOneDepth == 0) {
                 w.append(newPrefix).append("\n");
+                lines.add(newPrefix);
             } else {
                 if (ch.isDirectory()) {
-                    dumpDir(w, ch, newPrefix, minusOneDepth);
+                    dumpDir(w, lines, ch, newPrefix, minusOneDepth);
                 }
             }
         }
@@ -24,7 +24,17 @@
  */
 package org.netbeans.apitest;
 
+import com.sun.tdk.signaturetest.Version;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DefaultArtifact;
 import org.apache.maven.artifact.handler.DefaultArtifactHandler;
 import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
@@ -42,6 +52,12 @@ import org.apache.maven.project.MavenProject;
 
 /** Mojo to compare {@code .class} files with an existing {@code .sigtest}
  * file.
+ * <p>
+ * The signature file of the previous release is generated from the released
+ * artifact, the classes of the project and its dependencies. It is cached in
+ * the directory of the artifact in the local repository and reused while the
+ * artifact, the classes of the project, the packages, the release, the
+ * dependencies and the version of sigtest stay the same.
  *
  * @author Jaroslav Tulach
  */
@@ -74,6 +90,26 @@ public final class SigtestCompare extends AbstractMojo {
     private File report;
     @Parameter(defaultValue = "true", property = "sigtest.fail")
     private boolean failOnError;
+    /**
+     * reuse the signature file of the previous release cached in the local repository
+     */
+    @Parameter(defaultValue = "true", property = "sigtest.cache")
+    private boolean cache;
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    public SigtestCompare() {
+    }
+
+    SigtestCompare(MavenProject prj, File sigfile, String packages, String releaseVersion, String release, boolean cache, String pluginVersion) {
+        this.prj = prj;
+        this.sigfile = sigfile;
+        this.packages = packages;
+        this.releaseVersion = releaseVersion;
+        this.release = release;
+        this.cache = cache;
+        this.pluginVersion = pluginVersion;
+    }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
         if (packages == null) {
@@ -94,10 +130,156 @@ public final class SigtestCompare extends AbstractMojo {
             throw new MojoExecutionException("Cannot resolve " + artifact, ex);
         }
 
-        SigtestGenerate generate = new SigtestGenerate(prj, artifact.getFile(), sigfile, packages, releaseVersion, release);
-        generate.execute();
+        generateBaseline(artifact);
 
         SigtestCheck check = new SigtestCheck(prj, classes, sigfile, action, packages, report, failOnError);
         check.execute();
     }
+
+    /** Writes the signature file of the resolved previous release to
+     * {@code sigfile}, either generated or copied from the cache.
+     */
+    void generateBaseline(Artifact artifact) throws MojoExecutionException, MojoFailureException {
+        File cached = cache ? cachedSigfile(artifact) : null;
+        if (cached != null && cached.isFile()) {
+            try {
+                copy(cached, sigfile);
+                getLog().info("Using signature snapshot of " + artifact + " cached at " + cached);
+                return;
+            } catch (MojoExecutionException ex) {
+                getLog().warn("Cannot use " + cached + ", generating it again", ex);
+            }
+        }
+
+        SigtestGenerate generate = new SigtestGenerate(prj, artifact.getFile(), sigfile, packages, releaseVersion, release);
+        generate.execute();
+        if (cached != null) {
+            try {
+                copy(sigfile, cached);
+            } catch (MojoExecutionException ex) {
+                getLog().warn("Cannot cache " + sigfile + " at " + cached, ex);
+            }
+        }
+    }
+
+    /** The cached signature file is stored next to the artifact in the local
+     * repository, its name contains the digest of everything the generated
+     * file depends on.
+     */
+    private File cachedSigfile(Artifact baseline) throws MojoExecutionException {
+        StringBuilder key = new StringBuilder();
+        key.append("sigtest ").append(Version.Number).append(' ').append(pluginVersion).append('\n');
+        // the artifact can be installed again with the same version
+        appendArtifact(key.append("artifact "), baseline, true);
+        key.append("packages ").append(packages).append('\n');
+        if (release != null) {
+            key.append("release ").append(release).append('\n');
+        } else {
+            // the classes of the running JDK are used
+            key.append("java ").append(System.getProperty("java.specification.version")).append('\n');
+        }
+        key.append("version ").append(prj.getVersion()).append('\n');
+        // the classes of the project are on the classpath after the artifact
+        key.append("classes ");
+        appendDigest(key, new File(prj.getBuild().getOutputDirectory()));
+        key.append('\n');
+        for (Artifact a : prj.getArtifacts()) {
+            if (a.getFile() != null && a.getFile().exists()) {
+                appendArtifact(key.append("dependency "), a, a.isSnapshot());
+            }
+        }
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(key.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+        StringBuilder name = new StringBuilder();
+        name.append(baseline.getArtifactId()).append('-').append(baseline.getVersion()).append('-');
+        for (int i = 0; i < 8; i++) {
+            name.append(Character.forDigit((digest[i] >> 4) & 0xf, 16));
+            name.append(Character.forDigit(digest[i] & 0xf, 16));
+        }
+        name.append(".sigfile");
+        return new File(baseline.getFile().getParentFile(), name.toString());
+    }
+
+    /** Released dependencies don't change, the snapshots are identified
+     * by their files.
+     */
+    private static void appendArtifact(StringBuilder key, Artifact a, boolean withFile) {
+        key.append(a.getGroupId()).append(':').append(a.getArtifactId()).append(':').append(a.getVersion());
+        if (a.getClassifier() != null) {
+            key.append(':').append(a.getClassifier());
+        }
+        if (withFile) {
+            File f = a.getFile();
+            key.append(' ').append(f.getAbsolutePath()).append(' ').append(f.length()).append(' ').append(f.lastModified());
+        }
+        key.append('\n');
+    }
+
+    /** Appends the digest of the names and the contents of the files
+     * in the directory.
+     */
+    private static void appendDigest(StringBuilder key, File dir) throws MojoExecutionException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new MojoExecutionException(ex.getMessage(), ex);
+        }
+        try {
+            digestFiles(md, dir, "");
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Cannot read " + dir, ex);
+        }
+        for (byte b : md.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16));
+            key.append(Character.forDigit(b & 0xf, 16));
+        }
+    }
+
+    private static void digestFiles(MessageDigest md, File dir, String prefix) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File f : files) {
+            String name = prefix + f.getName();
+            if (f.isDirectory()) {
+                digestFiles(md, f, name + "/");
+            } else {
+                md.update(name.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+                md.update(Files.readAllBytes(f.toPath()));
+            }
+        }
+    }
+
+    /** Copies the file through a temporary file in the same directory, so that
+     * the target is either complete or missing, even if several builds share
+     * the local repository.
+     */
+    private static void copy(File from, File to) throws MojoExecutionException {
+        try {
+            File dir = to.getAbsoluteFile().getParentFile();
+            dir.mkdirs();
+            File tmp = File.createTempFile(to.getName(), ".tmp", dir);
+            try {
+                Files.copy(from.toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                try {
+                    Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(tmp.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                tmp.delete();
+            }
+        } catch (IOException ex) {
+            throw new MojoExecutionException("Cannot copy " + from + " to " + to, ex);
+        }
+    }
 }
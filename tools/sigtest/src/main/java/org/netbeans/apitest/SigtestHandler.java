@@ -26,25 +26,25 @@ package org.netbeans.apitest;
 
 import com.sun.tdk.signaturetest.Setup;
 import com.sun.tdk.signaturetest.SignatureTest;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.StringTokenizer;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 abstract class SigtestHandler {
     static String[] ACTIONS = new String[] {
@@ -143,25 +143,30 @@ abstract class SigtestHandler {
         }
         int returnCode;
         String[] args = arg.toArray(new String[0]);
-        StringWriter output = new StringWriter();
-        PrintWriter w = new PrintWriter(output, true);
-        if (generate) {
-            Setup t = new Setup();
-            t.run(args, w, null);
-            returnCode = t.isPassed() ? 0 : 1;
-        } else {
-            SignatureTest t = new SignatureTest();
-            t.run(args, w, null);
-            returnCode = t.isPassed() ? 0 : 1;
-            if (onlySameVersion && !t.isPassed()) {
+        // the report may be large, it is written to the file and copied from there
+        File output = File.createTempFile("sigtest", ".log");
+        try {
+            PrintWriter w = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8")));
+            try {
+                if (generate) {
+                    Setup t = new Setup();
+                    t.run(args, w, null);
+                    returnCode = t.isPassed() ? 0 : 1;
+                } else {
+                    SignatureTest t = new SignatureTest();
+                    t.run(args, w, null);
+                    returnCode = t.isPassed() ? 0 : 1;
+                }
+            } finally {
+                w.close();
+            }
+            if (onlySameVersion && returnCode != 0) {
                 // check the printed out versions
                 final String prefix = "Base version: ";
-                int index = output.toString().indexOf(prefix);
-                if (index < 0) {
-                    throw new IOException("Missing " + prefix + " in:\n" + output.toString());
+                String base = findLine(output, prefix);
+                if (base == null) {
+                    throw new IOException("Missing " + prefix + " in:\n" + readOutput(output));
                 }
-                int end = output.toString().indexOf('\n', index);
-                String base = output.toString().substring(index + prefix.length(), end);
                 logInfo("versioncheck.TestedVersion: " + getVersion());
                 logInfo("versioncheck.BaseVersion: " + base);
                 if (!getVersion().equals(base)) {
@@ -169,37 +174,87 @@ abstract class SigtestHandler {
                     returnCode = 0;
                 }
             }
+            if (getMail() != null) {
+                log("", returnCode == 0);
+                log("email: " + getMail(), returnCode == 0);
+            }
+            BufferedReader r = openOutput(output);
+            try {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    log(line, returnCode == 0);
+                }
+            } finally {
+                r.close();
+            }
+            boolean fail;
+            if (getReport() != null) {
+                writeReport(getReport(), output, returnCode == 0);
+                fail = Boolean.TRUE.equals(isFailOnError());
+            } else {
+                fail = !Boolean.FALSE.equals(isFailOnError());
+            }
+            return fail ? returnCode : 0;
+        } finally {
+            output.delete();
         }
-        String out;
-        if (getMail() != null) {
-            out = "\nemail: " + getMail() + "\n" + output;
+    }
+
+    //
+    // Implementation
+    //
+    private void log(String line, boolean success) {
+        if (success) {
+            logInfo(line);
         } else {
-            out = output.toString();
+            logError(line);
         }
-        if (returnCode == 0) {
-            logInfo(out);
-        } else {
-            logError(out);
+    }
+
+    private static BufferedReader openOutput(File output) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(output), "UTF-8"));
+    }
+
+    /**
+     * Returns the rest of the first line of the output starting with the prefix.
+     */
+    private static String findLine(File output, String prefix) throws IOException {
+        BufferedReader r = openOutput(output);
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                int index = line.indexOf(prefix);
+                if (index >= 0) {
+                    return line.substring(index + prefix.length());
+                }
+            }
+            return null;
+        } finally {
+            r.close();
         }
-        boolean fail;
-        if (getReport() != null) {
-            writeReport(getReport(), out, returnCode == 0);
-            fail = Boolean.TRUE.equals(isFailOnError());
-        } else {
-            fail = !Boolean.FALSE.equals(isFailOnError());
+    }
+
+    private static String readOutput(File output) throws IOException {
+        Reader r = openOutput(output);
+        try {
+            StringBuilder sb = new StringBuilder();
+            char[] buf = new char[8192];
+            int n;
+            while ((n = r.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            r.close();
         }
-        return fail ? returnCode : 0;
     }
 
-    //
-    // Implementation
-    //
     /**
      * Possibly write out a report.
-     * @param reportFile an XML file to create with the report; if null, and there were some failures,
-     *                   throw a {@link BuildException} instead
+     * @param reportFile an XML file to create with the report
+     * @param output the file with the output of the test, copied to the report
      */
-    protected void writeReport(File reportFile, String msg, boolean success) throws IOException {
+    protected void writeReport(File reportFile, File output, boolean success) throws IOException {
         assert reportFile != null;
         try {
             String apiName = getFileName().getName().replace(".sig", "").replace("-", ".");
@@ -208,53 +263,68 @@ abstract class SigtestHandler {
             if (getVersion() != null) {
                 name.append("_Version_").append(getVersion().replace('.', '_'));
             }
-            Document reportDoc = createDocument("testsuite");
-            Element testsuite = reportDoc.getDocumentElement();
-            int failures = 0;
-            testsuite.setAttribute("errors", "0");
-            testsuite.setAttribute("time", "0.0");
-            testsuite.setAttribute("name", name.toString()); // http://www.nabble.com/difference-in-junit-publisher-and-ant-junitreport-tf4308604.html#a12265700
-            Element testcase = reportDoc.createElement("testcase");
-            testsuite.appendChild(testcase);
-            testcase.setAttribute("classname", name.toString());
-            testcase.setAttribute("name", getAction());
-            testcase.setAttribute("time", "0.0");
-            if (!success) {
-                failures++;
-                Element failure = reportDoc.createElement("failure");
-                testcase.appendChild(failure);
-                failure.setAttribute("type", "junit.framework.AssertionFailedError");
-                failure.setAttribute("message", "Failed " + getAction() + " for " + apiName + " in version " + getVersion());
-            }
-            testsuite.setAttribute("failures", Integer.toString(failures));
-            testsuite.setAttribute("tests", Integer.toString(1));
-            Element systemerr = reportDoc.createElement("system-err");
-            systemerr.appendChild(reportDoc.createCDATASection(msg));
-            testsuite.appendChild(systemerr);
+            int failures = success ? 0 : 1;
             reportFile.getParentFile().mkdirs();
-            OutputStream os = new FileOutputStream(reportFile);
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(reportFile));
             try {
-                DOMSource dom = new DOMSource(reportDoc);
-                StreamResult res = new StreamResult(os);
-                Transformer trans = TransformerFactory.newInstance().newTransformer();
-                trans.transform(dom, res);
+                XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(os, "UTF-8");
+                xml.writeStartDocument("UTF-8", "1.0");
+                xml.writeStartElement("testsuite");
+                xml.writeAttribute("errors", "0");
+                xml.writeAttribute("time", "0.0");
+                xml.writeAttribute("name", name.toString()); // http://www.nabble.com/difference-in-junit-publisher-and-ant-junitreport-tf4308604.html#a12265700
+                xml.writeAttribute("failures", Integer.toString(failures));
+                xml.writeAttribute("tests", Integer.toString(1));
+                xml.writeStartElement("testcase");
+                xml.writeAttribute("classname", name.toString());
+                xml.writeAttribute("name", getAction());
+                xml.writeAttribute("time", "0.0");
+                if (!success) {
+                    xml.writeEmptyElement("failure");
+                    xml.writeAttribute("type", "junit.framework.AssertionFailedError");
+                    xml.writeAttribute("message", "Failed " + getAction() + " for " + apiName + " in version " + getVersion());
+                }
+                xml.writeEndElement();
+                xml.writeStartElement("system-err");
+                if (getMail() != null) {
+                    writeCData(xml, "\nemail: " + getMail() + "\n");
+                }
+                Reader r = openOutput(output);
+                try {
+                    char[] buf = new char[8192];
+                    int n;
+                    while ((n = r.read(buf)) != -1) {
+                        writeCData(xml, new String(buf, 0, n));
+                    }
+                } finally {
+                    r.close();
+                }
+                xml.writeEndElement();
+                xml.writeEndElement();
+                xml.writeEndDocument();
+                xml.close();
             } finally {
                 os.close();
             }
             logInfo(reportFile + ": " + failures + " failures in " + getFileName());
-        } catch (TransformerException ex) {
+        } catch (XMLStreamException ex) {
             throw new IOException(ex);
         } catch (IOException x) {
             throw new IOException("Could not write " + reportFile + ": " + x, x);
         }
     }
-    private static Document createDocument(String rootQName) throws IOException {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        try {
-            return factory.newDocumentBuilder().getDOMImplementation().createDocument(null, rootQName, null);
-        } catch (ParserConfigurationException ex) {
-            throw (IOException) new IOException("Cannot create parser").initCause(ex); // NOI18N
+
+    /**
+     * Writes the text as CDATA sections, the section is split where
+     * the text contains its end.
+     */
+    private static void writeCData(XMLStreamWriter xml, String text) throws XMLStreamException {
+        int end;
+        while ((end = text.indexOf("]]>")) >= 0) {
+            xml.writeCData(text.substring(0, end + 2));
+            text = text.substring(end + 2);
         }
+        xml.writeCData(text);
     }
 
     protected abstract Integer getRelease();
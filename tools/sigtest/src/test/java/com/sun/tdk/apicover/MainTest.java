@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.tdk.apicover;
+
+import com.sun.tdk.signaturetest.Setup;
+import com.sun.tdk.signaturetest.TestClasses;
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MainTest {
+
+    private static File classes;
+    private static File sigfile;
+
+    public MainTest() {
+    }
+
+    /**
+     * API of several classes and the tests calling some of their members.
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sources.add("package api; public class A" + i + " {"
+                    + " public static final int ID = " + i + ";"
+                    + " public int count;"
+                    + " public A" + i + "() { }"
+                    + " public void a(int x) { }"
+                    + " public String b() { return null; }"
+                    + " public static void c() { }"
+                    + " protected void d() { } }");
+        }
+        for (int i = 0; i < 16; i++) {
+            int a = i % 8;
+            sources.add("package ts; public class T" + i + " extends api.A" + a + " {"
+                    + " public void test() {"
+                    + (i % 2 == 0 ? " a(" + i + ");" : " b();")
+                    + (i % 3 == 0 ? " api.A" + ((a + 1) % 8) + ".c();" : "")
+                    + (i % 5 == 0 ? " d(); count++;" : "")
+                    + " new api.A" + ((i * 3) % 8) + "(); } }");
+        }
+        classes = TestClasses.compile(sources.toArray(new String[0]));
+
+        sigfile = new File(TestClasses.createDir("apicover"), "api.sig");
+        final Setup setup = new Setup();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                setup.run(args, log, null);
+            }
+        }, "-Static", "-Classpath", classes.getPath(), "-BootCp", "11",
+                "-Package", "api", "-FileName", sigfile.getPath());
+        assertTrue(out, setup.isPassed());
+    }
+
+    @Test
+    public void testThreadsSameAsSerial() throws Exception {
+        String serial = report("plain", "w", "1");
+        assertTrue(serial, serial.contains("Overall coverage"));
+        assertEquals(serial, report("plain", "w", "4"));
+    }
+
+    @Test
+    public void testThreadsSameAsSerialRealMode() throws Exception {
+        String serial = report("plain", "r", "1");
+        assertEquals(serial, report("plain", "r", "4"));
+    }
+
+    @Test
+    public void testThreadsSameAsSerialXml() throws Exception {
+        String serial = report("xml", "w", "1");
+        assertEquals(serial, report("xml", "w", "4"));
+    }
+
+    /**
+     * Returns the log and the report printed to <code>System.out</code>.
+     */
+    private static String report(String format, String mode, String threads) {
+        return TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                new Main().run(args, log, null);
+            }
+        }, "-ts", classes.getPath(), "-tsInclude", "ts", "-api", sigfile.getPath(), "-apiInclude", "api",
+                "-format", format, "-mode", mode, "-detail", "4", "-threads", threads);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.apicover;
+
+import com.sun.tdk.apicover.markup.Adapter;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberCollection;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import com.sun.tdk.signaturetest.sigfile.FileManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RefCounterTest {
+
+    public RefCounterTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        // registers the modifier of the ignored members
+        new Adapter(new FileManager());
+    }
+
+    @Test
+    public void testGenericMember() {
+        ClassDescription box = new ClassDescription();
+        box.setupClassName("a.Box");
+        box.setTypeParameters("<%0 extends java.lang.Number>");
+        box.setMembers(new MemberCollection());
+        MethodDescr set = method("set", "{a.Box%0}");
+        MethodDescr get = method("get", "");
+        box.add(set);
+        box.add(get);
+
+        RefCounter counter = new RefCounter();
+        counter.addClass(box);
+        counter.addTSClass(box, true);
+
+        counter.addRef(method("set", "java.lang.Object"));
+        assertFalse(counter.isCovered(set));
+
+        counter.addRef(method("set", "java.lang.Number"));
+        assertTrue(counter.isCovered(set));
+        assertFalse(counter.isCovered(get));
+        assertFalse(counter.isCovered(method("unknown", "")));
+    }
+
+    private static MethodDescr method(String name, String args) {
+        MethodDescr m = new MethodDescr(name, "a.Box", 1);
+        m.setType("void");
+        m.setArgs(args);
+        return m;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.exclude;
+
+import com.sun.tdk.signaturetest.core.ExcludeException;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ExcludeListTest {
+
+    public ExcludeListTest() {
+    }
+
+    @Test
+    public void testLiteralSignatures() {
+        ExcludeList list = new ExcludeList();
+        String[] rest = list.parseParameters(new String[]{"-ExcludeSig", "a.B.foo(int,java.util.List)",
+                "-Other", "-excludesig", "a.B$C"});
+        assertArrayEquals(new String[]{"-Other"}, rest);
+
+        assertEquals("a\\.B\\.foo\\(int,java\\.util\\.List\\)",
+                excluded(list, method("foo", "int,java.util.List<java.lang.String>")));
+        assertNull(excluded(list, method("foo", "int")));
+        assertEquals("a\\.B\\$C", excluded(list, type("a.B$C")));
+        assertNull(excluded(list, type("a.B")));
+    }
+
+    @Test
+    public void testFirstSignatureReported() {
+        ExcludeList list = new ExcludeList();
+        list.addSignature("a.B.f+oo(int)");
+        list.addSignature("a.B.foo(int)");
+        list.addSignature("a.B.fo*(int)");
+
+        assertEquals("a\\.B\\.f+oo\\(int\\)", excluded(list, method("foo", "int")));
+        assertEquals("a\\.B\\.fo*\\(int\\)", excluded(list, method("fo", "int")));
+        assertEquals("a\\.B\\.f+oo\\(int\\)", excluded(list, method("ffoo", "int")));
+
+        list = new ExcludeList();
+        list.addSignature("a.B.foo(int)");
+        list.addSignature("a.B.fo*(int)");
+        assertEquals("a\\.B\\.foo\\(int\\)", excluded(list, method("foo", "int")));
+    }
+
+    private static String excluded(ExcludeList list, MemberDescription md) {
+        try {
+            list.check(null, md);
+            return null;
+        } catch (ExcludeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static MethodDescr method(String name, String args) {
+        MethodDescr m = new MethodDescr(name, "a.B", 1);
+        m.setType("void");
+        m.setArgs(args);
+        return m;
+    }
+
+    private static ClassDescription type(String name) {
+        ClassDescription c = new ClassDescription();
+        c.setupClassName(name);
+        return c;
+    }
+}
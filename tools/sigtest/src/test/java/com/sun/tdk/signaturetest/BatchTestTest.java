@@ -0,0 +1,149 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BatchTestTest {
+
+    public BatchTestTest() {
+    }
+
+    @Test
+    public void testReadManifest() throws Exception {
+        File f = createManifest(
+                "# comment\n" +
+                "servlet.FileName=servlet.sig\n" +
+                "servlet.Package=jakarta.servlet jakarta.servlet.http\n" +
+                "servlet.Static=\n" +
+                "jakarta.el.FileName=el.sig\n");
+
+        Map apis = BatchTest.readManifest(f);
+        Iterator it = apis.keySet().iterator();
+        assertEquals("jakarta.el", it.next());
+        assertEquals("servlet", it.next());
+        assertFalse(it.hasNext());
+
+        assertEquals(Arrays.asList(new String[]{"-FileName", "el.sig"}),
+                Arrays.asList((String[]) apis.get("jakarta.el")));
+        assertEquals(Arrays.asList(new String[]{"-FileName", "servlet.sig",
+                "-Package", "jakarta.servlet", "jakarta.servlet.http", "-Static"}),
+                Arrays.asList((String[]) apis.get("servlet")));
+    }
+
+    @Test
+    public void testInvalidKey() throws Exception {
+        File f = createManifest("FileName=a.sig\n");
+        try {
+            BatchTest.readManifest(f);
+            fail("key without API name");
+        } catch (IOException e) {
+        }
+    }
+
+    @Test
+    public void testTwoApis() throws Exception {
+        File good = TestClasses.compile("package good; public class A { public void a() { } }");
+        File bad = TestClasses.compile("package bad; public class B { public void b() { } }");
+        File badBase = TestClasses.compile("package bad; public class B { public void b() { } public void removed() { } }");
+
+        File dir = TestClasses.createDir("batch");
+        File goodSig = setup(good, "good", new File(dir, "good.sig"));
+        File badSig = setup(badBase, "bad", new File(dir, "bad.sig"));
+        File manifest = new File(dir, "apis.properties");
+        TestClasses.write(manifest,
+                api("good", good, goodSig) +
+                api("bad", bad, badSig));
+        File reports = new File(dir, "reports");
+
+        final BatchTest t = new BatchTest();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                t.run(args, log, null);
+            }
+        }, "-Manifest", manifest.getPath(), "-ReportDir", reports.getPath(), "-Threads", "2");
+        assertFalse(out, t.isPassed());
+        assertTrue(out, t.getReason().startsWith("1 of 2"));
+        assertTrue(out, out.indexOf("bad: ") < out.indexOf("good: "));
+
+        String goodReport = TestClasses.read(new File(reports, "TEST-good.xml"));
+        assertTrue(goodReport, goodReport.contains("<testsuite name=\"good\" tests=\"1\" failures=\"0\" errors=\"0\""));
+        assertTrue(goodReport, goodReport.contains("name=\"SignatureTest\""));
+        assertFalse(goodReport, goodReport.contains("<failure"));
+
+        String badReport = TestClasses.read(new File(reports, "TEST-bad.xml"));
+        assertTrue(badReport, badReport.contains("<testsuite name=\"bad\" tests=\"1\" failures=\"1\" errors=\"0\""));
+        assertTrue(badReport, badReport.contains("<failure message="));
+        assertTrue(badReport, badReport.contains("removed()"));
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("a &lt;b&gt; &amp; &quot;c&quot;\n?", BatchTest.escape("a <b> & \"c\"\n\u0001"));
+    }
+
+    private static File setup(File classes, String pkg, File sigfile) {
+        final Setup setup = new Setup();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                setup.run(args, log, null);
+            }
+        }, "-Static", "-Classpath", classes.getPath(), "-BootCp", "11",
+                "-Package", pkg, "-FileName", sigfile.getPath());
+        assertTrue(out, setup.isPassed());
+        return sigfile;
+    }
+
+    private static String api(String name, File classes, File sigfile) {
+        // the backslashes of Windows paths are escapes in properties files
+        return name + ".FileName=" + sigfile.getPath().replace('\\', '/') + "\n" +
+                name + ".Classpath=" + classes.getPath().replace('\\', '/') + "\n" +
+                name + ".Package=" + name + "\n" +
+                name + ".BootCp=11\n" +
+                name + ".Static=\n";
+    }
+
+    private static File createManifest(String content) throws IOException {
+        File f = File.createTempFile("test", ".properties");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.tdk.signaturetest;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The results of the classes are reused by the next <code>-Incremental</code>
+ * run only if the classes they depend on are not changed.
+ */
+public class IncrementalCheckTest {
+
+    private static final String BASE = "package api; public class Base { public void b() { } }";
+    private static final String SUB = "package api; public class Sub extends Base { public void s() { } }";
+    private static final String OUTER = "package api; public class Outer { public void o() { } public static class Nested { public void n() { } } }";
+    private static final String PLAIN = "package api; public class Plain { public void p() { } }";
+
+    private static final Pattern REUSED = Pattern.compile("Incremental check: (\\d+) of (\\d+) classes reused\n");
+
+    private File dir;
+    private File classes;
+    private File sigfile;
+    private File state;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = TestClasses.createDir("incremental");
+        classes = TestClasses.compile(BASE, SUB, OUTER, PLAIN);
+        sigfile = new File(dir, "api.sig");
+        final Setup setup = new Setup();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                setup.run(args, log, null);
+            }
+        }, "-Static", "-Classpath", classes.getPath(), "-BootCp", "11",
+                "-Package", "api", "-FileName", sigfile.getPath());
+        assertTrue(out, setup.isPassed());
+
+        state = new File(dir, "api.state");
+        int[] reused = check(classes, true);
+        assertEquals("Nothing reused by the first run", 0, reused[0]);
+        reused = check(classes, true);
+        assertEquals("All reused by the same run", reused[1], reused[0]);
+    }
+
+    @Test
+    public void testChangedSupertype() throws Exception {
+        File changed = TestClasses.compile(
+                "package api; public class Base { public void b() { } public void b2() { } }",
+                SUB, OUTER, PLAIN);
+        int[] reused = check(changed, false);
+        assertEquals("Base and Sub checked again", reused[1] - 2, reused[0]);
+    }
+
+    @Test
+    public void testChangedOuterClass() throws Exception {
+        addMember("api.Outer", "meth public void o2()");
+        int[] reused = check(classes, false);
+        assertEquals("Outer and Nested checked again", reused[1] - 2, reused[0]);
+    }
+
+    @Test
+    public void testChangedSigfileEntry() throws Exception {
+        addMember("api.Plain", "meth public void p2()");
+        int[] reused = check(classes, false);
+        assertEquals("Plain checked again", reused[1] - 1, reused[0]);
+    }
+
+    private void addMember(String className, String member) throws Exception {
+        String header = "CLSS public " + className + "\n";
+        String sig = TestClasses.read(sigfile);
+        int i = sig.indexOf(header);
+        assertTrue(sig, i >= 0);
+        i += header.length();
+        TestClasses.write(sigfile, sig.substring(0, i) + member + "\n" + sig.substring(i));
+    }
+
+    /**
+     * Checks the classes with the state file and compares the report
+     * with the full check.
+     *
+     * @return the number of the reused classes and the number of all classes
+     */
+    private int[] check(File cp, boolean passed) {
+        String full = run(cp, passed);
+        String incremental = run(cp, passed, "-Incremental", state.getPath());
+        Matcher m = REUSED.matcher(incremental);
+        assertTrue(incremental, m.find());
+        // the class cache statistics depend on the number of the checked classes
+        assertEquals(full.replaceAll("Class cache: .*\n", ""),
+                m.replaceFirst("").replaceAll("Class cache: .*\n", ""));
+        return new int[]{Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))};
+    }
+
+    private String run(File cp, boolean passed, String... extra) {
+        List<String> args = new ArrayList<>();
+        args.add("-Static");
+        args.add("-Verbose");
+        args.add("-Classpath");
+        args.add(cp.getPath());
+        args.add("-BootCp");
+        args.add("11");
+        args.add("-Package");
+        args.add("api");
+        args.add("-FileName");
+        args.add(sigfile.getPath());
+        for (String a : extra) {
+            args.add(a);
+        }
+        final SignatureTest t = new SignatureTest();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                t.run(args, log, null);
+            }
+        }, args.toArray(new String[0]));
+        assertEquals(out, passed, t.isPassed());
+        return out;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest;
+
+import com.sun.tdk.signaturetest.loaders.VirtualClassDescriptionLoader;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import com.sun.tdk.signaturetest.sigfile.FileManager;
+import com.sun.tdk.signaturetest.sigfile.MultipleFileReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MergeTest {
+
+    private static final String HEADER =
+            "#Signature file v4.1\n" +
+            "#Version 1.0\n" +
+            "\n";
+
+    private static final String OBJECT =
+            "CLSS public java.lang.Object\n" +
+            "cons public init()\n" +
+            "meth public int hashCode()\n" +
+            "\n";
+
+    private static final String SIGFILE1 = HEADER + OBJECT +
+            "CLSS public abstract interface a.I\n" +
+            "meth public abstract void run()\n" +
+            "\n" +
+            "CLSS public a.A\n" +
+            "cons public init()\n" +
+            "intf a.I\n" +
+            "meth public void run()\n" +
+            "supr java.lang.Object\n" +
+            "\n";
+
+    private static final String SIGFILE2 = HEADER + OBJECT +
+            "CLSS public a.A\n" +
+            "cons public init()\n" +
+            "meth public void stop()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public static a.A$B\n" +
+            " outer a.A\n" +
+            "cons public init()\n" +
+            "supr java.lang.Object\n" +
+            "\n";
+
+    public MergeTest() {
+    }
+
+    @Test
+    public void testMergedClassesAsWritten() throws Exception {
+        String files = createSigFile(SIGFILE1).getAbsolutePath() + File.pathSeparator
+                + createSigFile(SIGFILE2).getAbsolutePath();
+        File merged = File.createTempFile("merged", ".sig");
+        merged.deleteOnExit();
+
+        StringWriter log = new StringWriter();
+        Merge m = Merge.getInstance();
+        m.run(new String[]{"-Files", files, "-Write", merged.getAbsolutePath()}, new PrintWriter(log), null);
+        assertTrue(log.toString(), m.isPassed());
+
+        MultipleFileReader written = new MultipleFileReader(new PrintWriter(log),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        assertTrue(written.readSignatureFile("", merged.getAbsolutePath()));
+
+        m = Merge.getInstance();
+        VirtualClassDescriptionLoader classes = m.merge(new String[]{"-Files", files}, new PrintWriter(log));
+        assertNotNull(log.toString(), classes);
+        MultipleFileReader inMemory = new MultipleFileReader(new PrintWriter(log),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        inMemory.readMergedClasses(classes, m.getSupportedFeatures());
+
+        ClassDescription a = inMemory.load("a.A");
+        assertEquals(2, a.getDeclaredMethods().length);
+        assertEquals(1, a.getInterfaces().length);
+        assertEquals(1, a.getDeclaredClasses().length);
+
+        List expected = describe(written);
+        assertEquals(4, expected.size());
+        assertEquals(expected, describe(inMemory));
+    }
+
+    @Test
+    public void testConflictReported() throws Exception {
+        String files = createSigFile(SIGFILE1).getAbsolutePath() + File.pathSeparator
+                + createSigFile(SIGFILE2.replaceFirst("CLSS public a.A", "CLSS public abstract a.A")).getAbsolutePath();
+
+        StringWriter log = new StringWriter();
+        Merge m = Merge.getInstance();
+        m.run(new String[]{"-Files", files}, new PrintWriter(log), null);
+        assertFalse(m.isPassed());
+    }
+
+    private static List describe(MultipleFileReader in) throws IOException {
+        List result = new ArrayList();
+        in.rewind();
+        ClassDescription c;
+        while ((c = in.nextClass()) != null) {
+            List members = new ArrayList();
+            add(members, c.getDeclaredConstructors());
+            add(members, c.getDeclaredMethods());
+            add(members, c.getDeclaredFields());
+            add(members, c.getDeclaredClasses());
+            add(members, c.getInterfaces());
+            Collections.sort(members);
+            result.add(c + " " + c.getSuperClass() + " " + members);
+        }
+        in.close();
+        return result;
+    }
+
+    private static void add(List members, MemberDescription[] m) {
+        for (int i = 0; i < m.length; i++)
+            members.add(m[i].toString() + " " + m[i].getDeclaringClassName());
+    }
+
+    private static File createSigFile(String content) throws IOException {
+        File f = File.createTempFile("test", ".sig");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes("UTF8"));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
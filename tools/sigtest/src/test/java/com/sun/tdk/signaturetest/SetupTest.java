@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.tdk.signaturetest;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SetupTest {
+
+    public SetupTest() {
+    }
+
+    /**
+     * Classes of one package, with the annotation missing on the classpath,
+     * so the loader warns about it.
+     */
+    static File createAPI() throws Exception {
+        List<String> sources = new ArrayList<>();
+        sources.add("package api.hidden; import java.lang.annotation.*; @Retention(RetentionPolicy.RUNTIME) public @interface Gone { }");
+        sources.add("package api; public interface Shape { double area(); }");
+        sources.add("package api; public abstract class Base implements Shape, Comparable<Shape> { protected int id;"
+                + " public int compareTo(Shape s) { return Double.compare(area(), s.area()); } }");
+        for (int i = 0; i < 12; i++) {
+            sources.add("package api; @api.hidden.Gone public class C" + i + " extends Base {"
+                    + " public static final int ID = " + i + ";"
+                    + " public double area() { return " + i + "; }"
+                    + " @api.hidden.Gone public void m" + i + "(String s) throws java.io.IOException { }"
+                    + " public static class Inner" + i + " extends C" + i + " { public void inner() { } } }");
+        }
+        File classes = TestClasses.compile(sources.toArray(new String[0]));
+        assertTrue(new File(classes, "api/hidden/Gone.class").delete());
+        return classes;
+    }
+
+    @Test
+    public void testThreadsSameAsSerial() throws Exception {
+        File classes = createAPI();
+        File dir = TestClasses.createDir("setup");
+
+        File serialSig = new File(dir, "serial.sig");
+        String serial = setup(classes, serialSig);
+        File parallelSig = new File(dir, "parallel.sig");
+        String parallel = setup(classes, parallelSig, "-Threads", "4");
+
+        assertTrue(serial, serial.contains("Warning: "));
+        assertEquals(serial.replace(serialSig.getPath(), "X"), parallel.replace(parallelSig.getPath(), "X"));
+        assertEquals(TestClasses.read(serialSig), TestClasses.read(parallelSig));
+    }
+
+    @Test
+    public void testBinaryFileSameAsText() throws Exception {
+        File classes = createAPI();
+        File dir = TestClasses.createDir("setup");
+
+        File sig = new File(dir, "api.sig");
+        File bin = new File(dir, "api.bin");
+        setup(classes, sig, "-ApiVersion", "1.0", "-BinaryFileName", bin.getPath());
+
+        File converted = new File(dir, "converted.sig");
+        Converter.main(new String[] {"-OldFile", bin.getPath(), "-NewFile", converted.getPath(), "-Text"});
+        assertEquals(TestClasses.read(sig), TestClasses.read(converted));
+    }
+
+    private static String setup(File classes, File sig, String... extra) {
+        List<String> args = new ArrayList<>();
+        args.add("-Static");
+        args.add("-Classpath");
+        args.add(classes.getPath());
+        args.add("-BootCp");
+        args.add("11");
+        args.add("-Package");
+        args.add("api");
+        args.add("-FileName");
+        args.add(sig.getPath());
+        for (String a : extra) {
+            args.add(a);
+        }
+        final Setup setup = new Setup();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                setup.run(args, log, null);
+            }
+        }, args.toArray(new String[0]));
+        assertTrue(out, setup.isPassed());
+        return out;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.tdk.signaturetest;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SignatureTestTest {
+
+    private static File sigfile;
+    private static File changed;
+
+    public SignatureTestTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        File dir = TestClasses.createDir("sigtest");
+        sigfile = new File(dir, "api.sig");
+        final Setup setup = new Setup();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                setup.run(args, log, null);
+            }
+        }, "-Static", "-Classpath", SetupTest.createAPI().getPath(), "-BootCp", "11",
+                "-Package", "api", "-FileName", sigfile.getPath());
+        assertTrue(out, setup.isPassed());
+        changed = createChangedAPI();
+    }
+
+    /**
+     * The classes of {@link SetupTest#createAPI()} with various changes
+     * in most of them.
+     */
+    private static File createChangedAPI() throws Exception {
+        List<String> sources = new ArrayList<>();
+        sources.add("package api.hidden; import java.lang.annotation.*; @Retention(RetentionPolicy.RUNTIME) public @interface Gone { }");
+        sources.add("package api; public interface Shape { double area(); double perimeter(); }");
+        sources.add("package api; public abstract class Base implements Shape, Comparable<Shape> { protected int id;"
+                + " public int compareTo(Shape s) { return Double.compare(area(), s.area()); }"
+                + " public double perimeter() { return 0; } }");
+        for (int i = 0; i < 12; i++) {
+            if (i == 5)
+                continue;
+            String modifiers = i % 3 == 0 ? "final " : "";
+            String method = i % 2 == 0
+                    ? " @api.hidden.Gone public void m" + i + "(String s) throws java.io.IOException { }"
+                    : " public int n" + i + "(Object o) { return 0; }";
+            sources.add("package api; @api.hidden.Gone public " + modifiers + "class C" + i + " extends Base {"
+                    + " public static final int ID = " + (i % 4 == 0 ? i + 100 : i) + ";"
+                    + " public double area() { return " + i + "; }"
+                    + method
+                    + (i % 3 == 0 ? "" : " public static class Inner" + i + " extends C" + i + " { public void inner() { } }")
+                    + " }");
+        }
+        File classes = TestClasses.compile(sources.toArray(new String[0]));
+        assertTrue(new File(classes, "api/hidden/Gone.class").delete());
+        return classes;
+    }
+
+    @Test
+    public void testThreadsSameAsSerial() throws Exception {
+        String serial = check();
+        assertTrue(serial, serial.contains("Warning: "));
+        assertTrue(serial, serial.contains("api.C5"));
+        assertEquals(serial, check("-Threads", "4"));
+    }
+
+    @Test
+    public void testThreadsSameAsSerialHuman() throws Exception {
+        String serial = check("-FormatHuman");
+        assertEquals(serial, check("-FormatHuman", "-Threads", "4"));
+    }
+
+    @Test
+    public void testThreadsSameAsSerialBackward() throws Exception {
+        String serial = check("-Backward");
+        assertEquals(serial, check("-Backward", "-Threads", "4"));
+    }
+
+    @Test
+    public void testThreadsSameAsSerialPlain() throws Exception {
+        String serial = check("-FormatPlain");
+        assertEquals(serial, check("-FormatPlain", "-Threads", "4"));
+    }
+
+    private static String check(String... extra) {
+        List<String> args = new ArrayList<>();
+        args.add("-Static");
+        args.add("-Classpath");
+        args.add(changed.getPath());
+        args.add("-BootCp");
+        args.add("11");
+        args.add("-Package");
+        args.add("api");
+        args.add("-FileName");
+        args.add(sigfile.getPath());
+        for (String a : extra) {
+            args.add(a);
+        }
+        final SignatureTest t = new SignatureTest();
+        String out = TestClasses.run(new TestClasses.Tool() {
+            public void run(String[] args, PrintWriter log) {
+                t.run(args, log, null);
+            }
+        }, args.toArray(new String[0]));
+        assertFalse(out, t.isPassed());
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package com.sun.tdk.signaturetest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import static org.junit.Assert.*;
+
+/**
+ * Compiles the classes used by the tests and runs the tools with
+ * the output captured.
+ */
+public final class TestClasses {
+
+    private static final Pattern NAME = Pattern.compile(
+            "package\\s+([\\w.]+)\\s*;.*?public\\s+(?:(?:abstract|final)\\s+)*(?:class|interface|enum|@interface)\\s+(\\w+)",
+            Pattern.DOTALL);
+
+    private TestClasses() {
+    }
+
+    /**
+     * Creates an empty temporary directory removed when the JVM exits.
+     */
+    public static File createDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Compiles the given sources into a new directory. Each source
+     * declares a package and one public type.
+     *
+     * @return the directory with the class files
+     */
+    public static File compile(String... sources) throws IOException {
+        File dir = createDir("classes");
+        File src = new File(dir, "src");
+        File classes = new File(dir, "classes");
+        assertTrue(classes.mkdirs());
+
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(classes.getPath());
+        args.add("-nowarn");
+        for (String s : sources) {
+            Matcher m = NAME.matcher(s);
+            assertTrue("Package and type found in " + s, m.find());
+            File f = new File(src, m.group(1).replace('.', '/') + "/" + m.group(2) + ".java");
+            write(f, s);
+            args.add(f.getPath());
+        }
+
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int res = javac.run(null, null, err, args.toArray(new String[0]));
+        assertEquals("Compiled: " + err, 0, res);
+        return classes;
+    }
+
+    public static void write(File f, String content) throws IOException {
+        f.getParentFile().mkdirs();
+        try (OutputStream os = new FileOutputStream(f)) {
+            os.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    public static String read(File f) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream is = new FileInputStream(f)) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = is.read(buf)) != -1; ) {
+                os.write(buf, 0, n);
+            }
+        }
+        return os.toString("UTF-8");
+    }
+
+    /**
+     * Runs the given tool and returns its log together with the messages
+     * printed to <code>System.out</code>.
+     */
+    public static String run(Tool tool, String... args) {
+        StringWriter log = new StringWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream prev = System.out;
+        System.setOut(new PrintStream(out, true));
+        try {
+            PrintWriter pw = new PrintWriter(log);
+            tool.run(args, pw);
+            pw.flush();
+        } finally {
+            System.setOut(prev);
+        }
+        return log + "----- System.out\n" + out;
+    }
+
+    public interface Tool {
+        void run(String[] args, PrintWriter log);
+    }
+}
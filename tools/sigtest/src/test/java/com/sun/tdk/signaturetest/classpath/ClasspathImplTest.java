@@ -0,0 +1,251 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.classpath;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClasspathImplTest {
+
+    public ClasspathImplTest() {
+    }
+
+    @Test
+    public void testFirstEntryProvidesClass() throws Exception {
+        File first = createJar("first", new String[]{"a/A.class", "a/B.class"});
+        File second = createJar("second", new String[]{"a/B.class", "b/C.class"});
+
+        ClasspathImpl cp = new ClasspathImpl(null, first.getPath() + File.pathSeparator + second.getPath());
+        try {
+            assertEquals("first", read(cp.findClass("a.B")));
+            assertEquals("second", read(cp.findClass("b.C")));
+            assertEquals(Arrays.asList(new String[]{"a.B"}), cp.getDuplicates());
+            assertEquals(3, cp.getClassNames().size());
+
+            List names = new ArrayList();
+            while (cp.hasNext())
+                names.add(cp.nextClassName());
+            assertEquals(Arrays.asList(new String[]{"a.A", "a.B", "b.C"}), names);
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testClassNotFound() throws Exception {
+        File jar = createJar("jar", new String[]{"a/A.class"});
+        ClasspathImpl cp = new ClasspathImpl(null, jar.getPath());
+        try {
+            cp.findClass("a.Missing");
+            fail("a.Missing is found");
+        } catch (ClassNotFoundException e) {
+            assertEquals("a.Missing", e.getMessage());
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testInvalidEntryIsIgnored() throws Exception {
+        File jar = createJar("jar", new String[]{"a/A.class"});
+        File missing = new File(jar.getParentFile(), "missing.jar");
+
+        ClasspathImpl cp = new ClasspathImpl(null, missing.getPath() + File.pathSeparator + jar.getPath());
+        try {
+            assertEquals(0, cp.getNumErrors());
+            assertEquals("jar", read(cp.findClass("a.A")));
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testJmodFile() throws Exception {
+        File jmod = File.createTempFile("jmod", ".jmod");
+        jmod.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(jmod);
+        // jmod header precedes the zip content
+        out.write(new byte[]{'J', 'M', 1, 0});
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            String[] entries = {"classes/a/A.class", "classes/a/b/C.class", "lib/x.class"};
+            for (int i = 0; i < entries.length; i++) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write("jmod".getBytes("UTF-8"));
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+
+        ClasspathImpl cp = new ClasspathImpl(null, jmod.getPath());
+        try {
+            assertEquals(new HashSet(Arrays.asList(new String[]{"a.A", "a.b.C"})), cp.getClassNames());
+            assertEquals("jmod", read(cp.findClass("a.b.C")));
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testJrtModule() throws Exception {
+        if (System.getProperty("java.specification.version").startsWith("1."))
+            return;  // no jrt:/ file system
+
+        File jar = createJar("jar", new String[]{"a/A.class"});
+        ClasspathImpl cp = new ClasspathImpl(null, "jrt:/java.base" + File.pathSeparator + jar.getPath());
+        try {
+            assertEquals(0, cp.getNumErrors());
+            assertTrue(cp.getClassNames().contains("java.lang.Object"));
+            assertFalse(cp.getClassNames().contains("java.sql.Date"));
+            assertEquals("jar", read(cp.findClass("a.A")));
+
+            InputStream in = cp.findClass("java.lang.Object");
+            try {
+                assertEquals(0xCAFEBABE, new DataInputStream(in).readInt());
+            } finally {
+                in.close();
+            }
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testMultiReleaseJar() throws Exception {
+        File jar = createMultiReleaseJar(true);
+
+        ClasspathImpl cp = new ClasspathImpl(Release.find(10), jar.getPath());
+        try {
+            assertEquals(new HashSet(Arrays.asList(new String[]{"a.A", "a.B", "a.C"})), cp.getClassNames());
+            assertEquals("META-INF/versions/9/a/A.class", read(cp.findClass("a.A")));
+            assertEquals("a/B.class", read(cp.findClass("a.B")));
+            assertEquals("META-INF/versions/9/a/C.class", read(cp.findClass("a.C")));
+        } finally {
+            cp.close();
+        }
+
+        cp = new ClasspathImpl(Release.find(11), jar.getPath());
+        try {
+            assertEquals("META-INF/versions/11/a/A.class", read(cp.findClass("a.A")));
+            assertEquals("META-INF/versions/11/a/B.class", read(cp.findClass("a.B")));
+        } finally {
+            cp.close();
+        }
+
+        cp = new ClasspathImpl(Release.find(8), jar.getPath());
+        try {
+            assertEquals(new HashSet(Arrays.asList(new String[]{"a.A", "a.B"})), cp.getClassNames());
+            assertEquals("a/A.class", read(cp.findClass("a.A")));
+        } finally {
+            cp.close();
+        }
+    }
+
+    @Test
+    public void testVersionedEntriesOfPlainJar() throws Exception {
+        File jar = createMultiReleaseJar(false);
+
+        ClasspathImpl cp = new ClasspathImpl(Release.find(11), jar.getPath());
+        try {
+            assertEquals(new HashSet(Arrays.asList(new String[]{"a.A", "a.B"})), cp.getClassNames());
+            assertEquals("a/A.class", read(cp.findClass("a.A")));
+        } finally {
+            cp.close();
+        }
+    }
+
+    /**
+     * Creates jar file with the base and versioned classes, each entry
+     * contains its name.
+     */
+    private static File createMultiReleaseJar(boolean isMultiRelease) throws IOException {
+        File jar = File.createTempFile("mrjar", ".jar");
+        jar.deleteOnExit();
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (isMultiRelease)
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+        try {
+            String[] entries = {"a/A.class", "a/B.class", "META-INF/versions/9/a/A.class",
+                "META-INF/versions/9/a/C.class", "META-INF/versions/11/a/A.class",
+                "META-INF/versions/11/a/B.class", "META-INF/versions/x/a/D.class"};
+            for (int i = 0; i < entries.length; i++) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i].getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    /**
+     * Creates jar file with the given entries, each entry contains
+     * the name of the jar.
+     */
+    private static File createJar(String name, String[] entries) throws IOException {
+        File jar = File.createTempFile(name, ".jar");
+        jar.deleteOnExit();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(name.getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        return jar;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            byte[] buf = new byte[64];
+            int n = in.read(buf);
+            return new String(buf, 0, n, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
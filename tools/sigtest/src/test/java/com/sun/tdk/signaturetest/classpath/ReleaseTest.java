@@ -27,6 +27,14 @@ package com.sun.tdk.signaturetest.classpath;
 import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
 import com.sun.tdk.signaturetest.model.ClassDescription;
 import com.sun.tdk.signaturetest.model.MethodDescr;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -39,7 +47,7 @@ public class ReleaseTest {
     }
 
     @Test
-    public void testFindJDK8() throws ClassNotFoundException {
+    public void testFindJDK8() throws ClassNotFoundException, IOException {
         Release jdk8 = Release.find(8);
         assertNotNull(jdk8.findClass("java.lang.Object"));
         assertNull(jdk8.findClass("java.lang.Module"));
@@ -50,7 +58,7 @@ public class ReleaseTest {
     }
 
     @Test
-    public void testFindJDK9() throws ClassNotFoundException {
+    public void testFindJDK9() throws ClassNotFoundException, IOException {
         Release jdk9 = Release.find(9);
         assertNotNull(jdk9.findClass("java.lang.Object"));
         assertNotNull(jdk9.findClass("java.lang.Module"));
@@ -62,7 +70,7 @@ public class ReleaseTest {
     }
 
     @Test
-    public void testFindJDK13() throws ClassNotFoundException {
+    public void testFindJDK13() throws ClassNotFoundException, IOException {
         Release jdk13 = Release.find(13);
         assertNotNull(jdk13.findClass("java.lang.Object"));
         assertNotNull(jdk13.findClass("java.lang.Module"));
@@ -74,7 +82,7 @@ public class ReleaseTest {
     }
 
     @Test
-    public void testFindJDK14() {
+    public void testFindJDK14() throws IOException {
         Release jdk14 = Release.find(14);
         assertNotNull(jdk14.findClass("java.lang.Object"));
         assertNotNull(jdk14.findClass("java.lang.Module"));
@@ -82,7 +90,7 @@ public class ReleaseTest {
     }
 
     @Test
-    public void testFindJDK15() throws ClassNotFoundException {
+    public void testFindJDK15() throws ClassNotFoundException, IOException {
         Release jdk15 = Release.find(15);
         assertNotNull(jdk15.findClass("java.lang.Object"));
         assertNotNull(jdk15.findClass("java.lang.Module"));
@@ -92,6 +100,54 @@ public class ReleaseTest {
         assertMethods(deprecatedClass, "forRemoval", "since");
     }
 
+    @Test
+    public void testPackedSignaturesSameAsResources() throws IOException {
+        Release jdk11 = Release.find(11);
+        for (String name : new String[] { "java.lang.Object", "java.util.Map$Entry", "java.sql.Connection" }) {
+            byte[] resource = null;
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(Release.class.getResourceAsStream("/META-INF/sigtest.ls")))) {
+                for (String l; resource == null && (l = r.readLine()) != null; ) {
+                    if (l.substring(0, l.indexOf('/')).indexOf('B') >= 0) {
+                        resource = readAll(Release.class.getResourceAsStream("/META-INF/sigtest/" + l + "/" + name.replace('.', '/') + ".sig"));
+                    }
+                }
+            }
+            assertNotNull("Resource found for " + name, resource);
+            assertArrayEquals(name, resource, readAll(jdk11.findClass(name)));
+        }
+        assertNull(jdk11.findClass("java.lang.Record"));
+    }
+
+    @Test
+    public void testMissingPackedSignatures() throws Exception {
+        Release missing = new Release('Z', "Z/java.base");
+        ClasspathImpl cp = new ClasspathImpl(missing, null);
+        assertEquals(1, cp.getNumErrors());
+        StringWriter sw = new StringWriter();
+        cp.printErrors(new PrintWriter(sw, true));
+        assertTrue(sw.toString(), sw.toString().contains("sigtest-Z.bin"));
+        try {
+            cp.findClass("java.lang.Object");
+            fail("The missing signatures are reported");
+        } catch (FileNotFoundException e) {
+            // ok
+        }
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        if (is == null) {
+            return null;
+        }
+        try (InputStream in = is) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) != -1; ) {
+                os.write(buf, 0, n);
+            }
+            return os.toByteArray();
+        }
+    }
+
     private void assertMethods(ClassDescription deprecatedClass, String... names) {
         MethodDescr[] arr = deprecatedClass.getDeclaredMethods();
         assertEquals("Same number of methods: " + Arrays.toString(arr), names.length, arr.length);
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.SuperClass;
+import com.sun.tdk.signaturetest.model.SuperInterface;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClassHierarchyImplTest {
+
+    private final Map classes = new HashMap();
+
+    public ClassHierarchyImplTest() {
+        add("java.lang.Object", null);
+        add("a.I", null);
+        add("a.J", null, "a.I");
+        add("a.K", null);
+        add("a.A", "java.lang.Object", "a.J");
+        add("a.B", "a.A", "a.K");
+        add("a.C", "a.B");
+    }
+
+    @Test
+    public void testClosures() throws Exception {
+        ClassHierarchy h = createHierarchy();
+
+        assertEquals(Arrays.asList(new String[]{"a.B", "a.A", "java.lang.Object"}), h.getSuperClasses("a.C"));
+        assertEquals(set(new String[]{"a.I", "a.J", "a.K"}), h.getAllImplementedInterfaces("a.C"));
+        assertEquals(set(new String[]{"a.I"}), h.getAllImplementedInterfaces("a.J"));
+
+        // the results are copies
+        h.getSuperClasses("a.C").clear();
+        h.getAllImplementedInterfaces("a.C").clear();
+        assertEquals(3, h.getSuperClasses("a.C").size());
+        assertEquals(3, h.getAllImplementedInterfaces("a.C").size());
+
+        assertTrue(h.isSubclass("a.C", "a.A"));
+        assertTrue(h.isSubclass("a.C", "java.lang.Object"));
+        assertFalse(h.isSubclass("a.C", "a.C"));
+        assertFalse(h.isSubclass("a.A", "a.B"));
+    }
+
+    @Test
+    public void testIsSubclassLoadsUpToMatch() throws Exception {
+        classes.remove("java.lang.Object");
+        ClassHierarchy h = createHierarchy();
+
+        assertTrue(h.isSubclass("a.C", "a.A"));
+        try {
+            h.isSubclass("a.C", "a.I");
+            fail();
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAllSubclasses() throws Exception {
+        ClassHierarchy h = createHierarchy();
+        assertEquals(0, h.getAllSubclasses("a.I").length);
+
+        h.getAllImplementedInterfaces("a.C");
+        assertEquals(set(new String[]{"a.J", "a.A", "a.B", "a.C"}), set(h.getAllSubclasses("a.I")));
+        assertEquals(set(new String[]{"a.B", "a.C"}), set(h.getAllSubclasses("a.A")));
+        assertEquals(0, h.getAllSubclasses("a.C").length);
+    }
+
+    private ClassHierarchy createHierarchy() {
+        return new ClassHierarchyImpl(new ClassDescriptionLoader() {
+            public ClassDescription load(String name) throws ClassNotFoundException {
+                ClassDescription c = (ClassDescription) classes.get(name);
+                if (c == null)
+                    throw new ClassNotFoundException(name);
+                return c;
+            }
+        }, ClassHierarchy.ALL_PUBLIC);
+    }
+
+    private void add(String name, String superClass) {
+        add(name, superClass, null);
+    }
+
+    private void add(String name, String superClass, String intf) {
+        ClassDescription c = new ClassDescription();
+        c.setupClassName(name);
+        if (superClass != null) {
+            SuperClass sc = new SuperClass();
+            sc.setupClassName(superClass);
+            c.setSuperClass(sc);
+        }
+        if (intf != null) {
+            SuperInterface si = new SuperInterface();
+            si.setupClassName(intf);
+            c.setInterfaces(new SuperInterface[]{si});
+        }
+        classes.put(name, c);
+    }
+
+    private static Set set(String[] names) {
+        return new HashSet(Arrays.asList(names));
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ErasuratorTest {
+
+    public ErasuratorTest() {
+    }
+
+    @Test
+    public void testNestedTypeArguments() {
+        Erasurator erasurator = new Erasurator();
+        MethodDescr m = method("java.util.Map<java.lang.String,java.util.List<java.lang.Integer>>",
+                "java.util.List<? extends java.util.Map<java.lang.String,java.lang.Object>>,int");
+
+        MemberDescription erased = erasurator.processMember(m);
+        assertEquals("java.util.Map", erased.getType());
+        assertEquals("java.util.List,int", erased.getArgs());
+        assertEquals("java.util.List<? extends java.util.Map<java.lang.String,java.lang.Object>>,int", m.getArgs());
+    }
+
+    @Test
+    public void testParameters() {
+        Erasurator erasurator = new Erasurator();
+        ClassDescription c = new ClassDescription();
+        c.setupClassName("a.B$C");
+        c.setTypeParameters("<%0 extends a.B$D, %1 extends {a.B$C%0}>");
+        erasurator.parseTypeParameters(c);
+
+        MethodDescr m = method("{a.B$C%1}", "{%%0},java.util.List<{a.B$C%0}>");
+        m.setDeclaringClass("a.B$C");
+        m.setTypeParameters("<%0 extends java.lang.Number>");
+
+        MemberDescription erased = erasurator.processMember(m);
+        assertEquals("a.B$D", erased.getType());
+        assertEquals("java.lang.Number,java.util.List", erased.getArgs());
+        assertNull(erased.getTypeParameters());
+
+        // the same signature without the local parameters is reused
+        erased = erasurator.processMember(method("{a.B$C%1}", "int"));
+        assertEquals("a.B$D", erased.getType());
+        erased = erasurator.processMember(method("{a.B$C%1}", "int"));
+        assertEquals("a.B$D", erased.getType());
+    }
+
+    @Test
+    public void testNonGenericMemberIsShared() {
+        MethodDescr m = method("java.lang.String", "int[],java.lang.Object");
+        assertSame(m, new Erasurator().processMember(m));
+    }
+
+    @Test
+    public void testReplaceFormalParameters() {
+        MethodDescr m = method("{a.B$C%0}", "{a.B$C%0},{a.B$C%1}");
+        MemberDescription[] result = Erasurator.replaceFormalParameters("a.B$C", new MemberDescription[]{m},
+                Collections.singletonList("a.X$Y"), false);
+        assertEquals("a.X$Y", result[0].getType());
+        assertEquals("a.X$Y,{a.B$C%1}", result[0].getArgs());
+        assertEquals("{a.B$C%0}", m.getType());
+    }
+
+    private static MethodDescr method(String type, String args) {
+        MethodDescr m = new MethodDescr("foo", "a.B", 1);
+        m.setType(type);
+        m.setArgs(args);
+        return m;
+    }
+}
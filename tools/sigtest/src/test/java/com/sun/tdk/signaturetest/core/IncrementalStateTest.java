@@ -0,0 +1,103 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.errors.DeferredErrorFormatter;
+import com.sun.tdk.signaturetest.errors.ErrorFormatter;
+import com.sun.tdk.signaturetest.errors.MessageType;
+import com.sun.tdk.signaturetest.model.AnnotationItem;
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IncrementalStateTest {
+
+    public IncrementalStateTest() {
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List events = recordEvents();
+        File f = File.createTempFile("test", ".state");
+        f.deleteOnExit();
+
+        IncrementalState state = new IncrementalState("-Static");
+        state.put("a.B", "key", new IncrementalState.Result(events,
+                Collections.singleton("a.B"), Collections.singleton("error")));
+        state.write(f);
+
+        state = IncrementalState.read(f, "-Static");
+        assertNull(state.get("a.B", "other"));
+        IncrementalState.Result result = state.get("a.B", "key");
+        assertNotNull(result);
+        assertEquals(1, state.getReusedCount());
+        assertEquals(Collections.singleton("a.B"), result.getTrackedClassNames());
+        assertEquals(Collections.singleton("error"), result.getErrorMessages());
+        assertEquals(events.size(), result.getEvents().size());
+        assertEquals(replay(events), replay(result.getEvents()));
+
+        assertNull(IncrementalState.read(f, "-Static -Mode bin").get("a.B", "key"));
+    }
+
+    @Test
+    public void testDigest() {
+        String d1 = IncrementalState.digest(Collections.singletonList("a"));
+        assertEquals(64, d1.length());
+        assertEquals(d1, IncrementalState.digest(Collections.singletonList("a")));
+        assertFalse(d1.equals(IncrementalState.digest(Collections.singletonList("b"))));
+        assertNull(IncrementalState.digest(Collections.singletonList(null)));
+    }
+
+    private static List recordEvents() {
+        MethodDescr m = new MethodDescr("foo", "a.B", 1);
+        m.setType("void");
+        m.setAnnoList(new AnnotationItem[]{new AnnotationItem(0, "java.lang.Deprecated")});
+
+        ClassDescription c = new ClassDescription();
+        c.setupClassName("a.B");
+
+        StringWriter buffer = new StringWriter();
+        DeferredErrorFormatter recorder = new DeferredErrorFormatter(buffer);
+        buffer.write("checking a.B\n");
+        recorder.addError(MessageType.MISS_METHS, "a.B", MemberType.METHOD, m.toString(), null, m);
+        recorder.tested(c);
+        return recorder.takeEvents();
+    }
+
+    private static String replay(List events) {
+        StringWriter out = new StringWriter();
+        PrintWriter log = new PrintWriter(out);
+        DeferredErrorFormatter.replay(events, new ErrorFormatter(log), log);
+        return out.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PackageGroupTest {
+
+    private static final String[] CLASSES = {
+        "A", "a", "a.A", "a.b", "a.b.C", "a.b.C$D", "a.b.c.D", "a.bc.D", "a.b.c", "b.a.b.C", "ab.C", "a..b.C"
+    };
+
+    public PackageGroupTest() {
+    }
+
+    @Test
+    public void testSubpackages() {
+        check(true, new String[]{"a.b"});
+        check(true, new String[]{"a.b."});
+        check(true, new String[]{"a", "a.b.c"});
+        check(true, new String[]{"b.a", "a.bc"});
+        check(true, new String[]{""});
+    }
+
+    @Test
+    public void testPackages() {
+        check(false, new String[]{"a.b"});
+        check(false, new String[]{"a.b."});
+        check(false, new String[]{"a", "a.b.c"});
+        check(false, new String[]{"a", "a.b"});
+        check(false, new String[]{"b.a", "a.bc"});
+        check(false, new String[]{""});
+        check(false, new String[]{"", "a.b"});
+    }
+
+    @Test
+    public void testEmpty() {
+        PackageGroup group = new PackageGroup(true);
+        assertTrue(group.isEmpty());
+        assertFalse(group.checkName("a.A"));
+        group.addPackages(new String[]{"b", "a"});
+        assertFalse(group.isEmpty());
+        assertEquals("[b, a]", group.toString());
+    }
+
+    private static void check(boolean isSubpackagesUses, String[] packages) {
+        PackageGroup group = new PackageGroup(isSubpackagesUses);
+        group.addPackages(packages);
+        for (int i = 0; i < CLASSES.length; i++) {
+            assertEquals(CLASSES[i] + " in " + group, expected(isSubpackagesUses, packages, CLASSES[i]),
+                    group.checkName(CLASSES[i]));
+        }
+    }
+
+    /**
+     * The check by the list of the packages.
+     */
+    private static boolean expected(boolean isSubpackagesUses, String[] packages, String className) {
+        for (int i = 0; i < packages.length; i++) {
+            String pack = packages[i];
+            String name = pack + ((pack.endsWith(".") || pack.equals("")) ? "" : ".");
+            if ((className.startsWith(name) &&
+                    ((className.lastIndexOf('.') <= pack.length()) || isSubpackagesUses)) || className.equals(pack))
+                return true;
+        }
+        return false;
+    }
+}
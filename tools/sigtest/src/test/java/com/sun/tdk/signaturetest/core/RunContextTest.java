@@ -0,0 +1,90 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.core;
+
+import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.model.Modifier;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RunContextTest {
+
+    public RunContextTest() {
+    }
+
+    @Test
+    public void testEnterRestore() {
+        RunContext previous = RunContext.enter();
+        try {
+            RunContext.getCurrent().setDebug(true);
+            RunContext.getCurrent().setConstantValuesTracked(false);
+
+            RunContext outer = RunContext.enter();
+            try {
+                assertTrue(RunContext.getCurrent().isDebug());
+                assertFalse(RunContext.getCurrent().isConstantValuesTracked());
+                RunContext.getCurrent().setDebug(false);
+            } finally {
+                RunContext.restore(outer);
+            }
+            assertTrue(RunContext.getCurrent().isDebug());
+        } finally {
+            RunContext.restore(previous);
+        }
+        assertSame(previous, RunContext.getCurrent());
+    }
+
+    @Test
+    public void testThreadsAreIsolated() throws Exception {
+        RunContext previous = RunContext.enter();
+        try {
+            MemberType.setMode(true);
+            assertFalse(Modifier.VARARGS.isTracked());
+
+            final boolean[] tracked = new boolean[1];
+            Thread t = new Thread() {
+                public void run() {
+                    RunContext previous = RunContext.enter();
+                    try {
+                        MemberType.setMode(false);
+                        tracked[0] = Modifier.VARARGS.isTracked();
+                    } finally {
+                        RunContext.restore(previous);
+                    }
+                }
+            };
+            t.start();
+            t.join();
+
+            assertTrue(tracked[0]);
+            assertFalse(Modifier.VARARGS.isTracked());
+            assertTrue(RunContext.getCurrent().isBinaryMode());
+        } finally {
+            RunContext.restore(previous);
+        }
+        assertTrue(Modifier.VARARGS.isTracked());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import com.sun.tdk.signaturetest.errors.ErrorFormatter.Message;
+import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import com.sun.tdk.signaturetest.model.Modifier;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HandlerTableTest {
+
+    public HandlerTableTest() {
+    }
+
+    @Test
+    public void testStringToArrayList() {
+        String[] sources = {"a", "a,b", "a,,b", ",a", "a,", ",", ",,", "a, b"};
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(sources[i], Arrays.asList(sources[i].split(",")),
+                    Handler.stringToArrayList(sources[i], ","));
+            assertEquals(sources[i], Arrays.asList(sources[i].split(", ")),
+                    Handler.stringToArrayList(sources[i], ", "));
+        }
+        assertTrue(Handler.stringToArrayList("", ",").isEmpty());
+        assertTrue(Handler.stringToArrayList(null, ",").isEmpty());
+    }
+
+    @Test
+    public void testDispatch() {
+        List calls = new ArrayList();
+        Handler chain = new RecordingHandler("add", new MessageType[]{MessageType.ADD_METHS}, calls).setNext(
+                new RecordingHandler("paired", Handler.SEVERAL_MESSAGES, calls).setNext(
+                        new RecordingHandler("miss", new MessageType[]{MessageType.MISS_METHS, MessageType.ADD_METHS}, calls).setNext(
+                                new RecordingHandler("any", null, calls))));
+        HandlerTable table = new HandlerTable(chain);
+
+        Message add = message(MessageType.ADD_METHS, "a.A", "foo()", Modifier.PUBLIC.getValue());
+        Message miss = message(MessageType.MISS_METHS, "a.A", "foo()", Modifier.PUBLIC.getValue());
+        Message cons = message(MessageType.MISS_CONSTRUCTORS, "a.A", "foo()", Modifier.PUBLIC.getValue());
+
+        table.process(Collections.singletonList(add), null);
+        assertEquals(Arrays.asList(new String[]{"add", "miss", "any"}), calls);
+
+        calls.clear();
+        table.process(Collections.singletonList(miss), null);
+        assertEquals(Arrays.asList(new String[]{"miss", "any"}), calls);
+
+        calls.clear();
+        table.process(Collections.singletonList(cons), null);
+        assertEquals(Arrays.asList(new String[]{"any"}), calls);
+
+        calls.clear();
+        table.process(Arrays.asList(new Message[]{miss, add}), null);
+        assertEquals(Arrays.asList(new String[]{"paired", "any"}), calls);
+    }
+
+    @Test
+    public void testParallelProcessing() {
+        String expected = print(1);
+        assertTrue(expected, expected.indexOf("Class a.C3") >= 0);
+        assertEquals(expected, print(4));
+    }
+
+    private static String print(int threads) {
+        StringWriter sw = new StringWriter();
+        HumanErrorFormatter f = new HumanErrorFormatter(new PrintWriter(sw, true), false, Level.SEVERE);
+        f.setThreads(threads);
+        for (int i = 0; i < 20; i++) {
+            String c = "a.C" + i;
+            // changed modifiers are reported as the pairs of messages
+            add(f, MessageType.MISS_METHS, c, "foo()", Modifier.PUBLIC.getValue());
+            add(f, MessageType.ADD_METHS, c, "foo()", Modifier.PUBLIC.getValue() | Modifier.FINAL.getValue());
+            add(f, MessageType.ADD_METHS, c, "bar(int)", Modifier.PUBLIC.getValue());
+            add(f, MessageType.MISS_METHS, c, "baz()", Modifier.PUBLIC.getValue());
+        }
+        f.printErrors();
+        assertEquals(60, f.getNumErrors());
+        return sw.toString();
+    }
+
+    private static void add(ErrorFormatter f, MessageType kind, String className, String signature, int modifiers) {
+        Message m = message(kind, className, signature, modifiers);
+        f.addError(kind, className, MemberType.METHOD, m.definition, m.errorObject);
+    }
+
+    private static Message message(MessageType kind, String className, String signature, int modifiers) {
+        MethodDescr m = new MethodDescr(signature.substring(0, signature.indexOf('(')), className, modifiers);
+        m.setType("void");
+        m.setArgs(signature.substring(signature.indexOf('(') + 1, signature.length() - 1));
+        return new Message(kind, className, "method public void " + signature, null, m);
+    }
+
+    private static class RecordingHandler extends Handler {
+
+        private final String name;
+        private final MessageType[] types;
+        private final List calls;
+
+        RecordingHandler(String name, MessageType[] types, List calls) {
+            this.name = name;
+            this.types = types;
+            this.calls = calls;
+        }
+
+        MessageType[] getMessageTypes() {
+            return types;
+        }
+
+        boolean acceptMessageList(List l) {
+            calls.add(name);
+            return false;
+        }
+
+        protected void writeMessage(List l, Chain ch) {
+        }
+    }
+}
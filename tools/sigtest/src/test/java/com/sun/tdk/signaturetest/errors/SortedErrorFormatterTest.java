@@ -0,0 +1,103 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.errors;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberType;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import com.sun.tdk.signaturetest.model.SuperClass;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SortedErrorFormatterTest {
+
+    public SortedErrorFormatterTest() {
+    }
+
+    @Test
+    public void testSpilledMessages() {
+        String expected = print(Integer.MAX_VALUE);
+        assertTrue(expected, expected.indexOf("duplicate messages suppressed: 2") >= 0);
+        assertEquals(expected, print(1));
+        assertEquals(expected, print(3));
+    }
+
+    @Test
+    public void testUnwritableTempDir() throws Exception {
+        String expected = print(Integer.MAX_VALUE);
+
+        // the temporary files can't be created under a regular file
+        File file = File.createTempFile("notadir", ".tmp");
+        file.deleteOnExit();
+        String tmpDir = System.getProperty("java.io.tmpdir");
+        System.setProperty("java.io.tmpdir", new File(file, "tmp").getPath());
+        try {
+            assertEquals(expected, print(1));
+            assertEquals(expected, print(3));
+        } finally {
+            System.setProperty("java.io.tmpdir", tmpDir);
+        }
+    }
+
+    private static String print(int maxMessages) {
+        StringWriter sw = new StringWriter();
+        SortedErrorFormatter f = new SortedErrorFormatter(new PrintWriter(sw, true), true);
+        f.setMaxMessages(maxMessages);
+        f.tested(type("a.B", "a.A"));
+        f.tested(type("a.C", "a.B"));
+
+        // the messages of the subclasses are duplicates
+        addMethod(f, MessageType.MISS_METHS, "a.C", "foo()");
+        addMethod(f, MessageType.MISS_METHS, "a.A", "foo()");
+        addMethod(f, MessageType.ADD_METHS, "a.X", "bar(int)");
+        addMethod(f, MessageType.MISS_METHS, "a.B", "foo()");
+        addMethod(f, MessageType.MISS_METHS, "a.X", "baz()");
+        addMethod(f, MessageType.ADD_METHS, "a.A", "bar(int)");
+        assertEquals(6, f.getNumErrors());
+
+        f.printErrors();
+        return sw.toString();
+    }
+
+    private static void addMethod(ErrorFormatter f, MessageType kind, String className, String signature) {
+        MethodDescr m = new MethodDescr(signature.substring(0, signature.indexOf('(')), className, 1);
+        m.setType("void");
+        m.setArgs(signature.substring(signature.indexOf('(') + 1, signature.length() - 1));
+        f.addError(kind, className, MemberType.METHOD, "method public void " + signature, m);
+    }
+
+    private static ClassDescription type(String name, String superClass) {
+        ClassDescription c = new ClassDescription();
+        c.setupClassName(name);
+        SuperClass sc = new SuperClass();
+        sc.setupClassName(superClass);
+        c.setSuperClass(sc);
+        return c;
+    }
+}
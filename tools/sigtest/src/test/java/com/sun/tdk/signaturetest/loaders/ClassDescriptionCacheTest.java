@@ -0,0 +1,89 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.loaders;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MethodDescr;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClassDescriptionCacheTest {
+
+    public ClassDescriptionCacheTest() {
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        ClassDescriptionCache cache = new ClassDescriptionCache(10);
+        ClassDescription a = createClass("a.A", 0);
+
+        assertNull(cache.get("a.A"));
+        cache.put("a.A", a);
+        assertSame(a, cache.get("a.A"));
+        assertSame(a, cache.get("a.A"));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testBigClassesAreWeighted() {
+        // room for 2 * 16 members
+        ClassDescriptionCache cache = new ClassDescriptionCache(2);
+        cache.put("a.Small", createClass("a.Small", 0));
+        cache.put("a.Big", createClass("a.Big", 40));
+
+        assertEquals("The big class doesn't fit, so the whole cache is evicted", 0, cache.size());
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        ClassDescriptionCache cache = new ClassDescriptionCache(1);
+        ClassDescription first = createClass("a.First", 6);
+        ClassDescription second = createClass("a.Second", 6);
+        cache.put("a.First", first);
+        cache.put("a.Second", second);
+        cache.get("a.First");
+
+        cache.put("a.Third", createClass("a.Third", 6));
+
+        assertSame(first, cache.get("a.First"));
+        assertNull(cache.get("a.Second"));
+        assertNotNull(cache.get("a.Third"));
+    }
+
+    private static ClassDescription createClass(String name, int methods) {
+        ClassDescription c = new ClassDescription();
+        c.setupClassName(name);
+        c.createMethods(methods);
+        for (int i = 0; i < methods; i++) {
+            c.setMethod(i, new MethodDescr("m" + i, name, 1));
+        }
+        return c;
+    }
+}
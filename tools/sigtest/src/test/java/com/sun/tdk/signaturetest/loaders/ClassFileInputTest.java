@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.loaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClassFileInputTest {
+
+    public ClassFileInputTest() {
+    }
+
+    @Test
+    public void testReadUTF() throws Exception {
+        String[] strings = {"", "java/lang/Object", "café", "\u0000", "€😀"};
+        ClassFileInput in = ClassFileInput.read(new ByteArrayInputStream(write(strings)));
+
+        int offset = 0;
+        for (int i = 0; i < strings.length; i++) {
+            assertEquals(strings[i], in.readUTF(offset));
+            offset += 2 + in.getUnsignedShort(offset);
+        }
+        for (int i = 0; i < strings.length; i++)
+            assertEquals(strings[i], in.readUTF());
+    }
+
+    @Test
+    public void testReadFile() throws Exception {
+        byte[] data = write(new String[]{"a", "b"});
+        File f = File.createTempFile("test", ".class");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        ClassFileInput in = ClassFileInput.read(new FileInputStream(f));
+        assertEquals(data.length, in.limit());
+        assertEquals("a", in.readUTF());
+        assertEquals("b", in.readUTF());
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        ClassFileInput in = ClassFileInput.read(new ByteArrayInputStream(new byte[]{0, 1, 0, 2}));
+        in.limit(2);
+        assertEquals(1, in.readUnsignedShort());
+        try {
+            in.readUnsignedShort();
+            fail("read after the limit");
+        } catch (EOFException e) {
+        }
+        in.limit(4);
+        assertEquals(2, in.readUnsignedShort());
+    }
+
+    @Test
+    public void testReadLineAsDataInputStream() throws Exception {
+        byte[] data = "a\nb\r\nc\rd\n\n\u00e9\r".getBytes("ISO-8859-1");
+        ClassFileInput in = ClassFileInput.read(new ByteArrayInputStream(data));
+        DataInputStream expected = new DataInputStream(new ByteArrayInputStream(data));
+
+        String line;
+        do {
+            line = expected.readLine();
+            assertEquals(line, in.readLine());
+        } while (line != null);
+    }
+
+    private static byte[] write(String[] strings) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        for (int i = 0; i < strings.length; i++)
+            out.writeUTF(strings[i]);
+        out.close();
+        return buf.toByteArray();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.model;
+
+import com.sun.tdk.signaturetest.classpath.ClasspathImpl;
+import com.sun.tdk.signaturetest.classpath.Release;
+import com.sun.tdk.signaturetest.core.RunContext;
+import com.sun.tdk.signaturetest.loaders.BinaryClassDescrLoader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClassDescriptionCodecTest {
+
+    public ClassDescriptionCodecTest() {
+    }
+
+    @Test
+    public void testAnnotationWithDefaults() throws Exception {
+        assertRoundTrip("java.lang.annotation.Retention");
+        assertRoundTrip("java.lang.Deprecated");
+    }
+
+    @Test
+    public void testGenericClasses() throws Exception {
+        ClassDescription c = assertRoundTrip("java.util.HashMap");
+        assertNotNull(c.getTypeparamList());
+        assertEquals(c.getTypeparamList().replace("K"), load("java.util.HashMap").getTypeparamList().replace("K"));
+
+        assertRoundTrip("java.util.Map$Entry");
+        assertRoundTrip("java.util.concurrent.TimeUnit");
+    }
+
+    @Test
+    public void testConstants() throws Exception {
+        assertRoundTrip("java.lang.Integer");
+        assertRoundTrip("java.lang.Character");
+    }
+
+    private static ClassDescription assertRoundTrip(String name) throws Exception {
+        ClassDescription c = load(name);
+        ClassDescription copy = new ClassDescription();
+        ClassDescriptionCodec.read(copy, new DataInputStream(new ByteArrayInputStream(write(c))));
+
+        assertEquals(c.toString(), copy.toString());
+        assertEquals(c.getSuperClass() == null, copy.getSuperClass() == null);
+        if (c.getSuperClass() != null)
+            assertEquals(c.getSuperClass().toString(), copy.getSuperClass().toString());
+        assertMembers(c.getInterfaces(), copy.getInterfaces());
+        assertMembers(c.getDeclaredFields(), copy.getDeclaredFields());
+        assertMembers(c.getDeclaredMethods(), copy.getDeclaredMethods());
+        assertMembers(c.getDeclaredConstructors(), copy.getDeclaredConstructors());
+        assertMembers(c.getDeclaredClasses(), copy.getDeclaredClasses());
+
+        assertArrayEquals("The copy is written in the same way", write(c), write(copy));
+        return copy;
+    }
+
+    private static void assertMembers(MemberDescription[] expected, MemberDescription[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].toString(), actual[i].toString());
+            assertEquals(expected[i].getDeclaringClassName(), actual[i].getDeclaringClassName());
+        }
+    }
+
+    private static byte[] write(ClassDescription c) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ClassDescriptionCodec.write(c, new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    private static ClassDescription load(String name) throws ClassNotFoundException {
+        RunContext.getCurrent().setTigerFeaturesTracked(true);
+        BinaryClassDescrLoader loader = new BinaryClassDescrLoader(new ClasspathImpl(Release.find(11), null), new Integer(100));
+        loader.setLog(new PrintWriter(new StringWriter()));
+        return loader.load(name);
+    }
+}
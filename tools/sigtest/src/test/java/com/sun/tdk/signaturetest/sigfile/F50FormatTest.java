@@ -0,0 +1,193 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import com.sun.tdk.signaturetest.model.MemberDescription;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class F50FormatTest {
+
+    private static final String SIGFILE =
+            "#Signature file v4.1\n" +
+            "#Version 2.0\n" +
+            "\n" +
+            "CLSS public a.A<%0 extends java.lang.Object>\n" +
+            "cons public init()\n" +
+            "fld public final static int MAX = 10\n" +
+            "innr public static B\n" +
+            "meth public %0 get()\n" +
+            "meth public void café(java.lang.String) throws java.io.IOException\n" +
+            "supr java.lang.Object\n" +
+            "hfds secret\n" +
+            "\n" +
+            "CLSS public static a.A$B\n" +
+            " outer a.A\n" +
+            " anno 0 java.lang.Deprecated()\n" +
+            "cons public init()\n" +
+            "intf java.lang.Runnable\n" +
+            "meth public void run()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public abstract interface !annotation a.C\n" +
+            "meth public abstract int value()\n";
+
+    public F50FormatTest() {
+    }
+
+    @Test
+    public void testFormatIsDetected() throws Exception {
+        File f = writeBinary(createSigFile(SIGFILE));
+        Reader in = new FileManager().getReader(f.toURL());
+        assertTrue(in instanceof F50Reader);
+        assertTrue(in.readSignatureFile(f.toURL()));
+        assertEquals("2.0", in.getApiVersion());
+        assertTrue(in.hasFeature(FeaturesHolder.ConstInfo));
+        in.close();
+    }
+
+    @Test
+    public void testReadsSameClasses() throws Exception {
+        File text = createSigFile(SIGFILE);
+        File binary = writeBinary(text);
+
+        List expected = readAll(text);
+        List actual = readAll(binary);
+        assertEquals(3, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testReadClassAt() throws Exception {
+        File f = writeBinary(createSigFile(SIGFILE));
+        F50Reader in = (F50Reader) new FileManager().getReader(f.toURL());
+        try {
+            assertTrue(in.readSignatureFile(f.toURL()));
+            long a = in.getPosition();
+            assertEquals("a.A", in.skipClass());
+            long b = in.getPosition();
+            assertEquals("a.A$B", in.skipClass());
+            assertEquals("a.C", in.skipClass());
+            assertNull(in.skipClass());
+
+            ClassDescription c = in.readClassAt(b);
+            assertEquals("a.A", c.getOuterClass());
+            assertEquals(1, c.getAnnoList().length);
+            c = in.readClassAt(a);
+            assertEquals("10", c.getDeclaredFields()[0].getConstantValue());
+            assertTrue(c.getInternalFields().contains("secret"));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static File writeBinary(File text) throws IOException {
+        Reader in = new F41Format().getReader();
+        assertTrue(in.readSignatureFile(text.toURL()));
+
+        File f = File.createTempFile("test", ".sig");
+        f.deleteOnExit();
+        F50Writer out = new F50Writer();
+        out.init(new FileOutputStream(f));
+        out.setApiVersion(in.getApiVersion());
+        for (Iterator it = in.getAllSupportedFeatures().iterator(); it.hasNext();)
+            out.addFeature((Format.Feature) it.next());
+        out.writeHeader();
+
+        ClassDescription c;
+        while ((c = in.readNextClass()) != null) {
+            addMembers(c, c.getDeclaredConstructors());
+            addMembers(c, c.getDeclaredMethods());
+            addMembers(c, c.getDeclaredFields());
+            addMembers(c, c.getDeclaredClasses());
+            addMembers(c, c.getInterfaces());
+            if (c.getSuperClass() != null)
+                c.add(c.getSuperClass());
+            out.write(c);
+        }
+        in.close();
+        out.close();
+        assertFalse(out.checkError());
+        return f;
+    }
+
+    private static void addMembers(ClassDescription c, MemberDescription[] members) {
+        for (int i = 0; i < members.length; i++)
+            c.add(members[i]);
+    }
+
+    private static List readAll(File f) throws IOException {
+        MultipleFileReader in = new MultipleFileReader(new PrintWriter(new StringWriter()),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        List result = new ArrayList();
+        try {
+            assertTrue(in.readSignatureFile("", f.getAbsolutePath()));
+            ClassDescription c;
+            while ((c = in.nextClass()) != null) {
+                StringBuffer sb = new StringBuffer(c.toString());
+                sb.append('\n').append(c.getOuterClass());
+                append(sb, c.getAnnoList());
+                append(sb, c.getInterfaces());
+                append(sb, c.getDeclaredConstructors());
+                append(sb, c.getDeclaredMethods());
+                append(sb, c.getDeclaredFields());
+                append(sb, c.getDeclaredClasses());
+                sb.append('\n').append(c.getInternalFields());
+                result.add(sb.toString());
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    private static void append(StringBuffer sb, Object[] items) {
+        for (int i = 0; i < items.length; i++)
+            sb.append('\n').append(items[i]);
+    }
+
+    private static File createSigFile(String content) throws IOException {
+        File f = File.createTempFile("test", ".sig");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes("UTF8"));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
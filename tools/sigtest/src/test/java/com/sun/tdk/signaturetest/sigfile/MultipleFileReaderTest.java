@@ -0,0 +1,132 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.sigfile;
+
+import com.sun.tdk.signaturetest.model.ClassDescription;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MultipleFileReaderTest {
+
+    private static final String SIGFILE =
+            "#Signature file v4.1\r\n" +
+            "#Version 1.0\r\n" +
+            "\r\n" +
+            "CLSS public b.B\r\n" +
+            "cons public init()\r\n" +
+            "meth public void café()\r\n" +
+            "supr java.lang.Object\r\n" +
+            "\r\n" +
+            "CLSS public abstract interface a.A\r\n" +
+            "meth public abstract void run()\r\n" +
+            "\r\n" +
+            "CLSS public java.lang.Object\r\n" +
+            "cons public init()\r\n" +
+            "meth public int hashCode()\r\n";
+
+    public MultipleFileReaderTest() {
+    }
+
+    @Test
+    public void testStreamingReadsSameClasses() throws Exception {
+        File f = createSigFile(SIGFILE);
+
+        List expected = readAll(f, false);
+        List actual = readAll(f, true);
+
+        assertEquals(3, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testStreamingLoad() throws Exception {
+        File f = createSigFile(SIGFILE);
+        MultipleFileReader in = new MultipleFileReader(new PrintWriter(new StringWriter()),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        // room for one class only
+        in.setStreaming(1);
+        try {
+            assertTrue(in.readSignatureFile("", f.getAbsolutePath()));
+            assertEquals("1.0", in.getApiVersion());
+
+            ClassDescription b = in.load("b.B");
+            assertEquals(2, b.getDeclaredMethods().length + b.getDeclaredConstructors().length);
+            assertEquals("café", b.getDeclaredMethods()[0].getName());
+            assertTrue(in.load("a.A").isInterface());
+            assertEquals("b.B", in.load("b.B").getQualifiedName());
+
+            try {
+                in.load("c.C");
+                fail("c.C is loaded");
+            } catch (ClassNotFoundException e) {
+                assertEquals("c.C", e.getMessage());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static List readAll(File f, boolean streaming) throws IOException {
+        MultipleFileReader in = new MultipleFileReader(new PrintWriter(new StringWriter()),
+                MultipleFileReader.CLASSPATH_MODE, new FileManager());
+        if (streaming)
+            in.setStreaming(1);
+        List result = new ArrayList();
+        try {
+            assertTrue(in.readSignatureFile("", f.getAbsolutePath()));
+            ClassDescription c;
+            while ((c = in.nextClass()) != null) {
+                StringBuffer sb = new StringBuffer(c.toString());
+                for (int i = 0; i < c.getDeclaredMethods().length; i++)
+                    sb.append('\n').append(c.getDeclaredMethods()[i]);
+                result.add(sb.toString());
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    private static File createSigFile(String content) throws IOException {
+        File f = File.createTempFile("test", ".sig");
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes("UTF8"));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
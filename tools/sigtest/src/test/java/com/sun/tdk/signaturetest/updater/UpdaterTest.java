@@ -0,0 +1,171 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+
+package com.sun.tdk.signaturetest.updater;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UpdaterTest {
+
+    private static final String SIGFILE =
+            "#Signature file v4.1\n" +
+            "#Version 1.0\n" +
+            "\n" +
+            "CLSS public a.A\n" +
+            "cons public init()\n" +
+            "meth public void run()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public a.b.B\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public a.C\n" +
+            "anno 0 java.lang.Deprecated()\n" +
+            "meth public void stop()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public c.D\n" +
+            "supr java.lang.Object\n";
+
+    private static final String UPDATE =
+            "<?xml version=\"1.0\"?>\n" +
+            "<updates>\n" +
+            "<update type=\"removepackage\" packagename=\"a.b\"/>\n" +
+            "<update type=\"changemember\" classname=\"a.A\" member=\"meth public void run()\" newmember=\"meth public void start()\"/>\n" +
+            "<update type=\"addmember\" classname=\"a.C\" member=\"meth public void pause()\"/>\n" +
+            "<update type=\"removemember\" classname=\"a.C\" member=\"meth public void stop()\"/>\n" +
+            "<update type=\"removeclass\" classname=\"c.D\"/>\n" +
+            "<update type=\"addclass\" classname=\"c.E\">\n" +
+            "CLSS public c.E\n" +
+            "supr java.lang.Object\n" +
+            "</update>\n" +
+            "</updates>\n";
+
+    private static final String EXPECTED =
+            "#Signature file v4.1\n" +
+            "#Version 1.0\n" +
+            "\n" +
+            "CLSS public a.A\n" +
+            "cons public init()\n" +
+            "meth public void start()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public a.C\n" +
+            "anno 0 java.lang.Deprecated()\n" +
+            "meth public void pause()\n" +
+            "supr java.lang.Object\n" +
+            "\n" +
+            "CLSS public c.E\n" +
+            "supr java.lang.Object\n" +
+            "\n";
+
+    public UpdaterTest() {
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        File from = createFile(SIGFILE, ".sig");
+        File to = File.createTempFile("updated", ".sig");
+        to.deleteOnExit();
+
+        StringWriter log = new StringWriter();
+        assertTrue(new Updater().perform(createFile(UPDATE, ".xml").getAbsolutePath(),
+                from.getAbsolutePath(), to.getAbsolutePath(), new PrintWriter(log)));
+        assertEquals(EXPECTED, read(to));
+        assertEquals(SIGFILE, read(from));
+    }
+
+    @Test
+    public void testUpdateInPlace() throws Exception {
+        File f = createFile(SIGFILE, ".sig");
+
+        StringWriter log = new StringWriter();
+        assertTrue(new Updater().perform(createFile(UPDATE, ".xml").getAbsolutePath(),
+                f.getAbsolutePath(), f.getAbsolutePath(), new PrintWriter(log)));
+        assertEquals(EXPECTED, read(f));
+    }
+
+    @Test
+    public void testAddMemberToLastClass() throws Exception {
+        File from = createFile(
+                "#Signature file v4.1\n" +
+                "#Version 1.0\n" +
+                "\n" +
+                "CLSS public c.D\n" +
+                "supr java.lang.Object", ".sig");
+        File to = File.createTempFile("updated", ".sig");
+        to.deleteOnExit();
+
+        String update =
+                "<?xml version=\"1.0\"?>\n" +
+                "<updates>\n" +
+                "<update type=\"addmember\" classname=\"c.D\" member=\"meth public void run()\"/>\n" +
+                "</updates>\n";
+        StringWriter log = new StringWriter();
+        assertTrue(new Updater().perform(createFile(update, ".xml").getAbsolutePath(),
+                from.getAbsolutePath(), to.getAbsolutePath(), new PrintWriter(log)));
+        assertEquals(
+                "#Signature file v4.1\n" +
+                "#Version 1.0\n" +
+                "\n" +
+                "CLSS public c.D\n" +
+                "meth public void run()\n" +
+                "supr java.lang.Object\n", read(to));
+    }
+
+    private static String read(File f) throws IOException {
+        StringBuffer sb = new StringBuffer();
+        BufferedReader r = new BufferedReader(new FileReader(f));
+        try {
+            String s;
+            while ((s = r.readLine()) != null)
+                sb.append(s).append('\n');
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    private static File createFile(String content, String suffix) throws IOException {
+        File f = File.createTempFile("test", suffix);
+        f.deleteOnExit();
+        OutputStream out = new FileOutputStream(f);
+        try {
+            out.write(content.getBytes("UTF8"));
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+}
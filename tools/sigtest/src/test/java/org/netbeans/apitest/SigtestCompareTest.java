@@ -0,0 +1,141 @@
+/*
+ * Copyright 2007 Sun Microsystems, Inc.  All Rights Reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Sun designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Sun in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Sun Microsystems, Inc., 4150 Network Circle, Santa Clara,
+ * CA 95054 USA or visit www.sun.com if you need additional information or
+ * have any questions.
+ */
+package org.netbeans.apitest;
+
+import com.sun.tdk.signaturetest.TestClasses;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.project.MavenProject;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Generates the signature file of the previous release as
+ * {@code sigtest:compare} does, with and without the cache.
+ */
+public class SigtestCompareTest {
+    private File workDir;
+    private MavenProject prj;
+    private DefaultArtifact artifact;
+
+    public SigtestCompareTest() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        workDir = TestClasses.createDir("compare");
+
+        File released = TestClasses.compile(
+            "package ahoj; public class A { public void get() {} }"
+        );
+        File jar = new File(workDir, "repository/ahoj/api/1.0/api-1.0.jar");
+        jar.getParentFile().mkdirs();
+        try (JarOutputStream os = new JarOutputStream(new FileOutputStream(jar))) {
+            os.putNextEntry(new JarEntry("ahoj/A.class"));
+            os.write(Files.readAllBytes(new File(released, "ahoj/A.class").toPath()));
+            os.closeEntry();
+        }
+        artifact = new DefaultArtifact("ahoj", "api", "1.0", null, "jar", "", new DefaultArtifactHandler("jar"));
+        artifact.setFile(jar);
+
+        // the project has a new class since the release
+        File current = TestClasses.compile(
+            "package ahoj; public class A { public void get() {} public void put() {} }",
+            "package ahoj; public class B { }"
+        );
+        prj = new MavenProject();
+        prj.setGroupId("ahoj");
+        prj.setArtifactId("api");
+        prj.setVersion("2.0");
+        prj.getBuild().setOutputDirectory(current.getPath());
+    }
+
+    @Test
+    public void testCacheHitGivesSameSigfile() throws Exception {
+        File expected = new File(workDir, "expected.sigfile");
+        new SigtestCompare(prj, expected, "ahoj", "1.0", "11", false, "1.0").generateBaseline(artifact);
+        String sig = TestClasses.read(expected);
+        assertTrue(sig, sig.contains("CLSS public ahoj.A"));
+        File[] cached = artifact.getFile().getParentFile().listFiles((dir, name) -> name.endsWith(".sigfile"));
+        assertEquals("Nothing cached", 0, cached.length);
+
+        File first = new File(workDir, "first.sigfile");
+        new SigtestCompare(prj, first, "ahoj", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        assertEquals(sig, TestClasses.read(first));
+        cached = artifact.getFile().getParentFile().listFiles((dir, name) -> name.endsWith(".sigfile"));
+        assertEquals("Cached next to the artifact", 1, cached.length);
+        assertEquals(sig, TestClasses.read(cached[0]));
+
+        // a generated file would be written again
+        assertTrue(cached[0].setLastModified(1000L));
+        File second = new File(workDir, "second.sigfile");
+        new SigtestCompare(prj, second, "ahoj", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        assertEquals(sig, TestClasses.read(second));
+        assertEquals("Cached file reused", 1000L, cached[0].lastModified());
+
+        // other packages are not the same file
+        File other = new File(workDir, "other.sigfile");
+        new SigtestCompare(prj, other, "ahoj,ahoj.impl", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        cached = artifact.getFile().getParentFile().listFiles((dir, name) -> name.endsWith(".sigfile"));
+        assertEquals(2, cached.length);
+    }
+
+    @Test
+    public void testBaselineWithProjectClasses() throws Exception {
+        File sigfile = new File(workDir, "baseline.sigfile");
+        new SigtestCompare(prj, sigfile, "ahoj", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        String sig = TestClasses.read(sigfile);
+        assertTrue(sig, sig.contains("CLSS public ahoj.A"));
+        assertTrue(sig, sig.contains("meth public void get()"));
+        assertFalse("Released class is used: " + sig, sig.contains("put()"));
+        // the project's output directory is on the classpath as before the cache
+        assertTrue("New class of the project is in the baseline: " + sig, sig.contains("CLSS public ahoj.B"));
+    }
+
+    @Test
+    public void testChangedProjectClassesNotCached() throws Exception {
+        File first = new File(workDir, "first.sigfile");
+        new SigtestCompare(prj, first, "ahoj", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        assertTrue(TestClasses.read(first).contains("ahoj.B"));
+
+        File current = TestClasses.compile(
+            "package ahoj; public class A { public void get() {} }",
+            "package ahoj; public class C { }"
+        );
+        prj.getBuild().setOutputDirectory(current.getPath());
+        File second = new File(workDir, "second.sigfile");
+        new SigtestCompare(prj, second, "ahoj", "1.0", "11", true, "1.0").generateBaseline(artifact);
+        String sig = TestClasses.read(second);
+        assertFalse(sig, sig.contains("ahoj.B"));
+        assertTrue(sig, sig.contains("CLSS public ahoj.C"));
+        File[] cached = artifact.getFile().getParentFile().listFiles((dir, name) -> name.endsWith(".sigfile"));
+        assertEquals(2, cached.length);
+    }
+}